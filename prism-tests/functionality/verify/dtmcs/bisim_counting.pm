@@ -0,0 +1,32 @@
+// Bisimulation minimisation of a DTMC with non-dyadic probabilities:
+// 14 independent bits, each set with probability 0.1 per step.
+// States with the same number of set bits are bisimilar (16384 states, 15 blocks),
+// but their lifted probabilities are sums of products that may differ in the last bits.
+
+dtmc
+
+module b1
+
+	b1 : bool init false;
+
+	[step] !b1 -> 0.1 : (b1'=true) + 0.9 : true;
+	[step] b1 -> true;
+
+endmodule
+
+module b2 = b1 [ b1=b2 ] endmodule
+module b3 = b1 [ b1=b3 ] endmodule
+module b4 = b1 [ b1=b4 ] endmodule
+module b5 = b1 [ b1=b5 ] endmodule
+module b6 = b1 [ b1=b6 ] endmodule
+module b7 = b1 [ b1=b7 ] endmodule
+module b8 = b1 [ b1=b8 ] endmodule
+module b9 = b1 [ b1=b9 ] endmodule
+module b10 = b1 [ b1=b10 ] endmodule
+module b11 = b1 [ b1=b11 ] endmodule
+module b12 = b1 [ b1=b12 ] endmodule
+module b13 = b1 [ b1=b13 ] endmodule
+module b14 = b1 [ b1=b14 ] endmodule
+
+label "all" = b1 & b2 & b3 & b4 & b5 & b6 & b7 & b8 & b9 & b10 & b11 & b12 & b13 & b14;
+label "some" = b1 | b2 | b3 | b4 | b5 | b6 | b7 | b8 | b9 | b10 | b11 | b12 | b13 | b14;
@@ -0,0 +1,824 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package explicit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import parser.State;
+import parser.VarList;
+import parser.ast.Declaration;
+import parser.ast.DeclarationBool;
+import parser.ast.DeclarationInt;
+import parser.ast.Expression;
+import parser.ast.ExpressionIdent;
+import parser.ast.ExpressionLiteral;
+import parser.ast.LabelList;
+import parser.ast.Module;
+import parser.ast.ModulesFile;
+import parser.type.TypeBool;
+import parser.type.TypeInt;
+import prism.ModelType;
+import prism.PrismComponent;
+import prism.PrismException;
+import prism.PrismNotSupportedException;
+import prism.PrismSettings;
+
+/**
+ * Binary storage of an explicit-state model (DTMC, CTMC or MDP) in a single file,
+ * as a faster alternative to the .tra/.sta/.lab text files for large models.
+ * <br>
+ * The file consists of a fixed-size header (counts and a table of section offsets),
+ * a metadata block (model type, variable, label and action names) and a sequence of
+ * sections holding the sparse matrix arrays (as used by {@link DTMCSparse}/{@link MDPSparse}),
+ * initial and deadlock states, state variable values and label state sets.
+ * All numbers are stored little-endian and each section starts at a multiple of 8 bytes.
+ * <br>
+ * On import, the sections are memory-mapped and copied in bulk into the arrays of the model,
+ * so no parsing is needed.
+ */
+public class BinaryModelFile extends PrismComponent
+{
+	/** Magic number at the start of the file */
+	private static final byte[] MAGIC = { 'P', 'R', 'I', 'S', 'M', 'B', 'I', 'N' };
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	// Section indices (into the section offset table of the header)
+	private static final int SEC_INITIAL = 0;
+	private static final int SEC_DEADLOCKS = 1;
+	private static final int SEC_ROW_STARTS = 2;
+	private static final int SEC_CHOICE_STARTS = 3;
+	private static final int SEC_COLUMNS = 4;
+	private static final int SEC_VALUES = 5;
+	private static final int SEC_ACTIONS = 6;
+	private static final int SEC_STATES = 7;
+	private static final int SEC_LABELS = 8;
+	private static final int NUM_SECTIONS = 9;
+
+	/** Size of the fixed part of the header (bytes) */
+	private static final int HEADER_SIZE = 64 + 8 * NUM_SECTIONS;
+
+	/** Maximum size of a single memory-mapped region (bytes) */
+	private static final int MAX_MAP_SIZE = 1 << 30;
+
+	// Should deadlocks be fixed (by adding a self-loop) when detected?
+	private boolean fixdl;
+
+	// The file
+	private File file;
+
+	// Header info
+	private ModelType modelType;
+	private int numStates;
+	private int numChoices;
+	private int numTransitions;
+	private int numInitial;
+	private int numDeadlocks;
+	private String varNames[];
+	private boolean varIsBool[];
+	private int varLows[];
+	private int varHighs[];
+	private String labelNames[];
+	private String actionNames[];
+	private long sections[];
+
+	/**
+	 * Constructor: open binary model file {@code file} and read its header.
+	 */
+	public BinaryModelFile(PrismComponent parent, File file) throws PrismException
+	{
+		super(parent);
+		if (settings != null) {
+			setFixDeadlocks(settings.getBoolean(PrismSettings.PRISM_FIX_DEADLOCKS));
+		}
+		this.file = file;
+		readHeader();
+	}
+
+	/**
+	 * Are deadlocks fixed (by adding a self-loop) when detected?
+	 */
+	public boolean getFixDeadlocks()
+	{
+		return fixdl;
+	}
+
+	/**
+	 * Should deadlocks be fixed (by adding a self-loop) when detected?
+	 */
+	public void setFixDeadlocks(boolean fixdl)
+	{
+		this.fixdl = fixdl;
+	}
+
+	/**
+	 * Get the type of the stored model.
+	 */
+	public ModelType getModelType()
+	{
+		return modelType;
+	}
+
+	/**
+	 * Get the number of states of the stored model.
+	 */
+	public int getNumStates()
+	{
+		return numStates;
+	}
+
+	// Import
+
+	/**
+	 * Read the header and metadata of the file.
+	 */
+	private void readHeader() throws PrismException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE)
+				throw new PrismException("file is too short");
+			ByteBuffer buf = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			byte magic[] = new byte[MAGIC.length];
+			buf.get(magic);
+			if (!Arrays.equals(magic, MAGIC))
+				throw new PrismException("not a binary model file");
+			int version = buf.getInt();
+			if (version != VERSION)
+				throw new PrismException("unsupported format version " + version);
+			buf.getInt(); // reserved
+			numStates = buf.getInt();
+			numChoices = buf.getInt();
+			numTransitions = buf.getInt();
+			numInitial = buf.getInt();
+			numDeadlocks = buf.getInt();
+			buf.getInt(); // reserved
+			long metadataOffset = buf.getLong();
+			int metadataLength = (int) buf.getLong();
+			sections = new long[NUM_SECTIONS];
+			buf.position(64);
+			for (int i = 0; i < NUM_SECTIONS; i++) {
+				sections[i] = buf.getLong();
+			}
+			// Metadata
+			byte metadata[] = new byte[metadataLength];
+			channel.map(MapMode.READ_ONLY, metadataOffset, metadataLength).get(metadata);
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(metadata));
+			modelType = ModelType.valueOf(in.readUTF());
+			int numVars = in.readInt();
+			varNames = new String[numVars];
+			varIsBool = new boolean[numVars];
+			varLows = new int[numVars];
+			varHighs = new int[numVars];
+			for (int i = 0; i < numVars; i++) {
+				varNames[i] = in.readUTF();
+				varIsBool[i] = in.readBoolean();
+				varLows[i] = in.readInt();
+				varHighs[i] = in.readInt();
+			}
+			labelNames = new String[in.readInt()];
+			for (int i = 0; i < labelNames.length; i++) {
+				labelNames[i] = in.readUTF();
+			}
+			actionNames = new String[in.readInt()];
+			for (int i = 0; i < actionNames.length; i++) {
+				actionNames[i] = in.readUTF();
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			throw new PrismException("Error reading from binary model file \"" + file + "\": " + e.getMessage());
+		} catch (PrismException e) {
+			throw new PrismException("Error reading from binary model file \"" + file + "\": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Build a (partial) ModulesFile corresponding to the stored model,
+	 * i.e., storing just the model type, variable info and label names,
+	 * as for the text files in {@link parser.ExplicitFiles2ModulesFile}.
+	 */
+	public ModulesFile createModulesFile() throws PrismException
+	{
+		ModulesFile modulesFile = new ModulesFile();
+		Module m = new Module("M");
+		if (varNames.length == 0) {
+			// in absence of state info, there is a single variable x
+			// in the model, with value corresponding to the state index
+			Declaration d = new Declaration("x", new DeclarationInt(Expression.Int(0), Expression.Int(numStates - 1)));
+			d.setStart(Expression.Int(0));
+			m.addDeclaration(d);
+		}
+		for (int i = 0; i < varNames.length; i++) {
+			Declaration d;
+			if (varIsBool[i]) {
+				d = new Declaration(varNames[i], new DeclarationBool());
+				d.setStart(Expression.False());
+			} else {
+				// we don't allow zero-range variables
+				int high = varHighs[i] > varLows[i] ? varHighs[i] : varLows[i] + 1;
+				d = new Declaration(varNames[i], new DeclarationInt(Expression.Int(varLows[i]), Expression.Int(high)));
+				d.setStart(Expression.Int(varLows[i]));
+			}
+			m.addDeclaration(d);
+		}
+		modulesFile.addModule(m);
+		// Labels are stored in the model; their definitions are just placeholders
+		LabelList labelList = new LabelList();
+		for (String labelName : labelNames) {
+			labelList.addLabel(new ExpressionIdent(labelName), new ExpressionLiteral(TypeBool.getInstance(), false));
+		}
+		modulesFile.setLabelList(labelList);
+		modulesFile.tidyUp();
+		modulesFile.setModelType(modelType);
+		return modulesFile;
+	}
+
+	/**
+	 * Build the stored model: a {@link DTMCSparse}, {@link CTMCSimple} or {@link MDPSparse}.
+	 */
+	public Model build() throws PrismException
+	{
+		ModelExplicit model;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			int rowStarts[] = readInts(channel, SEC_ROW_STARTS, numStates + 1);
+			int cols[] = readInts(channel, SEC_COLUMNS, numTransitions);
+			double values[] = readDoubles(channel, SEC_VALUES, numTransitions);
+			switch (modelType) {
+			case DTMC:
+			case CTMC: {
+				List<Integer> deadlocks = new ArrayList<>();
+				for (int s = 0; s < numStates; s++) {
+					if (rowStarts[s] == rowStarts[s + 1])
+						deadlocks.add(s);
+				}
+				if (!deadlocks.isEmpty() && fixdl) {
+					// add a self-loop to each deadlock state
+					int newRowStarts[] = new int[numStates + 1];
+					int newCols[] = new int[numTransitions + deadlocks.size()];
+					double newValues[] = new double[newCols.length];
+					int k = 0;
+					for (int s = 0; s < numStates; s++) {
+						newRowStarts[s] = k;
+						int n = rowStarts[s + 1] - rowStarts[s];
+						if (n == 0) {
+							newCols[k] = s;
+							newValues[k++] = 1.0;
+						} else {
+							System.arraycopy(cols, rowStarts[s], newCols, k, n);
+							System.arraycopy(values, rowStarts[s], newValues, k, n);
+							k += n;
+						}
+					}
+					newRowStarts[numStates] = k;
+					rowStarts = newRowStarts;
+					cols = newCols;
+					values = newValues;
+				}
+				if (modelType == ModelType.DTMC) {
+					model = new DTMCSparse(numStates, rowStarts, cols, values);
+				} else {
+					CTMCSimple ctmc = new CTMCSimple(numStates);
+					for (int s = 0; s < numStates; s++) {
+						for (int j = rowStarts[s]; j < rowStarts[s + 1]; j++) {
+							ctmc.setProbability(s, cols[j], values[j]);
+						}
+					}
+					model = ctmc;
+				}
+				for (int s : deadlocks) {
+					model.addDeadlockState(s);
+				}
+				break;
+			}
+			case MDP: {
+				int choiceStarts[] = readInts(channel, SEC_CHOICE_STARTS, numChoices + 1);
+				Object actions[] = null;
+				if (sections[SEC_ACTIONS] != 0) {
+					int actionIndices[] = readInts(channel, SEC_ACTIONS, numChoices);
+					actions = new Object[numChoices];
+					for (int i = 0; i < numChoices; i++) {
+						actions[i] = actionIndices[i] == -1 ? null : actionNames[actionIndices[i]];
+					}
+				}
+				List<Integer> deadlocks = new ArrayList<>();
+				for (int s = 0; s < numStates; s++) {
+					if (rowStarts[s] == rowStarts[s + 1])
+						deadlocks.add(s);
+				}
+				if (!deadlocks.isEmpty() && fixdl) {
+					// add a single choice with a self-loop to each deadlock state
+					int newRowStarts[] = new int[numStates + 1];
+					int newChoiceStarts[] = new int[numChoices + deadlocks.size() + 1];
+					int newCols[] = new int[numTransitions + deadlocks.size()];
+					double newValues[] = new double[newCols.length];
+					Object newActions[] = actions == null ? null : new Object[newChoiceStarts.length - 1];
+					int c = 0, k = 0;
+					for (int s = 0; s < numStates; s++) {
+						newRowStarts[s] = c;
+						if (rowStarts[s] == rowStarts[s + 1]) {
+							newChoiceStarts[c++] = k;
+							newCols[k] = s;
+							newValues[k++] = 1.0;
+							continue;
+						}
+						for (int i = rowStarts[s]; i < rowStarts[s + 1]; i++) {
+							int n = choiceStarts[i + 1] - choiceStarts[i];
+							if (newActions != null)
+								newActions[c] = actions[i];
+							newChoiceStarts[c++] = k;
+							System.arraycopy(cols, choiceStarts[i], newCols, k, n);
+							System.arraycopy(values, choiceStarts[i], newValues, k, n);
+							k += n;
+						}
+					}
+					newRowStarts[numStates] = c;
+					newChoiceStarts[c] = k;
+					rowStarts = newRowStarts;
+					choiceStarts = newChoiceStarts;
+					cols = newCols;
+					values = newValues;
+					actions = newActions;
+				}
+				model = new MDPSparse(numStates, rowStarts, choiceStarts, cols, values, actions);
+				for (int s : deadlocks) {
+					model.addDeadlockState(s);
+				}
+				break;
+			}
+			default:
+				throw new PrismNotSupportedException("Currently, importing " + modelType + " is not supported");
+			}
+
+			// Initial states, deadlocks (that were fixed before export)
+			for (int s : readInts(channel, SEC_INITIAL, numInitial)) {
+				model.addInitialState(s);
+			}
+			for (int s : readInts(channel, SEC_DEADLOCKS, numDeadlocks)) {
+				if (!model.isDeadlockState(s))
+					model.addDeadlockState(s);
+			}
+			if (!model.getInitialStates().iterator().hasNext()) {
+				// no initial states stored, we choose the first state
+				model.addInitialState(0);
+			}
+
+			// States
+			int numVars = varNames.length;
+			List<State> statesList = new ArrayList<State>(numStates);
+			if (numVars > 0) {
+				// (read in chunks of states, since numStates * numVars may not fit in an int)
+				int chunkStates = Math.max(1, MAX_MAP_SIZE / 4 / numVars);
+				for (int first = 0; first < numStates; first += chunkStates) {
+					int n = Math.min(chunkStates, numStates - first);
+					int stateValues[] = readInts(channel, SEC_STATES, (long) first * numVars, n * numVars);
+					for (int s = 0, k = 0; s < n; s++) {
+						State state = new State(numVars);
+						for (int j = 0; j < numVars; j++, k++) {
+							if (varIsBool[j])
+								state.setValue(j, stateValues[k] != 0);
+							else
+								state.setValue(j, stateValues[k]);
+						}
+						statesList.add(state);
+					}
+				}
+			} else {
+				for (int s = 0; s < numStates; s++) {
+					State state = new State(1);
+					state.setValue(0, s); // set x = state index
+					statesList.add(state);
+				}
+			}
+			model.setStatesList(statesList);
+
+			// Labels
+			int numWords = (numStates + 63) / 64;
+			for (int i = 0; i < labelNames.length; i++) {
+				model.addLabel(labelNames[i], BitSet.valueOf(readLongs(channel, SEC_LABELS, (long) i * numWords, numWords)));
+			}
+		} catch (IOException e) {
+			throw new PrismException("File I/O error reading from \"" + file + "\": " + e.getMessage());
+		}
+		return model;
+	}
+
+	/**
+	 * Read section {@code section}, consisting of {@code length} ints.
+	 */
+	private int[] readInts(FileChannel channel, int section, int length) throws IOException
+	{
+		return readInts(channel, section, 0, length);
+	}
+
+	/**
+	 * Read {@code length} ints from section {@code section}, starting at the {@code start}th one.
+	 */
+	private int[] readInts(FileChannel channel, int section, long start, int length) throws IOException
+	{
+		checkSection(channel, section, 4L * (start + length));
+		int array[] = new int[length];
+		for (int done = 0; done < length;) {
+			int n = Math.min(length - done, MAX_MAP_SIZE / 4);
+			MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, sections[section] + 4L * (start + done), 4L * n);
+			buf.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(array, done, n);
+			done += n;
+		}
+		return array;
+	}
+
+	/**
+	 * Read section {@code section}, consisting of {@code length} doubles.
+	 */
+	private double[] readDoubles(FileChannel channel, int section, int length) throws IOException
+	{
+		return readDoubles(channel, section, 0, length);
+	}
+
+	/**
+	 * Read {@code length} doubles from section {@code section}, starting at the {@code start}th one.
+	 */
+	private double[] readDoubles(FileChannel channel, int section, long start, int length) throws IOException
+	{
+		checkSection(channel, section, 8L * (start + length));
+		double array[] = new double[length];
+		for (int done = 0; done < length;) {
+			int n = Math.min(length - done, MAX_MAP_SIZE / 8);
+			MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, sections[section] + 8L * (start + done), 8L * n);
+			buf.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(array, done, n);
+			done += n;
+		}
+		return array;
+	}
+
+	/**
+	 * Read section {@code section}, consisting of {@code length} longs.
+	 */
+	private long[] readLongs(FileChannel channel, int section, int length) throws IOException
+	{
+		return readLongs(channel, section, 0, length);
+	}
+
+	/**
+	 * Read {@code length} longs from section {@code section}, starting at the {@code start}th one.
+	 */
+	private long[] readLongs(FileChannel channel, int section, long start, int length) throws IOException
+	{
+		checkSection(channel, section, 8L * (start + length));
+		long array[] = new long[length];
+		for (int done = 0; done < length;) {
+			int n = Math.min(length - done, MAX_MAP_SIZE / 8);
+			MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, sections[section] + 8L * (start + done), 8L * n);
+			buf.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(array, done, n);
+			done += n;
+		}
+		return array;
+	}
+
+	/**
+	 * Check that section {@code section} holds (at least) {@code numBytes} bytes,
+	 * i.e. that these do not extend into the next section or beyond the end of the file.
+	 */
+	private void checkSection(FileChannel channel, int section, long numBytes) throws IOException
+	{
+		if (numBytes == 0)
+			return;
+		long start = sections[section];
+		long end = channel.size();
+		for (long offset : sections) {
+			if (offset > start && offset < end)
+				end = offset;
+		}
+		if (start < HEADER_SIZE || numBytes < 0 || numBytes > end - start)
+			throw new IOException("section " + section + " is missing or shorter than expected");
+	}
+
+	// Export
+
+	/**
+	 * Export a model (DTMC, CTMC or MDP) to a binary model file.
+	 * @param model The model
+	 * @param varList Info about the state variables (optional, if null, state values are not stored)
+	 * @param labelNames Names of the labels to store (excluding "init" and "deadlock")
+	 * @param labelStates The states satisfying each label
+	 * @param file The file to export to
+	 */
+	public static void export(Model model, VarList varList, List<String> labelNames, List<BitSet> labelStates, File file) throws PrismException
+	{
+		ModelType modelType = model.getModelType();
+		if (modelType != ModelType.DTMC && modelType != ModelType.CTMC && modelType != ModelType.MDP)
+			throw new PrismNotSupportedException("Export of " + modelType + "s to binary model files is not supported");
+		boolean nondet = modelType == ModelType.MDP;
+		int numStates = model.getNumStates();
+		List<State> statesList = model.getStatesList();
+		int numVars = (varList == null || statesList == null) ? 0 : varList.getNumVars();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			SectionWriter out = new SectionWriter(channel);
+			long sections[] = new long[NUM_SECTIONS];
+			// Leave space for the header (written at the end)
+			out.skip(HEADER_SIZE);
+
+			// Columns (and row/choice starts)
+			int rowStarts[] = new int[numStates + 1];
+			int choiceStarts[] = nondet ? new int[((MDP) model).getNumChoices() + 1] : null;
+			int numTransitions = 0, numChoices = 0;
+			sections[SEC_COLUMNS] = out.align();
+			for (int s = 0; s < numStates; s++) {
+				if (nondet) {
+					MDP mdp = (MDP) model;
+					rowStarts[s] = numChoices;
+					int n = mdp.getNumChoices(s);
+					for (int i = 0; i < n; i++) {
+						choiceStarts[numChoices++] = numTransitions;
+						for (Iterator<Entry<Integer, Double>> it = mdp.getTransitionsIterator(s, i); it.hasNext();) {
+							out.putInt(it.next().getKey());
+							numTransitions++;
+						}
+					}
+				} else {
+					rowStarts[s] = numTransitions;
+					for (Iterator<Entry<Integer, Double>> it = ((DTMC) model).getTransitionsIterator(s); it.hasNext();) {
+						out.putInt(it.next().getKey());
+						numTransitions++;
+					}
+				}
+			}
+			rowStarts[numStates] = nondet ? numChoices : numTransitions;
+			if (nondet)
+				choiceStarts[numChoices] = numTransitions;
+
+			// Values (in the same order as the columns)
+			sections[SEC_VALUES] = out.align();
+			for (int s = 0; s < numStates; s++) {
+				if (nondet) {
+					MDP mdp = (MDP) model;
+					int n = mdp.getNumChoices(s);
+					for (int i = 0; i < n; i++) {
+						for (Iterator<Entry<Integer, Double>> it = mdp.getTransitionsIterator(s, i); it.hasNext();) {
+							out.putDouble(it.next().getValue());
+						}
+					}
+				} else {
+					for (Iterator<Entry<Integer, Double>> it = ((DTMC) model).getTransitionsIterator(s); it.hasNext();) {
+						out.putDouble(it.next().getValue());
+					}
+				}
+			}
+
+			sections[SEC_ROW_STARTS] = out.align();
+			out.putInts(rowStarts);
+			List<String> actionNames = new ArrayList<String>();
+			if (nondet) {
+				sections[SEC_CHOICE_STARTS] = out.align();
+				out.putInts(choiceStarts);
+				// Actions (as indices into a table of action names, -1 for none)
+				MDP mdp = (MDP) model;
+				Map<String, Integer> actionIndices = new HashMap<String, Integer>();
+				boolean hasActions = false;
+				sections[SEC_ACTIONS] = out.align();
+				for (int s = 0; s < numStates; s++) {
+					int n = mdp.getNumChoices(s);
+					for (int i = 0; i < n; i++) {
+						Object action = mdp.getAction(s, i);
+						if (action == null) {
+							out.putInt(-1);
+						} else {
+							Integer index = actionIndices.get(action.toString());
+							if (index == null) {
+								index = actionNames.size();
+								actionIndices.put(action.toString(), index);
+								actionNames.add(action.toString());
+							}
+							out.putInt(index);
+							hasActions = true;
+						}
+					}
+				}
+				if (!hasActions)
+					sections[SEC_ACTIONS] = 0;
+			}
+
+			// Initial and deadlock states
+			int numInitial = 0, numDeadlocks = 0;
+			sections[SEC_INITIAL] = out.align();
+			for (int s : model.getInitialStates()) {
+				out.putInt(s);
+				numInitial++;
+			}
+			sections[SEC_DEADLOCKS] = out.align();
+			for (int s : model.getDeadlockStates()) {
+				out.putInt(s);
+				numDeadlocks++;
+			}
+
+			// State values (booleans as 0/1), and the range of each variable
+			boolean varIsBool[] = new boolean[numVars];
+			int varLows[] = new int[numVars];
+			int varHighs[] = new int[numVars];
+			for (int j = 0; j < numVars; j++) {
+				varIsBool[j] = varList.getType(j) instanceof TypeBool;
+				if (!varIsBool[j] && !(varList.getType(j) instanceof TypeInt))
+					throw new PrismNotSupportedException("Variable " + varList.getName(j) + " of type " + varList.getType(j) + " cannot be stored in a binary model file");
+				varLows[j] = varIsBool[j] ? 0 : varList.getLow(j);
+				varHighs[j] = varIsBool[j] ? 1 : varList.getHigh(j);
+			}
+			if (numVars > 0) {
+				sections[SEC_STATES] = out.align();
+				for (State state : statesList) {
+					if (state.varValues.length != numVars)
+						throw new PrismException("State " + state + " does not match the model's variables");
+					for (int j = 0; j < numVars; j++) {
+						Object value = state.varValues[j];
+						out.putInt(value instanceof Boolean ? (((Boolean) value) ? 1 : 0) : ((Integer) value));
+					}
+				}
+			}
+
+			// Labels
+			int numWords = (numStates + 63) / 64;
+			sections[SEC_LABELS] = out.align();
+			for (BitSet states : labelStates) {
+				long words[] = states.toLongArray();
+				for (int i = 0; i < numWords; i++) {
+					out.putLong(i < words.length ? words[i] : 0L);
+				}
+			}
+
+			// Metadata
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream meta = new DataOutputStream(bytes);
+			meta.writeUTF(modelType.name());
+			meta.writeInt(numVars);
+			for (int j = 0; j < numVars; j++) {
+				meta.writeUTF(varList.getName(j));
+				meta.writeBoolean(varIsBool[j]);
+				meta.writeInt(varLows[j]);
+				meta.writeInt(varHighs[j]);
+			}
+			meta.writeInt(labelNames.size());
+			for (String labelName : labelNames) {
+				meta.writeUTF(labelName);
+			}
+			meta.writeInt(actionNames.size());
+			for (String actionName : actionNames) {
+				meta.writeUTF(actionName);
+			}
+			meta.flush();
+			long metadataOffset = out.align();
+			out.putBytes(bytes.toByteArray());
+			out.flush();
+
+			// Header
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.put(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(0);
+			header.putInt(numStates);
+			header.putInt(numChoices);
+			header.putInt(numTransitions);
+			header.putInt(numInitial);
+			header.putInt(numDeadlocks);
+			header.putInt(0);
+			header.putLong(metadataOffset);
+			header.putLong(bytes.size());
+			for (int i = 0; i < NUM_SECTIONS; i++) {
+				header.putLong(sections[i]);
+			}
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		} catch (IOException e) {
+			throw new PrismException("File I/O error writing to \"" + file + "\": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Buffered, sequential writing of little-endian numbers to a file channel.
+	 */
+	private static class SectionWriter
+	{
+		private FileChannel channel;
+		private ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+		SectionWriter(FileChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		/** Current position in the file */
+		long position() throws IOException
+		{
+			return channel.position() + buf.position();
+		}
+
+		/** Pad to a multiple of 8 bytes and return the new position */
+		long align() throws IOException
+		{
+			while (position() % 8 != 0) {
+				ensure(1);
+				buf.put((byte) 0);
+			}
+			return position();
+		}
+
+		void skip(int numBytes) throws IOException
+		{
+			for (int i = 0; i < numBytes; i++) {
+				ensure(1);
+				buf.put((byte) 0);
+			}
+		}
+
+		void putInt(int i) throws IOException
+		{
+			ensure(4);
+			buf.putInt(i);
+		}
+
+		void putInts(int array[]) throws IOException
+		{
+			for (int i : array) {
+				putInt(i);
+			}
+		}
+
+		void putLong(long l) throws IOException
+		{
+			ensure(8);
+			buf.putLong(l);
+		}
+
+		void putDouble(double d) throws IOException
+		{
+			ensure(8);
+			buf.putDouble(d);
+		}
+
+		void putBytes(byte bytes[]) throws IOException
+		{
+			for (byte b : bytes) {
+				ensure(1);
+				buf.put(b);
+			}
+		}
+
+		/** Make sure there is space for {@code numBytes} more bytes in the buffer */
+		private void ensure(int numBytes) throws IOException
+		{
+			if (buf.remaining() < numBytes)
+				flush();
+		}
+
+		void flush() throws IOException
+		{
+			buf.flip();
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			buf.clear();
+		}
+	}
+}
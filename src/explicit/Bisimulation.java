@@ -27,26 +27,84 @@
 package explicit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import parser.State;
 import prism.PrismComponent;
 import prism.PrismException;
 import prism.PrismNotSupportedException;
+import prism.PrismUtils;
 
 /**
  * Class to perform bisimulation minimisation for explicit-state models.
+ * <br>
+ * Uses signature-based partition refinement: in each round, the signature of each state,
+ * i.e., its outgoing distribution(s) lifted to the current partition, is computed,
+ * and states in the same block are split according to their signatures.
+ * The signatures are stored in primitive arrays; states are grouped by a hash of their signature,
+ * in which the probabilities are quantised (to buckets much wider than the tolerance below),
+ * and then compared directly within a group.
+ * Both the computation of the signatures and the grouping of the states are split
+ * over several threads (PRISM_NUM_THREADS), the result does not depend on their number.
+ * <br>
+ * Lifted probabilities/rates are summed in the order in which the model stores the transitions,
+ * and are considered equal if they agree up to a relative difference of 1e-12, as for {@link Distribution#equals}.
+ * Each state joins the first (lowest-numbered) earlier state in its block with an equal signature,
+ * so DTMCs/CTMCs are split exactly as by the previous implementation, which stored the lifted
+ * distributions in an {@link MDPSimple}. For this, the (rare) states with a probability close to
+ * a bucket boundary are also compared against the states in the neighbouring bucket(s).
  */
 public class Bisimulation extends PrismComponent
 {
+	/** Minimum number of states for which a refinement round is split over several threads */
+	private static final int MIN_PARALLEL_STATES = 10000;
+	/** Relative precision to which lifted probabilities/rates are compared (as in {@link Distribution#equals}) */
+	private static final double EPSILON = 1e-12;
+	/** Width of the buckets to which probabilities/rates are quantised for hashing, in bits of the
+	 * representation of a double (2^28 ulps, i.e. a relative width of about 1e-8) */
+	private static final int QUANT_BITS = 28;
+	/** Maximum number of probabilities close to a bucket boundary for which all neighbouring buckets are tried;
+	 * for states with more, all states with the same blocks are tried */
+	private static final int MAX_PROBE_BITS = 4;
+
 	// Local storage of partition info
 	protected int numStates;
 	protected int[] partition;
 	protected int numBlocks;
-	protected MDPSimple mdp;
+
+	// Number of threads used for refinement
+	private int numThreads = 1;
+	private ExecutorService executor;
+
+	// Storage of the signatures:
+	// the signature of state s consists of sigNumChoices[s] lifted distributions, stored
+	// consecutively, starting at sigBlocks/sigValues[transStarts[s]], with sizes
+	// sigChoiceSizes[choiceStarts[s]], sigChoiceSizes[choiceStarts[s]+1], ...
+	// (sorted by block, blocks distinct; for MDPs, the distributions are sorted and distinct, too)
+	private int[] choiceStarts;
+	private int[] transStarts;
+	private int[] sigNumChoices;
+	private int[] sigChoiceSizes;
+	private int[] sigBlocks;
+	/** Lifted probabilities/rates */
+	private double[] sigValues;
+	private int[] sigHashes;
+	/** Number of lifted probabilities/rates of each state that are close to a bucket boundary (see {@link #quantise}) */
+	private int[] sigNumNear;
+	/** Maximum number of choices/transitions of a state */
+	private int maxChoices;
+	private int maxTransitions;
 
 	/**
 	 * Construct a new Bisimulation object.
@@ -54,6 +112,9 @@ public class Bisimulation extends PrismComponent
 	public Bisimulation(PrismComponent parent) throws PrismException
 	{
 		super(parent);
+		if (getSettings() != null) {
+			numThreads = getSettings().getNumThreads();
+		}
 	}
 
 	/**
@@ -69,6 +130,8 @@ public class Bisimulation extends PrismComponent
 			return minimiseDTMC((DTMC) model, propNames, propBSs);
 		case CTMC:
 			return minimiseCTMC((CTMC) model, propNames, propBSs);
+		case MDP:
+			return minimiseMDP((MDP) model, propNames, propBSs);
 		default:
 			throw new PrismNotSupportedException("Bisimulation minimisation not yet supported for " + model.getModelType() + "s");
 		}
@@ -80,24 +143,24 @@ public class Bisimulation extends PrismComponent
 	 * @param propNames Names of the propositions in {@code propBSs}
 	 * @param propBSs Propositions (satisfying sets of states) to be preserved by bisimulation.
 	 */
-	private DTMC minimiseDTMC(DTMC dtmc, List<String> propNames, List<BitSet> propBSs)
+	private DTMC minimiseDTMC(DTMC dtmc, List<String> propNames, List<BitSet> propBSs) throws PrismException
 	{
 		// Create initial partition based on propositions
 		initialisePartitionInfo(dtmc, propBSs);
 		//printPartition(dtmc);
 
 		// Iterative splitting
-		boolean changed = true;
-		while (changed)
-			changed = splitDTMC(dtmc);
+		refine(dtmc);
 		mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States");
 		//printPartition(dtmc);
 
-		// Build reduced model
+		// Build reduced model (from the lifted distribution of a representative of each block)
 		DTMCSimple dtmcNew = new DTMCSimple(numBlocks);
+		int reps[] = getRepresentatives();
 		for (int i = 0; i < numBlocks; i++) {
-			for (Map.Entry<Integer, Double> e : mdp.getChoice(i, 0)) {
-				dtmcNew.setProbability((Integer) mdp.getAction(i, 0), e.getKey(), e.getValue());
+			Distribution distr = liftDistribution(dtmc, -1, reps[i]);
+			for (int k = 0, n = distr.size(); k < n; k++) {
+				dtmcNew.setProbability(i, distr.getIndex(k), distr.getProbability(k));
 			}
 		}
 		attachStatesAndLabels(dtmc, dtmcNew, propNames, propBSs);
@@ -111,24 +174,24 @@ public class Bisimulation extends PrismComponent
 	 * @param propNames Names of the propositions in {@code propBSs}
 	 * @param propBSs Propositions (satisfying sets of states) to be preserved by bisimulation.
 	 */
-	private CTMC minimiseCTMC(CTMC ctmc, List<String> propNames, List<BitSet> propBSs)
+	private CTMC minimiseCTMC(CTMC ctmc, List<String> propNames, List<BitSet> propBSs) throws PrismException
 	{
 		// Create initial partition based on propositions
 		initialisePartitionInfo(ctmc, propBSs);
 		//printPartition(ctmc);
 
 		// Iterative splitting
-		boolean changed = true;
-		while (changed)
-			changed = splitDTMC(ctmc);
+		refine(ctmc);
 		mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States");
 		//printPartition(ctmc);
 
-		// Build reduced model
+		// Build reduced model (from the lifted distribution of a representative of each block)
 		CTMCSimple ctmcNew = new CTMCSimple(numBlocks);
+		int reps[] = getRepresentatives();
 		for (int i = 0; i < numBlocks; i++) {
-			for (Map.Entry<Integer, Double> e : mdp.getChoice(i, 0)) {
-				ctmcNew.setProbability((Integer) mdp.getAction(i, 0), e.getKey(), e.getValue());
+			Distribution distr = liftDistribution(ctmc, -1, reps[i]);
+			for (int k = 0, n = distr.size(); k < n; k++) {
+				ctmcNew.setProbability(i, distr.getIndex(k), distr.getProbability(k));
 			}
 		}
 		attachStatesAndLabels(ctmc, ctmcNew, propNames, propBSs);
@@ -136,6 +199,37 @@ public class Bisimulation extends PrismComponent
 		return ctmcNew;
 	}
 
+	/**
+	 * Perform (strong probabilistic) bisimulation minimisation on an MDP.
+	 * Action labels are not taken into account, and the minimised MDP has no action labels.
+	 * @param mdp The MDP
+	 * @param propNames Names of the propositions in {@code propBSs}
+	 * @param propBSs Propositions (satisfying sets of states) to be preserved by bisimulation.
+	 */
+	private MDP minimiseMDP(MDP mdp, List<String> propNames, List<BitSet> propBSs) throws PrismException
+	{
+		// Create initial partition based on propositions
+		initialisePartitionInfo(mdp, propBSs);
+
+		// Iterative splitting
+		refine(mdp);
+		mainLog.println("Minimisation: " + numStates + " to " + numBlocks + " States");
+
+		// Build reduced model (from the lifted distributions of a representative of each block;
+		// duplicate distributions are removed by addChoice)
+		MDPSimple mdpNew = new MDPSimple(numBlocks);
+		int reps[] = getRepresentatives();
+		for (int i = 0; i < numBlocks; i++) {
+			int numChoices = mdp.getNumChoices(reps[i]);
+			for (int j = 0; j < numChoices; j++) {
+				mdpNew.addChoice(i, liftDistribution(mdp, j, reps[i]));
+			}
+		}
+		attachStatesAndLabels(mdp, mdpNew, propNames, propBSs);
+
+		return mdpNew;
+	}
+
 	/**
 	 * Construct the initial partition based on a set of proposition bitsets.
 	 * Store info in {@code numStates}, {@code numBlocks} and {@code partition}.
@@ -182,50 +276,532 @@ public class Bisimulation extends PrismComponent
 	}
 
 	/**
-	 * Perform a split of the current partition, if possible, updating {@code numBlocks} and {@code partition}.
-	 * @return whether or not the partition was split 
+	 * Refine the current partition until it is stable, updating {@code numBlocks} and {@code partition}.
+	 * @param model the model (a DTMC, CTMC or MDP)
+	 */
+	private void refine(Model model) throws PrismException
+	{
+		allocateSignatures(model);
+		// only models storing their transitions explicitly are known to be safe for concurrent access
+		boolean parallel = numThreads > 1 && numStates >= MIN_PARALLEL_STATES && model instanceof ModelExplicit;
+		if (parallel)
+			executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			long keys[] = new long[numStates];
+			int partitionNew[] = new int[numStates];
+			boolean changed = true;
+			while (changed) {
+				computeSignatures(model);
+				changed = split(keys, partitionNew);
+				// swap partitions (keep old one as storage for next round)
+				int tmp[] = partition;
+				partition = partitionNew;
+				partitionNew = tmp;
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+				executor = null;
+			}
+			// free signature storage
+			choiceStarts = transStarts = sigNumChoices = sigChoiceSizes = sigBlocks = sigHashes = sigNumNear = null;
+			sigValues = null;
+		}
+	}
+
+	/**
+	 * Allocate storage for the signatures of the states of a model.
+	 * The space for each state is bounded by its number of choices/transitions.
+	 */
+	private void allocateSignatures(Model model)
+	{
+		choiceStarts = new int[numStates + 1];
+		transStarts = new int[numStates + 1];
+		maxChoices = maxTransitions = 0;
+		for (int s = 0; s < numStates; s++) {
+			int numChoices = 1;
+			int numTransitions;
+			if (model instanceof MDP) {
+				MDP mdp = (MDP) model;
+				numChoices = mdp.getNumChoices(s);
+				numTransitions = 0;
+				for (int i = 0; i < numChoices; i++)
+					numTransitions += mdp.getNumTransitions(s, i);
+			} else {
+				numTransitions = ((DTMC) model).getNumTransitions(s);
+			}
+			choiceStarts[s + 1] = choiceStarts[s] + numChoices;
+			transStarts[s + 1] = transStarts[s] + numTransitions;
+			maxChoices = Math.max(maxChoices, numChoices);
+			maxTransitions = Math.max(maxTransitions, numTransitions);
+		}
+		sigNumChoices = new int[numStates];
+		sigChoiceSizes = new int[choiceStarts[numStates]];
+		sigBlocks = new int[transStarts[numStates]];
+		sigValues = new double[transStarts[numStates]];
+		sigHashes = new int[numStates];
+		sigNumNear = new int[numStates];
+	}
+
+	/**
+	 * Compute the signatures of all states, with respect to the current partition.
 	 */
-	private boolean splitDTMC(DTMC dtmc)
+	private void computeSignatures(final Model model) throws PrismException
 	{
-		int s, a, i, numBlocksNew, numChoicesOld;
-		Distribution distrNew;
-		int partitionNew[];
-
-		partitionNew = new int[numStates];
-		numBlocksNew = 0;
-		// Compute the signature for each state (i.e. the distribution for outgoing
-		// transitions, lifted to the current partition)
-		// For convenience, we just store them as an MDP, with action label equal to the index of the block
-		mdp = new MDPSimple(numBlocks);
-		for (s = 0; s < numStates; s++) {
-			// Build lifted distribution
-			Iterator<Map.Entry<Integer, Double>> iter = dtmc.getTransitionsIterator(s);
-			distrNew = new Distribution();
-			while (iter.hasNext()) {
-				Map.Entry<Integer, Double> e = iter.next();
-				distrNew.add(partition[e.getKey()], e.getValue());
+		runRanges(numStates, (from, to) -> {
+			SignatureBuilder builder = new SignatureBuilder();
+			for (int s = from; s < to; s++) {
+				builder.computeSignature(model, s);
 			}
-			// Store in MDP, update new partition
-			a = partition[s];
-			numChoicesOld = mdp.getNumChoices(a);
-			i = mdp.addChoice(a, distrNew);
-			if (i == numChoicesOld)
-				mdp.setAction(a, i, numBlocksNew++);
-			partitionNew[s] = (Integer) mdp.getAction(a, i);
+		});
+	}
+
+	/**
+	 * Split the blocks of the current partition according to the signatures of the states,
+	 * storing the new partition in {@code partitionNew} and updating {@code numBlocks}.
+	 * New blocks are numbered in order of their first state.
+	 * @param keys storage for sorting the states by signature hash
+	 * @return whether or not the partition was split
+	 */
+	private boolean split(final long keys[], final int partitionNew[]) throws PrismException
+	{
+		// sort the states by signature hash, so that states with equal signatures are grouped together
+		// (within a group, states are in increasing order)
+		for (int s = 0; s < numStates; s++) {
+			keys[s] = ((long) sigHashes[s] << 32) | s;
+		}
+		if (executor != null)
+			Arrays.parallelSort(keys);
+		else
+			Arrays.sort(keys);
+
+		// for each state, find the first (smallest) state with the same signature;
+		// chunks are aligned with the groups of equal hashes, so that they can be done in parallel
+		final int rep[] = partitionNew;
+		runRanges(numStates, (from, to) -> {
+			// skip a group started in the previous chunk, and finish the last group started in this one
+			while (from > 0 && from < numStates && hashOf(keys[from]) == hashOf(keys[from - 1]))
+				from++;
+			if (from >= to)
+				return;
+			while (to < numStates && hashOf(keys[to]) == hashOf(keys[to - 1]))
+				to++;
+			int groupReps[] = new int[4];
+			int i = from;
+			while (i < to) {
+				int hash = hashOf(keys[i]);
+				int numGroupReps = 0;
+				for (; i < to && hashOf(keys[i]) == hash; i++) {
+					int s = (int) keys[i];
+					int r = -1;
+					for (int k = 0; k < numGroupReps; k++) {
+						if (sameSignature(groupReps[k], s)) {
+							r = groupReps[k];
+							break;
+						}
+					}
+					if (r == -1) {
+						if (numGroupReps == groupReps.length)
+							groupReps = Arrays.copyOf(groupReps, 2 * numGroupReps);
+						groupReps[numGroupReps++] = s;
+						r = s;
+					}
+					rep[s] = r;
+				}
+			}
+		});
+		// states whose signature may equal one in a neighbouring bucket are redone
+		resolveNearBoundary(rep);
+
+		// number the new blocks (rep[s] <= s, so rep[rep[s]] is already a block number)
+		int numBlocksNew = 0;
+		for (int s = 0; s < numStates; s++) {
+			partitionNew[s] = (rep[s] == s) ? numBlocksNew++ : partitionNew[rep[s]];
 		}
-		// Debug info
-		//mainLog.println("New partition: " + java.util.Arrays.toString(partitionNew));
-		//mainLog.println("Signatures MDP: " + mdp.infoString());
-		//mainLog.println("Signatures MDP: " + mdp);
-		//try { mdp.exportToDotFile("mdp.dot"); } catch (PrismException e) {}
+
 		// Update info
+		// (the signature includes the current block, so blocks are never merged)
 		boolean changed = numBlocks != numBlocksNew;
-		partition = partitionNew;
 		numBlocks = numBlocksNew;
 
 		return changed;
 	}
 
+	/**
+	 * Redo the search for the first state with the same signature (see {@link #split}) for the states
+	 * whose signature may equal that of a state in another bucket, i.e. those with probabilities close
+	 * to a bucket boundary, and for all states in the buckets these may equal.
+	 * This is done sequentially, but is only needed for few states.
+	 * Any state whose signature equals that of a state in another bucket has a probability close to a
+	 * bucket boundary itself, so the other states are not affected.
+	 * @param rep the first state with the same signature, for each state (updated)
+	 */
+	private void resolveNearBoundary(int rep[])
+	{
+		// find the buckets to redo (or, for states with many probabilities near a boundary, blocks)
+		Set<Integer> redoBuckets = new HashSet<Integer>();
+		Set<Integer> redoStructures = new HashSet<Integer>();
+		for (int s = 0; s < numStates; s++) {
+			int k = sigNumNear[s];
+			if (k == 0)
+				continue;
+			if (k <= MAX_PROBE_BITS) {
+				for (int flip = 0; flip < (1 << k); flip++)
+					redoBuckets.add(signatureHash(s, true, flip));
+			} else {
+				redoStructures.add(signatureHash(s, false, 0));
+			}
+		}
+		if (redoBuckets.isEmpty() && redoStructures.isEmpty())
+			return;
+
+		// go through the affected states in order, storing the states with new signatures
+		// (i.e. the first state of each new block) by bucket and, if needed, by structure
+		Map<Integer, List<Integer>> firstsByBucket = new HashMap<Integer, List<Integer>>();
+		Map<Integer, List<Integer>> firstsByStructure = new HashMap<Integer, List<Integer>>();
+		for (int s = 0; s < numStates; s++) {
+			int structure = redoStructures.isEmpty() ? 0 : signatureHash(s, false, 0);
+			boolean redoStructure = !redoStructures.isEmpty() && redoStructures.contains(structure);
+			if (!redoStructure && !redoBuckets.contains(sigHashes[s]))
+				continue;
+			int k = sigNumNear[s];
+			int r = -1;
+			if (k > MAX_PROBE_BITS) {
+				r = findFirstSameSignature(firstsByStructure.get(structure), s, r);
+			} else {
+				r = findFirstSameSignature(firstsByBucket.get(sigHashes[s]), s, r);
+				for (int flip = 1; flip < (1 << k); flip++)
+					r = findFirstSameSignature(firstsByBucket.get(signatureHash(s, true, flip)), s, r);
+			}
+			if (r == -1) {
+				r = s;
+				firstsByBucket.computeIfAbsent(sigHashes[s], h -> new ArrayList<Integer>()).add(s);
+				if (redoStructure)
+					firstsByStructure.computeIfAbsent(structure, h -> new ArrayList<Integer>()).add(s);
+			}
+			rep[s] = r;
+		}
+	}
+
+	/**
+	 * Find the first state in {@code states} (in increasing order, may be null) with the same signature as {@code s}
+	 * and return it if it is smaller than {@code best} (or {@code best} is -1); otherwise, return {@code best}.
+	 */
+	private int findFirstSameSignature(List<Integer> states, int s, int best)
+	{
+		if (states == null)
+			return best;
+		for (int r : states) {
+			if (best != -1 && r >= best)
+				break;
+			if (sameSignature(r, s))
+				return r;
+		}
+		return best;
+	}
+
+	/**
+	 * Compute the hash of the (stored) signature of state {@code s}: of its current block and
+	 * its lifted distributions, optionally including the quantised probabilities/rates.
+	 * For the ith probability/rate close to a bucket boundary, if bit i of {@code flip} is set,
+	 * the neighbouring bucket is used instead (see {@link #quantise}).
+	 */
+	private int signatureHash(int s, boolean withValues, int flip)
+	{
+		int hash = partition[s];
+		int c = choiceStarts[s];
+		int t = transStarts[s];
+		int near = 0;
+		for (int i = 0; i < sigNumChoices[s]; i++) {
+			int size = sigChoiceSizes[c + i];
+			hash = 31 * hash + size;
+			for (int j = 0; j < size; j++, t++) {
+				hash = 31 * hash + sigBlocks[t];
+				if (withValues) {
+					long q = quantise(sigValues[t], false);
+					long qNext = quantise(sigValues[t], true);
+					if (qNext != q) {
+						if ((flip & (1 << near)) != 0)
+							q = qNext;
+						near++;
+					}
+					hash = 31 * hash + (int) (q ^ (q >>> 32));
+				}
+			}
+		}
+		// spread the bits (finaliser of MurmurHash3)
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+
+	/**
+	 * Get the bucket of a probability/rate {@code d} for hashing or, if {@code neighbour} is true,
+	 * the neighbouring bucket containing values close to {@code d} (or the bucket of d, if there is none).
+	 * Buckets are ranges of 2^QUANT_BITS consecutive representations of a double, offset by half a bucket,
+	 * so that values with short binary expansions (e.g. 0.5) lie in the middle of one.
+	 * All values below {@link PrismUtils#epsilonDouble} (which are all close to each other) share a bucket.
+	 */
+	private static long quantise(double d, boolean neighbour)
+	{
+		if (neighbour) {
+			long q = quantise(d, false);
+			long qLow = quantise(d * (1 - 2 * EPSILON), false);
+			return qLow != q ? qLow : quantise(d * (1 + 2 * EPSILON), false);
+		}
+		double a = Math.abs(d);
+		if (a < PrismUtils.epsilonDouble)
+			return 0;
+		return (Double.doubleToLongBits(a) + (1L << (QUANT_BITS - 1))) >>> QUANT_BITS;
+	}
+
+	/**
+	 * Get the signature hash from a sort key (see {@link #split}).
+	 */
+	private static int hashOf(long key)
+	{
+		return (int) (key >> 32);
+	}
+
+	/**
+	 * Returns true if states s1 and s2 are in the same block and have equal signatures.
+	 */
+	private boolean sameSignature(int s1, int s2)
+	{
+		if (partition[s1] != partition[s2] || sigNumChoices[s1] != sigNumChoices[s2])
+			return false;
+		int numChoices = sigNumChoices[s1];
+		int c1 = choiceStarts[s1], c2 = choiceStarts[s2];
+		for (int i = 0; i < numChoices; i++) {
+			if (sigChoiceSizes[c1 + i] != sigChoiceSizes[c2 + i])
+				return false;
+		}
+		int n = 0;
+		for (int i = 0; i < numChoices; i++)
+			n += sigChoiceSizes[c1 + i];
+		int t1 = transStarts[s1], t2 = transStarts[s2];
+		for (int k = 0; k < n; k++) {
+			if (sigBlocks[t1 + k] != sigBlocks[t2 + k] || !PrismUtils.doublesAreClose(sigValues[t1 + k], sigValues[t2 + k], EPSILON, false))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the signatures of states, using scratch storage that is local to one thread.
+	 */
+	private class SignatureBuilder implements DTMC.TransitionConsumer, MDP.TransitionConsumer
+	{
+		/** Transitions of the current choice: (block << 32 | position) and values */
+		private long keys[] = new long[maxTransitions];
+		private double values[] = new double[maxTransitions];
+		private int numTransitions;
+		/** Lifted distributions of the current state, before sorting */
+		private int blocks[] = new int[maxTransitions];
+		private double sums[] = new double[maxTransitions];
+		private int starts[] = new int[maxChoices + 1];
+		private int order[] = new int[maxChoices];
+
+		@Override
+		public void accept(int s, int t, double d)
+		{
+			keys[numTransitions] = ((long) partition[t] << 32) | numTransitions;
+			values[numTransitions] = d;
+			numTransitions++;
+		}
+
+		/**
+		 * Compute (and store) the signature of state s.
+		 */
+		public void computeSignature(Model model, int s)
+		{
+			// lift each choice, into blocks/sums
+			int numChoices = (model instanceof MDP) ? ((MDP) model).getNumChoices(s) : 1;
+			int pos = 0;
+			for (int i = 0; i < numChoices; i++) {
+				numTransitions = 0;
+				if (model instanceof MDP)
+					((MDP) model).forEachTransition(s, i, this);
+				else
+					((DTMC) model).forEachTransition(s, this);
+				starts[i] = pos;
+				pos = lift(pos);
+			}
+			starts[numChoices] = pos;
+
+			// order the choices (for MDPs), then store them, skipping duplicates
+			for (int i = 0; i < numChoices; i++)
+				order[i] = i;
+			if (numChoices > 1)
+				sortChoices(numChoices);
+			int c = choiceStarts[s];
+			int t = transStarts[s];
+			int numStored = 0;
+			int numNear = 0;
+			for (int k = 0; k < numChoices; k++) {
+				int i = order[k];
+				if (k > 0 && closeChoices(order[k - 1], i))
+					continue;
+				int size = starts[i + 1] - starts[i];
+				sigChoiceSizes[c + numStored] = size;
+				for (int j = starts[i]; j < starts[i + 1]; j++) {
+					sigBlocks[t] = blocks[j];
+					sigValues[t] = sums[j];
+					if (quantise(sums[j], true) != quantise(sums[j], false))
+						numNear++;
+					t++;
+				}
+				numStored++;
+			}
+			sigNumChoices[s] = numStored;
+			sigNumNear[s] = numNear;
+			sigHashes[s] = signatureHash(s, true, 0);
+		}
+
+		/**
+		 * Lift the transitions of the current choice to the current partition,
+		 * storing the result (sorted by block) in blocks/sums, starting at {@code pos}.
+		 * Returns the position after the last entry stored.
+		 */
+		private int lift(int pos)
+		{
+			Arrays.sort(keys, 0, numTransitions);
+			int k = 0;
+			while (k < numTransitions) {
+				int block = (int) (keys[k] >>> 32);
+				double sum = 0.0;
+				for (; k < numTransitions && (int) (keys[k] >>> 32) == block; k++) {
+					sum += values[(int) keys[k]];
+				}
+				blocks[pos] = block;
+				sums[pos] = sum;
+				pos++;
+			}
+			return pos;
+		}
+
+		/**
+		 * Sort the first {@code n} entries of {@code order} using {@link #compareChoices} (insertion sort).
+		 */
+		private void sortChoices(int n)
+		{
+			for (int k = 1; k < n; k++) {
+				int i = order[k];
+				int l = k - 1;
+				while (l >= 0 && compareChoices(order[l], i) > 0) {
+					order[l + 1] = order[l];
+					l--;
+				}
+				order[l + 1] = i;
+			}
+		}
+
+		/**
+		 * Compare two lifted choices of the current state (size first, then lexicographically).
+		 */
+		private int compareChoices(int i1, int i2)
+		{
+			int size1 = starts[i1 + 1] - starts[i1];
+			int size2 = starts[i2 + 1] - starts[i2];
+			if (size1 != size2)
+				return Integer.compare(size1, size2);
+			for (int j = 0; j < size1; j++) {
+				int j1 = starts[i1] + j, j2 = starts[i2] + j;
+				if (blocks[j1] != blocks[j2])
+					return Integer.compare(blocks[j1], blocks[j2]);
+				if (sums[j1] != sums[j2])
+					return Double.compare(sums[j1], sums[j2]);
+			}
+			return 0;
+		}
+
+		/**
+		 * Check whether two lifted choices of the current state are equal,
+		 * i.e. have the same blocks and close probabilities.
+		 */
+		private boolean closeChoices(int i1, int i2)
+		{
+			int size = starts[i1 + 1] - starts[i1];
+			if (size != starts[i2 + 1] - starts[i2])
+				return false;
+			for (int j = 0; j < size; j++) {
+				int j1 = starts[i1] + j, j2 = starts[i2] + j;
+				if (blocks[j1] != blocks[j2] || !PrismUtils.doublesAreClose(sums[j1], sums[j2], EPSILON, false))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Get the lifted distribution (with respect to the current partition) of state {@code s}
+	 * of a DTMC/CTMC ({@code i} is ignored) or of choice {@code i} of state {@code s} of an MDP.
+	 */
+	private Distribution liftDistribution(Model model, int i, int s)
+	{
+		Distribution distr = new Distribution();
+		if (model instanceof MDP)
+			((MDP) model).forEachTransition(s, i, (s_, t, d) -> distr.add(partition[t], d));
+		else
+			((DTMC) model).forEachTransition(s, (s_, t, d) -> distr.add(partition[t], d));
+		return distr;
+	}
+
+	/**
+	 * Get the first state of each block of the current partition.
+	 */
+	private int[] getRepresentatives()
+	{
+		int reps[] = new int[numBlocks];
+		Arrays.fill(reps, -1);
+		for (int s = 0; s < numStates; s++) {
+			if (reps[partition[s]] == -1)
+				reps[partition[s]] = s;
+		}
+		return reps;
+	}
+
+	/** A task working on a range of states */
+	@FunctionalInterface
+	private interface RangeTask
+	{
+		public void run(int from, int to);
+	}
+
+	/**
+	 * Run {@code task} for ranges covering the states 0..{@code n}-1, using the executor if present
+	 * (otherwise as a single range), and wait for completion.
+	 */
+	private void runRanges(int n, RangeTask task) throws PrismException
+	{
+		if (executor == null) {
+			task.run(0, n);
+			return;
+		}
+		int numRanges = 4 * numThreads;
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(numRanges);
+		for (int r = 0; r < numRanges; r++) {
+			final int from = (int) ((long) r * n / numRanges);
+			final int to = (int) ((long) (r + 1) * n / numRanges);
+			tasks.add(() -> {
+				task.run(from, to);
+				return null;
+			});
+		}
+		try {
+			for (Future<Object> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new PrismException("Interrupted during bisimulation minimisation");
+		} catch (ExecutionException e) {
+			throw new PrismException("Error during bisimulation minimisation: " + e.getCause());
+		}
+	}
+
 	/**
 	 * Display the current partition, showing the states in each block.
 	 */
@@ -29,11 +29,20 @@ package explicit;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import parser.State;
+import parser.StatePacker;
 import parser.Values;
 import parser.VarList;
 import prism.ModelGenerator;
@@ -44,8 +53,10 @@ import prism.PrismException;
 import prism.PrismLog;
 import prism.PrismNotSupportedException;
 import prism.PrismPrintStreamLog;
+import prism.PrismSettings;
 import prism.ProgressDisplay;
 import prism.UndefinedConstants;
+import simulator.ModulesFileModelGenerator;
 
 /**
  * Class to perform explicit-state reachability and model construction.
@@ -67,15 +78,33 @@ public class ConstructModel extends PrismComponent
 	protected boolean distinguishActions = true;
 	/** Should labels be processed and attached to the model? */
 	protected boolean attachLabels = true; 
+	/** Store states in bit-packed form during construction, if possible? */
+	protected boolean packStates = true;
+	/** Number of threads to use for state-space exploration
+	 *  (more than one requires packed states and a {@link ModulesFileModelGenerator}) */
+	protected int numThreads = 1;
+	/** Store the probabilities of sparse models in single precision (see {@link MixedPrecisionModel})? */
+	protected boolean singlePrecision = false;
+	/** Use the unrolled matrix-vector kernels of sparse models (see {@link SparseKernels})? */
+	protected boolean unrolledKernels = false;
+	/** Record the structure of the built model, for later re-instantiation (see {@link ModelStructure})? */
+	protected boolean recordStructure = false;
 
 	// Details of built model:
 
 	/** Reachable states */
 	protected List<State> statesList;
+	/** Structure of the built model (if recorded and available) */
+	protected ModelStructure modelStructure;
 
 	public ConstructModel(PrismComponent parent) throws PrismException
 	{
 		super(parent);
+		if (settings != null) {
+			numThreads = settings.getNumThreads();
+			singlePrecision = settings.getBoolean(PrismSettings.PRISM_SINGLE_PRECISION);
+			unrolledKernels = settings.getBoolean(PrismSettings.PRISM_UNROLLED_KERNELS);
+		}
 	}
 
 	/**
@@ -120,6 +149,58 @@ public class ConstructModel extends PrismComponent
 		this.attachLabels = attachLabels;
 	}
 
+	/**
+	 * Store states in bit-packed form during construction, if possible?
+	 * (i.e. if all variables are bounded)
+	 */
+	public void setPackStates(boolean packStates)
+	{
+		this.packStates = packStates;
+	}
+
+	/**
+	 * Store the probabilities of sparse models in single precision (see {@link MixedPrecisionModel})?
+	 */
+	public void setSinglePrecision(boolean singlePrecision)
+	{
+		this.singlePrecision = singlePrecision;
+	}
+
+	/**
+	 * Use the unrolled matrix-vector kernels of sparse models (see {@link SparseKernels})?
+	 */
+	public void setUnrolledKernels(boolean unrolledKernels)
+	{
+		this.unrolledKernels = unrolledKernels;
+	}
+
+	/**
+	 * Record the structure of the built model, for later re-instantiation with different
+	 * transition probabilities (see {@link #getModelStructure()}, {@link #reinstantiateModel(ModelGenerator, ModelStructure)})?
+	 * Only possible for models built directly in sparse form.
+	 */
+	public void setRecordStructure(boolean recordStructure)
+	{
+		this.recordStructure = recordStructure;
+	}
+
+	/**
+	 * Get the structure of the model built by the last model construction performed,
+	 * if it was recorded (see {@link #setRecordStructure(boolean)}) and is available; null otherwise.
+	 */
+	public ModelStructure getModelStructure()
+	{
+		return modelStructure;
+	}
+
+	/**
+	 * Set the number of threads to use for state-space exploration.
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
 	/**
 	 * Build the set of reachable states for a model and return it.
 	 * @param modelGen The ModelGenerator interface providing the model 
@@ -150,10 +231,14 @@ public class ConstructModel extends PrismComponent
 	{
 		// Model info
 		ModelType modelType;
+		modelStructure = null;
 		// State storage
 		StateStorage<State> states;
-		LinkedList<State> explore;
+		LinkedList<State> explore = null;
 		State state, stateNew;
+		// Packed (off-heap) state storage, if used: since states are numbered
+		// in the order found, this also acts as the list of states to explore
+		OffHeapStateStorage packedStates = null;
 		// Explicit model storage
 		ModelSimple modelSimple = null;
 		DTMCSimple dtmc = null;
@@ -162,6 +247,8 @@ public class ConstructModel extends PrismComponent
 		CTMDPSimple ctmdp = null;
 		ModelExplicit model = null;
 		Distribution distr = null;
+		// Direct sparse model construction (used instead of the above, if possible)
+		SparseModelBuilder sparseBuilder = null;
 		// Misc
 		int i, j, nc, nt, src, dest;
 		long timer;
@@ -182,7 +269,11 @@ public class ConstructModel extends PrismComponent
 		timer = System.currentTimeMillis();
 
 		// Create model storage
-		if (!justReach) {
+		if (!justReach && buildSparse && SparseModelBuilder.isSupported(modelType)) {
+			// Build the sparse model directly, without a (simple, mutable) intermediate
+			sparseBuilder = new SparseModelBuilder(modelType, findDeadlocks, fixDeadlocks);
+			sparseBuilder.setRecordStructure(recordStructure);
+		} else if (!justReach) {
 			// Create a (simple, mutable) model of the appropriate type
 			switch (modelType) {
 			case DTMC:
@@ -210,23 +301,40 @@ public class ConstructModel extends PrismComponent
 		}
 
 		// Initialise states storage
-		states = new IndexedSet<State>(true);
-		explore = new LinkedList<State>();
+		if (packStates && varList != null && StatePacker.canPack(varList)) {
+			states = packedStates = new OffHeapStateStorage(new StatePacker(varList));
+		} else {
+			states = new IndexedSet<State>(true);
+			explore = new LinkedList<State>();
+		}
 		// Add initial state(s) to 'explore', 'states' and to the model
 		for (State initState : modelGen.getInitialStates()) {
-			explore.add(initState);
-			states.add(initState);
-			if (!justReach) {
+			if (!states.add(initState) && packedStates != null)
+				continue;
+			if (explore != null)
+				explore.add(initState);
+			if (sparseBuilder != null) {
+				sparseBuilder.addInitialState(sparseBuilder.addState());
+			} else if (!justReach) {
 				modelSimple.addState();
 				modelSimple.addInitialState(modelSimple.getNumStates() - 1);
 			}
 		}
 		// Explore...
 		src = -1;
-		while (!explore.isEmpty()) {
+		if (packedStates != null && numThreads > 1 && modelGen instanceof ModulesFileModelGenerator) {
+			// (in which case, everything has been explored by the time the loop below is reached)
+			src = exploreInParallel((ModulesFileModelGenerator) modelGen, packedStates, modelType, justReach, modelSimple, sparseBuilder, progress) - 1;
+		}
+		state = packedStates != null ? new State(varList.getNumVars()) : null;
+		while (packedStates != null ? src + 1 < packedStates.size() : !explore.isEmpty()) {
 			// Pick next state to explore
 			// (they are stored in order found so know index is src+1)
-			state = explore.removeFirst();
+			if (packedStates != null) {
+				packedStates.getState(src + 1, state);
+			} else {
+				state = explore.removeFirst();
+			}
 			src++;
 			// Explore all choices/transitions from this state
 			modelGen.exploreState(state);
@@ -234,7 +342,7 @@ public class ConstructModel extends PrismComponent
 			nc = modelGen.getNumChoices();
 			for (i = 0; i < nc; i++) {
 				// For nondet models, collect transitions in a Distribution
-				if (!justReach && modelType.nondeterministic()) {
+				if (!justReach && modelType.nondeterministic() && sparseBuilder == null) {
 					distr = new Distribution();
 				}
 				// Look at each transition in the choice
@@ -244,16 +352,21 @@ public class ConstructModel extends PrismComponent
 					// Is this a new state?
 					if (states.add(stateNew)) {
 						// If so, add to the explore list
-						explore.add(stateNew);
+						if (explore != null)
+							explore.add(stateNew);
 						// And to model
-						if (!justReach) {
+						if (sparseBuilder != null) {
+							sparseBuilder.addState();
+						} else if (!justReach) {
 							modelSimple.addState();
 						}
 					}
 					// Get index of state in state set
 					dest = states.getIndexOfLastAdd();
 					// Add transitions to model
-					if (!justReach) {
+					if (sparseBuilder != null) {
+						sparseBuilder.addTransition(src, dest, modelGen.getTransitionProbability(i, j));
+					} else if (!justReach) {
 						switch (modelType) {
 						case DTMC:
 							dtmc.addToProbability(src, dest, modelGen.getTransitionProbability(i, j));
@@ -274,7 +387,10 @@ public class ConstructModel extends PrismComponent
 					}
 				}
 				// For nondet models, add collated transition to model 
-				if (!justReach) {
+				if (sparseBuilder != null) {
+					if (modelType.nondeterministic())
+						sparseBuilder.finishChoice(src, distinguishActions ? modelGen.getChoiceAction(i) : null);
+				} else if (!justReach) {
 					if (modelType == ModelType.MDP) {
 						if (distinguishActions) {
 							mdp.addActionLabelledChoice(src, distr, modelGen.getChoiceAction(i));
@@ -304,7 +420,10 @@ public class ConstructModel extends PrismComponent
 		//mainLog.println(states);
 
 		// Find/fix deadlocks (if required)
-		if (!justReach && findDeadlocks) {
+		if (sparseBuilder != null) {
+			// (done by the builder itself)
+			sparseBuilder.finish();
+		} else if (!justReach && findDeadlocks) {
 			modelSimple.findDeadlocks(fixDeadlocks);
 		}
 
@@ -322,37 +441,46 @@ public class ConstructModel extends PrismComponent
 		}
 		states.clear();
 		states = null;
+		packedStates = null;
 		//mainLog.println(statesList);
 
 		// Construct new explicit-state model (with correct state ordering)
 		if (!justReach) {
-			switch (modelType) {
-			case DTMC:
-				if (buildSparse) {
-					model = sort ? new DTMCSparse(dtmc, permut) : new DTMCSparse(dtmc);
-				} else {
-					model = sort ? new DTMCSimple(dtmc, permut) : (DTMCSimple) dtmc;
-				}
-				break;
-			case CTMC:
-				model = sort ? new CTMCSimple(ctmc, permut) : (CTMCSimple) ctmc;
-				break;
-			case MDP:
-				if (buildSparse) {
-					model = sort ? new MDPSparse(mdp, true, permut) : new MDPSparse(mdp);
-				} else {
-					model = sort ? new MDPSimple(mdp, permut) : mdp;
+			if (sparseBuilder != null) {
+				model = sparseBuilder.build(sort ? permut : null);
+				model.setVarList(varList);
+				modelStructure = sparseBuilder.getModelStructure();
+				sparseBuilder = null;
+			} else {
+				switch (modelType) {
+				case DTMC:
+					if (buildSparse) {
+						model = sort ? new DTMCSparse(dtmc, permut) : new DTMCSparse(dtmc);
+					} else {
+						model = sort ? new DTMCSimple(dtmc, permut) : (DTMCSimple) dtmc;
+					}
+					break;
+				case CTMC:
+					model = sort ? new CTMCSimple(ctmc, permut) : (CTMCSimple) ctmc;
+					break;
+				case MDP:
+					if (buildSparse) {
+						model = sort ? new MDPSparse(mdp, true, permut) : new MDPSparse(mdp);
+					} else {
+						model = sort ? new MDPSimple(mdp, permut) : mdp;
+					}
+					break;
+				case CTMDP:
+					model = sort ? new CTMDPSimple(ctmdp, permut) : mdp;
+					break;
+				case STPG:
+				case SMG:
+				case PTA:
+				case LTS:
+					throw new PrismNotSupportedException("Model construction not supported for " + modelType + "s");
 				}
-				break;
-			case CTMDP:
-				model = sort ? new CTMDPSimple(ctmdp, permut) : mdp;
-				break;
-			case STPG:
-			case SMG:
-			case PTA:
-			case LTS:
-				throw new PrismNotSupportedException("Model construction not supported for " + modelType + "s");
 			}
+			configureSparseModel(model);
 			model.setStatesList(statesList);
 			model.setConstantValues(new Values(modelGen.getConstantValues()));
 			//mainLog.println("Model: " + model);
@@ -367,6 +495,260 @@ public class ConstructModel extends PrismComponent
 		return model;
 	}
 
+	/**
+	 * Apply the single-precision and kernel options to a newly built sparse model.
+	 */
+	private void configureSparseModel(ModelExplicit model)
+	{
+		if (singlePrecision && model instanceof MixedPrecisionModel) {
+			((MixedPrecisionModel) model).convertToSinglePrecision();
+		}
+		if (model instanceof DTMCSparse) {
+			((DTMCSparse) model).setUnrolledKernels(unrolledKernels);
+		} else if (model instanceof MDPSparse) {
+			((MDPSparse) model).setUnrolledKernels(unrolledKernels);
+		}
+	}
+
+	/**
+	 * Construct an explicit-state model by re-instantiating a previously built one, {@code structure},
+	 * whose states and transitions are known to be the same, but with the transition probabilities
+	 * given by {@code modelGen} (e.g. for a new value of a constant that only occurs in probabilities).
+	 * Returns null if it turns out that the structure of the model has changed,
+	 * in which case {@link #constructModel(ModelGenerator)} should be used instead.
+	 * @param modelGen The ModelGenerator interface providing the model 
+	 * @param structure The structure of the previously built model (see {@link #getModelStructure()})
+	 */
+	public Model reinstantiateModel(ModelGenerator modelGen, ModelStructure structure) throws PrismException
+	{
+		mainLog.print("\nRe-using model structure with new transition probabilities...");
+		mainLog.flush();
+		long timer = System.currentTimeMillis();
+		ModelExplicit model = structure.instantiate(modelGen);
+		if (model == null) {
+			mainLog.println(" model structure has changed.");
+			modelStructure = null;
+			return null;
+		}
+		mainLog.println(" done in " + ((System.currentTimeMillis() - timer) / 1000.0) + " secs.");
+		statesList = model.getStatesList();
+		modelStructure = structure;
+		configureSparseModel(model);
+		model.setConstantValues(new Values(modelGen.getConstantValues()));
+		if (attachLabels)
+			attachLabels(modelGen, model);
+		return model;
+	}
+
+	/**
+	 * Explore the state space in parallel, level by level (breadth-first), starting from the states already in {@code states}.
+	 * For each level, worker threads (each with its own copy of the model generator) compute the transitions
+	 * from a block of states into a buffer, looking up targets (read-only) in {@code states}. Then, the buffers
+	 * are merged in order of source state, adding new states and transitions. This gives exactly the same state
+	 * numbering as sequential exploration. Returns the number of states explored.
+	 */
+	private int exploreInParallel(ModulesFileModelGenerator modelGen, final OffHeapStateStorage states, ModelType modelType, final boolean justReach, ModelSimple modelSimple,
+			SparseModelBuilder sparseBuilder, ProgressDisplay progress) throws PrismException
+	{
+		final boolean nondet = modelType.nondeterministic();
+		final boolean needActions = !justReach && nondet && distinguishActions;
+		final StatePacker packer = states.getPacker();
+		final int numWords = packer.getNumWords();
+		final int numVars = packer.getNumVars();
+
+		// Create one model generator per thread
+		final List<ModulesFileModelGenerator> generators = new ArrayList<ModulesFileModelGenerator>(numThreads);
+		generators.add(modelGen);
+		for (int t = 1; t < numThreads; t++)
+			generators.add(modelGen.createCopy());
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		int levelStart = 0;
+		try {
+			while (levelStart < states.size()) {
+				final int lo = levelStart;
+				final int n = states.size() - levelStart;
+				// Split the level into contiguous blocks (a few per thread, to balance the load)
+				final int numBlocks = Math.min(n, 4 * numThreads);
+				final ExplorationBuffer buffers[] = new ExplorationBuffer[numBlocks];
+				final AtomicInteger nextBlock = new AtomicInteger(0);
+				List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numThreads);
+				for (int t = 0; t < numThreads; t++) {
+					final ModulesFileModelGenerator gen = generators.get(t);
+					tasks.add(() -> {
+						State state = new State(numVars);
+						long words[] = new long[numWords];
+						int b;
+						while ((b = nextBlock.getAndIncrement()) < numBlocks) {
+							ExplorationBuffer buf = new ExplorationBuffer(numWords);
+							int blockEnd = lo + (int) ((long) (b + 1) * n / numBlocks);
+							for (int s = lo + (int) ((long) b * n / numBlocks); s < blockEnd; s++) {
+								gen.exploreState(states.getState(s, state));
+								int nc = gen.getNumChoices();
+								buf.addState(nc);
+								for (int i = 0; i < nc; i++) {
+									int nt = gen.getNumTransitions(i);
+									buf.addChoice(nt, needActions ? gen.getChoiceAction(i) : null);
+									for (int j = 0; j < nt; j++) {
+										Arrays.fill(words, 0L);
+										packer.packWords(gen.computeTransitionTarget(i, j), words);
+										buf.addTransition(states.getIndexOfWords(words), words, justReach ? 0.0 : gen.getTransitionProbability(i, j));
+									}
+								}
+							}
+							buffers[b] = buf;
+						}
+						return null;
+					});
+				}
+				for (Future<Void> future : pool.invokeAll(tasks))
+					future.get();
+
+				// Merge (sequentially, in order of source state)
+				int src = lo;
+				for (ExplorationBuffer buf : buffers) {
+					src = mergeExplorationBuffer(buf, src, states, modelType, justReach, modelSimple, sparseBuilder);
+				}
+				levelStart = lo + n;
+				progress.updateIfReady(levelStart);
+			}
+		} catch (InterruptedException e) {
+			throw new PrismException("Interrupted during parallel state-space exploration");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof PrismException)
+				throw (PrismException) e.getCause();
+			throw new PrismException("Error during parallel state-space exploration: " + e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return levelStart;
+	}
+
+	/**
+	 * Add the states and transitions recorded in {@code buf} (for source states numbered from {@code src})
+	 * to the state storage and model (either {@code modelSimple} or {@code sparseBuilder}).
+	 * Returns the number of the next source state.
+	 */
+	private int mergeExplorationBuffer(ExplorationBuffer buf, int src, OffHeapStateStorage states, ModelType modelType, boolean justReach, ModelSimple modelSimple,
+			SparseModelBuilder sparseBuilder) throws PrismException
+	{
+		int choice = 0, trans = 0, newWords = 0;
+		long words[] = new long[buf.numWords];
+		for (int k = 0; k < buf.numStates; k++, src++) {
+			int nc = buf.numChoices[k];
+			for (int i = 0; i < nc; i++, choice++) {
+				Distribution distr = (!justReach && modelType.nondeterministic() && sparseBuilder == null) ? new Distribution() : null;
+				int nt = buf.numTransitions[choice];
+				for (int j = 0; j < nt; j++, trans++) {
+					int dest = buf.targets[trans];
+					if (dest == -1) {
+						// A state not found during exploration: add it (or find it, if added earlier in this merge)
+						System.arraycopy(buf.words, newWords, words, 0, buf.numWords);
+						newWords += buf.numWords;
+						if (states.addWords(words)) {
+							if (sparseBuilder != null)
+								sparseBuilder.addState();
+							else if (!justReach)
+								modelSimple.addState();
+						}
+						dest = states.getIndexOfLastAdd();
+					}
+					if (sparseBuilder != null) {
+						sparseBuilder.addTransition(src, dest, buf.probs[trans]);
+					} else if (!justReach) {
+						double prob = buf.probs[trans];
+						switch (modelType) {
+						case DTMC:
+							((DTMCSimple) modelSimple).addToProbability(src, dest, prob);
+							break;
+						case CTMC:
+							((CTMCSimple) modelSimple).addToProbability(src, dest, prob);
+							break;
+						case MDP:
+						case CTMDP:
+							distr.add(dest, prob);
+							break;
+						default:
+							throw new PrismNotSupportedException("Model construction not supported for " + modelType + "s");
+						}
+					}
+				}
+				if (sparseBuilder != null) {
+					if (modelType.nondeterministic())
+						sparseBuilder.finishChoice(src, buf.actions.get(choice));
+				} else if (!justReach) {
+					if (modelType == ModelType.MDP) {
+						if (distinguishActions) {
+							((MDPSimple) modelSimple).addActionLabelledChoice(src, distr, buf.actions.get(choice));
+						} else {
+							((MDPSimple) modelSimple).addChoice(src, distr);
+						}
+					} else if (modelType == ModelType.CTMDP) {
+						if (distinguishActions) {
+							((CTMDPSimple) modelSimple).addActionLabelledChoice(src, distr, buf.actions.get(choice));
+						} else {
+							((CTMDPSimple) modelSimple).addChoice(src, distr);
+						}
+					}
+				}
+			}
+		}
+		return src;
+	}
+
+	/**
+	 * Buffer for the transitions computed (by one thread) from a block of consecutively numbered states.
+	 * Targets that were already known are stored as indices; others as -1, with their packed words
+	 * appended to {@code words}.
+	 */
+	private static class ExplorationBuffer
+	{
+		final int numWords;
+		int numStates = 0, numChoicesTotal = 0, numTransitionsTotal = 0, numNewWords = 0;
+		int numChoices[] = new int[16];
+		int numTransitions[] = new int[16];
+		List<Object> actions = new ArrayList<Object>();
+		int targets[] = new int[64];
+		double probs[] = new double[64];
+		long words[] = new long[64];
+
+		ExplorationBuffer(int numWords)
+		{
+			this.numWords = numWords;
+		}
+
+		void addState(int nc)
+		{
+			if (numStates == numChoices.length)
+				numChoices = Arrays.copyOf(numChoices, 2 * numStates);
+			numChoices[numStates++] = nc;
+		}
+
+		void addChoice(int nt, Object action)
+		{
+			if (numChoicesTotal == numTransitions.length)
+				numTransitions = Arrays.copyOf(numTransitions, 2 * numChoicesTotal);
+			numTransitions[numChoicesTotal++] = nt;
+			actions.add(action);
+		}
+
+		void addTransition(int target, long targetWords[], double prob)
+		{
+			if (numTransitionsTotal == targets.length) {
+				targets = Arrays.copyOf(targets, 2 * numTransitionsTotal);
+				probs = Arrays.copyOf(probs, 2 * numTransitionsTotal);
+			}
+			targets[numTransitionsTotal] = target;
+			probs[numTransitionsTotal++] = prob;
+			if (target == -1) {
+				if (numNewWords + numWords > words.length)
+					words = Arrays.copyOf(words, Math.max(2 * words.length, numNewWords + numWords));
+				System.arraycopy(targetWords, 0, words, numNewWords, numWords);
+				numNewWords += numWords;
+			}
+		}
+	}
+
 	private void attachLabels(ModelGenerator modelGen, ModelExplicit model) throws PrismException
 	{
 		// Get state info
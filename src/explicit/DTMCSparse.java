@@ -49,7 +49,7 @@ import prism.PrismNotSupportedException;
  * This is much faster to access than e.g. DTMCSimple and should also be more compact.
  * The catch is that you have to create the model all in one go and then can't modify it.
  */
-public class DTMCSparse extends DTMCExplicit
+public class DTMCSparse extends DTMCExplicit implements MixedPrecisionModel
 {
 	// Sparse matrix storing transition function (Steps)
 	/** Indices into probabilities/columns giving the start of the transitions for each state (distribution);
@@ -57,8 +57,49 @@ public class DTMCSparse extends DTMCExplicit
 	private int rows[];
 	/** Column (destination) indices for each transition (array of size numTransitions) */
 	private int columns[];
-	/** Probabilities for each transition (array of size numTransitions) */
+	/** Probabilities for each transition (array of size numTransitions), null if stored in single precision */
 	private double probabilities[];
+	/** Probabilities for each transition in split single-precision form (high and low parts), see {@link MixedPrecisionModel} */
+	private float probabilitiesHigh[];
+	private float probabilitiesLow[];
+	/** In single-precision form, use only the high parts of the probabilities? */
+	private boolean useSinglePrecision = false;
+	/** Use the unrolled matrix-vector kernels (see {@link SparseKernels})? */
+	private boolean unrolledKernels = false;
+
+	/**
+	 * Constructor: build directly from the arrays of a sparse matrix (which are not copied),
+	 * e.g. as produced by {@link SparseModelBuilder}.
+	 * Initial states, deadlocks, etc. should be added afterwards.
+	 */
+	public DTMCSparse(int numStates, int rows[], int columns[], double probabilities[])
+	{
+		initialise(numStates);
+		this.rows = rows;
+		this.columns = columns;
+		this.probabilities = probabilities;
+	}
+
+	/**
+	 * Copy constructor, sharing the transition structure (states, rows, columns) of {@code dtmc}
+	 * but with new transition probabilities {@code probabilities} (in the same order as its columns).
+	 * Labels are not copied.
+	 */
+	public DTMCSparse(final DTMCSparse dtmc, double probabilities[])
+	{
+		initialise(dtmc.getNumStates());
+		for (Integer state : dtmc.getDeadlockStates()) {
+			deadlocks.add(state);
+		}
+		for (Integer state : dtmc.getInitialStates()) {
+			initialStates.add(state);
+		}
+		varList = dtmc.getVarList();
+		statesList = dtmc.getStatesList();
+		rows = dtmc.rows;
+		columns = dtmc.columns;
+		this.probabilities = probabilities;
+	}
 
 	public DTMCSparse(final DTMC dtmc) {
 		initialise(dtmc.getNumStates());
@@ -231,7 +272,7 @@ public class DTMCSparse extends DTMCExplicit
 	public void forEachTransition(int state, TransitionConsumer consumer)
 	{
 		for (int col = rows[state], stop = rows[state+1]; col < stop; col++) {
-			consumer.accept(state, columns[col], probabilities[col]);
+			consumer.accept(state, columns[col], getProbability(col));
 		}
 	}
 
@@ -262,7 +303,7 @@ public class DTMCSparse extends DTMCExplicit
 				assert (col < end);
 				final int index = col;
 				col++;
-				return new AbstractMap.SimpleImmutableEntry<>(columns[index], probabilities[index]);
+				return new AbstractMap.SimpleImmutableEntry<>(columns[index], getProbability(index));
 			}
 		};
 	}
@@ -301,25 +342,43 @@ public class DTMCSparse extends DTMCExplicit
 	@Override
 	public double mvMultSingle(final int state, final double[] vect)
 	{
+		return dotRow(rows[state], rows[state+1], vect);
+	}
+
+	@Override
+	public double mvMultJacSingle(final int state, final double[] vect)
+	{
+		double diag = 1.0;
 		double d = 0.0;
 		for (int i=rows[state], stop=rows[state+1]; i < stop; i++) {
 			final int target = columns[i];
-			final double probability = probabilities[i];
-			d += probability * vect[target];
+			final double probability = getProbability(i);
+			if (target != state) {
+				d += probability * vect[target];
+			} else {
+				diag -= probability;
+			}
+		}
+		if (diag > 0) {
+			d /= diag;
 		}
 		return d;
 	}
 
-	@Override
-	public double mvMultJacSingle(final int state, final double[] vect)
+	/**
+	 * Do a single row of Jacobi-style matrix-vector multiplication, as for {@link #mvMultJacSingle(int, double[])},
+	 * but reading the values of states with index in [lo, hi] from {@code cur} and all others from {@code old}
+	 * (for block Gauss-Seidel, see {@link ParallelMvMult#iterateBlockGaussSeidel}).
+	 */
+	public double mvMultJacSingleBlock(final int state, final double[] cur, final double[] old, final int lo, final int hi)
 	{
 		double diag = 1.0;
 		double d = 0.0;
 		for (int i=rows[state], stop=rows[state+1]; i < stop; i++) {
 			final int target = columns[i];
-			final double probability = probabilities[i];
+			final double probability = getProbability(i);
 			if (target != state) {
-				d += probability * vect[target];
+				d += probability * (target >= lo && target <= hi ? cur[target] : old[target]);
 			} else {
 				diag -= probability;
 			}
@@ -330,18 +389,47 @@ public class DTMCSparse extends DTMCExplicit
 		return d;
 	}
 
-	@Override
-	public double mvMultRewSingle(final int state, final double[] vect, final MCRewards mcRewards)
+	/**
+	 * Do a single row of Jacobi-style matrix-vector multiplication and sum of rewards,
+	 * as for {@link #mvMultRewJacSingle(int, double[], MCRewards)},
+	 * but reading the values of states with index in [lo, hi] from {@code cur} and all others from {@code old}
+	 * (for block Gauss-Seidel, see {@link ParallelMvMult#iterateBlockGaussSeidel}).
+	 */
+	public double mvMultRewJacSingleBlock(final int state, final double[] cur, final double[] old, final int lo, final int hi, final MCRewards mcRewards)
 	{
+		double diag = 1.0;
 		double d = mcRewards.getStateReward(state);
+		boolean onlySelfLoops = true;
 		for (int i=rows[state], stop=rows[state+1]; i < stop; i++) {
 			final int target = columns[i];
-			final double probability = probabilities[i];
-			d += probability * vect[target];
+			final double probability = getProbability(i);
+			if (target != state) {
+				d += probability * (target >= lo && target <= hi ? cur[target] : old[target]);
+				onlySelfLoops = false;
+			} else {
+				diag -= probability;
+			}
+		}
+		if (onlySelfLoops) {
+			if (d != 0) {
+				d = (d > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY);
+			} else {
+				// no reward & only self-loops: d remains 0
+				d = 0;
+			}
+		} else if (diag > 0) {
+			// not only self-loops, do Jacobi division
+			d /= diag;
 		}
 		return d;
 	}
 
+	@Override
+	public double mvMultRewSingle(final int state, final double[] vect, final MCRewards mcRewards)
+	{
+		return mcRewards.getStateReward(state) + dotRow(rows[state], rows[state+1], vect);
+	}
+
 	@Override
 	public void vmMult(final double[] vect, final double[] result)
 	{
@@ -349,9 +437,13 @@ public class DTMCSparse extends DTMCExplicit
 		Arrays.fill(result, 0);
 		// Go through matrix elements (by row)
 		for (int state = 0; state < numStates; state++) {
+			if (probabilities != null) {
+				SparseKernels.scatter(unrolledKernels, columns, probabilities, rows[state], rows[state+1], vect[state], result);
+				continue;
+			}
 			for (int i=rows[state], stop=rows[state+1]; i < stop; i++) {
 				int target = columns[i];
-				double probability = probabilities[i];
+				double probability = getProbability(i);
 				result[target] += probability * vect[state];
 			}
 		}
@@ -380,7 +472,7 @@ public class DTMCSparse extends DTMCExplicit
 			// ... handle all Q(state,t) entries of the generator matrix
 			for (int i=rows[state], stop=rows[state+1]; i < stop; i++) {
 				int target = columns[i];
-				double prob = probabilities[i];
+				double prob = getProbability(i);
 				if (state != target) {
 					// ignore self loop, diagonal entries of the generator matrix handled above
 					// update result vector entry for the *successor* state
@@ -392,6 +484,72 @@ public class DTMCSparse extends DTMCExplicit
 
 
 
+	//--- MixedPrecisionModel ---
+
+	@Override
+	public void convertToSinglePrecision()
+	{
+		if (probabilities == null)
+			return;
+		probabilitiesHigh = new float[probabilities.length];
+		probabilitiesLow = new float[probabilities.length];
+		MixedPrecisionModel.split(probabilities, probabilitiesHigh, probabilitiesLow);
+		probabilities = null;
+	}
+
+	@Override
+	public boolean isSinglePrecision()
+	{
+		return probabilities == null && probabilitiesHigh != null;
+	}
+
+	@Override
+	public void setUseSinglePrecision(boolean useSinglePrecision)
+	{
+		this.useSinglePrecision = useSinglePrecision && isSinglePrecision();
+	}
+
+	@Override
+	public boolean getUseSinglePrecision()
+	{
+		return useSinglePrecision;
+	}
+
+	/**
+	 * Set whether to use the unrolled matrix-vector kernels (see {@link SparseKernels}),
+	 * which sum in a different order, so results can differ in the last bits.
+	 */
+	public void setUnrolledKernels(boolean unrolledKernels)
+	{
+		this.unrolledKernels = unrolledKernels;
+	}
+
+	/**
+	 * Return the sum of {@code P(i) * vect[columns[i]]} over the transitions with index {@code from <= i < to}
+	 * (using {@link SparseKernels}).
+	 */
+	private double dotRow(final int from, final int to, final double[] vect)
+	{
+		if (probabilities != null)
+			return SparseKernels.dot(unrolledKernels, columns, probabilities, from, to, vect);
+		if (useSinglePrecision)
+			return SparseKernels.dot(unrolledKernels, columns, probabilitiesHigh, from, to, vect);
+		return SparseKernels.dot(unrolledKernels, columns, probabilitiesHigh, from, to, vect) + SparseKernels.dot(unrolledKernels, columns, probabilitiesLow, from, to, vect);
+	}
+
+	/**
+	 * Get the probability of the transition with index {@code i},
+	 * taking into account the single-precision form, if used.
+	 */
+	private double getProbability(final int i)
+	{
+		if (probabilities != null)
+			return probabilities[i];
+		if (useSinglePrecision)
+			return probabilitiesHigh[i];
+		return (double) probabilitiesHigh[i] + probabilitiesLow[i];
+	}
+
 	//--- Object ---
 
 	@Override
@@ -429,8 +587,12 @@ public class DTMCSparse extends DTMCExplicit
 			return false;
 		if (!initialStates.equals(dtmc.initialStates))
 			return false;
-		if (!Utils.doubleArraysAreEqual(probabilities, dtmc.probabilities))
+		if (getNumTransitions() != dtmc.getNumTransitions())
 			return false;
+		for (int i = 0, stop = getNumTransitions(); i < stop; i++) {
+			if (getProbability(i) != dtmc.getProbability(i))
+				return false;
+		}
 		if (!Utils.intArraysAreEqual(columns, dtmc.columns))
 			return false;
 		if (!Utils.intArraysAreEqual(rows, dtmc.rows))
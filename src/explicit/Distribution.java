@@ -26,12 +26,14 @@
 
 package explicit;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 
 import prism.PrismUtils;
@@ -39,10 +41,30 @@ import prism.PrismUtils;
 /**
  * Explicit representation of a probability distribution.
  * Basically, a mapping from (integer-valued) indices to (non-zero, double-valued) probabilities. 
+ * <br>
+ * The entries are stored in a pair of parallel primitive arrays, sorted by index
+ * (new entries are inserted at the right position, using binary search).
+ * Besides the (Map.Entry-based) iterator, the entries can be accessed by their position
+ * (0 to size()-1, in increasing order of index) via {@link #getIndex(int)} and {@link #getProbability(int)},
+ * which avoids allocating objects, e.g.:
+ * <pre>
+ *   for (int k = 0, n = distr.size(); k < n; k++)
+ *     d += distr.getProbability(k) * vect[distr.getIndex(k)];
+ * </pre>
  */
 public class Distribution implements Iterable<Entry<Integer, Double>>
 {
-	private HashMap<Integer, Double> map;
+	/** Initial capacity of the arrays (when the first entry is added) */
+	private static final int INITIAL_CAPACITY = 2;
+	private static final int[] EMPTY_INDICES = new int[0];
+	private static final double[] EMPTY_PROBS = new double[0];
+
+	/** Indices of the entries, sorted (only the first {@code size} elements are used) */
+	private int[] indices;
+	/** Probabilities of the entries, in the same order as {@code indices} */
+	private double[] probs;
+	/** Number of entries */
+	private int size;
 
 	/**
 	 * Create an empty distribution.
@@ -57,7 +79,9 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public Distribution(Distribution distr)
 	{
-		this(distr.iterator());
+		indices = Arrays.copyOf(distr.indices, distr.size);
+		probs = Arrays.copyOf(distr.probs, distr.size);
+		size = distr.size;
 	}
 
 	/**
@@ -81,10 +105,9 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public Distribution(Distribution distr, int permut[])
 	{
 		this();
-		Iterator<Entry<Integer, Double>> i = distr.iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			add(permut[e.getKey()], e.getValue());
+		ensureCapacity(distr.size);
+		for (int k = 0; k < distr.size; k++) {
+			add(permut[distr.indices[k]], distr.probs[k]);
 		}
 	}
 
@@ -93,7 +116,9 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public void clear()
 	{
-		map = new HashMap<Integer, Double>();
+		indices = EMPTY_INDICES;
+		probs = EMPTY_PROBS;
+		size = 0;
 	}
 
 	/**
@@ -103,12 +128,12 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean add(int j, double prob)
 	{
-		Double d = (Double) map.get(j);
-		if (d == null) {
-			map.put(j, prob);
+		int pos = find(j);
+		if (pos < 0) {
+			insert(-(pos + 1), j, prob);
 			return false;
 		} else {
-			set(j, d + prob);
+			setAt(pos, probs[pos] + prob);
 			return true;
 		}
 	}
@@ -118,10 +143,13 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public void set(int j, double prob)
 	{
-		if (prob == 0.0)
-			map.remove(j);
-		else
-			map.put(j, prob);
+		int pos = find(j);
+		if (pos < 0) {
+			if (prob != 0.0)
+				insert(-(pos + 1), j, prob);
+		} else {
+			setAt(pos, prob);
+		}
 	}
 
 	/**
@@ -129,9 +157,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public double get(int j)
 	{
-		Double d;
-		d = (Double) map.get(j);
-		return d == null ? 0.0 : d.doubleValue();
+		int pos = find(j);
+		return pos < 0 ? 0.0 : probs[pos];
 	}
 
 	/**
@@ -139,7 +166,23 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean contains(int j)
 	{
-		return map.get(j) != null;
+		return find(j) >= 0;
+	}
+
+	/**
+	 * Get the index of the k-th entry (0 <= k < size()), in increasing order of index.
+	 */
+	public int getIndex(int k)
+	{
+		return indices[k];
+	}
+
+	/**
+	 * Get the probability of the k-th entry (0 <= k < size()), in increasing order of index.
+	 */
+	public double getProbability(int k)
+	{
+		return probs[k];
 	}
 
 	/**
@@ -147,10 +190,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean isSubsetOf(BitSet set)
 	{
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			if (!set.get((Integer) e.getKey()))
+		for (int k = 0; k < size; k++) {
+			if (!set.get(indices[k]))
 				return false;
 		}
 		return true;
@@ -161,10 +202,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean containsOneOf(BitSet set)
 	{
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			if (set.get((Integer) e.getKey()))
+		for (int k = 0; k < size; k++) {
+			if (set.get(indices[k]))
 				return true;
 		}
 		return false;
@@ -172,10 +211,55 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 
 	/**
 	 * Get the support of the distribution.
+	 * The returned set is a (read-only) view, i.e., it reflects later changes to the distribution.
 	 */
 	public Set<Integer> getSupport()
 	{
-		return map.keySet();
+		return new AbstractSet<Integer>()
+		{
+			@Override
+			public Iterator<Integer> iterator()
+			{
+				return getSupportIterator();
+			}
+
+			@Override
+			public boolean contains(Object o)
+			{
+				return o instanceof Integer && Distribution.this.contains((Integer) o);
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Get an iterator over the support of the distribution, in increasing order.
+	 */
+	public PrimitiveIterator.OfInt getSupportIterator()
+	{
+		return new PrimitiveIterator.OfInt()
+		{
+			int k = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return k < size;
+			}
+
+			@Override
+			public int nextInt()
+			{
+				if (k >= size)
+					throw new NoSuchElementException();
+				return indices[k++];
+			}
+		};
 	}
 
 	/**
@@ -183,7 +267,26 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public Iterator<Entry<Integer, Double>> iterator()
 	{
-		return map.entrySet().iterator();
+		return new Iterator<Entry<Integer, Double>>()
+		{
+			int k = 0;
+
+			@Override
+			public boolean hasNext()
+			{
+				return k < size;
+			}
+
+			@Override
+			public Entry<Integer, Double> next()
+			{
+				if (k >= size)
+					throw new NoSuchElementException();
+				Entry<Integer, Double> e = new AbstractMap.SimpleImmutableEntry<Integer, Double>(indices[k], probs[k]);
+				k++;
+				return e;
+			}
+		};
 	}
 
 	/**
@@ -191,7 +294,7 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public boolean isEmpty()
 	{
-		return map.isEmpty();
+		return size == 0;
 	}
 
 	/**
@@ -199,7 +302,7 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	 */
 	public int size()
 	{
-		return map.size();
+		return size;
 	}
 
 	/**
@@ -208,10 +311,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public double mean()
 	{
 		double d = 0.0;
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			d += e.getValue() * e.getKey();
+		for (int k = 0; k < size; k++) {
+			d += probs[k] * indices[k];
 		}
 		return d;
 	}
@@ -223,10 +324,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	{
 		double mean = mean();
 		double meanSq = 0.0;
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			meanSq += e.getValue() * e.getKey() * e.getKey();
+		for (int k = 0; k < size; k++) {
+			meanSq += probs[k] * indices[k] * indices[k];
 		}
 		return Math.abs(meanSq - mean * mean);
 	}
@@ -254,10 +353,8 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public double sum()
 	{
 		double mean = 0.0;
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			mean += e.getValue();
+		for (int k = 0; k < size; k++) {
+			mean += probs[k];
 		}
 		return mean;
 	}
@@ -268,11 +365,9 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public double sumAllBut(int j)
 	{
 		double d = 0.0;
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			if (e.getKey() != j)
-				d += e.getValue();
+		for (int k = 0; k < size; k++) {
+			if (indices[k] != j)
+				d += probs[k];
 		}
 		return d;
 	}
@@ -284,27 +379,76 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public Distribution map(int map[])
 	{
 		Distribution distrNew = new Distribution();
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			distrNew.add(map[e.getKey()], e.getValue());
+		for (int k = 0; k < size; k++) {
+			distrNew.add(map[indices[k]], probs[k]);
 		}
 		return distrNew;
 	}
 
+	// Storage
+
+	/**
+	 * Find the position of index j, using binary search.
+	 * If it is not present, returns (-(insertion point) - 1), as for {@link Arrays#binarySearch(int[], int)}.
+	 */
+	private int find(int j)
+	{
+		// fast path for the common case of entries being added in increasing order
+		if (size == 0 || indices[size - 1] < j)
+			return -(size + 1);
+		return Arrays.binarySearch(indices, 0, size, j);
+	}
+
+	/**
+	 * Insert a new entry (j,prob) at position pos.
+	 */
+	private void insert(int pos, int j, double prob)
+	{
+		ensureCapacity(size + 1);
+		if (pos < size) {
+			System.arraycopy(indices, pos, indices, pos + 1, size - pos);
+			System.arraycopy(probs, pos, probs, pos + 1, size - pos);
+		}
+		indices[pos] = j;
+		probs[pos] = prob;
+		size++;
+	}
+
+	/**
+	 * Set the probability of the entry at position pos, removing it if prob is zero.
+	 */
+	private void setAt(int pos, double prob)
+	{
+		if (prob == 0.0) {
+			System.arraycopy(indices, pos + 1, indices, pos, size - pos - 1);
+			System.arraycopy(probs, pos + 1, probs, pos, size - pos - 1);
+			size--;
+		} else {
+			probs[pos] = prob;
+		}
+	}
+
+	/**
+	 * Make sure that the arrays can hold (at least) {@code capacity} entries.
+	 */
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > indices.length) {
+			int newCapacity = Math.max(capacity, indices.length == 0 ? INITIAL_CAPACITY : 2 * indices.length);
+			indices = Arrays.copyOf(indices, newCapacity);
+			probs = Arrays.copyOf(probs, newCapacity);
+		}
+	}
+
 	@Override
 	public boolean equals(Object o)
 	{
-		Double d1, d2;
 		Distribution d = (Distribution) o;
 		if (d.size() != size())
 			return false;
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			d1 = e.getValue();
-			d2 = d.map.get(e.getKey());
-			if (d2 == null || !PrismUtils.doublesAreClose(d1, d2, 1e-12, false))
+		// entries are sorted by index, so can compare position-wise
+		for (int k = 0; k < size; k++) {
+			if (indices[k] != d.indices[k] || !PrismUtils.doublesAreClose(probs[k], d.probs[k], 1e-12, false))
 				return false;
 		}
 		return true;
@@ -314,28 +458,31 @@ public class Distribution implements Iterable<Entry<Integer, Double>>
 	public int hashCode()
 	{
 		// Simple hash code
-		return map.size();
+		return size;
 	}
 
 	@Override
 	public String toString()
 	{
-		return map.toString();
+		// same format as for a Map
+		StringBuilder sb = new StringBuilder("{");
+		for (int k = 0; k < size; k++) {
+			if (k > 0)
+				sb.append(", ");
+			sb.append(indices[k]).append("=").append(probs[k]);
+		}
+		return sb.append("}").toString();
 	}
 	
 	public String toStringCSV()
 	{
 		String s = "Value";
-		Iterator<Entry<Integer, Double>> i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			s += ", " + e.getKey();
+		for (int k = 0; k < size; k++) {
+			s += ", " + indices[k];
 		}
 		s += "\nProbability";
-		i = iterator();
-		while (i.hasNext()) {
-			Map.Entry<Integer, Double> e = i.next();
-			s += ", " + e.getValue();
+		for (int k = 0; k < size; k++) {
+			s += ", " + probs[k];
 		}
 		s += "\n";
 		return s;
@@ -28,6 +28,8 @@
 package explicit;
 
 import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import common.IntSet;
 import common.PeriodicTimer;
@@ -57,6 +59,21 @@ public abstract class IterationMethod {
 		/** Perform one iteration (over the set of states) and return true if convergence has been detected. */
 		public boolean iterateAndCheckConvergence(IntSet states) throws PrismException;
 
+		/**
+		 * Perform one iteration (over the set of states) and return true if convergence has been detected,
+		 * as for {@link #iterateAndCheckConvergence(IntSet)}, but such that other, disjoint sets of states
+		 * can be iterated over concurrently (as long as they do not depend on each other):
+		 * only the entries for {@code states} are modified, and the new values are
+		 * stored in the vector returned by {@link #getSolnVector()}.
+		 * <br>
+		 * The default implementation simply calls {@link #iterateAndCheckConvergence(IntSet)},
+		 * which is fine for single-vector iterations.
+		 */
+		public default boolean iterateAndCheckConvergenceInPlace(IntSet states) throws PrismException
+		{
+			return iterateAndCheckConvergence(states);
+		}
+
 		/**
 		 * Notify that the given states are done (e.g., because the given SCC is finished
 		 * during a topological iteration).
@@ -213,11 +230,45 @@ public abstract class IterationMethod {
 		/** Perform one iteration */
 		public abstract void doIterate(IntSet states) throws PrismException;
 
+		/**
+		 * Get the per-state kernel equivalent to {@link #doIterate(IntSet)}, if there is one,
+		 * allowing the iteration to be done in parallel; otherwise, return null.
+		 */
+		protected ParallelMvMult.StateKernel getStateKernel()
+		{
+			return null;
+		}
+
+		/** The states (as an array) for the last parallel iteration, and the set they came from */
+		private IntSet parallelStatesSet = null;
+		private int parallelStates[] = null;
+
+		/**
+		 * If possible, perform one iteration in parallel and return true; otherwise, return false.
+		 * If {@code check} is true, the convergence check is also done, and the result stored in {@code parallelDone}.
+		 */
+		private boolean doIterateParallel(IntSet states, boolean check) throws PrismException
+		{
+			ParallelMvMult.StateKernel kernel = getStateKernel();
+			if (kernel == null || !ParallelMvMult.isApplicable(model, states.cardinality(), numThreads))
+				return false;
+			if (states != parallelStatesSet) {
+				parallelStates = ParallelMvMult.toArray(states);
+				parallelStatesSet = states;
+			}
+			parallelDone = ParallelMvMult.iterate(parallelStates, soln, soln2, kernel, numThreads, check, termCritParam, absolute);
+			return true;
+		}
+
+		/** Result of the convergence check done by the last call to doIterateParallel */
+		private boolean parallelDone;
+
 		@Override
 		public void iterate(IntSet states) throws PrismException
 		{
 			// do the iteration
-			doIterate(states);
+			if (!doIterateParallel(states, false))
+				doIterate(states);
 			// optionally, post processing
 			if (postProcessor != null) {
 				postProcessor.apply(soln, soln2, states);
@@ -231,6 +282,33 @@ public abstract class IterationMethod {
 
 		@Override
 		public boolean iterateAndCheckConvergence(IntSet states) throws PrismException
+		{
+			boolean done;
+			if (postProcessor == null && doIterateParallel(states, true)) {
+				// parallel iteration, with the convergence check done in the same pass
+				done = parallelDone;
+			} else {
+				// do the iteration
+				if (!doIterateParallel(states, false))
+					doIterate(states);
+				// optionally, post processing
+				if (postProcessor != null) {
+					postProcessor.apply(soln, soln2, states);
+				}
+				// check convergence (on the set of states)
+				done = PrismUtils.doublesAreClose(soln, soln2, states.iterator(), termCritParam, absolute);
+			}
+
+			// switch vectors
+			double[] tmp = soln;
+			soln = soln2;
+			soln2 = tmp;
+
+			return done;
+		}
+
+		@Override
+		public boolean iterateAndCheckConvergenceInPlace(IntSet states) throws PrismException
 		{
 			// do the iteration
 			doIterate(states);
@@ -241,10 +319,13 @@ public abstract class IterationMethod {
 			// check convergence (on the set of states)
 			boolean done = PrismUtils.doublesAreClose(soln, soln2, states.iterator(), termCritParam, absolute);
 
-			// switch vectors
-			double[] tmp = soln;
-			soln = soln2;
-			soln2 = tmp;
+			// copy the new values back, instead of switching vectors,
+			// as other states may be iterated over concurrently
+			PrimitiveIterator.OfInt it = states.iterator();
+			while (it.hasNext()) {
+				int state = it.nextInt();
+				soln[state] = soln2[state];
+			}
 
 			return done;
 		}
@@ -293,6 +374,10 @@ public abstract class IterationMethod {
 	protected final boolean absolute;
 	/** Convergence check: epsilon value */
 	protected final double termCritParam;
+	/** Number of threads to use for (parallelisable) iterations */
+	protected int numThreads = 1;
+	/** Use block Gauss-Seidel (for Gauss-Seidel iterations on large sparse models)? */
+	protected boolean blockGaussSeidel = false;
 
 	/**
 	 * Constructor.
@@ -305,6 +390,24 @@ public abstract class IterationMethod {
 		this.termCritParam = termCritParam;
 	}
 
+	/**
+	 * Set the number of threads to use for iterations that can be done in parallel
+	 * (currently, matrix-vector multiplication for sparse models with many states).
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Set whether Gauss-Seidel iterations on large sparse models should be done in blocks
+	 * (see {@link ParallelMvMult#iterateBlockGaussSeidel}); otherwise, they are sequential.
+	 */
+	public void setBlockGaussSeidel(boolean blockGaussSeidel)
+	{
+		this.blockGaussSeidel = blockGaussSeidel;
+	}
+
 	// ------------ Abstract DTMC methods ----------------------------
 
 	/** Obtain an Iteration object using mvMult (matrix-vector multiplication) in a DTMC */
@@ -403,23 +506,42 @@ public abstract class IterationMethod {
 	{
 		int iters = 0;
 		final int maxIters = mc.maxIters;
+		setNumThreads(mc.getNumThreads());
+		setBlockGaussSeidel(mc.getBlockGaussSeidel());
 		boolean done = false;
 
 		PeriodicTimer updatesTimer = new PeriodicTimer(ProbModelChecker.UPDATE_DELAY);
 		updatesTimer.start();
 
-		while (!done && iters < maxIters) {
-			iters++;
-			// do iteration step
-			done = iteration.iterateAndCheckConvergence(unknownStates);
+		// with single-precision probabilities, iterate using these first,
+		// then refine the result using the full probabilities
+		MixedPrecisionModel mixed = startSinglePrecision(iteration.getModel());
+		int singlePrecisionIters = 0;
 
-			if (iterationsExport != null)
-				iterationsExport.exportVector(iteration.getSolnVector(), 0);
+		try {
+			while (!done && iters < maxIters) {
+				iters++;
+				// do iteration step
+				done = iteration.iterateAndCheckConvergence(unknownStates);
+
+				if (done && mixed != null && mixed.getUseSinglePrecision()) {
+					// switch to full precision for the refinement
+					mixed.setUseSinglePrecision(false);
+					singlePrecisionIters = iters;
+					done = false;
+				}
+
+				if (iterationsExport != null)
+					iterationsExport.exportVector(iteration.getSolnVector(), 0);
 
-			if (!done && updatesTimer.triggered()) {
-				mc.getLog().print("Iteration " + iters + ": ");
-				mc.getLog().println(PrismUtils.formatDouble2dp(updatesTimer.elapsedMillisTotal() / 1000.0) + " sec so far");
+				if (!done && updatesTimer.triggered()) {
+					mc.getLog().print("Iteration " + iters + ": ");
+					mc.getLog().println(PrismUtils.formatDouble2dp(updatesTimer.elapsedMillisTotal() / 1000.0) + " sec so far");
+				}
 			}
+		} finally {
+			if (mixed != null)
+				mixed.setUseSinglePrecision(false);
 		}
 
 		// Finished value iteration
@@ -427,6 +549,8 @@ public abstract class IterationMethod {
 		long timer = System.currentTimeMillis() - startTime;
 		mc.getLog().print("Value iteration (" + description + ")");
 		mc.getLog().print(" took " + iters + " iterations, ");
+		if (mixed != null)
+			mc.getLog().print("of which " + singlePrecisionIters + " in single precision, ");
 		mc.getLog().print(mvCount + " multiplications");
 		mc.getLog().println(" and " + timer / 1000.0 + " seconds.");
 
@@ -463,6 +587,11 @@ public abstract class IterationMethod {
 	 */
 	public ModelCheckerResult doTopologicalValueIteration(ProbModelChecker mc, String description, SCCInfo sccs, IterationMethod.IterationValIter iterator, SingletonSCCSolver singletonSCCSolver, long startTime, ExportIterations iterationsExport) throws PrismException
 	{
+		setNumThreads(mc.getNumThreads());
+		setBlockGaussSeidel(mc.getBlockGaussSeidel());
+		if (numThreads > 1 && iterationsExport == null) {
+			return doTopologicalValueIterationConcurrent(mc, description, sccs, iterator, singletonSCCSolver, startTime);
+		}
 		// Start iterations
 		int iters = 0;
 		long mvCount = 0;
@@ -499,22 +628,36 @@ public abstract class IterationMethod {
 				doneSCC = false;
 				IntSet statesForSCC = sccs.getStatesForSCC(scc);
 				int itersInSCC = 0;
-				// abort on convergence or if iterations *in this SCC* are above maxIters
-				while (!doneSCC && itersInSCC < maxIters) {
-					iters++;
-					itersInSCC++;
-					// do iteration step
-					doneSCC = iterator.iterateAndCheckConvergence(statesForSCC);
+				// with single-precision probabilities, iterate using these first
+				// (singleton SCCs are always solved using the full probabilities)
+				MixedPrecisionModel mixed = startSinglePrecision(iterator.getModel());
+				try {
+					// abort on convergence or if iterations *in this SCC* are above maxIters
+					while (!doneSCC && itersInSCC < maxIters) {
+						iters++;
+						itersInSCC++;
+						// do iteration step
+						doneSCC = iterator.iterateAndCheckConvergence(statesForSCC);
 
-					if (iterationsExport != null)
-						iterationsExport.exportVector(iterator.getSolnVector(), 0);
+						if (doneSCC && mixed != null && mixed.getUseSinglePrecision()) {
+							// switch to full precision for the refinement
+							mixed.setUseSinglePrecision(false);
+							doneSCC = false;
+						}
 
-					if (!doneSCC && updatesTimer.triggered()) {
-						mc.getLog().print("Iteration " + iters + ": ");
-						mc.getLog().print("Iteration " + itersInSCC + " in SCC " + (finishedNonSingletonSCCs+1) + " of " + numNonSingletonSCCs);
-						mc.getLog().println(", " + PrismUtils.formatDouble2dp(updatesTimer.elapsedMillisTotal() / 1000.0) + " sec so far");
-					}
+						if (iterationsExport != null)
+							iterationsExport.exportVector(iterator.getSolnVector(), 0);
+
+						if (!doneSCC && updatesTimer.triggered()) {
+							mc.getLog().print("Iteration " + iters + ": ");
+							mc.getLog().print("Iteration " + itersInSCC + " in SCC " + (finishedNonSingletonSCCs+1) + " of " + numNonSingletonSCCs);
+							mc.getLog().println(", " + PrismUtils.formatDouble2dp(updatesTimer.elapsedMillisTotal() / 1000.0) + " sec so far");
+						}
 
+					}
+				} finally {
+					if (mixed != null)
+						mixed.setUseSinglePrecision(false);
 				}
 
 				// notify the iterator that the states are done so that
@@ -556,6 +699,74 @@ public abstract class IterationMethod {
 		return res;
 	}
 
+	/**
+	 * Perform the actual work of a topological value iteration, as for
+	 * {@link #doTopologicalValueIteration(ProbModelChecker, String, SCCInfo, IterationValIter, SingletonSCCSolver, long, ExportIterations)},
+	 * but solving SCCs that do not depend on each other concurrently, using {@code numThreads} threads
+	 * (see {@link SCCDAGScheduler}).
+	 * Large SCCs are solved on their own, using the (parallel) iteration of the iteration method.
+	 */
+	protected ModelCheckerResult doTopologicalValueIterationConcurrent(ProbModelChecker mc, String description, SCCInfo sccs, IterationMethod.IterationValIter iterator, SingletonSCCSolver singletonSCCSolver, long startTime) throws PrismException
+	{
+		final AtomicInteger iters = new AtomicInteger(0);
+		final AtomicLong mvCount = new AtomicLong(0);
+		final int maxIters = mc.maxIters;
+
+		int numNonSingletonSCCs = sccs.countNonSingletonSCCs();
+
+		SCCDAGScheduler scheduler = new SCCDAGScheduler(iterator.getModel(), sccs);
+		boolean done = scheduler.run((scc, exclusive) -> {
+			if (sccs.isSingletonSCC(scc)) {
+				// get the single state in this SCC
+				int state = sccs.getStatesForSCC(scc).iterator().nextInt();
+				iterator.solveSingletonSCC(state, singletonSCCSolver);
+				mvCount.addAndGet(countTransitions(iterator.getModel(), IntSet.asIntSet(state)));
+				iters.incrementAndGet();
+				return true;
+			}
+
+			// complex SCC: do VI
+			// (in place, unless no other SCC is being solved at the same time)
+			boolean doneSCC = false;
+			IntSet statesForSCC = sccs.getStatesForSCC(scc);
+			int itersInSCC = 0;
+			// abort on convergence or if iterations *in this SCC* are above maxIters
+			while (!doneSCC && itersInSCC < maxIters) {
+				itersInSCC++;
+				if (exclusive)
+					doneSCC = iterator.iterateAndCheckConvergence(statesForSCC);
+				else
+					doneSCC = iterator.iterateAndCheckConvergenceInPlace(statesForSCC);
+			}
+			iterator.doneWith(statesForSCC);
+
+			iters.addAndGet(itersInSCC);
+			mvCount.addAndGet(itersInSCC * countTransitions(iterator.getModel(), statesForSCC));
+			return doneSCC;
+		}, numThreads, ParallelMvMult.MIN_PARALLEL_STATES);
+
+		// Finished value iteration
+		long timer = System.currentTimeMillis() - startTime;
+		mc.getLog().print("Value iteration (" + description + ", with " + numNonSingletonSCCs + " non-singleton SCCs, " + numThreads + " threads)");
+		mc.getLog().print(" took " + iters.get() + " iterations, ");
+		mc.getLog().print(mvCount.get() + " multiplications");
+		mc.getLog().println(" and " + timer / 1000.0 + " seconds.");
+
+		// Non-convergence is an error (usually)
+		if (!done && mc.errorOnNonConverge) {
+			String msg = "Iterative method did not converge within " + iters.get() + " iterations.";
+			msg += "\nConsider using a different numerical method or increasing the maximum number of iterations";
+			throw new PrismException(msg);
+		}
+
+		// Return results
+		ModelCheckerResult res = new ModelCheckerResult();
+		res.soln = iterator.getSolnVector();
+		res.numIters = iters.get();
+		res.timeTaken = timer / 1000.0;
+		return res;
+	}
+
 	/**
 	 * Perform the actual work of an interval iteration, i.e., iterate until convergence or abort.
 	 *
@@ -570,6 +781,7 @@ public abstract class IterationMethod {
 	 * @throws PrismException on non-convergence (if mc.errorOnNonConverge is set)
 	 */
 	public ModelCheckerResult doIntervalIteration(ProbModelChecker mc, String description, IterationIntervalIter below, IterationIntervalIter above, IntSet unknownStates, long timer, ExportIterations iterationsExport) throws PrismException {
+		setNumThreads(mc.getNumThreads());
 		try {
 			// Start iterations
 			int iters = 0;
@@ -662,6 +874,7 @@ public abstract class IterationMethod {
 	 * @throws PrismException on non-convergence (if mc.errorOnNonConverge is set)
 	 */
 	public ModelCheckerResult doTopologicalIntervalIteration(ProbModelChecker mc, String description, SCCInfo sccs, IterationIntervalIter below, IterationIntervalIter above, SingletonSCCSolver singletonSCCSolver, long timer, ExportIterations iterationsExport) throws PrismException {
+		setNumThreads(mc.getNumThreads());
 		try {
 			// Start iterations
 			int iters = 0;
@@ -848,6 +1061,21 @@ public abstract class IterationMethod {
 		}
 	}
 
+	/**
+	 * If {@code model} stores its probabilities in single precision (see {@link MixedPrecisionModel}),
+	 * switch it to using only these, for the first phase of an iteration, and return it;
+	 * otherwise, return null.
+	 */
+	protected MixedPrecisionModel startSinglePrecision(Model model)
+	{
+		if (model instanceof MixedPrecisionModel && ((MixedPrecisionModel) model).isSinglePrecision()) {
+			MixedPrecisionModel mixed = (MixedPrecisionModel) model;
+			mixed.setUseSinglePrecision(true);
+			return mixed;
+		}
+		return null;
+	}
+
 	protected long countTransitions(Model model, IntSet unknownStates)
 	{
 		if (model instanceof DTMC) {
@@ -26,6 +26,8 @@
 
 package explicit;
 
+import java.util.PrimitiveIterator;
+
 import common.IntSet;
 import explicit.rewards.MCRewards;
 import explicit.rewards.MDPRewards;
@@ -38,6 +40,88 @@ public class IterationMethodGS extends IterationMethod {
 	/** Do backwards Gauss-Seidel? */
 	private boolean backwards;
 
+	/**
+	 * Abstract base class for a Gauss-Seidel IterationValIter.
+	 * <br>
+	 * If block Gauss-Seidel is enabled (see {@link IterationMethod#setBlockGaussSeidel(boolean)}),
+	 * the subclass provides a block kernel (for sparse models), and the model is large enough,
+	 * the iteration is split into fixed-size blocks of states, which are processed concurrently,
+	 * Gauss-Seidel style within each block and Jacobi style between blocks
+	 * (see {@link ParallelMvMult#iterateBlockGaussSeidel}).
+	 * The direction (forward/backward) is respected within each block.
+	 * Otherwise, this is plain (sequential) Gauss-Seidel.
+	 */
+	protected abstract class GSIterationValIter extends SingleVectorIterationValIter
+	{
+		/** The states (as an array, in iteration order) for the last block iteration, and the set they came from */
+		private IntSet blockStatesSet = null;
+		private int blockStates[] = null;
+		/** Scratch vector for the block iteration */
+		private double old[] = null;
+
+		public GSIterationValIter(Model model)
+		{
+			super(model);
+		}
+
+		/**
+		 * Perform one (sequential) Gauss-Seidel iteration over the states, in the given order,
+		 * and return the maximum difference between old/new values.
+		 */
+		protected abstract double doIterate(PrimitiveIterator.OfInt states);
+
+		/**
+		 * Get the per-state kernel for a block iteration, if there is one; otherwise, return null.
+		 */
+		protected ParallelMvMult.BlockKernel getBlockKernel()
+		{
+			return null;
+		}
+
+		@Override
+		public boolean iterateAndCheckConvergence(IntSet states) throws PrismException
+		{
+			double maxDiff;
+			ParallelMvMult.BlockKernel kernel = blockGaussSeidel ? getBlockKernel() : null;
+			if (kernel != null && ParallelMvMult.isBlockApplicable(model, states.cardinality()) && prepareBlockStates(states)) {
+				maxDiff = ParallelMvMult.iterateBlockGaussSeidel(blockStates, soln, old, kernel, numThreads, absolute);
+			} else {
+				maxDiff = doIterate(backwards ? states.reversedIterator() : states.iterator());
+			}
+
+			// Check termination
+			return (maxDiff < termCritParam);
+		}
+
+		@Override
+		public void init(double[] soln)
+		{
+			super.init(soln);
+			blockStatesSet = null;
+		}
+
+		/**
+		 * Store the states in blockStates (in iteration order),
+		 * returning false if they can not be split into blocks of contiguous indices.
+		 * For a new set of states, the scratch vector is initialised to the current solution,
+		 * as the values of the other states stay fixed while iterating over this set.
+		 */
+		private boolean prepareBlockStates(IntSet states)
+		{
+			if (states != blockStatesSet) {
+				int array[] = ParallelMvMult.toArray(backwards ? states.reversedIterator() : states.iterator(), states.cardinality());
+				blockStates = ParallelMvMult.isMonotonic(array) ? array : null;
+				blockStatesSet = states;
+				if (blockStates != null) {
+					if (old == null || old.length != soln.length)
+						old = new double[soln.length];
+					System.arraycopy(soln, 0, old, 0, soln.length);
+				}
+			}
+			return blockStates != null;
+		}
+	}
+
 	/**
 	 * Constructor.
 	 * @param absolute For convergence check, perform absolute comparison?
@@ -53,17 +137,21 @@ public class IterationMethodGS extends IterationMethod {
 	@Override
 	public IterationValIter forMvMult(DTMC dtmc)
 	{
-		return new SingleVectorIterationValIter(dtmc) {
+		return new GSIterationValIter(dtmc) {
 			@Override
-			public boolean iterateAndCheckConvergence(IntSet states)
+			protected double doIterate(PrimitiveIterator.OfInt states)
 			{
 				// Matrix-vector multiply
-				double maxDiff = dtmc.mvMultGS(soln,
-				                               backwards ? states.reversedIterator() : states.iterator(),
-				                               absolute);
+				return dtmc.mvMultGS(soln, states, absolute);
+			}
 
-				// Check termination
-				return (maxDiff < termCritParam);
+			@Override
+			protected ParallelMvMult.BlockKernel getBlockKernel()
+			{
+				if (!(dtmc instanceof DTMCSparse))
+					return null;
+				DTMCSparse sparse = (DTMCSparse) dtmc;
+				return (s, cur, old, lo, hi) -> sparse.mvMultJacSingleBlock(s, cur, old, lo, hi);
 			}
 		};
 	}
@@ -88,18 +176,21 @@ public class IterationMethodGS extends IterationMethod {
 	@Override
 	public IterationValIter forMvMultRew(DTMC dtmc, MCRewards rew)
 	{
-		return new SingleVectorIterationValIter(dtmc) {
+		return new GSIterationValIter(dtmc) {
 			@Override
-			public boolean iterateAndCheckConvergence(IntSet states)
+			protected double doIterate(PrimitiveIterator.OfInt states)
 			{
 				// Matrix-vector multiply
-				double maxDiff = dtmc.mvMultRewGS(soln,
-				                                  rew,
-				                                  backwards ? states.reversedIterator() : states.iterator(),
-				                                  absolute);
+				return dtmc.mvMultRewGS(soln, rew, states, absolute);
+			}
 
-				// Check termination
-				return (maxDiff < termCritParam);
+			@Override
+			protected ParallelMvMult.BlockKernel getBlockKernel()
+			{
+				if (!(dtmc instanceof DTMCSparse))
+					return null;
+				DTMCSparse sparse = (DTMCSparse) dtmc;
+				return (s, cur, old, lo, hi) -> sparse.mvMultRewJacSingleBlock(s, cur, old, lo, hi, rew);
 			}
 		};
 	}
@@ -125,19 +216,21 @@ public class IterationMethodGS extends IterationMethod {
 	@Override
 	public IterationValIter forMvMultMinMax(MDP mdp, boolean min, int[] strat)
 	{
-		return new SingleVectorIterationValIter(mdp) {
+		return new GSIterationValIter(mdp) {
 			@Override
-			public boolean iterateAndCheckConvergence(IntSet states)
+			protected double doIterate(PrimitiveIterator.OfInt states)
 			{
 				// Matrix-vector multiply
-				double maxDiff = mdp.mvMultGSMinMax(soln,
-				                                    min,
-				                                    backwards ? states.reversedIterator() : states.iterator(),
-				                                    absolute,
-				                                    strat);
-
-				// Check termination
-				return (maxDiff < termCritParam);
+				return mdp.mvMultGSMinMax(soln, min, states, absolute, strat);
+			}
+
+			@Override
+			protected ParallelMvMult.BlockKernel getBlockKernel()
+			{
+				if (!(mdp instanceof MDPSparse))
+					return null;
+				MDPSparse sparse = (MDPSparse) mdp;
+				return (s, cur, old, lo, hi) -> sparse.mvMultJacMinMaxSingleBlock(s, cur, old, lo, hi, min, strat);
 			}
 		};
 	}
@@ -166,20 +259,21 @@ public class IterationMethodGS extends IterationMethod {
 	@Override
 	public IterationValIter forMvMultRewMinMax(MDP mdp, MDPRewards rewards, boolean min, int[] strat) throws PrismException
 	{
-		return new SingleVectorIterationValIter(mdp) {
+		return new GSIterationValIter(mdp) {
 			@Override
-			public boolean iterateAndCheckConvergence(IntSet states)
+			protected double doIterate(PrimitiveIterator.OfInt states)
 			{
 				// Matrix-vector multiply
-				double maxDiff = mdp.mvMultRewGSMinMax(soln,
-				                                       rewards,
-				                                       min,
-				                                       backwards ? states.reversedIterator() : states.iterator(),
-				                                       absolute,
-				                                       strat);
-
-				// Check termination
-				return (maxDiff < termCritParam);
+				return mdp.mvMultRewGSMinMax(soln, rewards, min, states, absolute, strat);
+			}
+
+			@Override
+			protected ParallelMvMult.BlockKernel getBlockKernel()
+			{
+				if (!(mdp instanceof MDPSparse))
+					return null;
+				MDPSparse sparse = (MDPSparse) mdp;
+				return (s, cur, old, lo, hi) -> sparse.mvMultRewJacMinMaxSingleBlock(s, cur, old, lo, hi, rewards, min, strat);
 			}
 		};
 	}
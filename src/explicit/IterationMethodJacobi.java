@@ -56,6 +56,12 @@ class IterationMethodJacobi extends IterationMethod {
 			{
 				dtmc.mvMultJac(soln, soln2, states.iterator());
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> dtmc.mvMultJacSingle(s, vect);
+			}
 		};
 	}
 
@@ -72,6 +78,12 @@ class IterationMethodJacobi extends IterationMethod {
 			{
 				dtmc.mvMultJac(soln, soln2, states.iterator());
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> dtmc.mvMultJacSingle(s, vect);
+			}
 		};
 	}
 
@@ -84,6 +96,12 @@ class IterationMethodJacobi extends IterationMethod {
 			{
 				dtmc.mvMultRewJac(soln, rew, soln2, states.iterator());
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> dtmc.mvMultRewJacSingle(s, vect, rew);
+			}
 		};
 	}
 
@@ -100,6 +118,12 @@ class IterationMethodJacobi extends IterationMethod {
 			{
 				dtmc.mvMultRewJac(soln, rew, soln2, states.iterator());
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> dtmc.mvMultRewJacSingle(s, vect, rew);
+			}
 		};
 	}
 
@@ -55,6 +55,12 @@ public class IterationMethodPower extends IterationMethod {
 			{
 				dtmc.mvMult(soln, soln2, states.iterator());
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> dtmc.mvMultSingle(s, vect);
+			}
 		};
 	}
 
@@ -71,6 +77,12 @@ public class IterationMethodPower extends IterationMethod {
 			{
 				dtmc.mvMult(soln, soln2, states.iterator());
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> dtmc.mvMultSingle(s, vect);
+			}
 		};
 	}
 
@@ -83,6 +95,12 @@ public class IterationMethodPower extends IterationMethod {
 			{
 				dtmc.mvMultRew(soln, rew, soln2, states.iterator());
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> dtmc.mvMultRewSingle(s, vect, rew);
+			}
 		};
 	}
 
@@ -99,6 +117,12 @@ public class IterationMethodPower extends IterationMethod {
 			{
 				dtmc.mvMultRew(soln, rew, soln2, states.iterator());
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> dtmc.mvMultRewSingle(s, vect, rew);
+			}
 		};
 	}
 
@@ -111,6 +135,12 @@ public class IterationMethodPower extends IterationMethod {
 			{
 				mdp.mvMultMinMax(soln, min, soln2, states.iterator(), strat);
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> mdp.mvMultMinMaxSingle(s, vect, min, strat);
+			}
 		};
 	}
 
@@ -128,6 +158,12 @@ public class IterationMethodPower extends IterationMethod {
 			{
 				mdp.mvMultMinMax(soln, min, soln2, states.iterator(), strat);
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> mdp.mvMultMinMaxSingle(s, vect, min, strat);
+			}
 		};
 	}
 
@@ -146,6 +182,12 @@ public class IterationMethodPower extends IterationMethod {
 			{
 				mdp.mvMultRewMinMax(soln, rewards, min, soln2, states.iterator(), strat);
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> mdp.mvMultRewMinMaxSingle(s, vect, rewards, min, strat);
+			}
 		};
 	}
 
@@ -163,6 +205,12 @@ public class IterationMethodPower extends IterationMethod {
 			{
 				mdp.mvMultRewMinMax(soln, rewards, min, soln2, states.iterator(), strat);
 			}
+
+			@Override
+			protected ParallelMvMult.StateKernel getStateKernel()
+			{
+				return (s, vect) -> mdp.mvMultRewMinMaxSingle(s, vect, rewards, min, strat);
+			}
 		};
 	}
 
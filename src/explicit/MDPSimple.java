@@ -224,11 +224,21 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 		maxNumDistrsOk = true;
 		trans = new ArrayList<List<Distribution>>(numStates);
 		for (int i = 0; i < numStates; i++) {
-			trans.add(new ArrayList<Distribution>());
+			trans.add(newChoiceList());
 		}
 		actions = null;
 	}
 
+	/**
+	 * Create an (empty) list for storing the choices of a state.
+	 * Most states have only a few choices, so this starts with a capacity of one
+	 * (rather than the ArrayList default of ten), growing as needed.
+	 */
+	protected List<Distribution> newChoiceList()
+	{
+		return new ArrayList<Distribution>(1);
+	}
+
 	@Override
 	public void clearState(int s)
 	{
@@ -258,7 +268,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 	public void addStates(int numToAdd)
 	{
 		for (int i = 0; i < numToAdd; i++) {
-			trans.add(new ArrayList<Distribution>());
+			trans.add(newChoiceList());
 			if (actions != null)
 				actions.add(null);
 			numStates++;
@@ -551,7 +561,7 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 	@Override
 	public SuccessorsIterator getSuccessors(final int s, final int i)
 	{
-		return SuccessorsIterator.from(getSuccessorsIterator(s, i), true);
+		return SuccessorsIterator.from(trans.get(s).get(i).getSupportIterator(), true);
 	}
 
 	// Accessors (for MDP)
@@ -568,7 +578,15 @@ public class MDPSimple extends MDPExplicit implements NondetModelSimple
 		return trans.get(s).get(i).iterator();
 	}
 
-	
+	@Override
+	public void forEachTransition(int s, int i, TransitionConsumer c)
+	{
+		Distribution distr = trans.get(s).get(i);
+		for (int k = 0, n = distr.size(); k < n; k++) {
+			c.accept(s, distr.getIndex(k), distr.getProbability(k));
+		}
+	}
+
 
 	// Accessors (other)
 
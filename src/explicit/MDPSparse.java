@@ -52,11 +52,18 @@ import prism.PrismUtils;
  * This is much faster to access than e.g. MDPSimple and should also be more compact.
  * The catch is that you have to create the model all in one go and then can't modify it.
  */
-public class MDPSparse extends MDPExplicit
+public class MDPSparse extends MDPExplicit implements MixedPrecisionModel
 {
 	// Sparse matrix storing transition function (Steps)
-	/** Probabilities for each transition (array of size numTransitions) */
+	/** Probabilities for each transition (array of size numTransitions), null if stored in single precision */
 	protected double nonZeros[];
+	/** Probabilities for each transition in split single-precision form (high and low parts), see {@link MixedPrecisionModel} */
+	protected float nonZerosHigh[];
+	protected float nonZerosLow[];
+	/** In single-precision form, use only the high parts of the probabilities? */
+	protected boolean useSinglePrecision = false;
+	/** Use the unrolled matrix-vector kernels (see {@link SparseKernels})? */
+	protected boolean unrolledKernels = false;
 	/** Column (destination) indices for each transition (array of size numTransitions) */
 	protected int cols[];
 	/** Indices into nonZeros/cols giving the start of the transitions for each choice (distribution);
@@ -78,6 +85,60 @@ public class MDPSparse extends MDPExplicit
 
 	// Constructors
 
+	/**
+	 * Constructor: build directly from the arrays of a sparse matrix (which are not copied),
+	 * e.g. as produced by {@link SparseModelBuilder}.
+	 * Initial states, deadlocks, etc. should be added afterwards.
+	 *
+	 * @param numStates Number of states
+	 * @param rowStarts Start of the choices for each state (size numStates+1)
+	 * @param choiceStarts Start of the transitions for each choice (size numDistrs+1)
+	 * @param cols Target state of each transition
+	 * @param nonZeros Probability of each transition
+	 * @param actions Action label of each choice (or null if there are none)
+	 */
+	public MDPSparse(int numStates, int rowStarts[], int choiceStarts[], int cols[], double nonZeros[], Object actions[])
+	{
+		initialise(numStates);
+		this.rowStarts = rowStarts;
+		this.choiceStarts = choiceStarts;
+		this.cols = cols;
+		this.nonZeros = nonZeros;
+		this.actions = actions;
+		numDistrs = rowStarts[numStates];
+		numTransitions = choiceStarts[numDistrs];
+		maxNumDistrs = 0;
+		for (int s = 0; s < numStates; s++) {
+			maxNumDistrs = Math.max(maxNumDistrs, rowStarts[s + 1] - rowStarts[s]);
+		}
+	}
+
+	/**
+	 * Copy constructor, sharing the transition structure (states, choices, actions, columns) of {@code mdp}
+	 * but with new transition probabilities {@code nonZeros} (in the same order as its columns).
+	 * Labels are not copied.
+	 */
+	public MDPSparse(final MDPSparse mdp, double nonZeros[])
+	{
+		initialise(mdp.getNumStates());
+		for (Integer state : mdp.getDeadlockStates()) {
+			deadlocks.add(state);
+		}
+		for (Integer state : mdp.getInitialStates()) {
+			initialStates.add(state);
+		}
+		varList = mdp.getVarList();
+		statesList = mdp.getStatesList();
+		rowStarts = mdp.rowStarts;
+		choiceStarts = mdp.choiceStarts;
+		cols = mdp.cols;
+		actions = mdp.actions;
+		this.nonZeros = nonZeros;
+		numDistrs = mdp.numDistrs;
+		numTransitions = mdp.numTransitions;
+		maxNumDistrs = mdp.maxNumDistrs;
+	}
+
 	/**
 	 * Constructor: Build new MDPSparse from arbitrary MDP type.
 	 *
@@ -384,6 +445,8 @@ public class MDPSparse extends MDPExplicit
 		super.initialise(numStates);
 		numDistrs = numTransitions = maxNumDistrs = 0;
 		actions = null;
+		nonZerosHigh = nonZerosLow = null;
+		useSinglePrecision = false;
 	}
 
 	@Override
@@ -601,7 +664,7 @@ public class MDPSparse extends MDPExplicit
 				assert (col < end);
 				final int i = col;
 				col++;
-				return new AbstractMap.SimpleImmutableEntry<>(cols[i], nonZeros[i]);
+				return new AbstractMap.SimpleImmutableEntry<>(cols[i], getNonZero(i));
 			}
 		};
 	}
@@ -795,9 +858,7 @@ public class MDPSparse extends MDPExplicit
 			d = 0.0;
 			l2 = choiceStarts[j];
 			h2 = choiceStarts[j + 1];
-			for (k = l2; k < h2; k++) {
-				d += nonZeros[k] * vect[cols[k]];
-			}
+			d += dotChoice(l2, h2, vect);
 			// Check whether we have exceeded min/max so far
 			if (first || (min && d < minmax) || (!min && d > minmax)) {
 				minmax = d;
@@ -837,9 +898,7 @@ public class MDPSparse extends MDPExplicit
 			d = 0.0;
 			l2 = choiceStarts[j];
 			h2 = choiceStarts[j + 1];
-			for (k = l2; k < h2; k++) {
-				d += nonZeros[k] * vect[cols[k]];
-			}
+			d += dotChoice(l2, h2, vect);
 			// Store strategy info if value matches
 			if (PrismUtils.doublesAreClose(val, d, 1e-12, false)) {
 				res.add(j - l1);
@@ -860,9 +919,7 @@ public class MDPSparse extends MDPExplicit
 		d = 0.0;
 		l2 = choiceStarts[j];
 		h2 = choiceStarts[j + 1];
-		for (k = l2; k < h2; k++) {
-			d += nonZeros[k] * vect[cols[k]];
-		}
+		d += dotChoice(l2, h2, vect);
 
 		return d;
 	}
@@ -886,9 +943,9 @@ public class MDPSparse extends MDPExplicit
 			h2 = choiceStarts[j + 1];
 			for (k = l2; k < h2; k++) {
 				if (cols[k] != s) {
-					d += nonZeros[k] * vect[cols[k]];
+					d += getNonZero(k) * vect[cols[k]];
 				} else {
-					diag -= nonZeros[k];
+					diag -= getNonZero(k);
 				}
 			}
 			if (diag > 0)
@@ -915,6 +972,60 @@ public class MDPSparse extends MDPExplicit
 		return minmax;
 	}
 
+	/**
+	 * Do a single row of Jacobi-style matrix-vector multiplication followed by min/max,
+	 * as for {@link #mvMultJacMinMaxSingle(int, double[], boolean, int[])},
+	 * but reading the values of states with index in [lo, hi] from {@code cur} and all others from {@code old}
+	 * (for block Gauss-Seidel, see {@link ParallelMvMult#iterateBlockGaussSeidel}).
+	 */
+	public double mvMultJacMinMaxSingleBlock(int s, double cur[], double old[], int lo, int hi, boolean min, int strat[])
+	{
+		int j, k, l1, h1, l2, h2, stratCh = -1;
+		double diag, d, minmax;
+		boolean first;
+
+		minmax = 0;
+		first = true;
+		l1 = rowStarts[s];
+		h1 = rowStarts[s + 1];
+		for (j = l1; j < h1; j++) {
+			diag = 1.0;
+			// Compute sum for this distribution
+			d = 0.0;
+			l2 = choiceStarts[j];
+			h2 = choiceStarts[j + 1];
+			for (k = l2; k < h2; k++) {
+				int t = cols[k];
+				if (t != s) {
+					d += getNonZero(k) * (t >= lo && t <= hi ? cur[t] : old[t]);
+				} else {
+					diag -= getNonZero(k);
+				}
+			}
+			if (diag > 0)
+				d /= diag;
+			// Check whether we have exceeded min/max so far
+			if (first || (min && d < minmax) || (!min && d > minmax)) {
+				minmax = d;
+				// If strategy generation is enabled, remember optimal choice
+				if (strat != null)
+					stratCh = j - l1;
+			}
+			first = false;
+		}
+		// If strategy generation is enabled, store optimal choice
+		if (strat != null & !first) {
+			// For max, only remember strictly better choices
+			if (min) {
+				strat[s] = stratCh;
+			} else if (strat[s] == -1 || minmax > cur[s]) {
+				strat[s] = stratCh;
+			}
+		}
+
+		return minmax;
+	}
+
 	@Override
 	public double mvMultJacSingle(int s, int i, double vect[])
 	{
@@ -929,9 +1040,9 @@ public class MDPSparse extends MDPExplicit
 		h2 = choiceStarts[j + 1];
 		for (k = l2; k < h2; k++) {
 			if (cols[k] != s) {
-				d += nonZeros[k] * vect[cols[k]];
+				d += getNonZero(k) * vect[cols[k]];
 			} else {
-				diag -= nonZeros[k];
+				diag -= getNonZero(k);
 			}
 		}
 		if (diag > 0)
@@ -956,9 +1067,7 @@ public class MDPSparse extends MDPExplicit
 			d = mdpRewards.getTransitionReward(s, j - l1);
 			l2 = choiceStarts[j];
 			h2 = choiceStarts[j + 1];
-			for (k = l2; k < h2; k++) {
-				d += nonZeros[k] * vect[cols[k]];
-			}
+			d += dotChoice(l2, h2, vect);
 			// Check whether we have exceeded min/max so far
 			if (first || (min && d < minmax) || (!min && d > minmax)) {
 				minmax = d;
@@ -996,9 +1105,7 @@ public class MDPSparse extends MDPExplicit
 		d = 0;
 		l2 = choiceStarts[j];
 		h2 = choiceStarts[j + 1];
-		for (k = l2; k < h2; k++) {
-			d += nonZeros[k] * vect[cols[k]];
-		}
+		d += dotChoice(l2, h2, vect);
 		d += mcRewards.getStateReward(s);
 		return d;
 	}
@@ -1026,9 +1133,9 @@ public class MDPSparse extends MDPExplicit
 			for (k = l2; k < h2; k++) {
 				if (cols[k] != s) {
 					onlySelfloops = false;
-					d += nonZeros[k] * vect[cols[k]];
+					d += getNonZero(k) * vect[cols[k]];
 				} else {
-					diag -= nonZeros[k];
+					diag -= getNonZero(k);
 				}
 			}
 			// Catch special case of probability 1 self-loop (Jacobi does it wrong)
@@ -1067,6 +1174,76 @@ public class MDPSparse extends MDPExplicit
 		return minmax;
 	}
 
+	/**
+	 * Do a single row of Jacobi-style matrix-vector multiplication and sum of rewards followed by min/max,
+	 * as for {@link #mvMultRewJacMinMaxSingle(int, double[], MDPRewards, boolean, int[])},
+	 * but reading the values of states with index in [lo, hi] from {@code cur} and all others from {@code old}
+	 * (for block Gauss-Seidel, see {@link ParallelMvMult#iterateBlockGaussSeidel}).
+	 */
+	public double mvMultRewJacMinMaxSingleBlock(int s, double cur[], double old[], int lo, int hi, MDPRewards mdpRewards, boolean min, int strat[])
+	{
+		int j, k, l1, h1, l2, h2, stratCh = -1;
+		double diag, d, minmax;
+		boolean first;
+
+		minmax = 0;
+		first = true;
+		l1 = rowStarts[s];
+		h1 = rowStarts[s + 1];
+		for (j = l1; j < h1; j++) {
+			diag = 1.0;
+			boolean onlySelfloops = true;
+			// Compute sum for this distribution
+			// (note: have to add state rewards in the loop for Jacobi)
+			d = mdpRewards.getStateReward(s);
+			d += mdpRewards.getTransitionReward(s, j - l1);
+			l2 = choiceStarts[j];
+			h2 = choiceStarts[j + 1];
+			for (k = l2; k < h2; k++) {
+				int t = cols[k];
+				if (t != s) {
+					onlySelfloops = false;
+					d += getNonZero(k) * (t >= lo && t <= hi ? cur[t] : old[t]);
+				} else {
+					diag -= getNonZero(k);
+				}
+			}
+			// Catch special case of probability 1 self-loop (Jacobi does it wrong)
+			if (onlySelfloops) {
+				if (d != 0) {
+					// always choosing the selfloop-action will produce infinite reward
+					d = (d>0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY);
+				} else {
+					// no reward & only self-loops: d remains 0
+					d = 0;
+				}
+			} else if (diag > 0) {
+				// not only self-loops, do Jacobi division
+				d /= diag;
+			}
+
+			// Check whether we have exceeded min/max so far
+			if (first || (min && d < minmax) || (!min && d > minmax)) {
+				minmax = d;
+				// If strategy generation is enabled, remember optimal choice
+				if (strat != null)
+					stratCh = j - l1;
+			}
+			first = false;
+		}
+		// If strategy generation is enabled, store optimal choice
+		if (strat != null & !first) {
+			// For max, only remember strictly better choices
+			if (min) {
+				strat[s] = stratCh;
+			} else if (strat[s] == -1 || minmax > cur[s]) {
+				strat[s] = stratCh;
+			}
+		}
+
+		return minmax;
+	}
+
 	@Override
 	public List<Integer> mvMultRewMinMaxSingleChoices(int s, double vect[], MDPRewards mdpRewards, boolean min, double val)
 	{
@@ -1084,9 +1261,7 @@ public class MDPSparse extends MDPExplicit
 			d = mdpRewards.getTransitionReward(s, j - l1);
 			l2 = choiceStarts[j];
 			h2 = choiceStarts[j + 1];
-			for (k = l2; k < h2; k++) {
-				d += nonZeros[k] * vect[cols[k]];
-			}
+			d += dotChoice(l2, h2, vect);
 			d += mdpRewards.getStateReward(s);
 			// Store strategy info if value matches
 			if (PrismUtils.doublesAreClose(val, d, 1e-12, false)) {
@@ -1107,11 +1282,77 @@ public class MDPSparse extends MDPExplicit
 			l2 = choiceStarts[j];
 			h2 = choiceStarts[j + 1];
 			for (k = l2; k < h2; k++) {
-				dest[cols[k]] += nonZeros[k] * source[s];
+				dest[cols[k]] += getNonZero(k) * source[s];
 			}
 		}
 	}
 
+	// Accessors (for MixedPrecisionModel)
+
+	@Override
+	public void convertToSinglePrecision()
+	{
+		if (nonZeros == null)
+			return;
+		nonZerosHigh = new float[nonZeros.length];
+		nonZerosLow = new float[nonZeros.length];
+		MixedPrecisionModel.split(nonZeros, nonZerosHigh, nonZerosLow);
+		nonZeros = null;
+	}
+
+	@Override
+	public boolean isSinglePrecision()
+	{
+		return nonZeros == null && nonZerosHigh != null;
+	}
+
+	@Override
+	public void setUseSinglePrecision(boolean useSinglePrecision)
+	{
+		this.useSinglePrecision = useSinglePrecision && isSinglePrecision();
+	}
+
+	@Override
+	public boolean getUseSinglePrecision()
+	{
+		return useSinglePrecision;
+	}
+
+	/**
+	 * Set whether to use the unrolled matrix-vector kernels (see {@link SparseKernels}),
+	 * which sum in a different order, so results can differ in the last bits.
+	 */
+	public void setUnrolledKernels(boolean unrolledKernels)
+	{
+		this.unrolledKernels = unrolledKernels;
+	}
+
+	/**
+	 * Return the sum of {@code P(k) * vect[cols[k]]} over the transitions with index {@code from <= k < to}
+	 * (using {@link SparseKernels}).
+	 */
+	protected double dotChoice(int from, int to, double vect[])
+	{
+		if (nonZeros != null)
+			return SparseKernels.dot(unrolledKernels, cols, nonZeros, from, to, vect);
+		if (useSinglePrecision)
+			return SparseKernels.dot(unrolledKernels, cols, nonZerosHigh, from, to, vect);
+		return SparseKernels.dot(unrolledKernels, cols, nonZerosHigh, from, to, vect) + SparseKernels.dot(unrolledKernels, cols, nonZerosLow, from, to, vect);
+	}
+
+	/**
+	 * Get the probability of the transition with index {@code k},
+	 * taking into account the single-precision form, if used.
+	 */
+	protected double getNonZero(int k)
+	{
+		if (nonZeros != null)
+			return nonZeros[k];
+		if (useSinglePrecision)
+			return nonZerosHigh[k];
+		return (double) nonZerosHigh[k] + nonZerosLow[k];
+	}
+
 	// Standard methods
 
 	@Override
@@ -1139,7 +1380,7 @@ public class MDPSparse extends MDPExplicit
 				for (k = l2; k < h2; k++) {
 					if (k > l2)
 						s += ", ";
-					s += cols[k] + ":" + nonZeros[k];
+					s += cols[k] + ":" + getNonZero(k);
 				}
 				s += "}";
 			}
@@ -1160,8 +1401,12 @@ public class MDPSparse extends MDPExplicit
 			return false;
 		if (!initialStates.equals(mdp.initialStates))
 			return false;
-		if (!Utils.doubleArraysAreEqual(nonZeros, mdp.nonZeros))
+		if (numTransitions != mdp.numTransitions)
 			return false;
+		for (int k = 0; k < numTransitions; k++) {
+			if (getNonZero(k) != mdp.getNonZero(k))
+				return false;
+		}
 		if (!Utils.intArraysAreEqual(cols, mdp.cols))
 			return false;
 		if (!Utils.intArraysAreEqual(choiceStarts, mdp.choiceStarts))
@@ -0,0 +1,77 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package explicit;
+
+/**
+ * Interface for (sparse) models whose transition probabilities can be stored in single precision.
+ * <br>
+ * Each probability p is split into a high part (p rounded towards zero to a float)
+ * and a low part (the remainder, as a float), which together are precise to about 48 bits.
+ * Numerical methods can either use only the high parts (single-precision phase, reading half as much
+ * probability data, and never overestimating a probability) or the full probabilities
+ * (used by default, and for a final refinement of the result).
+ */
+public interface MixedPrecisionModel
+{
+	/**
+	 * Convert the storage of the transition probabilities to the split single-precision form
+	 * (does nothing if this has already been done).
+	 */
+	public void convertToSinglePrecision();
+
+	/**
+	 * Are the transition probabilities stored in split single-precision form?
+	 */
+	public boolean isSinglePrecision();
+
+	/**
+	 * If the probabilities are stored in split single-precision form, set whether
+	 * only their high parts should be used (from now on), or the full probabilities.
+	 */
+	public void setUseSinglePrecision(boolean useSinglePrecision);
+
+	/**
+	 * Are only the high parts of the probabilities currently used?
+	 */
+	public boolean getUseSinglePrecision();
+
+	/**
+	 * Split the probabilities in {@code probs} into high parts (rounded towards zero),
+	 * stored in {@code high}, and low parts, stored in {@code low}.
+	 */
+	public static void split(double probs[], float high[], float low[])
+	{
+		for (int i = 0; i < probs.length; i++) {
+			float h = (float) probs[i];
+			if (h > probs[i])
+				h = Math.nextDown(h);
+			high[i] = h;
+			low[i] = (float) (probs[i] - h);
+		}
+	}
+}
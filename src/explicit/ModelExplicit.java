@@ -75,7 +75,7 @@ public abstract class ModelExplicit implements Model
 	/**
 	 * (Optionally) the stored predecessor relation. Becomes inaccurate after the model is changed!
 	 */
-	protected PredecessorRelation predecessorRelation = null;
+	protected volatile PredecessorRelation predecessorRelation = null;
 
 	// Mutators
 
@@ -464,16 +464,21 @@ public abstract class ModelExplicit implements Model
 
 	@Override
 	public PredecessorRelation getPredecessorRelation(prism.PrismComponent parent, boolean storeIfNew) {
-		if (predecessorRelation != null) {
-			return predecessorRelation;
+		PredecessorRelation pre = predecessorRelation;
+		if (pre != null) {
+			return pre;
 		}
 
-		PredecessorRelation pre = PredecessorRelation.forModel(parent, this);
-
-		if (storeIfNew) {
-			predecessorRelation = pre;
+		if (!storeIfNew) {
+			return PredecessorRelation.forModel(parent, this);
+		}
+		// compute and store at most once, since the model may be shared between threads
+		synchronized (this) {
+			if (predecessorRelation == null) {
+				predecessorRelation = PredecessorRelation.forModel(parent, this);
+			}
+			return predecessorRelation;
 		}
-		return pre;
 	}
 
 	@Override
@@ -0,0 +1,150 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package explicit;
+
+import java.util.List;
+import java.util.Objects;
+
+import parser.State;
+import prism.ModelGenerator;
+import prism.PrismException;
+
+/**
+ * The transition structure of a sparse explicit-state model ({@link DTMCSparse} or {@link MDPSparse}),
+ * as recorded by {@link SparseModelBuilder} during construction, from which the model can be
+ * re-instantiated for a {@link ModelGenerator} that differs only in its transition probabilities
+ * (e.g. for a different value of a model constant that only appears in probabilities),
+ * without exploring the state space or building the transition matrix again.
+ * <br>
+ * For each state, the transitions generated for it (in the order the {@link ModelGenerator} produces them)
+ * are mapped to the position in the model's transition arrays they were stored (or summed) into.
+ */
+public class ModelStructure
+{
+	/** The model that the structure was recorded for */
+	private ModelExplicit model;
+	/** Generated transitions of state s are rawStarts[s]...rawStarts[s+1]-1 */
+	private int rawStarts[];
+	/** Position in the transition arrays of each generated transition */
+	private int rawSlots[];
+	/** Positions of self-loops added to fix deadlocks (probability 1) */
+	private int fixedSlots[];
+
+	/**
+	 * Constructor (see {@link SparseModelBuilder#getModelStructure()}).
+	 */
+	public ModelStructure(ModelExplicit model, int rawStarts[], int rawSlots[], int fixedSlots[])
+	{
+		this.model = model;
+		this.rawStarts = rawStarts;
+		this.rawSlots = rawSlots;
+		this.fixedSlots = fixedSlots;
+	}
+
+	/**
+	 * Get the model that the structure was recorded for.
+	 */
+	public ModelExplicit getModel()
+	{
+		return model;
+	}
+
+	/**
+	 * Create a new model with the same states and transition structure as the recorded one,
+	 * but with the transition probabilities given by {@code modelGen}.
+	 * Returns null if the transitions generated by {@code modelGen} do not have the recorded structure
+	 * (in which case the model should be built from scratch).
+	 * The new model shares the states list and transition structure of the recorded one;
+	 * constant values and labels are not set.
+	 */
+	public ModelExplicit instantiate(ModelGenerator modelGen) throws PrismException
+	{
+		if (modelGen.getModelType() != model.getModelType())
+			return null;
+		List<State> statesList = model.getStatesList();
+		int numStates = model.getNumStates();
+		double nonZeros[] = new double[model.getNumTransitions()];
+		for (int k : fixedSlots)
+			nonZeros[k] = 1.0;
+		for (int s = 0; s < numStates; s++) {
+			modelGen.exploreState(statesList.get(s));
+			int r = rawStarts[s];
+			int end = rawStarts[s + 1];
+			int nc = modelGen.getNumChoices();
+			for (int i = 0; i < nc; i++) {
+				int nt = modelGen.getNumTransitions(i);
+				if (r + nt > end)
+					return null;
+				for (int j = 0; j < nt; j++) {
+					double prob = modelGen.getTransitionProbability(i, j);
+					if (prob == 0.0)
+						return null;
+					nonZeros[rawSlots[r++]] += prob;
+				}
+			}
+			if (r != end)
+				return null;
+		}
+		if (model instanceof MDPSparse) {
+			MDPSparse mdp = (MDPSparse) model;
+			// A full build would drop choices that have become identical
+			if (hasIdenticalChoices(mdp, nonZeros))
+				return null;
+			return new MDPSparse(mdp, nonZeros);
+		} else {
+			return new DTMCSparse((DTMCSparse) model, nonZeros);
+		}
+	}
+
+	/**
+	 * Check whether any state of {@code mdp} has two choices with the same action
+	 * and distribution, when the probabilities are {@code nonZeros}.
+	 */
+	private static boolean hasIdenticalChoices(MDPSparse mdp, double nonZeros[])
+	{
+		int numStates = mdp.getNumStates();
+		for (int s = 0; s < numStates; s++) {
+			for (int c1 = mdp.rowStarts[s] + 1; c1 < mdp.rowStarts[s + 1]; c1++) {
+				for (int c2 = mdp.rowStarts[s]; c2 < c1; c2++) {
+					if (mdp.actions != null && !Objects.equals(mdp.actions[c1], mdp.actions[c2]))
+						continue;
+					int start1 = mdp.choiceStarts[c1], n = mdp.choiceStarts[c1 + 1] - start1;
+					int start2 = mdp.choiceStarts[c2];
+					if (mdp.choiceStarts[c2 + 1] - start2 != n)
+						continue;
+					boolean same = true;
+					for (int k = 0; k < n && same; k++)
+						same = mdp.cols[start1 + k] == mdp.cols[start2 + k] && nonZeros[start1 + k] == nonZeros[start2 + k];
+					if (same)
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -28,7 +28,7 @@
 package explicit;
 
 import java.util.BitSet;
-import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import java.util.Vector;
 
 import automata.LTL2NBA;
@@ -339,7 +339,7 @@ public class NonProbModelChecker extends StateModelChecker
 			if (AandB.get(s)) continue;
 
 			int i=0;
-			for (Iterator<Integer> it = model.getSuccessorsIterator(s); it.hasNext(); it.next()) {
+			for (SuccessorsIterator it = model.getSuccessors(s).distinct(); it.hasNext(); it.nextInt()) {
 				i++;
 			}
 			count[s]=i;
@@ -356,7 +356,8 @@ public class NonProbModelChecker extends StateModelChecker
 			// if there are no remaining successors into T, i.e, if count[s]==0
 
 			// For all predecessors s of t....
-			for (int s : pre.getPre(t)) {
+			for (PrimitiveIterator.OfInt it = pre.getPredecessorsIterator(t); it.hasNext();) {
+				int s = it.nextInt();
 				// ... ignore if we have already proven that it does not satisfy E[ a R b ]
 				if (!T.get(s)) continue;
 
@@ -414,7 +415,7 @@ public class NonProbModelChecker extends StateModelChecker
 			if (AandB.get(s)) continue;
 
 			int i=0;
-			for (Iterator<Integer> it = model.getSuccessorsIterator(s); it.hasNext(); it.next()) {
+			for (SuccessorsIterator it = model.getSuccessors(s).distinct(); it.hasNext(); it.nextInt()) {
 				i++;
 			}
 			count[s]=i;
@@ -432,7 +433,8 @@ public class NonProbModelChecker extends StateModelChecker
 
 			// For all predecessors s of t....
 
-			for (int s : pre.getPre(t)) {
+			for (PrimitiveIterator.OfInt it = pre.getPredecessorsIterator(t); it.hasNext();) {
+				int s = it.nextInt();
 				// ... ignore if we have already proven that it does not satisfy E[ a R b ]
 				if (!T.get(s)) continue;
 
@@ -0,0 +1,506 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+package explicit;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import parser.State;
+import parser.StatePacker;
+import prism.PrismLangException;
+
+/**
+ * Storage for a set of states, indexed in the order they are added, held in bit-packed form
+ * (see {@link StatePacker}) in memory allocated outside of the Java heap.
+ * <br>
+ * The packed states are stored consecutively, in chunks, and are located
+ * via an open-addressing (linear probing) hash table of state indices, so there is no per-state object overhead.
+ * A sorting permutation (matching the ordering of {@link State#compareTo(State)}) can be computed
+ * at the end with {@link #buildSortingPermutation()}, via a radix sort of the packed words.
+ * The first chunk starts small and grows geometrically, so small models only use a little memory;
+ * the off-heap memory is released by {@link #clear()} (where the JVM allows this; otherwise, on garbage collection).
+ * <br>
+ * Adding (or looking up) a state with a value outside the range of its variable
+ * results in an {@link IllegalArgumentException}. This class is not thread-safe, except that
+ * {@link #getIndexOfWords(long[])}, {@link #getWords(int, long[])} and {@link #getState(int, State)}
+ * may be called concurrently from several threads, provided that no states are being added at the same time.
+ */
+public class OffHeapStateStorage implements StateStorage<State>
+{
+	// Maximum number of states per chunk of state storage (as a power of 2)
+	private static final int MAX_CHUNK_BITS = 20;
+	// Maximum size of a chunk of state storage in bytes
+	private static final long MAX_CHUNK_BYTES = 1L << 30;
+	// Initial number of states for the first chunk
+	private static final int INITIAL_CAPACITY = 1 << 10;
+	// Maximum load factor of the hash table before it is resized
+	private static final double MAX_LOAD = 0.75;
+	// Largest permissible hash table size (so that each buffer fits in a single allocation)
+	private static final int MAX_TABLE_SIZE = 1 << 28;
+
+	// Packer for states
+	private StatePacker packer;
+	// Number of words per packed state
+	private int numWords;
+	// Number of states per chunk (as a power of 2), chosen such that a chunk fits in MAX_CHUNK_BYTES
+	private int chunkBits;
+	private int chunkSize;
+	// Number of states that fit in the chunks allocated so far
+	// (only the first chunk can be smaller than chunkSize)
+	private int capacity;
+	// Packed states, in order of index (plus the underlying buffers, for freeing)
+	private ArrayList<LongBuffer> chunks;
+	private ArrayList<ByteBuffer> chunkBuffers;
+	// Hash table: slot holds (index + 1) of a state, or 0 if empty; plus the hash of that state
+	private IntBuffer slots;
+	private IntBuffer hashes;
+	private ByteBuffer slotsBuffer;
+	private ByteBuffer hashesBuffer;
+	private int tableMask;
+	// Number of states stored
+	private int size;
+	private int indexOfLastAdd;
+	// Scratch space for packing
+	private long scratch[];
+
+	/**
+	 * Create storage for states that are packed by {@code packer}.
+	 */
+	public OffHeapStateStorage(StatePacker packer)
+	{
+		this.packer = packer;
+		numWords = packer.getNumWords();
+		chunkBits = MAX_CHUNK_BITS;
+		while (chunkBits > 0 && ((long) numWords * 8) << chunkBits > MAX_CHUNK_BYTES)
+			chunkBits--;
+		if (((long) numWords * 8) << chunkBits > MAX_CHUNK_BYTES)
+			throw new IllegalArgumentException("Packed states are too large for off-heap state storage");
+		chunkSize = 1 << chunkBits;
+		scratch = new long[numWords];
+		clear();
+	}
+
+	/**
+	 * Remove all states, releasing the off-heap memory used for them.
+	 */
+	@Override
+	public void clear()
+	{
+		if (chunkBuffers != null) {
+			for (ByteBuffer buffer : chunkBuffers)
+				free(buffer);
+			free(slotsBuffer);
+			free(hashesBuffer);
+		}
+		chunks = new ArrayList<LongBuffer>();
+		chunkBuffers = new ArrayList<ByteBuffer>();
+		capacity = 0;
+		allocateTable(1 << 10);
+		size = 0;
+		indexOfLastAdd = -1;
+	}
+
+	private void allocateTable(int tableSize)
+	{
+		slotsBuffer = ByteBuffer.allocateDirect(tableSize * 4).order(ByteOrder.nativeOrder());
+		hashesBuffer = ByteBuffer.allocateDirect(tableSize * 4).order(ByteOrder.nativeOrder());
+		slots = slotsBuffer.asIntBuffer();
+		hashes = hashesBuffer.asIntBuffer();
+		tableMask = tableSize - 1;
+	}
+
+	/**
+	 * Make sure that there is room for a state with index {@code index} (which is at most the current capacity):
+	 * the first chunk is doubled in size (up to chunkSize), after that, full-size chunks are added.
+	 */
+	private void ensureCapacity(int index)
+	{
+		if (index < capacity)
+			return;
+		if (capacity < chunkSize) {
+			int newCapacity = capacity == 0 ? Math.min(INITIAL_CAPACITY, chunkSize) : Math.min(2 * capacity, chunkSize);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(newCapacity * numWords * 8).order(ByteOrder.nativeOrder());
+			LongBuffer chunk = buffer.asLongBuffer();
+			if (capacity > 0) {
+				LongBuffer old = chunks.get(0);
+				old.rewind();
+				chunk.put(old);
+				free(chunkBuffers.get(0));
+				chunks.set(0, chunk);
+				chunkBuffers.set(0, buffer);
+			} else {
+				chunks.add(chunk);
+				chunkBuffers.add(buffer);
+			}
+			capacity = newCapacity;
+		} else {
+			if (capacity > Integer.MAX_VALUE - chunkSize)
+				throw new OutOfMemoryError("State storage is full");
+			ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize * numWords * 8).order(ByteOrder.nativeOrder());
+			chunks.add(buffer.asLongBuffer());
+			chunkBuffers.add(buffer);
+			capacity += chunkSize;
+		}
+	}
+
+	/**
+	 * Get the packer used for states in this storage.
+	 */
+	public StatePacker getPacker()
+	{
+		return packer;
+	}
+
+	@Override
+	public boolean add(State state)
+	{
+		pack(state);
+		return addWords(scratch);
+	}
+
+	/**
+	 * Add a state, given in packed form, if it is not already present
+	 * (see {@link #getIndexOfLastAdd()} for its index). Returns true if it was added.
+	 */
+	public boolean addWords(long words[])
+	{
+		int h = hash(words);
+		int slot = find(words, h);
+		int stored = slots.get(slot);
+		if (stored != 0) {
+			indexOfLastAdd = stored - 1;
+			return false;
+		}
+		// Store new state
+		int index = size;
+		ensureCapacity(index);
+		LongBuffer chunk = chunks.get(index >>> chunkBits);
+		int offset = (index & (chunkSize - 1)) * numWords;
+		for (int w = 0; w < numWords; w++)
+			chunk.put(offset + w, words[w]);
+		slots.put(slot, index + 1);
+		hashes.put(slot, h);
+		size++;
+		indexOfLastAdd = index;
+		if (size > MAX_LOAD * (tableMask + 1))
+			resize();
+		return true;
+	}
+
+	@Override
+	public boolean contains(State state)
+	{
+		return get(state) != -1;
+	}
+
+	/**
+	 * Get the index of a state, or -1 if it is not stored.
+	 */
+	@Override
+	public int get(State state)
+	{
+		pack(state);
+		return slots.get(find(scratch, hash(scratch))) - 1;
+	}
+
+	/**
+	 * Get the index of a state, given in packed form, or -1 if it is not stored.
+	 */
+	public int getIndexOfWords(long words[])
+	{
+		return slots.get(find(words, hash(words))) - 1;
+	}
+
+	@Override
+	public int getIndexOfLastAdd()
+	{
+		return indexOfLastAdd;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the packed words of the state with index {@code index}, storing them in {@code words}.
+	 */
+	public long[] getWords(int index, long words[])
+	{
+		LongBuffer chunk = chunks.get(index >>> chunkBits);
+		int offset = (index & (chunkSize - 1)) * numWords;
+		for (int w = 0; w < numWords; w++)
+			words[w] = chunk.get(offset + w);
+		return words;
+	}
+
+	/**
+	 * Get the state with index {@code index}, storing it in {@code state}.
+	 */
+	public State getState(int index, State state)
+	{
+		return packer.unpackWords(getWords(index, new long[numWords]), state);
+	}
+
+	/**
+	 * Get the state with index {@code index}, as a new State object.
+	 */
+	public State getState(int index)
+	{
+		return getState(index, new State(packer.getNumVars()));
+	}
+
+	/**
+	 * Get access to the set of (state, index) pairs.
+	 * Note that these are constructed on demand (by unpacking all states), so this is expensive.
+	 */
+	@Override
+	public Set<Map.Entry<State, Integer>> getEntrySet()
+	{
+		Set<Map.Entry<State, Integer>> set = new LinkedHashSet<Map.Entry<State, Integer>>();
+		for (int i = 0; i < size; i++)
+			set.add(new AbstractMap.SimpleImmutableEntry<State, Integer>(getState(i), i));
+		return set;
+	}
+
+	@Override
+	public ArrayList<State> toArrayList()
+	{
+		ArrayList<State> list = new ArrayList<State>(size);
+		toArrayList(list);
+		return list;
+	}
+
+	@Override
+	public void toArrayList(ArrayList<State> list)
+	{
+		for (int i = 0; i < size; i++)
+			list.add(getState(i));
+	}
+
+	@Override
+	public ArrayList<State> toPermutedArrayList(int permut[])
+	{
+		ArrayList<State> list = new ArrayList<State>(size);
+		toPermutedArrayList(permut, list);
+		return list;
+	}
+
+	@Override
+	public void toPermutedArrayList(int permut[], ArrayList<State> list)
+	{
+		int i;
+		for (i = 0; i < size; i++)
+			list.add(null);
+		for (i = 0; i < size; i++)
+			list.set(permut[i], getState(i));
+	}
+
+	/**
+	 * Build sort permutation, i.e. an array mapping current indices to indices
+	 * under the ordering of states given by {@link State#compareTo(State)}.
+	 * This is done by an LSD radix sort (16 bits at a time) of the packed words.
+	 */
+	@Override
+	public int[] buildSortingPermutation()
+	{
+		int order[] = new int[size];
+		int tmp[] = new int[size];
+		int count[] = new int[(1 << 16) + 1];
+		int i;
+		if (size == 0)
+			return order;
+		for (i = 0; i < size; i++)
+			order[i] = i;
+		// Least significant digit first: last word, lowest bits
+		for (int w = numWords - 1; w >= 0; w--) {
+			for (int shift = 0; shift < 64; shift += 16) {
+				Arrays.fill(count, 0);
+				for (i = 0; i < size; i++)
+					count[digit(getWord(order[i], w), shift) + 1]++;
+				// Skip digits that are the same for all states
+				if (count[digit(getWord(order[0], w), shift) + 1] == size)
+					continue;
+				for (i = 1; i < count.length; i++)
+					count[i] += count[i - 1];
+				for (i = 0; i < size; i++) {
+					int s = order[i];
+					tmp[count[digit(getWord(s, w), shift)]++] = s;
+				}
+				int swap[] = order;
+				order = tmp;
+				tmp = swap;
+			}
+		}
+		// Invert: order[k] is the index of the kth smallest state
+		int perm[] = tmp;
+		for (i = 0; i < size; i++)
+			perm[order[i]] = i;
+		return perm;
+	}
+
+	@Override
+	public String toString()
+	{
+		return toArrayList().toString();
+	}
+
+	// Private methods
+
+	private long getWord(int index, int w)
+	{
+		return chunks.get(index >>> chunkBits).get((index & (chunkSize - 1)) * numWords + w);
+	}
+
+	private static int digit(long word, int shift)
+	{
+		return (int) ((word >>> shift) & 0xFFFF);
+	}
+
+	/**
+	 * Pack {@code state} into the scratch array.
+	 */
+	private void pack(State state)
+	{
+		Arrays.fill(scratch, 0L);
+		try {
+			packer.packWords(state, scratch);
+		} catch (PrismLangException e) {
+			// Only out-of-range values can cause this
+			throw new IllegalArgumentException(e.getMessage());
+		}
+	}
+
+	private static int hash(long words[])
+	{
+		long h = 0x9E3779B97F4A7C15L;
+		for (long w : words) {
+			h = (h ^ w) * 0xFF51AFD7ED558CCDL;
+			h ^= h >>> 32;
+		}
+		return (int) h;
+	}
+
+	/**
+	 * Find the hash table slot for a state, i.e. either the slot that contains it
+	 * or the empty slot where it should go.
+	 */
+	private int find(long words[], int h)
+	{
+		int slot = h & tableMask;
+		while (true) {
+			int stored = slots.get(slot);
+			if (stored == 0)
+				return slot;
+			if (hashes.get(slot) == h && wordsEqual(stored - 1, words))
+				return slot;
+			slot = (slot + 1) & tableMask;
+		}
+	}
+
+	private boolean wordsEqual(int index, long words[])
+	{
+		LongBuffer chunk = chunks.get(index >>> chunkBits);
+		int offset = (index & (chunkSize - 1)) * numWords;
+		for (int w = 0; w < numWords; w++) {
+			if (chunk.get(offset + w) != words[w])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Double the size of the hash table, re-inserting (using the stored hashes).
+	 */
+	private void resize()
+	{
+		int oldSize = tableMask + 1;
+		if (oldSize >= MAX_TABLE_SIZE)
+			throw new OutOfMemoryError("State storage hash table is full");
+		IntBuffer oldSlots = slots, oldHashes = hashes;
+		ByteBuffer oldSlotsBuffer = slotsBuffer, oldHashesBuffer = hashesBuffer;
+		allocateTable(oldSize * 2);
+		for (int i = 0; i < oldSize; i++) {
+			int stored = oldSlots.get(i);
+			if (stored != 0) {
+				int h = oldHashes.get(i);
+				int slot = h & tableMask;
+				while (slots.get(slot) != 0)
+					slot = (slot + 1) & tableMask;
+				slots.put(slot, stored);
+				hashes.put(slot, h);
+			}
+		}
+		free(oldSlotsBuffer);
+		free(oldHashesBuffer);
+	}
+
+	/**
+	 * Release the memory of a direct buffer now, rather than when it is garbage collected.
+	 * The buffer must not be used afterwards. This relies on JVM internals
+	 * ({@code Unsafe.invokeCleaner} from Java 9, the buffer's cleaner before that),
+	 * accessed via reflection; if neither is available, the memory is left to the garbage collector.
+	 */
+	private static void free(ByteBuffer buffer)
+	{
+		if (buffer == null || !buffer.isDirect())
+			return;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			java.lang.reflect.Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// not Java 9+, try below
+		}
+		try {
+			java.lang.reflect.Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null)
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// leave it to the garbage collector
+		}
+	}
+}
@@ -0,0 +1,273 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import common.IntSet;
+import prism.PrismException;
+import prism.PrismUtils;
+
+/**
+ * Range-partitioned parallel execution of the per-state kernels of value iteration
+ * (e.g. {@link DTMC#mvMultSingle(int, double[])} or {@link MDP#mvMultMinMaxSingle(int, double[], boolean, int[])})
+ * over a set of states, with the convergence check done as a parallel reduction in the same pass.
+ * <br>
+ * This is only used for the sparse models ({@link DTMCSparse}, {@link MDPSparse}),
+ * whose per-state kernels only read the model and write to the given state's entries.
+ * <br>
+ * For Gauss-Seidel, see {@link #iterateBlockGaussSeidel}, which works on blocks of states.
+ */
+class ParallelMvMult
+{
+	/** Minimum number of states for which a parallel iteration is worthwhile */
+	public static final int MIN_PARALLEL_STATES = 50000;
+	/** Number of ranges per thread (for load balancing) */
+	private static final int RANGES_PER_THREAD = 4;
+	/** Number of states per block of a block Gauss-Seidel iteration (fixed, so that results do not depend on the number of threads) */
+	public static final int GS_BLOCK_SIZE = 16384;
+
+	/** Shared pools of worker threads, one per number of threads; these are never shut down,
+	 * since callers with different thread counts may be iterating concurrently (the workers are daemon threads) */
+	private static final Map<Integer, ForkJoinPool> pools = new HashMap<Integer, ForkJoinPool>();
+
+	/**
+	 * Per-state kernel of an iteration: computes the new value for state {@code s} from the vector {@code vect}.
+	 */
+	@FunctionalInterface
+	public interface StateKernel
+	{
+		public double apply(int s, double vect[]);
+	}
+
+	/**
+	 * Per-state kernel of a block Gauss-Seidel iteration: computes the new value for state {@code s},
+	 * reading the values of states with index in [{@code lo}, {@code hi}] (the block of {@code s})
+	 * from {@code cur} and those of all other states from {@code old}.
+	 */
+	@FunctionalInterface
+	public interface BlockKernel
+	{
+		public double apply(int s, double cur[], double old[], int lo, int hi);
+	}
+
+	/**
+	 * Can a parallel iteration be done for {@code model}, over {@code numStates} states, using {@code numThreads} threads?
+	 */
+	public static boolean isApplicable(Model model, int numStates, int numThreads)
+	{
+		return numThreads > 1 && numStates >= MIN_PARALLEL_STATES && (model instanceof DTMCSparse || model instanceof MDPSparse);
+	}
+
+	/**
+	 * Can a block Gauss-Seidel iteration be done for {@code model}, over {@code numStates} states?
+	 * (this does not depend on the number of threads, so that neither do the results)
+	 */
+	public static boolean isBlockApplicable(Model model, int numStates)
+	{
+		return numStates >= MIN_PARALLEL_STATES && (model instanceof DTMCSparse || model instanceof MDPSparse);
+	}
+
+	/**
+	 * Get the states of an IntSet as an array (in iteration order).
+	 */
+	public static int[] toArray(IntSet states)
+	{
+		int result[] = new int[states.cardinality()];
+		PrimitiveIterator.OfInt it = states.iterator();
+		for (int i = 0; i < result.length; i++)
+			result[i] = it.nextInt();
+		return result;
+	}
+
+	/**
+	 * Get the states from an iterator (over {@code numStates} states) as an array.
+	 */
+	public static int[] toArray(PrimitiveIterator.OfInt it, int numStates)
+	{
+		int result[] = new int[numStates];
+		for (int i = 0; i < numStates; i++)
+			result[i] = it.nextInt();
+		return result;
+	}
+
+	/**
+	 * Are the states in the array strictly increasing or strictly decreasing?
+	 * (i.e., can they be split into blocks of contiguous state indices)
+	 */
+	public static boolean isMonotonic(int states[])
+	{
+		boolean up = true, down = true;
+		for (int i = 1; i < states.length; i++) {
+			if (states[i] <= states[i - 1])
+				up = false;
+			if (states[i] >= states[i - 1])
+				down = false;
+		}
+		return up || down;
+	}
+
+	/**
+	 * For each state s in {@code states}, compute {@code result[s] = kernel(s, vect)}, in parallel,
+	 * splitting the states into contiguous ranges.
+	 * If {@code checkConvergence} is true, return whether, for all these states, the old and new values
+	 * are close (as for {@link PrismUtils#doublesAreClose(double, double, double, boolean)}); otherwise, return false.
+	 */
+	public static boolean iterate(final int states[], final double vect[], final double result[], final StateKernel kernel, int numThreads,
+			final boolean checkConvergence, final double epsilon, final boolean absolute) throws PrismException
+	{
+		final int n = states.length;
+		int numRanges = Math.min(n, RANGES_PER_THREAD * numThreads);
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(numRanges);
+		for (int r = 0; r < numRanges; r++) {
+			final int lo = (int) ((long) r * n / numRanges);
+			final int hi = (int) ((long) (r + 1) * n / numRanges);
+			tasks.add(() -> {
+				boolean close = true;
+				for (int i = lo; i < hi; i++) {
+					int s = states[i];
+					double d = kernel.apply(s, vect);
+					result[s] = d;
+					if (checkConvergence && close && !PrismUtils.doublesAreClose(vect[s], d, epsilon, absolute))
+						close = false;
+				}
+				return close;
+			});
+		}
+		boolean done = checkConvergence;
+		for (boolean close : invokeAll(tasks, numThreads)) {
+			if (!close)
+				done = false;
+		}
+		return done;
+	}
+
+	/**
+	 * Perform one block Gauss-Seidel iteration over {@code states} (which must be monotonic, see {@link #isMonotonic(int[])}),
+	 * storing the new values in {@code vect}.
+	 * The states are split into blocks of {@link #GS_BLOCK_SIZE} contiguous indices, which are processed
+	 * using up to {@code numThreads} threads; within a block, the states
+	 * are processed in order, Gauss-Seidel style, using the values already computed for the block,
+	 * while values from other blocks are taken from the start of the iteration (Jacobi style).
+	 * The latter are kept in {@code old}, a vector of the same size as {@code vect}, which is used as scratch space;
+	 * for all states not in {@code states}, its entries have to agree with those of {@code vect}.
+	 * The result depends neither on the number of threads nor on their scheduling.
+	 * @return The maximum (absolute/relative) difference between old/new elements of {@code vect}
+	 */
+	public static double iterateBlockGaussSeidel(final int states[], final double vect[], final double old[], final BlockKernel kernel, int numThreads,
+			final boolean absolute) throws PrismException
+	{
+		final int n = states.length;
+		int numBlocks = (n + GS_BLOCK_SIZE - 1) / GS_BLOCK_SIZE;
+		final int blockStart[] = new int[numBlocks + 1];
+		for (int b = 0; b <= numBlocks; b++)
+			blockStart[b] = (int) Math.min((long) b * GS_BLOCK_SIZE, n);
+
+		// first, take a snapshot of the current values of each block
+		// (this has to be complete before any block is updated)
+		List<Callable<Double>> copyTasks = new ArrayList<Callable<Double>>(numBlocks);
+		for (int b = 0; b < numBlocks; b++) {
+			final int from = blockStart[b];
+			final int to = blockStart[b + 1];
+			copyTasks.add(() -> {
+				for (int i = from; i < to; i++) {
+					int s = states[i];
+					old[s] = vect[s];
+				}
+				return 0.0;
+			});
+		}
+		invokeAll(copyTasks, numThreads);
+
+		// then, do Gauss-Seidel within each block
+		List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(numBlocks);
+		for (int b = 0; b < numBlocks; b++) {
+			final int from = blockStart[b];
+			final int to = blockStart[b + 1];
+			final int lo = Math.min(states[from], states[to - 1]);
+			final int hi = Math.max(states[from], states[to - 1]);
+			tasks.add(() -> {
+				double maxDiff = 0.0;
+				for (int i = from; i < to; i++) {
+					int s = states[i];
+					double d = kernel.apply(s, vect, old, lo, hi);
+					double diff = absolute ? (Math.abs(d - vect[s])) : (Math.abs(d - vect[s]) / d);
+					maxDiff = diff > maxDiff ? diff : maxDiff;
+					vect[s] = d;
+				}
+				return maxDiff;
+			});
+		}
+		double maxDiff = 0.0;
+		for (double diff : invokeAll(tasks, numThreads)) {
+			maxDiff = diff > maxDiff ? diff : maxDiff;
+		}
+		return maxDiff;
+	}
+
+	/**
+	 * Run the tasks on the shared pool for {@code numThreads} threads and return their results (in order).
+	 * For a single thread, the tasks are run in the current thread.
+	 */
+	private static <T> List<T> invokeAll(List<Callable<T>> tasks, int numThreads) throws PrismException
+	{
+		List<T> results = new ArrayList<T>(tasks.size());
+		if (numThreads <= 1) {
+			try {
+				for (Callable<T> task : tasks) {
+					results.add(task.call());
+				}
+			} catch (Exception e) {
+				throw new PrismException("Error during iteration: " + e);
+			}
+			return results;
+		}
+		try {
+			for (Future<T> future : getPool(numThreads).invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			throw new PrismException("Interrupted during parallel iteration");
+		} catch (ExecutionException e) {
+			throw new PrismException("Error during parallel iteration: " + e.getCause());
+		}
+		return results;
+	}
+
+	private static synchronized ForkJoinPool getPool(int numThreads)
+	{
+		return pools.computeIfAbsent(numThreads, n -> new ForkJoinPool(n));
+	}
+}
@@ -27,13 +27,19 @@
 package explicit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import common.iterable.IterableInt;
 import prism.PrismComponent;
-import common.IterableBitSet;
+import prism.PrismException;
 
 /**
  * A class for storing and accessing the predecessor relation of an explicit Model.
@@ -41,15 +47,22 @@ import common.IterableBitSet;
  * As Model only provide easy access to successors of states,
  * the predecessor relation is computed and stored for subsequent efficient access.
  * <p>
+ * The relation is stored in compressed sparse row (CSR) form:
+ * the predecessors of state s are {@code sources[offsets[s]]}, ..., {@code sources[offsets[s+1]-1]},
+ * in increasing order of state index.
+ * <p>
  * Note: Naturally, if the model changes, the predecessor relation
  * has to be recomputed to remain accurate.
  */
 public class PredecessorRelation
 {
-	/**
-	 * pre[i] provides the list of predecessors of state with index i.
-	 */
-	List<ArrayList<Integer>> pre;
+	/** Minimum number of states for which a parallel computation is done */
+	private static final int MIN_PARALLEL_STATES = 100000;
+
+	/** Index into sources of the first predecessor of each state (array of size numStates+1) */
+	private final int offsets[];
+	/** The predecessors of all states, see {@code offsets} */
+	private final int sources[];
 
 	/**
 	 * Constructor. Computes the predecessor relation for the given model
@@ -59,54 +72,194 @@ public class PredecessorRelation
 	 */
 	public PredecessorRelation(Model model)
 	{
-		pre = new ArrayList<ArrayList<Integer>>(model.getNumStates());
-		// construct the (empty) array list for all states
-		for (int s = 0; s < model.getNumStates(); s++) {
-			pre.add(s, new ArrayList<Integer>());
-		}
+		int result[][] = compute(model);
+		offsets = result[0];
+		sources = result[1];
+	}
 
-		compute(model);
+	/**
+	 * Constructor. Computes the predecessor relation for the given model
+	 * by considering the successors of each state, using up to {@code numThreads} threads
+	 * (the result is the same as for the sequential computation).
+	 *
+	 * @param model the Model
+	 * @param numThreads the number of threads
+	 */
+	public PredecessorRelation(Model model, int numThreads) throws PrismException
+	{
+		// only models storing their transitions explicitly are known to be safe for concurrent access
+		int result[][];
+		if (numThreads > 1 && model.getNumStates() >= MIN_PARALLEL_STATES && model instanceof ModelExplicit) {
+			result = computeParallel(model, numThreads);
+		} else {
+			result = compute(model);
+		}
+		offsets = result[0];
+		sources = result[1];
 	}
 
-	/** Compute the predecessor relation using getSuccessorsIterator. */
-	private void compute(Model model)
+	/**
+	 * Compute the predecessor relation using getSuccessors, in two passes (count, then fill).
+	 * Returns the arrays {@code offsets} and {@code sources}.
+	 */
+	private static int[][] compute(Model model)
 	{
 		int n = model.getNumStates();
 
+		// first pass: count the predecessors of each state
+		// (in offsets[t+1], to make the prefix sum easier)
+		int offsets[] = new int[n + 1];
+		for (int s = 0; s < n; s++) {
+			SuccessorsIterator it = model.getSuccessors(s).distinct();
+			while (it.hasNext()) {
+				offsets[it.nextInt() + 1]++;
+			}
+		}
+		for (int t = 0; t < n; t++) {
+			offsets[t + 1] += offsets[t];
+		}
+
+		// second pass: store the predecessors
+		//
+		// As the successors are made distinct,
+		// s will be added to the predecessors of each successor exactly once;
+		// as the states are processed in order, the predecessors are sorted.
+		int sources[] = new int[offsets[n]];
+		int fill[] = Arrays.copyOf(offsets, n);
 		for (int s = 0; s < n; s++) {
-			Iterator<Integer> it = model.getSuccessorsIterator(s);
+			SuccessorsIterator it = model.getSuccessors(s).distinct();
 			while (it.hasNext()) {
-				Integer successor = it.next();
-
-				// Add the current state s to pre[successor].
-				//
-				// As getSuccessorsIterator guarantees that
-				// there are no duplicates in the successors,
-				// s will be added to successor exactly once.
-				pre.get(successor).add(s);
+				sources[fill[it.nextInt()]++] = s;
+			}
+		}
+		return new int[][] { offsets, sources };
+	}
+
+	/**
+	 * Compute the predecessor relation using getSuccessors, in two passes (count, then fill),
+	 * each split over ranges of states processed by {@code numThreads} threads.
+	 * Afterwards, the predecessors of each state are sorted, so that the result is deterministic.
+	 * Returns the arrays {@code offsets} and {@code sources}.
+	 */
+	private static int[][] computeParallel(final Model model, int numThreads) throws PrismException
+	{
+		final int n = model.getNumStates();
+		final int numRanges = 4 * numThreads;
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			// first pass: count the predecessors of each state
+			final AtomicIntegerArray counts = new AtomicIntegerArray(n + 1);
+			runRanges(executor, numRanges, n, (from, to) -> {
+				for (int s = from; s < to; s++) {
+					SuccessorsIterator it = model.getSuccessors(s).distinct();
+					while (it.hasNext()) {
+						counts.incrementAndGet(it.nextInt() + 1);
+					}
+				}
+			});
+			final int offsets[] = new int[n + 1];
+			for (int t = 0; t < n; t++) {
+				offsets[t + 1] = offsets[t] + counts.get(t + 1);
+			}
+
+			// second pass: store the predecessors (in arbitrary order)
+			final int sources[] = new int[offsets[n]];
+			final AtomicIntegerArray fill = new AtomicIntegerArray(Arrays.copyOf(offsets, n));
+			runRanges(executor, numRanges, n, (from, to) -> {
+				for (int s = from; s < to; s++) {
+					SuccessorsIterator it = model.getSuccessors(s).distinct();
+					while (it.hasNext()) {
+						sources[fill.getAndIncrement(it.nextInt())] = s;
+					}
+				}
+			});
+
+			// sort the predecessors of each state
+			runRanges(executor, numRanges, n, (from, to) -> {
+				for (int t = from; t < to; t++) {
+					Arrays.sort(sources, offsets[t], offsets[t + 1]);
+				}
+			});
+			return new int[][] { offsets, sources };
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/** A task working on a range of states */
+	@FunctionalInterface
+	private interface RangeTask
+	{
+		public void run(int from, int to);
+	}
+
+	/**
+	 * Run {@code task} for {@code numRanges} ranges covering the states 0..{@code n}-1, and wait for completion.
+	 */
+	private static void runRanges(ExecutorService executor, int numRanges, int n, RangeTask task) throws PrismException
+	{
+		List<Future<?>> futures = new ArrayList<Future<?>>(numRanges);
+		for (int r = 0; r < numRanges; r++) {
+			final int from = (int) ((long) r * n / numRanges);
+			final int to = (int) ((long) (r + 1) * n / numRanges);
+			futures.add(executor.submit(() -> task.run(from, to)));
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
 			}
+		} catch (Exception e) {
+			throw new PrismException("Error computing predecessor relation: " + e);
 		}
 	}
 
+	/**
+	 * Get the number of predecessor states of {@code s}.
+	 */
+	public int getNumPredecessors(int s)
+	{
+		return offsets[s + 1] - offsets[s];
+	}
+
 	/**
 	 * Get an Iterable over the predecessor states of {@code s}.
 	 */
-	public Iterable<Integer> getPre(int s)
+	public IterableInt getPre(int s)
 	{
-		return pre.get(s);
+		return () -> getPredecessorsIterator(s);
 	}
 
 	/**
 	 * Get an Iterator over the predecessor states of {@code s}.
 	 */
-	public Iterator<Integer> getPredecessorsIterator(int s)
+	public PrimitiveIterator.OfInt getPredecessorsIterator(int s)
 	{
-		return getPre(s).iterator();
+		final int start = offsets[s];
+		final int end = offsets[s + 1];
+		return new PrimitiveIterator.OfInt()
+		{
+			int cur = start;
+
+			@Override
+			public boolean hasNext()
+			{
+				return cur < end;
+			}
+
+			@Override
+			public int nextInt()
+			{
+				if (cur >= end)
+					throw new NoSuchElementException();
+				return sources[cur++];
+			}
+		};
 	}
 
 	/**
 	 * Static constructor to compute the predecessor relation for the given model.
 	 * Logs diagnostic information to the log of the given PrismComponent.
+	 * The number of threads used is taken from its settings (if any).
 	 *
 	 * @param parent a PrismComponent (for obtaining the log and settings)
 	 * @param model the model for which the predecessor relation should be computed
@@ -119,7 +272,18 @@ public class PredecessorRelation
 		parent.getLog().print("Calculating predecessor relation for "+model.getModelType().fullName()+"...  ");
 		parent.getLog().flush();
 
-		PredecessorRelation pre = new PredecessorRelation(model);
+		PredecessorRelation pre = null;
+		if (parent.getSettings() != null) {
+			try {
+				pre = new PredecessorRelation(model, parent.getSettings().getNumThreads());
+			} catch (PrismException e) {
+				// fall back to the sequential computation
+				pre = null;
+			}
+		}
+		if (pre == null) {
+			pre = new PredecessorRelation(model);
+		}
 		
 		timer = System.currentTimeMillis() - timer;
 		parent.getLog().println("done (" + timer / 1000.0 + " seconds)");
@@ -155,36 +319,30 @@ public class PredecessorRelation
 		result = (BitSet)target.clone();
 
 		// the stack of states whose predecessors have to be considered
-		Stack<Integer> todo = new Stack<Integer>();
+		// (each state is pushed at most once, as it is only pushed when it is added to result,
+		//  so the stack never holds more than numStates entries)
+		int todo[] = new int[offsets.length - 1];
+		int todoSize = 0;
 
 		// initial todo: all the target states
-		for (Integer s : IterableBitSet.getSetBits(target)) {
-			todo.add(s);
-		};
-
-		// the set of states that are finished
-		BitSet done = new BitSet();
-
-		while (!todo.isEmpty()) {
-			int s = todo.pop();
-			// already considered?
-			if (done.get(s)) continue;
+		for (int s = target.nextSetBit(0); s >= 0; s = target.nextSetBit(s + 1)) {
+			todo[todoSize++] = s;
+		}
 
-			done.set(s);
+		while (todoSize > 0) {
+			int s = todo[--todoSize];
 
 			// for each predecessor in the graph
-			for (int p : getPre(s)) {
+			for (int i = offsets[s], stop = offsets[s + 1]; i < stop; i++) {
+				int p = sources[i];
 				if (absorbing != null && absorbing.get(p)) {
 					// predecessor is absorbing, thus the edge is considered to not exist
 					continue;
 				}
-				if (remain == null || remain.get(p)) {
-					// can reach result (and is in remain)
+				if ((remain == null || remain.get(p)) && !result.get(p)) {
+					// can reach result (and is in remain): add to stack
 					result.set(p);
-					if (!done.get(p)) {
-						// add to stack
-						todo.add(p);
-					}
+					todo[todoSize++] = p;
 				}
 			}
 		}
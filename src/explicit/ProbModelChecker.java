@@ -75,6 +75,10 @@ public class ProbModelChecker extends NonProbModelChecker
 	protected double termCritParam = 1e-8;
 	// Max iterations for numerical solution
 	protected int maxIters = 100000;
+	// Number of threads for parallelisable computations (e.g. value iteration)
+	protected int numThreads = 1;
+	// Use block Gauss-Seidel (for large sparse models)?
+	protected boolean blockGaussSeidel = false;
 	// Use precomputation algorithms in model checking?
 	protected boolean precomp = true;
 	protected boolean prob0 = true;
@@ -219,6 +223,10 @@ public class ProbModelChecker extends NonProbModelChecker
 			setTermCritParam(settings.getDouble(PrismSettings.PRISM_TERM_CRIT_PARAM));
 			// PRISM_MAX_ITERS
 			setMaxIters(settings.getInteger(PrismSettings.PRISM_MAX_ITERS));
+			// PRISM_NUM_THREADS
+			setNumThreads(settings.getNumThreads());
+			// PRISM_BLOCK_GAUSS_SEIDEL
+			setBlockGaussSeidel(settings.getBoolean(PrismSettings.PRISM_BLOCK_GAUSS_SEIDEL));
 			// PRISM_PRECOMPUTATION
 			setPrecomp(settings.getBoolean(PrismSettings.PRISM_PRECOMPUTATION));
 			// PRISM_PROB0
@@ -256,6 +264,8 @@ public class ProbModelChecker extends NonProbModelChecker
 		setTermCrit(other.getTermCrit());
 		setTermCritParam(other.getTermCritParam());
 		setMaxIters(other.getMaxIters());
+		setNumThreads(other.getNumThreads());
+		setBlockGaussSeidel(other.getBlockGaussSeidel());
 		setPrecomp(other.getPrecomp());
 		setProb0(other.getProb0());
 		setProb1(other.getProb1());
@@ -345,6 +355,22 @@ public class ProbModelChecker extends NonProbModelChecker
 		this.maxIters = maxIters;
 	}
 
+	/**
+	 * Set number of threads to use for parallelisable computations (e.g. value iteration).
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Set whether or not to use block Gauss-Seidel (for large sparse models) instead of plain Gauss-Seidel.
+	 */
+	public void setBlockGaussSeidel(boolean blockGaussSeidel)
+	{
+		this.blockGaussSeidel = blockGaussSeidel;
+	}
+
 	/**
 	 * Set whether or not to use precomputation (Prob0, Prob1, etc.).
 	 */
@@ -443,6 +469,16 @@ public class ProbModelChecker extends NonProbModelChecker
 		return maxIters;
 	}
 
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	public boolean getBlockGaussSeidel()
+	{
+		return blockGaussSeidel;
+	}
+
 	public boolean getPrecomp()
 	{
 		return precomp;
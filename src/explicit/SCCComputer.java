@@ -34,6 +34,7 @@ import java.util.function.IntPredicate;
 
 import prism.PrismComponent;
 import prism.PrismException;
+import prism.PrismSettings;
 
 /**
  * Abstract class for (explicit) classes that compute (B)SCCs,
@@ -46,12 +47,14 @@ public abstract class SCCComputer extends PrismComponent
 
 	// Method used for finding (B)SCCs
 	public enum SCCMethod {
-		TARJAN;
+		TARJAN, PARALLEL;
 		public String fullName()
 		{
 			switch (this) {
 			case TARJAN:
 				return "Tarjan";
+			case PARALLEL:
+				return "Parallel";
 			default:
 				return this.toString();
 			}
@@ -63,7 +66,10 @@ public abstract class SCCComputer extends PrismComponent
 	 */
 	public static SCCComputer createSCCComputer(PrismComponent parent, Model model, SCCConsumer consumer) throws PrismException
 	{
-		// Only one algorithm implemented currently
+		PrismSettings settings = parent.getSettings();
+		if (settings != null && settings.getString(PrismSettings.PRISM_EXPLICIT_SCC_METHOD).equals(SCCMethod.PARALLEL.fullName())) {
+			return new SCCComputerParallel(parent, model, consumer, settings.getNumThreads());
+		}
 		return new SCCComputerTarjan(parent, model, consumer);
 	}
 
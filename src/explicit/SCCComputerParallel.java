@@ -0,0 +1,420 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+
+import prism.PrismComponent;
+import prism.PrismException;
+
+/**
+ * Parallel SCC decomposition operating on a Model object.
+ * <br>
+ * Large SCCs are split off using forward-backward search: the SCC of a pivot state
+ * is the set of states that are reachable from the pivot and that can reach the pivot.
+ * Both searches are level-synchronous breadth-first searches, where each level is
+ * expanded by several threads. This is repeated for a few pivots, as long as the SCCs
+ * found are large. The remaining (typically transient) part of the graph is decomposed
+ * using Tarjan's algorithm.
+ * <br>
+ * Finally, the SCCs are reported to the consumer in reverse topological order,
+ * i.e., each SCC after all SCCs that it has transitions to.
+ * The order may differ from the one used by {@link SCCComputerTarjan}.
+ * <br>
+ * For small models, models that are not known to be safe for concurrent access
+ * or a single thread, this simply falls back to {@link SCCComputerTarjan}.
+ */
+public class SCCComputerParallel extends SCCComputer
+{
+	/** Minimum number of states for which the parallel algorithm is used */
+	private static final int MIN_PARALLEL_STATES = 100000;
+	/** Minimum size of a BFS level for which it is expanded in parallel */
+	private static final int MIN_PARALLEL_LEVEL = 1024;
+	/** Maximum number of forward-backward searches */
+	private static final int MAX_PIVOTS = 8;
+	/** Continue with forward-backward search only while the SCCs found contain at least 1/MIN_SCC_FRACTION of the remaining states */
+	private static final int MIN_SCC_FRACTION = 100;
+
+	/* The model to compute (B)SCCs for */
+	private Model model;
+	/* Number of nodes (model states) */
+	private int numNodes;
+	/* Number of threads */
+	private int numThreads;
+	/* Executor for the worker threads (during computeSCCs) */
+	private ExecutorService executor;
+
+	/**
+	 * Build (B)SCC computer for a given model, using (up to) {@code numThreads} threads.
+	 */
+	public SCCComputerParallel(PrismComponent parent, Model model, SCCConsumer consumer, int numThreads) throws PrismException
+	{
+		super(parent, consumer);
+		this.model = model;
+		this.numNodes = model.getNumStates();
+		this.numThreads = numThreads;
+	}
+
+	// Methods for SCCComputer interface
+
+	@Override
+	public void computeSCCs(boolean filterTrivialSCCs, IntPredicate restrict) throws PrismException
+	{
+		// only models storing their transitions explicitly are known to be safe for concurrent access
+		if (numThreads <= 1 || numNodes < MIN_PARALLEL_STATES || !(model instanceof ModelExplicit)) {
+			new SCCComputerTarjan(this, model, consumer).computeSCCs(filterTrivialSCCs, restrict);
+			return;
+		}
+
+		consumer.notifyStart(model);
+
+		// SCC index for each state (-1 = not yet assigned / not relevant)
+		final int comp[] = new int[numNodes];
+		Arrays.fill(comp, -1);
+		int numComps = 0;
+
+		PredecessorRelation pre = model.getPredecessorRelation(this, true);
+
+		// split off large SCCs by forward-backward search
+		int remaining = 0;
+		for (int s = 0; s < numNodes; s++) {
+			if (restrict == null || restrict.test(s))
+				remaining++;
+		}
+		executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			for (int round = 0; round < MAX_PIVOTS && remaining > 0; round++) {
+				int pivot = choosePivot(comp, restrict, pre);
+				if (pivot == -1)
+					break;
+				IntPredicate candidate = (s) -> comp[s] == -1 && (restrict == null || restrict.test(s));
+				AtomicBitSet forward = search(pivot, candidate, null);
+				AtomicBitSet scc = search(pivot, forward::get, pre);
+				int size = 0;
+				for (int s = scc.nextSetBit(0); s >= 0; s = scc.nextSetBit(s + 1)) {
+					comp[s] = numComps;
+					size++;
+				}
+				numComps++;
+				remaining -= size;
+				if (size < (remaining + size) / MIN_SCC_FRACTION)
+					break;
+			}
+		} finally {
+			executor.shutdown();
+			executor = null;
+		}
+
+		// decompose the rest using Tarjan's algorithm
+		final int firstTarjanComp = numComps;
+		final int tarjanComps[] = new int[1];
+		SCCConsumer collector = new SCCConsumer()
+		{
+			@Override
+			public void notifyStartSCC()
+			{
+			}
+
+			@Override
+			public void notifyStateInSCC(int stateIndex)
+			{
+				comp[stateIndex] = firstTarjanComp + tarjanComps[0];
+			}
+
+			@Override
+			public void notifyEndSCC()
+			{
+				tarjanComps[0]++;
+			}
+		};
+		new SCCComputerTarjan(this, model, collector).computeSCCs(false, (s) -> comp[s] == -1 && (restrict == null || restrict.test(s)));
+		numComps += tarjanComps[0];
+
+		notifySCCsInOrder(comp, numComps, filterTrivialSCCs, pre);
+		consumer.notifyDone();
+	}
+
+	// SCC Computation
+
+	/**
+	 * Choose the pivot for the next forward-backward search,
+	 * i.e., the unassigned relevant state with the most predecessors
+	 * (which is likely to lie in a large SCC), or -1 if there is none.
+	 */
+	private int choosePivot(int comp[], IntPredicate restrict, PredecessorRelation pre)
+	{
+		int pivot = -1;
+		int best = -1;
+		for (int s = 0; s < numNodes; s++) {
+			if (comp[s] != -1 || (restrict != null && !restrict.test(s)))
+				continue;
+			int numPre = pre.getNumPredecessors(s);
+			if (numPre > best) {
+				pivot = s;
+				best = numPre;
+			}
+		}
+		return pivot;
+	}
+
+	/**
+	 * Parallel breadth-first search from {@code start}, restricted to the states satisfying {@code within}
+	 * (which {@code start} has to satisfy), following the transitions forwards if {@code pre} is null
+	 * or backwards (using {@code pre}) otherwise.
+	 * @return the set of states found
+	 */
+	private AtomicBitSet search(int start, IntPredicate within, PredecessorRelation pre) throws PrismException
+	{
+		final AtomicBitSet visited = new AtomicBitSet(numNodes);
+		visited.set(start);
+		int level[] = new int[] { start };
+		while (level.length > 0) {
+			if (level.length < MIN_PARALLEL_LEVEL) {
+				level = expand(level, 0, level.length, within, pre, visited);
+			} else {
+				final int current[] = level;
+				int numChunks = Math.min(current.length / (MIN_PARALLEL_LEVEL / 4), 4 * numThreads);
+				List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(numChunks);
+				for (int c = 0; c < numChunks; c++) {
+					final int from = (int) ((long) c * current.length / numChunks);
+					final int to = (int) ((long) (c + 1) * current.length / numChunks);
+					tasks.add(() -> expand(current, from, to, within, pre, visited));
+				}
+				level = concat(invokeAll(tasks));
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Expand the states {@code level[from]}, ..., {@code level[to-1]} of a breadth-first search,
+	 * i.e., return their (not yet visited) successors/predecessors satisfying {@code within},
+	 * marking them as visited. Can be called concurrently, each state is returned by exactly one call.
+	 */
+	private int[] expand(int level[], int from, int to, IntPredicate within, PredecessorRelation pre, AtomicBitSet visited)
+	{
+		int next[] = new int[Math.max(16, to - from)];
+		int size = 0;
+		for (int i = from; i < to; i++) {
+			PrimitiveIterator.OfInt it = pre == null ? model.getSuccessors(level[i]) : pre.getPredecessorsIterator(level[i]);
+			while (it.hasNext()) {
+				int t = it.nextInt();
+				if (within.test(t) && visited.set(t)) {
+					if (size == next.length)
+						next = Arrays.copyOf(next, 2 * size);
+					next[size++] = t;
+				}
+			}
+		}
+		return Arrays.copyOf(next, size);
+	}
+
+	/**
+	 * Notify the consumer about the SCCs given by {@code comp} in reverse topological order,
+	 * using Kahn's algorithm on the graph of SCCs.
+	 */
+	private void notifySCCsInOrder(int comp[], int numComps, boolean filterTrivialSCCs, PredecessorRelation pre) throws PrismException
+	{
+		// the states of each SCC: compStates[compStarts[c]..compStarts[c+1]-1]
+		int compStarts[] = new int[numComps + 1];
+		for (int s = 0; s < numNodes; s++) {
+			if (comp[s] >= 0)
+				compStarts[comp[s] + 1]++;
+		}
+		for (int c = 0; c < numComps; c++) {
+			compStarts[c + 1] += compStarts[c];
+		}
+		int compStates[] = new int[compStarts[numComps]];
+		int fill[] = Arrays.copyOf(compStarts, numComps);
+		for (int s = 0; s < numNodes; s++) {
+			if (comp[s] >= 0)
+				compStates[fill[comp[s]]++] = s;
+		}
+		fill = null;
+
+		// count the transitions from each SCC to other SCCs (in parallel, as it involves all transitions)
+		final AtomicIntegerArray pendingAtomic = new AtomicIntegerArray(numComps);
+		executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			int numRanges = 4 * numThreads;
+			List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(numRanges);
+			for (int r = 0; r < numRanges; r++) {
+				final int from = (int) ((long) r * numNodes / numRanges);
+				final int to = (int) ((long) (r + 1) * numNodes / numRanges);
+				tasks.add(() -> {
+					for (int s = from; s < to; s++) {
+						if (comp[s] < 0)
+							continue;
+						SuccessorsIterator it = model.getSuccessors(s).distinct();
+						while (it.hasNext()) {
+							int t = it.nextInt();
+							if (comp[t] >= 0 && comp[t] != comp[s])
+								pendingAtomic.incrementAndGet(comp[s]);
+						}
+					}
+					return null;
+				});
+			}
+			invokeAll(tasks);
+		} finally {
+			executor.shutdown();
+			executor = null;
+		}
+		int pending[] = new int[numComps];
+		for (int c = 0; c < numComps; c++) {
+			pending[c] = pendingAtomic.get(c);
+		}
+
+		// start with the SCCs without transitions to other SCCs,
+		// an SCC becomes ready once all SCCs it has transitions to are done
+		int queue[] = new int[numComps];
+		int head = 0, tail = 0;
+		for (int c = 0; c < numComps; c++) {
+			if (pending[c] == 0)
+				queue[tail++] = c;
+		}
+		while (head < tail) {
+			int c = queue[head++];
+			int from = compStarts[c], to = compStarts[c + 1];
+			if (!(filterTrivialSCCs && to - from == 1 && isTrivialSCC(model, compStates[from]))) {
+				consumer.notifyStartSCC();
+				for (int i = from; i < to; i++) {
+					consumer.notifyStateInSCC(compStates[i]);
+				}
+				consumer.notifyEndSCC();
+			}
+			for (int i = from; i < to; i++) {
+				PrimitiveIterator.OfInt it = pre.getPredecessorsIterator(compStates[i]);
+				while (it.hasNext()) {
+					int p = it.nextInt();
+					if (comp[p] >= 0 && comp[p] != c && --pending[comp[p]] == 0)
+						queue[tail++] = comp[p];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run the given tasks using the executor and wait for their results.
+	 */
+	private <T> List<T> invokeAll(List<Callable<T>> tasks) throws PrismException
+	{
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			for (Future<T> future : executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			throw new PrismException("Interrupted during parallel SCC computation");
+		} catch (ExecutionException e) {
+			throw new PrismException("Error during parallel SCC computation: " + e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Concatenate a list of int arrays.
+	 */
+	private static int[] concat(List<int[]> arrays)
+	{
+		int length = 0;
+		for (int a[] : arrays)
+			length += a.length;
+		int result[] = new int[length];
+		int pos = 0;
+		for (int a[] : arrays) {
+			System.arraycopy(a, 0, result, pos, a.length);
+			pos += a.length;
+		}
+		return result;
+	}
+
+	/**
+	 * A fixed-size bit set that supports concurrent setting of bits.
+	 */
+	private static final class AtomicBitSet
+	{
+		private final AtomicLongArray words;
+
+		public AtomicBitSet(int size)
+		{
+			words = new AtomicLongArray((size + 63) >>> 6);
+		}
+
+		/**
+		 * Set bit {@code i}, return true if it was not set before.
+		 */
+		public boolean set(int i)
+		{
+			int w = i >>> 6;
+			long mask = 1L << i;
+			while (true) {
+				long old = words.get(w);
+				if ((old & mask) != 0)
+					return false;
+				if (words.compareAndSet(w, old, old | mask))
+					return true;
+			}
+		}
+
+		public boolean get(int i)
+		{
+			return (words.get(i >>> 6) & (1L << i)) != 0;
+		}
+
+		/**
+		 * Index of the first set bit at or after {@code from}, or -1 if there is none.
+		 * Should only be called when there are no concurrent modifications.
+		 */
+		public int nextSetBit(int from)
+		{
+			int w = from >>> 6;
+			if (w >= words.length())
+				return -1;
+			long word = words.get(w) & (-1L << from);
+			while (true) {
+				if (word != 0)
+					return (w << 6) + Long.numberOfTrailingZeros(word);
+				if (++w == words.length())
+					return -1;
+				word = words.get(w);
+			}
+		}
+	}
+}
@@ -27,10 +27,8 @@
 
 package explicit;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.function.IntPredicate;
 
 import prism.PrismComponent;
@@ -38,6 +36,12 @@ import prism.PrismException;
 
 /**
  * Tarjan's SCC algorithm operating on a Model object.
+ * <br>
+ * The depth-first search is done iteratively, with an explicit stack of
+ * (state, successor iterator) frames, so that deep transition graphs
+ * do not overflow the Java call stack. The per-state information is kept in
+ * primitive arrays. The SCCs are reported in the same order as by the
+ * classical recursive formulation, i.e., in reverse topological order.
  */
 public class SCCComputerTarjan extends SCCComputer
 {
@@ -48,12 +52,21 @@ public class SCCComputerTarjan extends SCCComputer
 
 	/* Next index to give to a node */
 	private int index = 0;
-	/* Stack of nodes */
-	private List<Integer> stack = new LinkedList<Integer>();
-	/* List of nodes in the graph. Invariant: {@code nodeList.get(i).id == i} */
-	private ArrayList<Node> nodeList;
+	/* DFS index of each node (-1 = not yet visited) */
+	private int[] nodeIndex;
+	/* Lowlink of each node */
+	private int[] lowlink;
+	/* Stack of nodes (top at stackSize-1) */
+	private int[] stack;
+	private int stackSize = 0;
 	/* Nodes currently on the stack. */
 	private BitSet onStack;
+	/* Nodes that have a self-loop (only set for visited nodes) */
+	private BitSet selfloop;
+	/* DFS call stack: nodes and their remaining successors (top at callSize-1) */
+	private int[] callNodes;
+	private SuccessorsIterator[] callSuccessors;
+	private int callSize = 0;
 	/** Should we filter trivial SCCs? */
 	private boolean filterTrivialSCCs;
 	private IntPredicate restrict;
@@ -66,11 +79,15 @@ public class SCCComputerTarjan extends SCCComputer
 		super(parent, consumer);
 		this.model = model;
 		this.numNodes = model.getNumStates();
-		this.nodeList = new ArrayList<Node>(numNodes);
-		for (int i = 0; i < numNodes; i++) {
-			nodeList.add(new Node(i));
-		}
+		nodeIndex = new int[numNodes];
+		Arrays.fill(nodeIndex, -1);
+		lowlink = new int[numNodes];
+		stack = new int[numNodes];
 		onStack = new BitSet();
+		selfloop = new BitSet();
+		// the call stack grows on demand, typical DFS depths are much smaller than numNodes
+		callNodes = new int[Math.min(numNodes, 1024)];
+		callSuccessors = new SuccessorsIterator[callNodes.length];
 	}
 
 	// Methods for SCCComputer interface
@@ -96,78 +113,104 @@ public class SCCComputerTarjan extends SCCComputer
 		for (int i = 0; i < numNodes; i++) {
 			if (restrict != null && !restrict.test(i))
 				continue; // skip state if not one of the relevant states
-			if (nodeList.get(i).lowlink == -1)
+			if (nodeIndex[i] == -1)
 				tarjan(i);
 		}
 
 	}
 
-	private void tarjan(int i) throws PrismException
+	/**
+	 * Depth-first search from node {@code root}, which has not been visited yet.
+	 */
+	private void tarjan(int root) throws PrismException
 	{
-		final Node v = nodeList.get(i);
-		v.index = index;
-		v.lowlink = index;
-		index++;
-		stack.add(0, i);
-		onStack.set(i);
+		visit(root);
+		while (callSize > 0) {
+			final int v = callNodes[callSize - 1];
+			final SuccessorsIterator it = callSuccessors[callSize - 1];
+			boolean descended = false;
+			while (it.hasNext()) {
+				int e = it.nextInt();
+
+				if (e == v) {
+					selfloop.set(v);
+					continue;
+				}
 
-		boolean hadSelfloop = false;
-		SuccessorsIterator it = model.getSuccessors(i);
-		while (it.hasNext()) {
-			int e = it.nextInt();
+				if (restrict != null && !restrict.test(e)) {
+					continue; // ignore edge to state that is not relevant
+				}
 
-			if (e == i) {
-				hadSelfloop = true;
-				continue;
+				if (nodeIndex[e] == -1) {
+					// descend, v is continued once e is finished
+					visit(e);
+					descended = true;
+					break;
+				} else if (onStack.get(e)) {
+					lowlink[v] = Math.min(lowlink[v], nodeIndex[e]);
+				}
 			}
+			if (descended)
+				continue;
 
-			if (restrict != null && !restrict.test(e)) {
-				continue; // ignore edge to state that is not relevant
+			// all successors of v are done
+			callSize--;
+			callSuccessors[callSize] = null;
+			if (lowlink[v] == nodeIndex[v]) {
+				popSCC(v);
 			}
-
-			Node n = nodeList.get(e);
-			if (n.index == -1) {
-				tarjan(e);
-				v.lowlink = Math.min(v.lowlink, n.lowlink);
-			} else if (onStack.get(e)) {
-				v.lowlink = Math.min(v.lowlink, n.index);
+			if (callSize > 0) {
+				int u = callNodes[callSize - 1];
+				lowlink[u] = Math.min(lowlink[u], lowlink[v]);
 			}
 		}
-		if (v.lowlink == v.index) {
-			// this is a singleton SCC if the top of the stack equals i
-			boolean singletonSCC = (stack.get(0) == i);
-			if (singletonSCC && filterTrivialSCCs) {
-				if (!hadSelfloop) { // singleton SCC & no selfloop -> trivial
-					stack.remove(0);
-					onStack.set(i, false);
-					return;
-				}
-			}
+	}
+
+	/**
+	 * Assign the next index to node {@code i}, push it onto the stack
+	 * and push a frame for its successors onto the call stack.
+	 */
+	private void visit(int i)
+	{
+		nodeIndex[i] = index;
+		lowlink[i] = index;
+		index++;
+		stack[stackSize++] = i;
+		onStack.set(i);
 
-			int n;
-			consumer.notifyStartSCC();
-			do {
-				n = stack.remove(0);
-				onStack.set(n, false);
-				consumer.notifyStateInSCC(n);
-			} while (n != i);
-			consumer.notifyEndSCC();
+		if (callSize == callNodes.length) {
+			int newLength = (int) Math.min((long) callNodes.length * 2, Integer.MAX_VALUE - 8);
+			callNodes = Arrays.copyOf(callNodes, newLength);
+			callSuccessors = Arrays.copyOf(callSuccessors, newLength);
 		}
+		callNodes[callSize] = i;
+		callSuccessors[callSize] = model.getSuccessors(i);
+		callSize++;
 	}
 
 	/**
-	 * A small class wrapping a node.
-	 * It carries extra information necessary for Tarjan's algorithm.
+	 * Pop the SCC with root {@code i} from the stack and notify the consumer
+	 * (unless it is trivial and trivial SCCs are filtered).
 	 */
-	protected static class Node
+	private void popSCC(int i) throws PrismException
 	{
-		public int lowlink = -1;
-		public int index = -1;
-		public int id;
-
-		public Node(int id)
-		{
-			this.id = id;
+		// this is a singleton SCC if the top of the stack equals i
+		boolean singletonSCC = (stack[stackSize - 1] == i);
+		if (singletonSCC && filterTrivialSCCs) {
+			if (!selfloop.get(i)) { // singleton SCC & no selfloop -> trivial
+				stackSize--;
+				onStack.set(i, false);
+				return;
+			}
 		}
+
+		int n;
+		consumer.notifyStartSCC();
+		do {
+			n = stack[--stackSize];
+			onStack.set(n, false);
+			consumer.notifyStateInSCC(n);
+		} while (n != i);
+		consumer.notifyEndSCC();
 	}
 }
@@ -0,0 +1,312 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package explicit;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import prism.PrismException;
+
+/**
+ * Scheduler for solving the SCCs of a model (as given by an {@link SCCInfo}) concurrently,
+ * respecting the dependencies between them, i.e., an SCC is only solved once all SCCs
+ * that it has transitions to have been solved.
+ * <br>
+ * Ready SCCs are dispatched to a pool of worker threads, except for singleton SCCs,
+ * which are solved inline by the thread that made them ready.
+ * Large SCCs (at least {@code exclusiveSize} states) are solved on their own,
+ * i.e., while no other SCC is being solved, so that they can use all threads themselves.
+ */
+class SCCDAGScheduler
+{
+	/**
+	 * Callback for solving a single SCC.
+	 */
+	@FunctionalInterface
+	public interface SCCSolver
+	{
+		/**
+		 * Solve the SCC with index {@code scc}; if {@code exclusive} is false,
+		 * other SCCs may be solved concurrently.
+		 * Return false if solving failed (e.g., no convergence), which stops the scheduling.
+		 */
+		public boolean solve(int scc, boolean exclusive) throws PrismException;
+	}
+
+	/** The SCC information */
+	private final SCCInfo sccs;
+	/** Number of SCCs */
+	private final int numSCCs;
+	/** For each SCC, the number of other SCCs that it has transitions to and that are not yet solved */
+	private final AtomicIntegerArray pending;
+	/** For each SCC, the SCCs that have transitions to it: predecessors[predecessorStarts[i]..predecessorStarts[i+1]-1] */
+	private final int predecessorStarts[];
+	private final int predecessors[];
+
+	/** Lock for the following fields */
+	private final ReentrantLock lock = new ReentrantLock();
+	/** Signalled if a worker finishes or a large SCC becomes ready */
+	private final Condition changed = lock.newCondition();
+	/** Number of tasks dispatched to the workers that are not yet finished */
+	private int running;
+	/** Large SCCs that are ready, to be solved exclusively */
+	private final ArrayDeque<Integer> exclusive = new ArrayDeque<Integer>();
+	/** Has the scheduling been stopped (failure or error)? */
+	private volatile boolean aborted;
+	/** The first error that occurred in a worker (if any) */
+	private Throwable error;
+
+	/** The worker threads (during run) */
+	private ExecutorService executor;
+	private SCCSolver solver;
+	private int exclusiveSize;
+
+	/**
+	 * Constructor: determine the dependencies between the SCCs of {@code model}.
+	 */
+	public SCCDAGScheduler(Model model, SCCInfo sccs)
+	{
+		this.sccs = sccs;
+		numSCCs = sccs.getNumSCCs();
+		int numPending[] = new int[numSCCs];
+		predecessorStarts = new int[numSCCs + 1];
+		// lastSeen[d] = c, if the edge c -> d has already been counted
+		int lastSeen[] = new int[numSCCs];
+		Arrays.fill(lastSeen, -1);
+		// first pass: count distinct edges between SCCs
+		for (int c = 0; c < numSCCs; c++) {
+			for (PrimitiveIterator.OfInt it = sccs.getStatesForSCC(c).iterator(); it.hasNext();) {
+				SuccessorsIterator succs = model.getSuccessors(it.nextInt());
+				while (succs.hasNext()) {
+					int d = sccs.getSCCIndex(succs.nextInt());
+					if (d >= 0 && d != c && lastSeen[d] != c) {
+						lastSeen[d] = c;
+						numPending[c]++;
+						predecessorStarts[d + 1]++;
+					}
+				}
+			}
+		}
+		for (int d = 0; d < numSCCs; d++) {
+			predecessorStarts[d + 1] += predecessorStarts[d];
+		}
+		// second pass: store predecessors
+		predecessors = new int[predecessorStarts[numSCCs]];
+		int fill[] = new int[numSCCs];
+		System.arraycopy(predecessorStarts, 0, fill, 0, numSCCs);
+		Arrays.fill(lastSeen, -1);
+		for (int c = 0; c < numSCCs; c++) {
+			for (PrimitiveIterator.OfInt it = sccs.getStatesForSCC(c).iterator(); it.hasNext();) {
+				SuccessorsIterator succs = model.getSuccessors(it.nextInt());
+				while (succs.hasNext()) {
+					int d = sccs.getSCCIndex(succs.nextInt());
+					if (d >= 0 && d != c && lastSeen[d] != c) {
+						lastSeen[d] = c;
+						predecessors[fill[d]++] = c;
+					}
+				}
+			}
+		}
+		pending = new AtomicIntegerArray(numPending);
+	}
+
+	/**
+	 * Solve all SCCs using {@code solver}, with {@code numThreads} worker threads.
+	 * SCCs with at least {@code exclusiveSize} states are solved exclusively.
+	 * Returns true if all SCCs were solved successfully, false if solving stopped early
+	 * because {@code solver} returned false.
+	 */
+	public boolean run(SCCSolver solver, int numThreads, int exclusiveSize) throws PrismException
+	{
+		this.solver = solver;
+		this.exclusiveSize = exclusiveSize;
+		executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			// dispatch the SCCs without dependencies;
+			// the singleton ones are shared out between the threads in chunks
+			int numSources = 0;
+			for (int c = 0; c < numSCCs; c++) {
+				if (pending.get(c) == 0 && sccs.isSingletonSCC(c))
+					numSources++;
+			}
+			int singletonSources[] = new int[numSources];
+			numSources = 0;
+			for (int c = 0; c < numSCCs; c++) {
+				if (pending.get(c) == 0) {
+					if (sccs.isSingletonSCC(c))
+						singletonSources[numSources++] = c;
+					else
+						dispatch(c);
+				}
+			}
+			int numChunks = Math.min(numSources, numThreads);
+			for (int i = 0; i < numChunks; i++) {
+				final int from = (int) ((long) i * numSources / numChunks);
+				final int to = (int) ((long) (i + 1) * numSources / numChunks);
+				submit(() -> {
+					for (int j = from; j < to; j++)
+						process(singletonSources[j], false);
+				});
+			}
+
+			// wait for the workers, solving large SCCs whenever there is nothing else running
+			lock.lock();
+			try {
+				while (true) {
+					if (running == 0 && (aborted || exclusive.isEmpty()))
+						break;
+					if (running == 0 && !aborted) {
+						int scc = exclusive.poll();
+						lock.unlock();
+						try {
+							process(scc, true);
+						} finally {
+							lock.lock();
+						}
+						continue;
+					}
+					changed.await();
+				}
+			} catch (InterruptedException e) {
+				throw new PrismException("Interrupted while solving SCCs");
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			executor.shutdownNow();
+			executor = null;
+		}
+
+		if (error != null) {
+			if (error instanceof PrismException)
+				throw (PrismException) error;
+			if (error instanceof RuntimeException)
+				throw (RuntimeException) error;
+			throw new PrismException("Error while solving SCCs: " + error);
+		}
+		return !aborted;
+	}
+
+	/**
+	 * Solve the SCC {@code first} and, inline, all singleton SCCs that become ready as a result
+	 * (and so on), dispatching other SCCs that become ready.
+	 */
+	private void process(int first, boolean exclusiveFirst)
+	{
+		ArrayDeque<Integer> todo = new ArrayDeque<Integer>();
+		todo.push(first);
+		boolean isFirst = true;
+		try {
+			while (!todo.isEmpty() && !aborted) {
+				int scc = todo.pop();
+				if (!solver.solve(scc, isFirst && exclusiveFirst)) {
+					abort(null);
+					return;
+				}
+				isFirst = false;
+				for (int i = predecessorStarts[scc], stop = predecessorStarts[scc + 1]; i < stop; i++) {
+					int p = predecessors[i];
+					if (pending.decrementAndGet(p) == 0) {
+						if (sccs.isSingletonSCC(p))
+							todo.push(p);
+						else
+							dispatch(p);
+					}
+				}
+			}
+		} catch (Throwable e) {
+			abort(e);
+		}
+	}
+
+	/**
+	 * Dispatch a (non-singleton) SCC that has become ready.
+	 */
+	private void dispatch(final int scc)
+	{
+		if (sccs.getNumStatesInSCC(scc) >= exclusiveSize) {
+			lock.lock();
+			try {
+				exclusive.add(scc);
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		} else {
+			submit(() -> process(scc, false));
+		}
+	}
+
+	/**
+	 * Submit a task to the workers, keeping track of the number of running tasks.
+	 */
+	private void submit(final Runnable task)
+	{
+		lock.lock();
+		try {
+			running++;
+		} finally {
+			lock.unlock();
+		}
+		executor.execute(() -> {
+			try {
+				task.run();
+			} finally {
+				lock.lock();
+				try {
+					running--;
+					changed.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stop the scheduling, remembering the error {@code e} (if non-null, and if it is the first one).
+	 */
+	private void abort(Throwable e)
+	{
+		lock.lock();
+		try {
+			if (e != null && error == null)
+				error = e;
+			aborted = true;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
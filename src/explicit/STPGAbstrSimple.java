@@ -691,9 +691,9 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 			for (Distribution distr : distrs) {
 				// Compute sum for this distribution
 				d = 0.0;
-				for (Map.Entry<Integer, Double> e : distr) {
-					k = (Integer) e.getKey();
-					prob = (Double) e.getValue();
+				for (int l = 0, n = distr.size(); l < n; l++) {
+					k = distr.getIndex(l);
+					prob = distr.getProbability(l);
 					d += prob * vect[k];
 				}
 				// Check whether we have exceeded min/max so far
@@ -731,9 +731,9 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 			for (Distribution distr : distrs) {
 				// Compute sum for this distribution
 				d = 0.0;
-				for (Map.Entry<Integer, Double> e : distr) {
-					k = (Integer) e.getKey();
-					prob = (Double) e.getValue();
+				for (int l = 0, n = distr.size(); l < n; l++) {
+					k = distr.getIndex(l);
+					prob = distr.getProbability(l);
 					d += prob * vect[k];
 				}
 				// Check whether we have exceeded min/max so far
@@ -783,9 +783,9 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 				diag = 1.0;
 				// Compute sum for this distribution
 				d = 0.0;
-				for (Map.Entry<Integer, Double> e : distr) {
-					k = (Integer) e.getKey();
-					prob = (Double) e.getValue();
+				for (int l = 0, n = distr.size(); l < n; l++) {
+					k = distr.getIndex(l);
+					prob = distr.getProbability(l);
 					if (k != s) {
 						d += prob * vect[k];
 					} else {
@@ -837,9 +837,9 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 				dIter++;
 				// Compute sum for this distribution
 				d = rewards.getNestedTransitionReward(s, dsIter, dIter);
-				for (Map.Entry<Integer, Double> e : distr) {
-					k = (Integer) e.getKey();
-					prob = (Double) e.getValue();
+				for (int l = 0, n = distr.size(); l < n; l++) {
+					k = distr.getIndex(l);
+					prob = distr.getProbability(l);
 					d += prob * vect[k];
 				}
 				// Check whether we have exceeded min/max so far
@@ -880,9 +880,9 @@ public class STPGAbstrSimple extends ModelExplicit implements STPG, NondetModelS
 				dIter++;
 				// Compute sum for this distribution
 				d = rewards.getNestedTransitionReward(s, dsIter, dIter);
-				for (Map.Entry<Integer, Double> e : distr) {
-					k = (Integer) e.getKey();
-					prob = (Double) e.getValue();
+				for (int l = 0, n = distr.size(); l < n; l++) {
+					k = distr.getIndex(l);
+					prob = distr.getProbability(l);
 					d += prob * vect[k];
 				}
 				// Check whether we have exceeded min/max so far
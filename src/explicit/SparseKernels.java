@@ -0,0 +1,122 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package explicit;
+
+/**
+ * Inner loops of the sparse matrix-vector products used by {@link DTMCSparse} and {@link MDPSparse}.
+ * <br>
+ * The loops are unrolled four ways, with independent accumulators, which breaks the dependency
+ * chain of the additions and lets the JIT compiler overlap the (gathered) loads of the vector entries.
+ * Each kernel also has a plain scalar loop, which is used unless {@code unrolled} is true
+ * (see {@link prism.PrismSettings#PRISM_UNROLLED_KERNELS}, off by default),
+ * since the unrolled loops sum in a different order, so results can differ in the last bits.
+ */
+final class SparseKernels
+{
+	private SparseKernels()
+	{
+	}
+
+	/**
+	 * Return the sum of {@code vals[i] * vect[cols[i]]} for {@code from <= i < to},
+	 * using the unrolled loop if {@code unrolled} is true.
+	 */
+	static double dot(final boolean unrolled, final int cols[], final double vals[], final int from, final int to, final double vect[])
+	{
+		if (!unrolled) {
+			double d = 0.0;
+			for (int i = from; i < to; i++)
+				d += vals[i] * vect[cols[i]];
+			return d;
+		}
+		double d0 = 0.0, d1 = 0.0, d2 = 0.0, d3 = 0.0;
+		int i = from;
+		for (final int stop = to - 3; i < stop; i += 4) {
+			d0 += vals[i] * vect[cols[i]];
+			d1 += vals[i + 1] * vect[cols[i + 1]];
+			d2 += vals[i + 2] * vect[cols[i + 2]];
+			d3 += vals[i + 3] * vect[cols[i + 3]];
+		}
+		for (; i < to; i++)
+			d0 += vals[i] * vect[cols[i]];
+		return (d0 + d1) + (d2 + d3);
+	}
+
+	/**
+	 * Return the sum of {@code vals[i] * vect[cols[i]]} for {@code from <= i < to} (single-precision values),
+	 * using the unrolled loop if {@code unrolled} is true.
+	 */
+	static double dot(final boolean unrolled, final int cols[], final float vals[], final int from, final int to, final double vect[])
+	{
+		if (!unrolled) {
+			double d = 0.0;
+			for (int i = from; i < to; i++)
+				d += vals[i] * vect[cols[i]];
+			return d;
+		}
+		double d0 = 0.0, d1 = 0.0, d2 = 0.0, d3 = 0.0;
+		int i = from;
+		for (final int stop = to - 3; i < stop; i += 4) {
+			d0 += vals[i] * vect[cols[i]];
+			d1 += vals[i + 1] * vect[cols[i + 1]];
+			d2 += vals[i + 2] * vect[cols[i + 2]];
+			d3 += vals[i + 3] * vect[cols[i + 3]];
+		}
+		for (; i < to; i++)
+			d0 += vals[i] * vect[cols[i]];
+		return (d0 + d1) + (d2 + d3);
+	}
+
+	/**
+	 * Add {@code factor * vals[i]} to {@code result[cols[i]]} for {@code from <= i < to}.
+	 * The entries of {@code cols} in this range must be distinct.
+	 * The unrolled loop is used if {@code unrolled} is true.
+	 */
+	static void scatter(final boolean unrolled, final int cols[], final double vals[], final int from, final int to, final double factor, final double result[])
+	{
+		if (!unrolled) {
+			for (int i = from; i < to; i++)
+				result[cols[i]] += vals[i] * factor;
+			return;
+		}
+		int i = from;
+		for (final int stop = to - 3; i < stop; i += 4) {
+			final int c0 = cols[i], c1 = cols[i + 1], c2 = cols[i + 2], c3 = cols[i + 3];
+			final double r0 = result[c0] + vals[i] * factor;
+			final double r1 = result[c1] + vals[i + 1] * factor;
+			final double r2 = result[c2] + vals[i + 2] * factor;
+			final double r3 = result[c3] + vals[i + 3] * factor;
+			result[c0] = r0;
+			result[c1] = r1;
+			result[c2] = r2;
+			result[c3] = r3;
+		}
+		for (; i < to; i++)
+			result[cols[i]] += vals[i] * factor;
+	}
+}
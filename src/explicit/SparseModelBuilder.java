@@ -0,0 +1,484 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+package explicit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import prism.ModelType;
+import prism.PrismNotSupportedException;
+
+/**
+ * Builds a sparse explicit-state model ({@link DTMCSparse} or {@link MDPSparse}) directly,
+ * as transitions are generated, without first creating a {@link DTMCSimple} or {@link MDPSimple}.
+ * <br>
+ * Transitions are appended to growable arrays in the same layout as MDPSparse
+ * ({@code rowStarts}/{@code choiceStarts}/{@code cols}/{@code nonZeros}), so states must be
+ * processed in order of index (as they are during breadth-first exploration).
+ * As for the "simple" models, transitions to the same state within a choice are summed,
+ * and, for MDPs, a choice identical to an earlier one (same action and distribution) of the same state is dropped.
+ * A state permutation (e.g. for sorting states) is applied when the model is finally built.
+ * <br>
+ * Optionally (see {@link #setRecordStructure(boolean)}), the builder also records where each
+ * transition passed to {@link #addTransition(int, int, double)} ends up in the built model,
+ * so that the model can later be re-instantiated with different probabilities (see {@link ModelStructure}).
+ */
+public class SparseModelBuilder
+{
+	// Model type (DTMC or MDP)
+	private ModelType modelType;
+	private boolean nondet;
+	// Deadlock handling
+	private boolean findDeadlocks;
+	private boolean fixDeadlocks;
+
+	// Number of states, initial states and deadlock states
+	private int numStates = 0;
+	private List<Integer> initialStates = new ArrayList<Integer>();
+	private List<Integer> deadlocks = new ArrayList<Integer>();
+
+	// Transition function: states with index less than numRows are complete;
+	// the choice currently being built starts at choiceStarts[numChoices]
+	private int numRows = 0;
+	private int numChoices = 0;
+	private int numTransitions = 0;
+	private int rowStarts[] = new int[1024];
+	private int choiceStarts[] = new int[1024];
+	private int cols[] = new int[1024];
+	private double nonZeros[] = new double[1024];
+	private Object actions[] = null;
+
+	// Structure recording: raw transitions (calls to addTransition) are numbered in order;
+	// raws[t] is the raw transition stored at position t (-1 for fixed deadlock self-loops),
+	// rawSlots[r] is the position that raw transition r was merged into,
+	// rawRowStarts[s] is the first raw transition of state s
+	private boolean recordStructure = false;
+	private boolean structureValid = true;
+	private int numRaw = 0;
+	private int raws[] = null;
+	private int rawSlots[] = null;
+	private int rawRowStarts[] = null;
+	private ModelStructure structure = null;
+
+	/**
+	 * Create a builder for a model of type {@code modelType} (DTMC or MDP).
+	 * @param findDeadlocks Whether to record states with no choices as deadlocks
+	 * @param fixDeadlocks Whether to add self-loops to deadlock states
+	 */
+	public SparseModelBuilder(ModelType modelType, boolean findDeadlocks, boolean fixDeadlocks) throws PrismNotSupportedException
+	{
+		if (modelType != ModelType.DTMC && modelType != ModelType.MDP)
+			throw new PrismNotSupportedException("Direct sparse construction not supported for " + modelType + "s");
+		this.modelType = modelType;
+		this.nondet = modelType.nondeterministic();
+		this.findDeadlocks = findDeadlocks;
+		this.fixDeadlocks = fixDeadlocks;
+	}
+
+	/**
+	 * Is direct sparse construction possible for models of type {@code modelType}?
+	 */
+	public static boolean isSupported(ModelType modelType)
+	{
+		return modelType == ModelType.DTMC || modelType == ModelType.MDP;
+	}
+
+	/**
+	 * Record the structure of the model being built, so that it can be obtained,
+	 * after building, with {@link #getModelStructure()}. Must be called before adding transitions.
+	 */
+	public void setRecordStructure(boolean recordStructure)
+	{
+		this.recordStructure = recordStructure;
+		if (recordStructure) {
+			raws = new int[cols.length];
+			rawSlots = new int[cols.length];
+			rawRowStarts = new int[rowStarts.length];
+		} else {
+			raws = rawSlots = rawRowStarts = null;
+		}
+	}
+
+	/**
+	 * Add a new state, returning its index.
+	 */
+	public int addState()
+	{
+		return numStates++;
+	}
+
+	/**
+	 * Get the number of states added so far.
+	 */
+	public int getNumStates()
+	{
+		return numStates;
+	}
+
+	/**
+	 * Mark state {@code s} as initial.
+	 */
+	public void addInitialState(int s)
+	{
+		initialStates.add(s);
+	}
+
+	/**
+	 * Add a transition from state {@code src} to state {@code dest}.
+	 * For an MDP, this is added to the choice currently being built (see {@link #finishChoice(int, Object)}).
+	 * For a DTMC, it is added to the probability of going from {@code src} to {@code dest}.
+	 * Transitions must be added in non-decreasing order of {@code src}.
+	 */
+	public void addTransition(int src, int dest, double prob)
+	{
+		moveToRow(src);
+		if (recordStructure) {
+			// (a zero probability could not be told apart from a missing transition later)
+			if (prob == 0.0)
+				structureValid = false;
+			if (numRaw == rawSlots.length)
+				rawSlots = Arrays.copyOf(rawSlots, 2 * numRaw);
+			appendTransition(dest, prob, numRaw++);
+		} else {
+			appendTransition(dest, prob, -1);
+		}
+	}
+
+	/**
+	 * Finish the choice (of an MDP) currently being built for state {@code src},
+	 * labelling it with {@code action} (which may be null).
+	 * The choice is discarded if the state already has an identical one.
+	 */
+	public void finishChoice(int src, Object action)
+	{
+		moveToRow(src);
+		int start = choiceStarts[numChoices];
+		int end = mergeDuplicates(start, numTransitions);
+		// Check for an identical existing choice of this state
+		for (int c = rowStarts[numRows]; c < numChoices; c++) {
+			if (Objects.equals(getAction(c), action) && sameTransitions(choiceStarts[c], choiceStarts[c + 1], start, end)) {
+				numTransitions = start;
+				// (the raw transitions of the dropped choice have nowhere to go)
+				structureValid = false;
+				return;
+			}
+		}
+		numTransitions = end;
+		if (action != null) {
+			if (actions == null)
+				actions = new Object[choiceStarts.length];
+			actions[numChoices] = action;
+		}
+		startNewChoice();
+	}
+
+	/**
+	 * Finish building: complete all states added so far.
+	 */
+	public void finish()
+	{
+		moveToRow(numStates);
+	}
+
+	/**
+	 * Get the list of deadlock states found (only complete after {@link #finish()}).
+	 */
+	public List<Integer> getDeadlockStates()
+	{
+		return deadlocks;
+	}
+
+	/**
+	 * Get the structure of the model returned by {@link #build(int[])}, if recorded
+	 * (see {@link #setRecordStructure(boolean)}) and if the model can be re-instantiated from it;
+	 * null otherwise.
+	 */
+	public ModelStructure getModelStructure()
+	{
+		return structure;
+	}
+
+	/**
+	 * Build the model, applying the state permutation {@code permut} (state i becomes permut[i]),
+	 * if non-null, and sorting the transitions of each choice by target state.
+	 * This builder should not be used afterwards.
+	 */
+	public ModelExplicit build(int permut[])
+	{
+		finish();
+		int newRowStarts[] = new int[numStates + 1];
+		int newChoiceStarts[] = new int[numChoices + 1];
+		int newCols[] = new int[numTransitions];
+		double newNonZeros[] = new double[numTransitions];
+		Object newActions[] = actions == null ? null : new Object[numChoices];
+		// For structure recording, the old position of each transition
+		int newOrigins[] = raws == null || !structureValid ? null : new int[numTransitions];
+		int permutInv[] = null;
+		if (permut != null) {
+			permutInv = new int[numStates];
+			for (int s = 0; s < numStates; s++)
+				permutInv[permut[s]] = s;
+		}
+		int choice = 0, trans = 0;
+		for (int s = 0; s < numStates; s++) {
+			int old = permut == null ? s : permutInv[s];
+			newRowStarts[s] = choice;
+			for (int c = rowStarts[old]; c < rowStarts[old + 1]; c++) {
+				newChoiceStarts[choice] = trans;
+				if (newActions != null)
+					newActions[choice] = actions[c];
+				int start = trans;
+				for (int t = choiceStarts[c]; t < choiceStarts[c + 1]; t++, trans++) {
+					newCols[trans] = permut == null ? cols[t] : permut[cols[t]];
+					newNonZeros[trans] = nonZeros[t];
+					if (newOrigins != null)
+						newOrigins[trans] = t;
+				}
+				sortByColumn(newCols, newNonZeros, newOrigins, start, trans);
+				choice++;
+			}
+		}
+		newRowStarts[numStates] = choice;
+		newChoiceStarts[choice] = trans;
+		int newRawStarts[] = null, newRawSlots[] = null, fixedSlots[] = null;
+		if (newOrigins != null) {
+			int newPos[] = new int[numTransitions];
+			for (int t = 0; t < numTransitions; t++)
+				newPos[newOrigins[t]] = t;
+			newOrigins = null;
+			// Raw transitions of each state (in the new order), in the order they were added
+			newRawStarts = new int[numStates + 1];
+			newRawSlots = new int[numRaw];
+			int r = 0;
+			for (int s = 0; s < numStates; s++) {
+				int old = permut == null ? s : permutInv[s];
+				newRawStarts[s] = r;
+				for (int k = rawRowStarts[old]; k < rawRowStarts[old + 1]; k++)
+					newRawSlots[r++] = newPos[rawSlots[k]];
+			}
+			newRawStarts[numStates] = r;
+			// Fixed deadlock self-loops
+			int numFixed = 0;
+			for (int t = 0; t < numTransitions; t++)
+				if (raws[t] == -1)
+					numFixed++;
+			fixedSlots = new int[numFixed];
+			numFixed = 0;
+			for (int t = 0; t < numTransitions; t++)
+				if (raws[t] == -1)
+					fixedSlots[numFixed++] = newPos[t];
+		}
+		// Free storage
+		cols = null;
+		nonZeros = null;
+		choiceStarts = null;
+		rowStarts = null;
+		actions = null;
+		raws = rawSlots = rawRowStarts = null;
+
+		ModelExplicit model;
+		if (nondet) {
+			model = new MDPSparse(numStates, newRowStarts, newChoiceStarts, newCols, newNonZeros, newActions);
+		} else {
+			// A DTMC has at most one choice per state
+			int rows[] = new int[numStates + 1];
+			for (int s = 0; s <= numStates; s++)
+				rows[s] = newChoiceStarts[newRowStarts[s]];
+			model = new DTMCSparse(numStates, rows, newCols, newNonZeros);
+		}
+		for (int s : initialStates)
+			model.addInitialState(permut == null ? s : permut[s]);
+		for (int s : deadlocks)
+			model.addDeadlockState(permut == null ? s : permut[s]);
+		if (newRawStarts != null)
+			structure = new ModelStructure(model, newRawStarts, newRawSlots, fixedSlots);
+		return model;
+	}
+
+	// Private methods
+
+	/**
+	 * Complete all states up to (but not including) {@code src}.
+	 */
+	private void moveToRow(int src)
+	{
+		while (numRows < src) {
+			// For a DTMC, all transitions of the state form a single choice
+			if (!nondet && numTransitions > choiceStarts[numChoices]) {
+				numTransitions = mergeDuplicates(choiceStarts[numChoices], numTransitions);
+				startNewChoice();
+			}
+			// Deadlock?
+			if (findDeadlocks && rowStarts[numRows] == numChoices) {
+				deadlocks.add(numRows);
+				if (fixDeadlocks) {
+					appendTransition(numRows, 1.0, -1);
+					startNewChoice();
+				}
+			}
+			numRows++;
+			if (numRows + 1 >= rowStarts.length)
+				rowStarts = Arrays.copyOf(rowStarts, 2 * rowStarts.length);
+			rowStarts[numRows] = numChoices;
+			if (recordStructure) {
+				if (numRows + 1 >= rawRowStarts.length)
+					rawRowStarts = Arrays.copyOf(rawRowStarts, rowStarts.length);
+				rawRowStarts[numRows] = numRaw;
+			}
+		}
+	}
+
+	/**
+	 * Append a transition to {@code dest} to the choice currently being built.
+	 * {@code raw} is the index of the corresponding raw transition (-1 if none or not recording).
+	 */
+	private void appendTransition(int dest, double prob, int raw)
+	{
+		if (numTransitions == cols.length) {
+			cols = Arrays.copyOf(cols, 2 * numTransitions);
+			nonZeros = Arrays.copyOf(nonZeros, 2 * numTransitions);
+			if (raws != null)
+				raws = Arrays.copyOf(raws, 2 * numTransitions);
+		}
+		if (raws != null) {
+			raws[numTransitions] = raw;
+			if (raw != -1)
+				rawSlots[raw] = numTransitions;
+		}
+		cols[numTransitions] = dest;
+		nonZeros[numTransitions++] = prob;
+	}
+
+	/**
+	 * Record the end of the current choice and start a new one.
+	 */
+	private void startNewChoice()
+	{
+		numChoices++;
+		if (numChoices + 1 >= choiceStarts.length) {
+			choiceStarts = Arrays.copyOf(choiceStarts, 2 * choiceStarts.length);
+			if (actions != null)
+				actions = Arrays.copyOf(actions, choiceStarts.length);
+		}
+		choiceStarts[numChoices] = numTransitions;
+	}
+
+	private Object getAction(int c)
+	{
+		return actions == null ? null : actions[c];
+	}
+
+	private boolean sameTransitions(int start1, int end1, int start2, int end2)
+	{
+		if (end1 - start1 != end2 - start2)
+			return false;
+		for (int i = 0; i < end1 - start1; i++) {
+			if (cols[start1 + i] != cols[start2 + i] || nonZeros[start1 + i] != nonZeros[start2 + i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sort transitions {@code start}...{@code end}-1 by target and sum any with the same target.
+	 * Returns the new end index.
+	 */
+	private int mergeDuplicates(int start, int end)
+	{
+		sortByColumn(cols, nonZeros, raws, start, end);
+		if (raws != null) {
+			for (int i = start; i < end; i++)
+				if (raws[i] != -1)
+					rawSlots[raws[i]] = i;
+		}
+		if (end - start < 2)
+			return end;
+		int k = start;
+		for (int i = start + 1; i < end; i++) {
+			if (cols[i] == cols[k]) {
+				nonZeros[k] += nonZeros[i];
+				if (raws != null && raws[i] != -1)
+					rawSlots[raws[i]] = k;
+			} else {
+				k++;
+				cols[k] = cols[i];
+				nonZeros[k] = nonZeros[i];
+				if (raws != null) {
+					raws[k] = raws[i];
+					if (raws[k] != -1)
+						rawSlots[raws[k]] = k;
+				}
+			}
+		}
+		return k + 1;
+	}
+
+	/**
+	 * Sort entries {@code start}...{@code end}-1 of {@code cols} (and correspondingly {@code vals},
+	 * and {@code extra}, if non-null) into ascending order.
+	 */
+	private static void sortByColumn(int cols[], double vals[], int extra[], int start, int end)
+	{
+		int n = end - start;
+		if (n < 16) {
+			// Insertion sort
+			for (int i = start + 1; i < end; i++) {
+				int c = cols[i];
+				double v = vals[i];
+				int x = extra == null ? 0 : extra[i];
+				int j = i - 1;
+				while (j >= start && cols[j] > c) {
+					cols[j + 1] = cols[j];
+					vals[j + 1] = vals[j];
+					if (extra != null)
+						extra[j + 1] = extra[j];
+					j--;
+				}
+				cols[j + 1] = c;
+				vals[j + 1] = v;
+				if (extra != null)
+					extra[j + 1] = x;
+			}
+			return;
+		}
+		// Sort (column, position) pairs, then reorder
+		long keys[] = new long[n];
+		for (int i = 0; i < n; i++)
+			keys[i] = ((long) cols[start + i] << 32) | i;
+		Arrays.sort(keys);
+		double tmp[] = Arrays.copyOfRange(vals, start, end);
+		int tmpExtra[] = extra == null ? null : Arrays.copyOfRange(extra, start, end);
+		for (int i = 0; i < n; i++) {
+			cols[start + i] = (int) (keys[i] >>> 32);
+			vals[start + i] = tmp[(int) keys[i]];
+			if (extra != null)
+				extra[start + i] = tmpExtra[(int) keys[i]];
+		}
+	}
+}
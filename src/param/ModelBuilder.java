@@ -33,8 +33,11 @@ import java.util.List;
 import java.util.Map;
 
 import explicit.IndexedSet;
+import explicit.OffHeapStateStorage;
 import explicit.StateStorage;
 import parser.State;
+import parser.StatePacker;
+import parser.VarList;
 import parser.ast.Expression;
 import parser.ast.ExpressionBinaryOp;
 import parser.ast.ExpressionConstant;
@@ -348,7 +351,13 @@ public final class ModelBuilder extends PrismComponent
 
 		boolean isNonDet = modelType == ModelType.MDP;
 		boolean isContinuous = modelType == ModelType.CTMC;
-		StateStorage<State> states = new IndexedSet<State>(true);
+		// Store states in packed form, off-heap, if the model's variables allow it
+		VarList varList = modelGenSym.createVarList();
+		StateStorage<State> states;
+		if (varList != null && StatePacker.canPack(varList))
+			states = new OffHeapStateStorage(new StatePacker(varList));
+		else
+			states = new IndexedSet<State>(true);
 		reserveMemoryAndExploreStates(modelGenSym, model, states);
 		int[] permut = states.buildSortingPermutation();
 		List<State> statesList = states.toPermutedArrayList(permut);
@@ -40,4 +40,15 @@ public interface EvaluateContext
 	 * Return the value for a variable (by name or index); null if unknown.
 	 */
 	public Object getVarValue(String name, int index);
+
+	/**
+	 * Return the value for element {@code element} of indexed set {@code setName},
+	 * whose index (as a variable) is {@code index}; null if unknown.
+	 * By default, this looks up the variable named "setName[element]"; contexts that
+	 * look variables up by index should override it to avoid constructing the name.
+	 */
+	public default Object getIndexedVarValue(String setName, int element, int index)
+	{
+		return getVarValue(setName + "[" + element + "]", index);
+	}
 }
@@ -92,4 +92,11 @@ if (DEBUG_getCV) {
 		// Use index to look up value
 		return index == -1 ? null : varValues[index];
 	}
+
+	@Override
+	public Object getIndexedVarValue(String setName, int element, int index)
+	{
+		// Use index to look up value
+		return index == -1 ? null : varValues[index];
+	}
 }
@@ -70,4 +70,10 @@ public class EvaluateContextSubstate implements EvaluateContext
 			return null;
 		return varValues[newIndex];
 	}
+
+	@Override
+	public Object getIndexedVarValue(String setName, int element, int index)
+	{
+		return getVarValue(null, index);
+	}
 }
@@ -0,0 +1,67 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package parser;
+
+/**
+ * Information required to evaluate an expression: values for a fixed list of variables,
+ * stored as a (mutable) primitive int array, plus an optional Values object for constants.
+ * The array is not copied, so changes made to it by the owner are seen by subsequent evaluations.
+ * Variables are looked up by name; any variable not in the list is treated as unknown.
+ */
+public class EvaluateContextTuple implements EvaluateContext
+{
+	private Values constantValues;
+	private String[] varNames;
+	private int[] tuple;
+
+	public EvaluateContextTuple(Values constantValues, String[] varNames, int[] tuple)
+	{
+		this.constantValues = constantValues;
+		this.varNames = varNames;
+		this.tuple = tuple;
+	}
+
+	public Object getConstantValue(String name)
+	{
+		if (constantValues == null)
+			return null;
+		int i = constantValues.getIndexOf(name);
+		if (i == -1)
+			return null;
+		return constantValues.getValue(i);
+	}
+
+	public Object getVarValue(String name, int index)
+	{
+		for (int i = 0; i < varNames.length; i++) {
+			if (varNames[i].equals(name))
+				return tuple[i];
+		}
+		return null;
+	}
+}
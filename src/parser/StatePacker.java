@@ -0,0 +1,172 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+package parser;
+
+import parser.ast.Declaration;
+import parser.ast.DeclarationClock;
+import parser.ast.DeclarationIntUnbounded;
+import parser.type.TypeBool;
+import parser.type.TypeInt;
+import prism.PrismLangException;
+
+/**
+ * Converts between {@link State} objects and their bit-packed form (arrays of {@code long} words),
+ * using the integer encoding of each variable given by a {@link VarList}
+ * (i.e. value minus the variable's low bound, in {@code getRangeLogTwo} bits).
+ * <br>
+ * Variables are laid out in order, starting from the most significant bit of the first word,
+ * and a variable never straddles two words. This means that comparing the words (as unsigned values)
+ * in order gives the same ordering as comparing the original states.
+ * <br>
+ * Only models whose variables are all bounded can be packed: see {@link #canPack(VarList)}.
+ */
+public class StatePacker
+{
+	// Number of variables
+	private int numVars;
+	// Number of words in a packed state
+	private int numWords;
+	// Per-variable information: word, shift (from the least significant bit), mask, low value, and whether Boolean
+	private int word[];
+	private int shift[];
+	private long mask[];
+	private int low[];
+	private int high[];
+	private boolean isBool[];
+	// Variable names (for error messages)
+	private String names[];
+
+	/**
+	 * Check whether all the variables in {@code varList} can be packed,
+	 * i.e. they are all bounded integers or Booleans.
+	 */
+	public static boolean canPack(VarList varList)
+	{
+		int n = varList.getNumVars();
+		for (int i = 0; i < n; i++) {
+			Declaration decl = varList.getDeclaration(i);
+			if (decl != null && (decl.getDeclType() instanceof DeclarationIntUnbounded || decl.getDeclType() instanceof DeclarationClock))
+				return false;
+			if (!(varList.getType(i) instanceof TypeInt || varList.getType(i) instanceof TypeBool))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Construct a packer for the variables in {@code varList}.
+	 * Throws an exception if they cannot be packed (see {@link #canPack(VarList)}).
+	 */
+	public StatePacker(VarList varList) throws PrismLangException
+	{
+		if (!canPack(varList))
+			throw new PrismLangException("Cannot pack states containing unbounded variables");
+		numVars = varList.getNumVars();
+		word = new int[numVars];
+		shift = new int[numVars];
+		mask = new long[numVars];
+		low = new int[numVars];
+		high = new int[numVars];
+		isBool = new boolean[numVars];
+		names = new String[numVars];
+		int w = 0, free = 64;
+		for (int i = 0; i < numVars; i++) {
+			int bits = varList.getRangeLogTwo(i);
+			if (bits > free) {
+				w++;
+				free = 64;
+			}
+			free -= bits;
+			word[i] = w;
+			shift[i] = free;
+			mask[i] = bits == 0 ? 0L : (-1L >>> (64 - bits));
+			low[i] = varList.getLow(i);
+			high[i] = varList.getHigh(i);
+			isBool[i] = varList.getType(i) instanceof TypeBool;
+			names[i] = varList.getName(i);
+		}
+		numWords = w + 1;
+	}
+
+	/**
+	 * Get the number of variables in each state.
+	 */
+	public int getNumVars()
+	{
+		return numVars;
+	}
+
+	/**
+	 * Get the number of {@code long} words used for each packed state.
+	 */
+	public int getNumWords()
+	{
+		return numWords;
+	}
+
+	/**
+	 * Pack a state into the (zeroed) array {@code words}, and return it.
+	 * Throws an exception if any value is outside the range of its variable.
+	 */
+	public long[] packWords(State state, long words[]) throws PrismLangException
+	{
+		Object vals[] = state.varValues;
+		for (int i = 0; i < numVars; i++) {
+			long v;
+			if (isBool[i]) {
+				v = ((Boolean) vals[i]).booleanValue() ? 1 : 0;
+			} else {
+				int x = ((Integer) vals[i]).intValue();
+				if (x < low[i] || x > high[i])
+					throw new PrismLangException("Value " + x + " is out of range for variable " + names[i]);
+				v = x - low[i];
+			}
+			words[word[i]] |= v << shift[i];
+		}
+		return words;
+	}
+
+	/**
+	 * Unpack the words of a packed state into {@code state}, and return it.
+	 */
+	public State unpackWords(long words[], State state)
+	{
+		for (int i = 0; i < numVars; i++) {
+			state.varValues[i] = isBool[i] ? (Object) (getEncodedValue(words, i) != 0) : (Object) (getEncodedValue(words, i) + low[i]);
+		}
+		return state;
+	}
+
+	/**
+	 * Get the integer-encoded value (as in {@link VarList#encodeToInt(int, Object)}) of variable {@code var}
+	 * directly from the words of a packed state.
+	 */
+	public int getEncodedValue(long words[], int var)
+	{
+		return (int) ((words[word[var]] >>> shift[var]) & mask[var]);
+	}
+}
@@ -328,6 +328,19 @@ else System.out.println("in parser.Values::addVar(4 Args): var is null *******")
 		return getIndex(name) != -1;
 	}
 
+	/**
+	 * Get the number of elements of the indexed set with the given name, i.e. the number of
+	 * consecutively numbered variables {@code name[0]}, {@code name[1]}, ... stored in this list.
+	 * Returns 0 if there is no such indexed set.
+	 */
+	public int getIndexedSetSize(String name)
+	{
+		int size = 0;
+		while (nameMap.containsKey(name + "[" + size + "]"))
+			size++;
+		return size;
+	}
+
 	/**
 	 * Get the declaration of the ith variable in this list.
 	 */
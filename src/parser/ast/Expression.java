@@ -918,6 +918,27 @@ if (DEBUG) System.out.println("[The class itself is an instance of: " + getClass
 		return false;
 	}
 	
+	/**
+	 * Test if an expression contains a print or printall filter.
+	 */
+	public static boolean containsPrintFilter(Expression expr)
+	{
+		try {
+			ASTTraverse astt = new ASTTraverse()
+			{
+				public void visitPost(ExpressionFilter e) throws PrismLangException
+				{
+					if (e.getOperatorType() == ExpressionFilter.FilterOperator.PRINT || e.getOperatorType() == ExpressionFilter.FilterOperator.PRINTALL)
+						throw new PrismLangException("Found one", e);
+				}
+			};
+			expr.accept(astt);
+		} catch (PrismLangException e) {
+			return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * Test if an expression is an LTL formula and is in positive normal form,
 	 * i.e. where negation only occurs at the level of state formulae.
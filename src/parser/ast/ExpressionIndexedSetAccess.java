@@ -26,6 +26,9 @@ public static boolean DEBUG_VISITOR = false;
 
 	private List<Expression> restrictionExpressions;	// Expressions that may restrict the scope of validity of the access expression
 
+	private int elementsBaseIndex = -1;	// Index (in the ModulesFile list of variables) of element 0 of the indexed set, if known
+	private int numElements = -1;		// Number of elements of the indexed set (which are consecutive from elementsBaseIndex), if known
+
 	// Constructors
 	
 	public ExpressionIndexedSetAccess()
@@ -123,6 +126,28 @@ if (DEBUG_VPEISA) System.out.println("Recursing into the access expression which
 		varIdents = original;
 	}
 
+	/**
+	 * Record where the elements of the indexed set are in the ModulesFile list of variables:
+	 * element k is variable {@code baseIndex + k}, for 0 <= k < {@code numElements}.
+	 * This should be called during the FindAllVars visitor, and allows elements to be resolved without name look-ups.
+	 */
+	public void setElementLayout(int baseIndex, int numElements)
+	{
+		this.elementsBaseIndex = baseIndex;
+		this.numElements = numElements;
+	}
+
+	/**
+	 * Get the index of the variable for element {@code idx} of the indexed set, or -1 if the index is out of bounds.
+	 * If the layout of the indexed set is not known (see {@link #setElementLayout(int, int)}), returns -2.
+	 */
+	public int getElementVarIndex(int idx)
+	{
+		if (elementsBaseIndex < 0)
+			return -2;
+		return (idx < 0 || idx >= numElements) ? -1 : elementsBaseIndex + idx;
+	}
+
 
 	// Methods required for Expression ancestor class:
 	
@@ -166,7 +191,7 @@ if (DEBUG_VPEISA) System.out.println("Recursing into the access expression which
 		String nameToFind;
 		PrismLangException ple;			// possible exception could be thrown.
 
-System.out.println("ExpressionIndexedSetAccess.evaluate(EvaluateContext) has been called.");
+if (DEBUG) System.out.println("ExpressionIndexedSetAccess.evaluate(EvaluateContext) has been called.");
 
 		Object idx = indexExpression.evaluate(ec);
 		if (!(idx instanceof Integer))
@@ -178,6 +203,13 @@ System.out.println("ExpressionIndexedSetAccess.evaluate(EvaluateContext) has bee
 		// Convert to int
 		int idxAsInt = ((Integer)idx);
 
+		// If the layout of the elements is known, the variable can be found directly
+		if (elementsBaseIndex >= 0) {
+			if (idxAsInt < 0 || idxAsInt >= numElements)
+				throw new PrismOutOfBoundsException("Attempt to access invalid index of an indexed set: " + idxAsInt);
+			return ec.getIndexedVarValue(name, idxAsInt, elementsBaseIndex + idxAsInt);
+		}
+
 		// Now to check the index corresponds to a valid index
 		Declaration origDecl = Helper.getIndexedSetDeclaration(this.getName());
 
@@ -273,6 +305,8 @@ if (DEBUG_VISITOR) System.out.println(" The " + v.getClass().getName() + " visit
 		expr.setType(type);
 		expr.setPosition(this);
 		expr.varIdents = this.varIdents;
+		expr.elementsBaseIndex = this.elementsBaseIndex;
+		expr.numElements = this.numElements;
 
 		for (Expression restr : restrictionExpressions) {
 			expr.addRestrictionExpression((Expression) restr.deepCopy());		// Preserve any restrictions 
@@ -280,6 +314,36 @@ if (DEBUG_VISITOR) System.out.println(" The " + v.getClass().getName() + " visit
 		return expr;
 	}
 
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + ((indexExpression == null) ? 0 : indexExpression.hashCode());
+		result = prime * result + ((restrictionExpressions == null) ? 0 : restrictionExpressions.hashCode());
+		return result;
+	}
+
+	/** Structural equality: same indexed set, index expression and restrictions (consistent with compareTo). */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!super.equals(obj))
+			return false;
+		ExpressionIndexedSetAccess other = (ExpressionIndexedSetAccess) obj;
+		if (indexExpression == null) {
+			if (other.indexExpression != null)
+				return false;
+		} else if (!indexExpression.equals(other.indexExpression))
+			return false;
+		if (restrictionExpressions == null) {
+			if (other.restrictionExpressions != null)
+				return false;
+		} else if (!restrictionExpressions.equals(other.restrictionExpressions))
+			return false;
+		return true;
+	}
+
 	// Method required for Comparable:
 	/** Simply uses the textual representation to form an order based on normal string ordering. Therefore, it cannot tell whether
             any calculations inside the index-specification expression are mathematically equivalent (e.g with brackets or transposed ordering)
@@ -384,7 +384,14 @@ if (DEBUG_UPD_ST) System.out.println("It is an instance of ExpressionIndexedSetA
 
 				Object evaluatedIndex = eisa.getIndexExpression().evaluate(oldState);		// 2018: Do I need to add a parameter for Prism 4.4 ?? Probably not, since the kept bit from below just uses this call.
 if (DEBUG_UPD_ST) System.out.println("evaluatedIndex is " + evaluatedIndex + ", its classType is " + evaluatedIndex.getClass().getName() );
-				if (evaluatedIndex instanceof Integer)
+				if (evaluatedIndex instanceof Integer && eisa.getElementVarIndex((Integer) evaluatedIndex) != -2)
+				{
+					// The layout of the indexed set is known, so the variable's index can be computed directly
+					indexOfVarToUpdate = eisa.getElementVarIndex((Integer) evaluatedIndex);
+					if (indexOfVarToUpdate == -1)		// Outside the bounds of the declared number of elements.
+						throw new PrismLangException("Attempt to access undefined element of IndexedSet: " + eisa.getName() + "[" + evaluatedIndex + "]", getExpression(i));
+				}
+				else if (evaluatedIndex instanceof Integer)
 				{
 					// Construct the hoped-for name of the specific variable to be updated.
 					String varNameToUpdate = eisa.getName() + "[" + evaluatedIndex + "]";
@@ -144,6 +144,7 @@ if (DEBUG) ple.printStackTrace(System.out); else
 
 				Type targetType = varTypes.get(j);
 				e.setType(i, targetType);
+				setElementLayout(detail, j);
 if (DEBUG) System.out.println("  Also, determined its type: " + targetType);
 if (DEBUG) System.out.println("  BUT UNLIKE normal variables, the j-position is being left for run-time determination [if that is even possible!].");
 
@@ -252,6 +253,7 @@ if (DEBUG_EISA) System.out.println(" Determined its type: " + targetType + ", bu
 
 				// Tell it of the varIdents vector, to allow the specific element to be found at later time.
 				e.setVarIdentsList(varIdents);	// enable run-time resolution of whichever index is to be accessed.
+				setElementLayout(e, j);
 
 
 		// Consider the restriction expressions (if any) that apply to this accessing of the indexed set...
@@ -315,5 +317,17 @@ if (DEBUG) System.out.println("\nReached FindAllVars.visit(ExpressionVar) for: "
 		// Otherwise, there is a problem
 		throw new PrismLangException("Unknown variable " + e.getName() + " in ExpressionVar object", e);
 	}
-}
 
+	/**
+	 * Record in an indexed-set access where the elements of the set are in the list of variables,
+	 * given that element 0 is at position {@code first}. The elements are declared consecutively.
+	 */
+	private void setElementLayout(ExpressionIndexedSetAccess e, int first)
+	{
+		String name = e.getName();
+		int count = 0;
+		while (first + count < varIdents.size() && varIdents.get(first + count).equals(name + "[" + count + "]"))
+			count++;
+		e.setElementLayout(first, count);
+	}
+}
@@ -0,0 +1,60 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package parser.visitor;
+
+import java.util.Vector;
+
+import parser.ast.*;
+import prism.PrismLangException;
+
+/**
+ * Get all constants (i.e. ExpressionConstant objects), store names in set,
+ * except those that only appear in the probabilities/rates of updates.
+ * These are the constants that can affect the states and transitions of a model
+ * (rather than just the values of its transition probabilities/rates).
+ */
+public class GetAllConstantsOutsideProbabilities extends GetAllConstants
+{
+	public GetAllConstantsOutsideProbabilities(Vector<String> v)
+	{
+		super(v);
+	}
+
+	public Object visit(Updates e) throws PrismLangException
+	{
+		// Skip the probabilities, just visit the updates themselves
+		visitPre(e);
+		int i, n;
+		n = e.getNumUpdates();
+		for (i = 0; i < n; i++) {
+			if (e.getUpdate(i) != null) e.getUpdate(i).accept(this);
+		}
+		visitPost(e);
+		return null;
+	}
+}
@@ -0,0 +1,316 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package prism;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import parser.EvaluateContextTuple;
+import parser.Values;
+import parser.ast.Command;
+import parser.ast.Expression;
+import parser.ast.ExpressionBinaryOp;
+import parser.ast.ExpressionFunc;
+import parser.ast.ExpressionITE;
+import parser.ast.ExpressionIndexedSetAccess;
+import parser.ast.ExpressionUnaryOp;
+import parser.ast.ExpressionVar;
+import parser.ast.Update;
+import parser.ast.Updates;
+import parser.visitor.ASTTraverse;
+
+/**
+ * A "compiled" form of a command version, with holes for the values of the variables used in the
+ * index specifications of its indexed-set accesses, from which the variants of the command are instantiated.
+ * <br>
+ * Instantiating the template for a combination of values gives the same command as a deep copy of the
+ * original with those values substituted into its index specifiers (see {@link parser.ast.ASTElement#replaceIndexSpecifiers}),
+ * but only the nodes on a path from the root of an expression to a substituted index specifier are created afresh:
+ * every other subtree is shared between the original command and all its instantiations.
+ * Since the results share structure, they must be treated as read-only.
+ */
+public class CommandTemplate
+{
+	// How each node that depends on the substituted values is instantiated (nodes not in the map are shared)
+	private static final int REBUILD = 1;		// a copy of the node, with its children instantiated
+	private static final int FOLD_INDEX = 2;	// an indexed-set access whose index can be evaluated to a literal
+	private static final int SUBSTITUTE_INDEX = 3;	// an indexed-set access whose index needs partial evaluation
+	private static final int COPY = 4;			// any other node: deep copy, then replace index specifiers
+
+	private Command command;
+	private Values constantValues;
+	private String[] holeNames;
+	private Map<Expression, Integer> nodeKinds = new IdentityHashMap<Expression, Integer>();
+
+	/**
+	 * Create a template for {@code command}, with holes for the variables named in {@code holeNames}.
+	 */
+	public CommandTemplate(Command command, Values constantValues, List<String> holeNames) throws PrismLangException
+	{
+		this.command = command;
+		this.constantValues = constantValues;
+		this.holeNames = holeNames.toArray(new String[holeNames.size()]);
+		analyse(command.getGuard());
+		Updates updates = command.getUpdates();
+		for (int i = 0; i < updates.getNumUpdates(); i++) {
+			Update update = updates.getUpdate(i);
+			for (int j = 0; j < update.getNumElements(); j++) {
+				analyse(update.getExpression(j));
+			}
+		}
+	}
+
+	/**
+	 * Get the names of the variables for which this template has holes, in the order used by {@link #instantiate(int[])}.
+	 */
+	public String[] getHoleNames()
+	{
+		return holeNames;
+	}
+
+	/**
+	 * Instantiate the template for the values given in {@code substitutions} (which must include all holes).
+	 */
+	public Command instantiate(Values substitutions) throws PrismLangException
+	{
+		int[] values = new int[holeNames.length];
+		for (int i = 0; i < holeNames.length; i++) {
+			values[i] = substitutions.getIntValueOf(holeNames[i]);
+		}
+		return instantiate(values);
+	}
+
+	/**
+	 * Instantiate the template for the values (of the variables in {@link #getHoleNames()}, in order) given in {@code values}.
+	 */
+	public Command instantiate(int[] values) throws PrismLangException
+	{
+		Instantiation inst = new Instantiation(values);
+		Command c = new Command();
+		c.setSynch(command.getSynch());
+		c.setSynchIndex(command.getSynchIndex());
+		c.setVariant(command.getVariant());
+		c.setGuard(inst.instantiate(command.getGuard()));
+		Updates updates = command.getUpdates();
+		Updates newUpdates = new Updates();
+		for (int i = 0; i < updates.getNumUpdates(); i++) {
+			Update update = updates.getUpdate(i);
+			Update newUpdate = new Update();
+			for (int j = 0; j < update.getNumElements(); j++) {
+				// Targets are shared: indices of indexed-set targets are resolved from the substitutions during translation
+				newUpdate.addElement(update.getVarIdent(j), inst.instantiate(update.getExpression(j)));
+				newUpdate.setType(j, update.getTypeForElement(j));
+				newUpdate.setVarIndex(j, update.getVarIndex(j));
+			}
+			newUpdate.setPosition(update);
+			newUpdates.addUpdate(updates.getProbability(i), newUpdate);
+		}
+		newUpdates.setPosition(updates);
+		c.setUpdates(newUpdates);
+		c.setPosition(command);
+		return c;
+	}
+
+	// Analysis of the command
+
+	/**
+	 * Determine which nodes of an expression depend on the hole values, and how to instantiate them.
+	 * Returns true if {@code expr} depends on them.
+	 */
+	private boolean analyse(Expression expr) throws PrismLangException
+	{
+		boolean dependent = false;
+		if (expr instanceof ExpressionIndexedSetAccess) {
+			Expression indexExpr = ((ExpressionIndexedSetAccess) expr).getIndexExpression();
+			HoleUsage usage = new HoleUsage();
+			indexExpr.accept(usage);
+			if (usage.usesHole) {
+				nodeKinds.put(expr, usage.onlyHolesAndConstants ? FOLD_INDEX : SUBSTITUTE_INDEX);
+				return true;
+			}
+			return false;
+		} else if (expr instanceof ExpressionBinaryOp) {
+			// (use | rather than || so that all children are analysed)
+			dependent = analyse(((ExpressionBinaryOp) expr).getOperand1()) | analyse(((ExpressionBinaryOp) expr).getOperand2());
+		} else if (expr instanceof ExpressionUnaryOp) {
+			dependent = analyse(((ExpressionUnaryOp) expr).getOperand());
+		} else if (expr instanceof ExpressionITE) {
+			ExpressionITE ite = (ExpressionITE) expr;
+			dependent = analyse(ite.getOperand1()) | analyse(ite.getOperand2()) | analyse(ite.getOperand3());
+		} else if (expr instanceof ExpressionFunc) {
+			ExpressionFunc func = (ExpressionFunc) expr;
+			for (int i = 0; i < func.getNumOperands(); i++) {
+				dependent |= analyse(func.getOperand(i));
+			}
+		} else {
+			// Any other kind of expression: fall back on copying it, if it contains anything that is substituted
+			HoleUsage usage = new HoleUsage();
+			expr.accept(usage);
+			if (usage.usesHoleInIndex) {
+				nodeKinds.put(expr, COPY);
+				return true;
+			}
+			return false;
+		}
+		if (dependent)
+			nodeKinds.put(expr, REBUILD);
+		return dependent;
+	}
+
+	private int getHolePosition(String name)
+	{
+		for (int i = 0; i < holeNames.length; i++) {
+			if (holeNames[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Visitor to find whether an expression uses the hole variables (anywhere, or within an index specifier),
+	 * and whether it consists only of holes and constants (i.e. could be evaluated given the hole values).
+	 */
+	private class HoleUsage extends ASTTraverse
+	{
+		boolean usesHole = false;
+		boolean usesHoleInIndex = false;
+		boolean onlyHolesAndConstants = true;
+		int eisaDepth = 0;
+
+		public void visitPre(ExpressionIndexedSetAccess e) throws PrismLangException
+		{
+			onlyHolesAndConstants = false;
+			eisaDepth++;
+		}
+
+		public void visitPost(ExpressionIndexedSetAccess e) throws PrismLangException
+		{
+			eisaDepth--;
+		}
+
+		public void visitPost(ExpressionVar e) throws PrismLangException
+		{
+			if (getHolePosition(e.getName()) == -1) {
+				onlyHolesAndConstants = false;
+			} else {
+				usesHole = true;
+				if (eisaDepth > 0)
+					usesHoleInIndex = true;
+			}
+		}
+	}
+
+	// Instantiation
+
+	/**
+	 * Instantiation of expressions for one combination of hole values.
+	 */
+	private class Instantiation
+	{
+		private int[] values;
+		private EvaluateContextTuple evalContext;
+		private Values substitutions = null;
+
+		Instantiation(int[] values)
+		{
+			this.values = values;
+			evalContext = new EvaluateContextTuple(constantValues, holeNames, values);
+		}
+
+		Expression instantiate(Expression expr) throws PrismLangException
+		{
+			Integer kind = nodeKinds.get(expr);
+			if (kind == null)
+				return expr;
+			Expression copy;
+			switch (kind) {
+			case REBUILD:
+				copy = rebuild(expr);
+				break;
+			case FOLD_INDEX:
+				copy = expr.deepCopy();
+				try {
+					int index = ((ExpressionIndexedSetAccess) expr).getIndexExpression().evaluateInt(evalContext);
+					((ExpressionIndexedSetAccess) copy).setIndexExpression(Expression.Int(index));
+					return copy;
+				} catch (PrismLangException e) {
+					// Leave any problems to be reported during translation, as for a partially evaluated index
+					return substituteIndex(expr);
+				}
+			case SUBSTITUTE_INDEX:
+				return substituteIndex(expr);
+			default:
+				return (Expression) expr.deepCopy().replaceIndexSpecifiers(getSubstitutions());
+			}
+			copy.setType(expr.getType());
+			copy.setPosition(expr);
+			return copy;
+		}
+
+		private Expression rebuild(Expression expr) throws PrismLangException
+		{
+			if (expr instanceof ExpressionBinaryOp) {
+				ExpressionBinaryOp e = (ExpressionBinaryOp) expr;
+				return new ExpressionBinaryOp(e.getOperator(), instantiate(e.getOperand1()), instantiate(e.getOperand2()));
+			} else if (expr instanceof ExpressionUnaryOp) {
+				ExpressionUnaryOp e = (ExpressionUnaryOp) expr;
+				return new ExpressionUnaryOp(e.getOperator(), instantiate(e.getOperand()));
+			} else if (expr instanceof ExpressionITE) {
+				ExpressionITE e = (ExpressionITE) expr;
+				return new ExpressionITE(instantiate(e.getOperand1()), instantiate(e.getOperand2()), instantiate(e.getOperand3()));
+			} else {
+				ExpressionFunc e = (ExpressionFunc) expr;
+				ExpressionFunc copy = new ExpressionFunc(e.getName());
+				copy.setOldStyle(e.getOldStyle());
+				for (int i = 0; i < e.getNumOperands(); i++) {
+					copy.addOperand(instantiate(e.getOperand(i)));
+				}
+				return copy;
+			}
+		}
+
+		private Expression substituteIndex(Expression expr) throws PrismLangException
+		{
+			ExpressionIndexedSetAccess copy = (ExpressionIndexedSetAccess) expr.deepCopy();
+			copy.setIndexExpression((Expression) copy.getIndexExpression().evaluatePartially(null, getSubstitutions()));
+			return copy;
+		}
+
+		private Values getSubstitutions()
+		{
+			if (substitutions == null) {
+				substitutions = new Values();
+				for (int i = 0; i < holeNames.length; i++) {
+					substitutions.addValue(holeNames[i], values[i]);
+				}
+			}
+			return substitutions;
+		}
+	}
+}
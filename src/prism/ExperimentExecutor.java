@@ -0,0 +1,186 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package prism;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import parser.Values;
+import parser.ast.PropertiesFile;
+import parser.ast.Property;
+
+/**
+ * Runs the model checking jobs of an experiment for one valuation of the model constants,
+ * i.e. each property for each valuation of its (undefined) property constants,
+ * in parallel on a bounded pool of threads.
+ * <br>
+ * The built model is shared between the jobs (see {@link Prism#modelCheckConcurrently});
+ * the only thing they store in it is the predecessor relation, which is computed at most once.
+ * Each job has its own copy of the properties file and buffers its log output,
+ * so that the output and results can be processed afterwards in the same order as for sequential checking.
+ */
+public class ExperimentExecutor
+{
+	/**
+	 * A model checking job: a property, and values for the undefined constants of the properties file.
+	 */
+	public static class Job
+	{
+		private Property prop;
+		private Values pfConstants;
+		private Result result;
+		private PrismException exception;
+		private String output;
+
+		public Job(Property prop, Values pfConstants)
+		{
+			this.prop = prop;
+			this.pfConstants = pfConstants;
+		}
+
+		public Property getProperty()
+		{
+			return prop;
+		}
+
+		public Values getPFConstants()
+		{
+			return pfConstants;
+		}
+
+		/**
+		 * Get the result (after running); in case of error, this stores the exception.
+		 */
+		public Result getResult()
+		{
+			return result;
+		}
+
+		/**
+		 * Get the error that occurred (after running), if any.
+		 */
+		public PrismException getException()
+		{
+			return exception;
+		}
+
+		/**
+		 * Get the log output (after running).
+		 */
+		public String getOutput()
+		{
+			return output;
+		}
+	}
+
+	private Prism prism;
+	private int numThreads;
+
+	/**
+	 * Create an executor for model checking with {@code prism}, using {@code numThreads} threads.
+	 */
+	public ExperimentExecutor(Prism prism, int numThreads)
+	{
+		this.prism = prism;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Run {@code jobs}, whose properties belong to {@code propertiesFile}, on the currently built model
+	 * (which must allow concurrent model checking, see {@link Prism#canModelCheckConcurrently()}).
+	 * Errors during individual jobs are stored in the jobs.
+	 * The threads are split between the jobs running at the same time and the model checking within each job,
+	 * so that at most {@code numThreads} threads are busy overall.
+	 * @param exact Evaluate property constants exactly?
+	 */
+	public void run(PropertiesFile propertiesFile, List<Job> jobs, boolean exact) throws PrismException
+	{
+		int verbosityLevel = prism.getMainLog().getVerbosityLevel();
+		int numJobThreads = Math.max(1, Math.min(numThreads, jobs.size()));
+		int numThreadsPerJob = Math.max(1, numThreads / numJobThreads);
+		ExecutorService pool = Executors.newFixedThreadPool(numJobThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(jobs.size());
+			for (Job job : jobs) {
+				futures.add(pool.submit(() -> runJob(propertiesFile, job, exact, verbosityLevel, numThreadsPerJob)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new PrismException("Interrupted during parallel model checking");
+		} catch (ExecutionException e) {
+			throw new PrismException("Error during parallel model checking: " + e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Run a single job (in the current thread), allowing model checking to use {@code numThreadsPerJob} threads.
+	 */
+	private void runJob(PropertiesFile propertiesFile, Job job, boolean exact, int verbosityLevel, int numThreadsPerJob)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PrismLog log = new PrismPrintStreamLog(new PrintStream(out));
+		log.setVerbosityLevel(verbosityLevel);
+		try {
+			// Check the corresponding property of a private copy of the properties file
+			PropertiesFile pf = (PropertiesFile) propertiesFile.deepCopy();
+			pf.setSomeUndefinedConstants(job.pfConstants, exact);
+			job.result = prism.modelCheckConcurrently(pf, pf.getPropertyObject(getPropertyIndex(propertiesFile, job.prop)), log, numThreadsPerJob);
+		} catch (PrismException e) {
+			job.exception = e;
+			job.result = new Result(e);
+		} catch (RuntimeException e) {
+			// (stored like a PrismException, so that the other jobs' results are kept)
+			job.exception = new PrismException("Error during model checking: " + e);
+			job.result = new Result(job.exception);
+		}
+		log.flush();
+		job.output = out.toString();
+	}
+
+	/**
+	 * Get the index of property {@code prop} in {@code propertiesFile}.
+	 */
+	private static int getPropertyIndex(PropertiesFile propertiesFile, Property prop) throws PrismException
+	{
+		for (int i = 0; i < propertiesFile.getNumProperties(); i++) {
+			if (propertiesFile.getPropertyObject(i) == prop)
+				return i;
+		}
+		throw new PrismException("Property \"" + prop + "\" is not in the properties file");
+	}
+}
@@ -0,0 +1,441 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package prism;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import parser.EvaluateContextTuple;
+import parser.Values;
+import parser.VarList;
+import parser.ast.Expression;
+import parser.ast.ExpressionBinaryOp;
+import parser.ast.ExpressionIndexedSetAccess;
+import parser.ast.ExpressionUnaryOp;
+import parser.ast.ExpressionVar;
+import parser.visitor.ASTTraverse;
+import parser.visitor.FindRelOpInvolvingVar;
+
+/**
+ * Enumerates the combinations of values of a list of (integer) variables, as needed to generate the
+ * variants of a command whose indexed-set accesses use a variable index expression.
+ * <br>
+ * Combinations are generated lazily, in the same (lexicographic) order as a nested loop over the
+ * variables, and held as a primitive int array rather than as Values objects. Filters are attached
+ * to the position of the last variable they depend on, and are checked as soon as that position
+ * is assigned, so a rejected prefix prunes all of its completions without generating them.
+ * A Values object is only created (by {@link #getValues()}) for combinations that pass every filter.
+ */
+public class IndexCombinationEnumerator
+{
+public static boolean DEBUG = false;
+
+	/**
+	 * A check on the current (partial) combination, applied once all the variables it depends on are assigned.
+	 */
+	public static abstract class Filter
+	{
+		/**
+		 * Return false if every combination that has the current values in the assigned positions should be discarded.
+		 */
+		public abstract boolean accept(int[] tuple) throws PrismLangException;
+	}
+
+	// Info about the variables being enumerated
+	private VarList varList;
+	private Values constantValues;
+	private int numVars;
+	private String[] varNames;
+	private int[] lows;
+	private int[] highs;
+
+	// The current combination, and a context for evaluating expressions over it
+	private int[] tuple;
+	private EvaluateContextTuple evalContext;
+
+	// Filters, grouped by the position (in the variable list) after which they can be checked
+	private List<List<Filter>> filters;
+
+	// Enumeration status
+	private boolean started = false;
+	private boolean finished = false;
+	private long numRejected = 0;
+
+	/**
+	 * Create an enumerator over all combinations of values of the variables with the given indices in {@code varList}.
+	 * @param varList The variable list for the model
+	 * @param constantValues Values of the model constants (used when evaluating filters)
+	 * @param varIndices Indices (into {@code varList}) of the variables to enumerate, outermost first
+	 */
+	public IndexCombinationEnumerator(VarList varList, Values constantValues, List<Integer> varIndices)
+	{
+		this.varList = varList;
+		this.constantValues = constantValues;
+		numVars = varIndices.size();
+		varNames = new String[numVars];
+		lows = new int[numVars];
+		highs = new int[numVars];
+		filters = new ArrayList<List<Filter>>(numVars);
+		for (int i = 0; i < numVars; i++) {
+			int v = varIndices.get(i);
+			varNames[i] = varList.getName(v);
+			lows[i] = varList.getLow(v);
+			highs[i] = varList.getHigh(v);
+			filters.add(new ArrayList<Filter>());
+		}
+		tuple = new int[numVars];
+		evalContext = new EvaluateContextTuple(constantValues, varNames, tuple);
+	}
+
+	// Setup
+
+	/**
+	 * Restrict the values enumerated for the variable at position {@code pos} to the range [low,high],
+	 * e.g. as narrowed by an {@link IndexDomainPropagator}. Must be called before enumeration starts.
+	 */
+	public void restrictDomain(int pos, int low, int high)
+	{
+		lows[pos] = Math.max(lows[pos], low);
+		highs[pos] = Math.min(highs[pos], high);
+	}
+
+	/**
+	 * Add a filter, to be checked once the variables up to (and including) position {@code pos} are assigned.
+	 * If {@code pos} is negative (the filter depends on none of the variables), it is checked for the first variable.
+	 */
+	public void addFilter(int pos, Filter filter)
+	{
+		if (numVars == 0)
+			return;
+		filters.get(Math.max(0, Math.min(pos, numVars - 1))).add(filter);
+	}
+
+	/**
+	 * Add filters which discard combinations that would lead to an invalid access of an indexed set.
+	 * As before, this is only done for access expressions that specify access restrictions: combinations
+	 * violating a restriction on one of the variables, or for which the index expression evaluates to a
+	 * position outside of the indexed set, are discarded.
+	 */
+	public void addAccessFilters(Collection<ExpressionIndexedSetAccess> accessExprs) throws PrismLangException
+	{
+		if (accessExprs == null)
+			return;
+		for (ExpressionIndexedSetAccess accExpr : accessExprs) {
+			List<Expression> restrExprs = accExpr.getRestrictionExpressions();
+			if (restrExprs == null || restrExprs.size() == 0)
+				continue;
+			// Restrictions (relational operators with a variable on the left) on each of the variables
+			for (int i = 0; i < numVars; i++) {
+				FindRelOpInvolvingVar visitor = new FindRelOpInvolvingVar(varNames[i]);
+				for (Expression restrExpr : restrExprs) {
+					restrExpr.accept(visitor);
+				}
+				for (ExpressionBinaryOp relExpr : visitor.getExpressionsThatInvolve()) {
+					int bound;
+					try {
+						bound = relExpr.getOperand2().evaluateInt(constantValues, (Values) null);
+					} catch (PrismLangException e) {
+						throw new PrismLangException("Could not evaluate bound of access restriction", relExpr);
+					}
+					addFilter(i, new RelOpFilter(i, relExpr.getOperator(), bound));
+				}
+			}
+			// Index must be within the bounds of the indexed set
+			Expression indexExpr = accExpr.getIndexExpression();
+			addFilter(getLastPosition(indexExpr), new IndexBoundsFilter(indexExpr, varList.getIndexedSetSize(accExpr.getName())));
+		}
+	}
+
+	/**
+	 * Add filters which discard combinations for which the guard is certainly false.
+	 * Each top-level conjunct of the guard that only refers to the enumerated variables (and constants)
+	 * is checked once those variables are assigned; other conjuncts are ignored.
+	 */
+	public void addGuardFilter(Expression guard) throws PrismLangException
+	{
+		if (guard == null)
+			return;
+		List<Expression> conjuncts = new ArrayList<Expression>();
+		splitConjunction(guard, conjuncts);
+		for (Expression conjunct : conjuncts) {
+			VarUsage usage = new VarUsage();
+			conjunct.accept(usage);
+			if (usage.unsupported || usage.lastPos < 0)
+				continue;
+if (DEBUG) System.out.println("IndexCombinationEnumerator: guard conjunct " + conjunct + " will be checked at position " + usage.lastPos);
+			addFilter(usage.lastPos, new GuardFilter(conjunct));
+		}
+	}
+
+	// Enumeration
+
+	/**
+	 * Move to the next combination that passes all filters.
+	 * Returns false if there are no more (in which case the current combination is undefined).
+	 * If there are no variables, there is a single (empty) combination.
+	 */
+	public boolean next() throws PrismLangException
+	{
+		if (finished)
+			return false;
+		int d;
+		if (!started) {
+			started = true;
+			if (numVars == 0)
+				return true;
+			d = 0;
+			tuple[0] = lows[0] - 1;
+		} else {
+			d = numVars - 1;
+		}
+		while (d >= 0) {
+			if (tuple[d] < highs[d]) {
+				tuple[d]++;
+				if (!passesFilters(d)) {
+					numRejected++;
+					continue;
+				}
+				if (d == numVars - 1)
+					return true;
+				d++;
+				tuple[d] = lows[d] - 1;
+			} else {
+				d--;
+			}
+		}
+		finished = true;
+		return false;
+	}
+
+	/**
+	 * Get the current combination. The array is owned by the enumerator and is overwritten by {@link #next()}.
+	 */
+	public int[] getTuple()
+	{
+		return tuple;
+	}
+
+	/**
+	 * Get the current combination as a (new) Values object.
+	 */
+	public Values getValues()
+	{
+		Values values = new Values();
+		for (int i = 0; i < numVars; i++) {
+			values.addValue(varNames[i], tuple[i]);
+		}
+		return values;
+	}
+
+	/**
+	 * Enumerate all (remaining) combinations that pass the filters, returned as a list of Values objects.
+	 */
+	public List<Values> collectValues() throws PrismLangException
+	{
+		List<Values> result = new ArrayList<Values>();
+		while (next()) {
+			result.add(getValues());
+		}
+		return result;
+	}
+
+	/**
+	 * Get the total number of combinations, ignoring filters.
+	 */
+	public long getNumCombinations()
+	{
+		long n = 1;
+		for (int i = 0; i < numVars; i++) {
+			n *= Math.max(0, highs[i] - lows[i] + 1);
+		}
+		return n;
+	}
+
+	/**
+	 * Get the number of (partial) combinations rejected by filters so far.
+	 */
+	public long getNumRejected()
+	{
+		return numRejected;
+	}
+
+	// Utility methods
+
+	private boolean passesFilters(int pos) throws PrismLangException
+	{
+		for (Filter filter : filters.get(pos)) {
+			if (!filter.accept(tuple))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Get the last position (in the variable list) of any variable appearing in an expression (-1 if none).
+	 */
+	private int getLastPosition(Expression expr) throws PrismLangException
+	{
+		VarUsage usage = new VarUsage();
+		expr.accept(usage);
+		return usage.lastPos;
+	}
+
+	private int getPosition(String name)
+	{
+		for (int i = 0; i < numVars; i++) {
+			if (varNames[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	private static void splitConjunction(Expression expr, List<Expression> conjuncts)
+	{
+		if (expr instanceof ExpressionBinaryOp && ((ExpressionBinaryOp) expr).getOperator() == ExpressionBinaryOp.AND) {
+			splitConjunction(((ExpressionBinaryOp) expr).getOperand1(), conjuncts);
+			splitConjunction(((ExpressionBinaryOp) expr).getOperand2(), conjuncts);
+		} else if (expr instanceof ExpressionUnaryOp && ((ExpressionUnaryOp) expr).getOperator() == ExpressionUnaryOp.PARENTH) {
+			splitConjunction(((ExpressionUnaryOp) expr).getOperand(), conjuncts);
+		} else {
+			conjuncts.add(expr);
+		}
+	}
+
+	/**
+	 * Visitor to find the last enumerated variable used by an expression,
+	 * and whether it refers to anything that cannot be evaluated over the current combination.
+	 */
+	private class VarUsage extends ASTTraverse
+	{
+		int lastPos = -1;
+		boolean unsupported = false;
+
+		public void visitPost(ExpressionVar e) throws PrismLangException
+		{
+			int pos = getPosition(e.getName());
+			if (pos == -1)
+				unsupported = true;
+			else
+				lastPos = Math.max(lastPos, pos);
+		}
+
+		public void visitPost(ExpressionIndexedSetAccess e) throws PrismLangException
+		{
+			unsupported = true;
+		}
+	}
+
+	/**
+	 * Filter for a restriction "var relOp bound" on the variable at a given position.
+	 */
+	private static class RelOpFilter extends Filter
+	{
+		private int pos;
+		private int relOp;
+		private int bound;
+
+		RelOpFilter(int pos, int relOp, int bound)
+		{
+			this.pos = pos;
+			this.relOp = relOp;
+			this.bound = bound;
+		}
+
+		public boolean accept(int[] tuple)
+		{
+			int val = tuple[pos];
+			switch (relOp) {
+			case ExpressionBinaryOp.EQ:
+				return val == bound;
+			case ExpressionBinaryOp.NE:
+				return val != bound;
+			case ExpressionBinaryOp.LT:
+				return val < bound;
+			case ExpressionBinaryOp.LE:
+				return val <= bound;
+			case ExpressionBinaryOp.GT:
+				return val > bound;
+			case ExpressionBinaryOp.GE:
+				return val >= bound;
+			default:
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Filter requiring an index expression to evaluate to a position within an indexed set.
+	 */
+	private class IndexBoundsFilter extends Filter
+	{
+		private Expression indexExpr;
+		private int setSize;
+
+		IndexBoundsFilter(Expression indexExpr, int setSize)
+		{
+			this.indexExpr = indexExpr;
+			this.setSize = setSize;
+		}
+
+		public boolean accept(int[] tuple)
+		{
+			try {
+				int index = indexExpr.evaluateInt(evalContext);
+				return index >= 0 && index < setSize;
+			} catch (PrismLangException e) {
+				// Includes PrismOutOfBoundsException: either way, the combination is not usable
+if (DEBUG) System.out.println("IndexCombinationEnumerator: could not evaluate " + indexExpr + ": " + e.getMessage());
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Filter requiring a (conjunct of a) guard not to be false.
+	 */
+	private class GuardFilter extends Filter
+	{
+		private Expression guardPart;
+
+		GuardFilter(Expression guardPart)
+		{
+			this.guardPart = guardPart;
+		}
+
+		public boolean accept(int[] tuple)
+		{
+			try {
+				return guardPart.evaluateBoolean(evalContext);
+			} catch (PrismLangException e) {
+				// If it can't be evaluated here, leave it to the translation of the guard
+				return true;
+			}
+		}
+	}
+}
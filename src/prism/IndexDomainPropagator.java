@@ -0,0 +1,488 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package prism;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import parser.Values;
+import parser.VarList;
+import parser.ast.Expression;
+import parser.ast.ExpressionBinaryOp;
+import parser.ast.ExpressionFunc;
+import parser.ast.ExpressionIndexedSetAccess;
+import parser.ast.ExpressionUnaryOp;
+import parser.ast.ExpressionVar;
+import parser.type.TypeInt;
+import parser.visitor.FindRelOpInvolvingVar;
+
+/**
+ * Interval constraint propagation over the domains of the variables used in the index expressions of
+ * a command, used to narrow those domains (and to detect commands that can never be enabled) before
+ * the combinations of their values are enumerated.
+ * <br>
+ * Constraints are taken from the top-level conjuncts of the command guard and, for access expressions
+ * that specify access restrictions, from those restrictions and from the bounds of the indexed set.
+ * Each constraint is a relational operator between integer expressions built from constants, variables,
+ * +, -, *, min, max and mod; anything else is treated as having an unknown value. Constraints are applied
+ * (HC4-style: forward interval evaluation, then backward narrowing of the operands) until a fixpoint is reached.
+ * The narrowing is sound: no combination that would survive the filters of {@link IndexCombinationEnumerator}
+ * is ever removed.
+ */
+public class IndexDomainPropagator
+{
+public static boolean DEBUG = false;
+
+	/** Bound used to represent "unbounded" (well clear of int range, so sums cannot overflow) */
+	private static final long INF = 1L << 40;
+
+	/** Maximum number of passes over the constraints */
+	private static final int MAX_PASSES = 1000;
+
+	// Info about the variables
+	private VarList varList;
+	private Values constantValues;
+	private int numVars;
+	private String[] varNames;
+	private long[] lows;
+	private long[] highs;
+
+	// Constraints: relational expressions, plus simple bounds from restrictions
+	private List<ExpressionBinaryOp> relations = new ArrayList<ExpressionBinaryOp>();
+	private List<Expression> boundedExprs = new ArrayList<Expression>();
+	private List<long[]> exprBounds = new ArrayList<long[]>();
+
+	// Result
+	private boolean infeasible = false;
+	private boolean changed;
+
+	/**
+	 * Create a propagator for the variables with the given indices in {@code varList},
+	 * initially with domains equal to their declared ranges.
+	 */
+	public IndexDomainPropagator(VarList varList, Values constantValues, List<Integer> varIndices)
+	{
+		this.varList = varList;
+		this.constantValues = constantValues;
+		numVars = varIndices.size();
+		varNames = new String[numVars];
+		lows = new long[numVars];
+		highs = new long[numVars];
+		for (int i = 0; i < numVars; i++) {
+			int v = varIndices.get(i);
+			varNames[i] = varList.getName(v);
+			lows[i] = varList.getLow(v);
+			highs[i] = varList.getHigh(v);
+		}
+	}
+
+	// Setup
+
+	/**
+	 * Add the (top-level) conjuncts of a guard as constraints.
+	 * A conjunct that is constant and false makes the whole problem infeasible.
+	 */
+	public void addGuard(Expression guard) throws PrismLangException
+	{
+		if (guard == null)
+			return;
+		List<Expression> conjuncts = new ArrayList<Expression>();
+		splitConjunction(guard, conjuncts);
+		for (Expression conjunct : conjuncts) {
+			if (conjunct.isConstant()) {
+				try {
+					if (!conjunct.evaluateBoolean(constantValues))
+						infeasible = true;
+				} catch (PrismLangException e) {
+					// Leave it to the translation of the guard
+				}
+			} else if (conjunct instanceof ExpressionBinaryOp && ExpressionBinaryOp.isRelOp(((ExpressionBinaryOp) conjunct).getOperator())) {
+				ExpressionBinaryOp rel = (ExpressionBinaryOp) conjunct;
+				if (rel.getOperand1().getType() instanceof TypeInt && rel.getOperand2().getType() instanceof TypeInt)
+					relations.add(rel);
+			}
+		}
+	}
+
+	/**
+	 * Add the constraints implied by the access restrictions of some indexed-set access expressions:
+	 * restrictions of the form "var relOp constant" on the variables, and the index lying within the
+	 * bounds of the indexed set. These match the checks made by {@link IndexCombinationEnumerator#addAccessFilters}.
+	 */
+	public void addAccessRestrictions(Collection<ExpressionIndexedSetAccess> accessExprs) throws PrismLangException
+	{
+		if (accessExprs == null)
+			return;
+		for (ExpressionIndexedSetAccess accExpr : accessExprs) {
+			List<Expression> restrExprs = accExpr.getRestrictionExpressions();
+			if (restrExprs == null || restrExprs.size() == 0)
+				continue;
+			for (int i = 0; i < numVars; i++) {
+				FindRelOpInvolvingVar visitor = new FindRelOpInvolvingVar(varNames[i]);
+				for (Expression restrExpr : restrExprs) {
+					restrExpr.accept(visitor);
+				}
+				for (ExpressionBinaryOp relExpr : visitor.getExpressionsThatInvolve()) {
+					long bound;
+					try {
+						bound = relExpr.getOperand2().evaluateInt(constantValues, (Values) null);
+					} catch (PrismLangException e) {
+						// Reported when the enumerator's filters are set up
+						continue;
+					}
+					long lo = -INF, hi = INF;
+					switch (relExpr.getOperator()) {
+					case ExpressionBinaryOp.EQ:
+						lo = hi = bound;
+						break;
+					case ExpressionBinaryOp.LT:
+						hi = bound - 1;
+						break;
+					case ExpressionBinaryOp.LE:
+						hi = bound;
+						break;
+					case ExpressionBinaryOp.GT:
+						lo = bound + 1;
+						break;
+					case ExpressionBinaryOp.GE:
+						lo = bound;
+						break;
+					default:
+						continue;
+					}
+					boundedExprs.add(relExpr.getOperand1());
+					exprBounds.add(new long[] { lo, hi });
+				}
+			}
+			boundedExprs.add(accExpr.getIndexExpression());
+			exprBounds.add(new long[] { 0, varList.getIndexedSetSize(accExpr.getName()) - 1 });
+		}
+	}
+
+	// Propagation
+
+	/**
+	 * Apply the constraints until no domain changes (or until a constraint is found to be unsatisfiable).
+	 * Returns false if there is no valuation of the variables that can satisfy all constraints.
+	 */
+	public boolean propagate()
+	{
+		int passes = 0;
+		changed = true;
+		while (!infeasible && changed && passes++ < MAX_PASSES) {
+			changed = false;
+			for (int i = 0; i < boundedExprs.size() && !infeasible; i++) {
+				long[] b = exprBounds.get(i);
+				narrow(boundedExprs.get(i), b[0], b[1]);
+			}
+			for (int i = 0; i < relations.size() && !infeasible; i++) {
+				applyRelation(relations.get(i));
+			}
+		}
+if (DEBUG) System.out.println("IndexDomainPropagator: after " + passes + " passes: " + this);
+		return !infeasible;
+	}
+
+	/**
+	 * Is there certainly no valuation satisfying the constraints (as determined so far)?
+	 */
+	public boolean isInfeasible()
+	{
+		return infeasible;
+	}
+
+	/**
+	 * Get the (narrowed) lower bound of the variable at position {@code i}.
+	 */
+	public int getLow(int i)
+	{
+		return (int) lows[i];
+	}
+
+	/**
+	 * Get the (narrowed) upper bound of the variable at position {@code i}.
+	 */
+	public int getHigh(int i)
+	{
+		return (int) highs[i];
+	}
+
+	/**
+	 * Get the product of the sizes of the (narrowed) domains.
+	 */
+	public long getNumCombinations()
+	{
+		long n = 1;
+		for (int i = 0; i < numVars; i++) {
+			n *= Math.max(0, highs[i] - lows[i] + 1);
+		}
+		return n;
+	}
+
+	private void applyRelation(ExpressionBinaryOp rel)
+	{
+		Expression e1 = rel.getOperand1();
+		Expression e2 = rel.getOperand2();
+		long[] i1 = eval(e1);
+		long[] i2 = eval(e2);
+		switch (rel.getOperator()) {
+		case ExpressionBinaryOp.EQ:
+			narrow(e1, i2[0], i2[1]);
+			narrow(e2, i1[0], i1[1]);
+			break;
+		case ExpressionBinaryOp.NE:
+			if (i1[0] == i1[1] && i2[0] == i2[1] && i1[0] == i2[0])
+				setInfeasible(rel);
+			else if (i2[0] == i2[1])
+				excludeEndpoint(e1, i1, i2[0]);
+			else if (i1[0] == i1[1])
+				excludeEndpoint(e2, i2, i1[0]);
+			break;
+		case ExpressionBinaryOp.LT:
+			narrow(e1, -INF, i2[1] - 1);
+			narrow(e2, i1[0] + 1, INF);
+			break;
+		case ExpressionBinaryOp.LE:
+			narrow(e1, -INF, i2[1]);
+			narrow(e2, i1[0], INF);
+			break;
+		case ExpressionBinaryOp.GT:
+			narrow(e1, i2[0] + 1, INF);
+			narrow(e2, -INF, i1[1] - 1);
+			break;
+		case ExpressionBinaryOp.GE:
+			narrow(e1, i2[0], INF);
+			narrow(e2, -INF, i1[1]);
+			break;
+		}
+	}
+
+	private void excludeEndpoint(Expression expr, long[] range, long val)
+	{
+		if (range[0] == val)
+			narrow(expr, val + 1, INF);
+		else if (range[1] == val)
+			narrow(expr, -INF, val - 1);
+	}
+
+	/**
+	 * Compute an interval containing all values of an (integer) expression over the current domains.
+	 */
+	private long[] eval(Expression expr)
+	{
+		if (expr.isConstant()) {
+			try {
+				long val = expr.evaluateInt(constantValues);
+				return new long[] { val, val };
+			} catch (PrismLangException e) {
+				return unknown();
+			}
+		}
+		if (expr instanceof ExpressionVar) {
+			String name = ((ExpressionVar) expr).getName();
+			int pos = getPosition(name);
+			if (pos != -1)
+				return new long[] { lows[pos], highs[pos] };
+			int v = varList.getIndex(name);
+			if (v != -1 && varList.getType(v) instanceof TypeInt)
+				return new long[] { varList.getLow(v), varList.getHigh(v) };
+			return unknown();
+		}
+		if (expr instanceof ExpressionUnaryOp) {
+			ExpressionUnaryOp e = (ExpressionUnaryOp) expr;
+			long[] a = eval(e.getOperand());
+			switch (e.getOperator()) {
+			case ExpressionUnaryOp.PARENTH:
+				return a;
+			case ExpressionUnaryOp.MINUS:
+				return new long[] { clamp(-a[1]), clamp(-a[0]) };
+			}
+			return unknown();
+		}
+		if (expr instanceof ExpressionBinaryOp) {
+			ExpressionBinaryOp e = (ExpressionBinaryOp) expr;
+			long[] a = eval(e.getOperand1());
+			long[] b = eval(e.getOperand2());
+			switch (e.getOperator()) {
+			case ExpressionBinaryOp.PLUS:
+				return new long[] { clamp(a[0] + b[0]), clamp(a[1] + b[1]) };
+			case ExpressionBinaryOp.MINUS:
+				return new long[] { clamp(a[0] - b[1]), clamp(a[1] - b[0]) };
+			case ExpressionBinaryOp.TIMES:
+				long p1 = a[0] * b[0], p2 = a[0] * b[1], p3 = a[1] * b[0], p4 = a[1] * b[1];
+				if (Math.abs(a[0]) >= INF || Math.abs(a[1]) >= INF || Math.abs(b[0]) >= INF || Math.abs(b[1]) >= INF)
+					return unknown();
+				return new long[] { clamp(Math.min(Math.min(p1, p2), Math.min(p3, p4))), clamp(Math.max(Math.max(p1, p2), Math.max(p3, p4))) };
+			}
+			return unknown();
+		}
+		if (expr instanceof ExpressionFunc) {
+			ExpressionFunc e = (ExpressionFunc) expr;
+			int n = e.getNumOperands();
+			switch (e.getNameCode()) {
+			case ExpressionFunc.MIN:
+			case ExpressionFunc.MAX:
+				boolean isMin = e.getNameCode() == ExpressionFunc.MIN;
+				long[] res = eval(e.getOperand(0));
+				for (int i = 1; i < n; i++) {
+					long[] a = eval(e.getOperand(i));
+					res[0] = isMin ? Math.min(res[0], a[0]) : Math.max(res[0], a[0]);
+					res[1] = isMin ? Math.min(res[1], a[1]) : Math.max(res[1], a[1]);
+				}
+				return res;
+			case ExpressionFunc.MOD:
+				long[] a = eval(e.getOperand(0));
+				long[] m = eval(e.getOperand(1));
+				if (a[0] >= 0 && m[0] == m[1] && m[0] > 0)
+					return a[1] < m[0] ? a : new long[] { 0, m[0] - 1 };
+				return unknown();
+			}
+			return unknown();
+		}
+		return unknown();
+	}
+
+	/**
+	 * Narrow the domains of the variables in an expression so that it can only take values in [lo,hi]
+	 * (or as close to this as the interval arithmetic allows).
+	 */
+	private void narrow(Expression expr, long lo, long hi)
+	{
+		if (infeasible)
+			return;
+		long[] cur = eval(expr);
+		lo = Math.max(lo, cur[0]);
+		hi = Math.min(hi, cur[1]);
+		if (lo > hi) {
+			setInfeasible(expr);
+			return;
+		}
+		if (expr instanceof ExpressionVar) {
+			int pos = getPosition(((ExpressionVar) expr).getName());
+			if (pos != -1 && (lo > lows[pos] || hi < highs[pos])) {
+				lows[pos] = lo;
+				highs[pos] = hi;
+				changed = true;
+			}
+		} else if (expr instanceof ExpressionUnaryOp) {
+			ExpressionUnaryOp e = (ExpressionUnaryOp) expr;
+			if (e.getOperator() == ExpressionUnaryOp.PARENTH)
+				narrow(e.getOperand(), lo, hi);
+			else if (e.getOperator() == ExpressionUnaryOp.MINUS)
+				narrow(e.getOperand(), -hi, -lo);
+		} else if (expr instanceof ExpressionBinaryOp) {
+			ExpressionBinaryOp e = (ExpressionBinaryOp) expr;
+			Expression e1 = e.getOperand1();
+			Expression e2 = e.getOperand2();
+			long[] a = eval(e1);
+			long[] b = eval(e2);
+			switch (e.getOperator()) {
+			case ExpressionBinaryOp.PLUS:
+				narrow(e1, clamp(lo - b[1]), clamp(hi - b[0]));
+				narrow(e2, clamp(lo - a[1]), clamp(hi - a[0]));
+				break;
+			case ExpressionBinaryOp.MINUS:
+				narrow(e1, clamp(lo + b[0]), clamp(hi + b[1]));
+				narrow(e2, clamp(a[0] - hi), clamp(a[1] - lo));
+				break;
+			case ExpressionBinaryOp.TIMES:
+				if (b[0] == b[1] && b[0] != 0)
+					narrowProduct(e1, b[0], lo, hi);
+				else if (a[0] == a[1] && a[0] != 0)
+					narrowProduct(e2, a[0], lo, hi);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Narrow expression {@code expr} given that {@code expr * c} lies in [lo,hi], for a non-zero constant c.
+	 */
+	private void narrowProduct(Expression expr, long c, long lo, long hi)
+	{
+		if (c < 0) {
+			c = -c;
+			long tmp = lo;
+			lo = -hi;
+			hi = -tmp;
+		}
+		narrow(expr, lo <= -INF ? -INF : Math.floorDiv(lo + c - 1, c), hi >= INF ? INF : Math.floorDiv(hi, c));
+	}
+
+	// Utility methods
+
+	private void setInfeasible(Expression cause)
+	{
+if (DEBUG) System.out.println("IndexDomainPropagator: constraints cannot be satisfied (at " + cause + ")");
+		infeasible = true;
+	}
+
+	private int getPosition(String name)
+	{
+		for (int i = 0; i < numVars; i++) {
+			if (varNames[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	private static long[] unknown()
+	{
+		return new long[] { -INF, INF };
+	}
+
+	private static long clamp(long x)
+	{
+		return Math.max(-INF, Math.min(INF, x));
+	}
+
+	private static void splitConjunction(Expression expr, List<Expression> conjuncts)
+	{
+		if (expr instanceof ExpressionBinaryOp && ((ExpressionBinaryOp) expr).getOperator() == ExpressionBinaryOp.AND) {
+			splitConjunction(((ExpressionBinaryOp) expr).getOperand1(), conjuncts);
+			splitConjunction(((ExpressionBinaryOp) expr).getOperand2(), conjuncts);
+		} else if (expr instanceof ExpressionUnaryOp && ((ExpressionUnaryOp) expr).getOperator() == ExpressionUnaryOp.PARENTH) {
+			splitConjunction(((ExpressionUnaryOp) expr).getOperand(), conjuncts);
+		} else {
+			conjuncts.add(expr);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		if (infeasible)
+			return "infeasible";
+		String s = "";
+		for (int i = 0; i < numVars; i++) {
+			s += (i > 0 ? ", " : "") + varNames[i] + ":[" + lows[i] + ".." + highs[i] + "]";
+		}
+		return s;
+	}
+}
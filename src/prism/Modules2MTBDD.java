@@ -27,11 +27,16 @@
 package prism;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import jdd.*;
 import parser.*;
 import parser.ast.*;
 
+import parser.visitor.ASTTraverse;
 import parser.visitor.FindRelOpInvolvingVar;
 import parser.visitor.ResolveRestrictedScopes;
 
@@ -46,7 +51,6 @@ public static boolean DEBUG_CommandVersionsNAMES = true;		// Whether to append a
 public static boolean DEBUG_ShowEXCL_INCL = false;		// Whether to show which DDs are being INCLUDED or EXCLUDED during construction of a DD (in TransUpdate)
 public static boolean DEBUG_SHANE = false; //true && !DEBUG_SHANE_NOTHING;
 public static boolean DEBUG_TrSysDefRec = false;
-public static boolean DEBUG_RecurseVars = true;
 public static boolean DEBUG_SHANE_ShowVarList = true;
 public static boolean DEBUG_SHANE_ShowDD_Tree = false;
 public static boolean DEBUG_SHANE_ShowStepsInTM = false;
@@ -71,9 +75,6 @@ public static boolean DEBUG_AllocDDV = false ; //true && !DEBUG_SHANE_NOTHING;
 public static boolean DEBUG_CCN = true ;//&& !DEBUG_SHANE_NOTHING;			// Show detail of combineCommandsNondet()
 public static boolean DEBUG_SortRanges = false ; //true && !DEBUG_SHANE_NOTHING;
 public static boolean DEBUG_SUBSTITUTIONS = false;		// Show translation of a command for a specific substitution (or if only 1 possibility, then that possibility)
-public static boolean DEBUG_ChkRstr = true && !DEBUG_SHANE_NOTHING;			// Show the basic steps of CheckRestrictionLowerBound and CheckRestrictionUpperBound
-public static boolean DEBUG_ChkRstr_ExtraDetail = true;// && DEBUG_ChkRstr && !DEBUG_SHANE_NOTHING;	// Show more-detailed steps of the check restriction methods.
-public static boolean DEBUG_ChkRstr_KC = true;// DEBUG_ChkRstr && !DEBUG_SHANE_NOTHING;		// Whether to show reason for keeping/not keeping a combination
 public static boolean DEBUG_ShowDDReport = false;
 
 
@@ -162,6 +163,13 @@ ArrayList<Command> shaneCommandsDebug;
 	// flags for keeping track of which variables have been used
 	private boolean[] varsUsed;
 	
+	// encode indexed-set accesses with a variable index symbolically (rather than by command versions)?
+	private boolean symbolicIndexedAccess;
+
+	// worker threads for the (AST-level) preparation of command versions; translation itself stays sequential
+	private int numThreads;
+	private ForkJoinPool workerPool = null;
+
 	// symmetry info
 	private boolean doSymmetry;			// use symmetry reduction
 	private JDDNode symm; 				// dd of symmetric states
@@ -174,6 +182,11 @@ ArrayList<Command> shaneCommandsDebug;
 	private boolean storeTransParts = false; 
 	// hidden option - do we also store action info for the transition matrix? (supersedes the above)
 	private boolean storeTransActions = true; 
+	// hidden option - do we memoise the translation of expressions (within a single call to translate())?
+	private boolean memoiseExpressions = true;
+
+	// memo of expressions already translated in the current call to translate() (see translateExpression)
+	private HashMap<Expression, JDDNode> exprMemo = null;
 	
 	// data structure used to store mtbdds and related info
 	// for some component of the whole model
@@ -252,12 +265,27 @@ if (DEBUG_SHANE) {
 		// get symmetry reduction info
 		String s = prism.getSettings().getString(PrismSettings.PRISM_SYMM_RED_PARAMS);
 		doSymmetry = !(s == null || s == "");
+		symbolicIndexedAccess = prism.getSettings().getBoolean(PrismSettings.PRISM_SYMBOLIC_INDEXED_ACCESS);
+		numThreads = prism.getNumThreads();
 	}
 	
-	@SuppressWarnings("unchecked") // for clone of vector in translate()
-
 	// main method - translate
 	public Model translate() throws PrismException
+	{
+		try {
+			return doTranslate();
+		} finally {
+			// release the memoised DDs and the worker pool, also if translation failed
+			clearExpressionMemo();
+			if (workerPool != null) {
+				workerPool.shutdown();
+				workerPool = null;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked") // for clone of vector in translate()
+	private Model doTranslate() throws PrismException
 	{
 		Model model = null;
 		JDDNode tmp, tmp2;
@@ -315,6 +343,8 @@ if (DEBUG_SHANE) {
 if (DEBUG_SHANE) System.out.println("in m2m_translate, about to instantiate the StateModelChecker [to store in 'expr2mtbdd']\n<Make_StateModelChecker>");
 		// create stripped-down StateModelChecker for expression to MTBDD conversions
 		expr2mtbdd = new StateModelChecker(prism, varList, allDDRowVars, varDDRowVars, constantValues);
+		if (memoiseExpressions)
+			exprMemo = new HashMap<Expression, JDDNode>();
 if (DEBUG_SHANE) System.out.println("</Make_StateModelChecker>");
 		
 if (DEBUG_SHANE) {
@@ -1957,1112 +1987,112 @@ compDDs.nickName = "a CompDDs made in combineComponentDDs [from " + compDDs1.nic
  * 
  *
  */
-private List<Command> generateCommandVersions(Command theCommand, List<Values> restrictionValCombins)
+private List<Command> generateCommandVersions(final Command theCommand, List<Values> restrictionValCombins) throws PrismLangException
 {
 	ArrayList<Command> generatedCommands = new ArrayList<Command>();
-	ResolveRestrictedScopes rrs = new ResolveRestrictedScopes(constantValues,varList);
-	Command resolvedVersion = null;
 	int versionID = 0;
 
-	for (Values substitutions : restrictionValCombins)
-	{
-if (DEBUG_TransMod) System.out.println("GSV-place 1: Generating version of command: " + theCommand.getSynch() + "\n using these values affecting restriction scopes: " + substitutions);
-if (DEBUG_TransMod) System.out.println("Command template (before including restrictions...) is\n" + theCommand);
-
-// Jan 2020: Shane thinks that the following for loop is not needed any more - it appears identical to something inside the method called straight after, and this loop here doesn't seem to do anything. So, I am commenting it out. It doesn't appear to have impacted the beahviour of the system by removing it.
-
-/* 
-		for (int i = 0; i < substitutions.getNumValues(); i++)
-		{
-			String varNameToUse = substitutions.getName(i);
-			int valToUse = (int) ((Integer)substitutions.getValue(i));
-			int indexInVarList = varList.getIndex(varNameToUse);
-
-			ExpressionVar theVar = 	new ExpressionVar( varNameToUse, varList.getType(indexInVarList));
-			theVar.setIndex(indexInVarList);		// SHANE HOPES THAT IS CORRECT - otherwise, have to find out appropriate value to use.
-//if (DEBUG_TransMod) System.out.println("for variable " + varNameToUse + ", create ExprVar with type set to " + varList.getType(indexInVarList)");
-			ExpressionLiteral theVal = new ExpressionLiteral(varList.getType(indexInVarList),valToUse);
-		}
-*/
-
-		rrs.setValuesForResolution(substitutions);		// What to use for evaluation of restriction expressions
+	// Resolve the restricted scopes for each combination of values (on the worker pool, if available)
+	List<Command> resolvedVersions = prepareInParallel(restrictionValCombins, substitutions -> {
+		// Each task needs its own visitor, since it stores the values to use for resolution
+		ResolveRestrictedScopes rrs = new ResolveRestrictedScopes(constantValues,varList);
+		rrs.setValuesForResolution(substitutions);
 		try {
-			resolvedVersion = (Command) rrs.visit( (Command) theCommand.deepCopy() );	// Resolve for current values
-if (DEBUG_TransMod) System.out.println("GSV - Place 2: The Generated version (after including restrictions, after calling rrs.setValuesForResultion and rrs.visit) is\n" + resolvedVersion);
-
-if (DEBUG_CommandVersionsNAMES)
-			resolvedVersion.setVariant(++versionID);
-
-			generatedCommands.add(resolvedVersion);					// Add to list we will return.
-if (DEBUG_TransMod) System.out.println("Added variant " + resolvedVersion.getVariant() + " of command " + resolvedVersion.getSynch());
-
-
+			return (Command) rrs.visit( (Command) theCommand.deepCopy() );	// Resolve for current values
 		} catch (PrismLangException ple) { 
 System.out.println("An exception arose: " + ple);
 ple.printStackTrace(System.out);
+			return null;
 		}
-	}
+	});
 
-	return generatedCommands;
-}
+	// Then number and collect them, in the original order
+	for (Command resolvedVersion : resolvedVersions)
+	{
+		if (resolvedVersion == null)
+			continue;
+if (DEBUG_CommandVersionsNAMES)
+		resolvedVersion.setVariant(++versionID);
 
-// ADDED BY SHANE
-/** This method will generate, by recursion, all the possible combinations of values for the variables whose indexes
-    are in the supplied first parameter. It is blind as to whether any of the combinations are fit-for-purpose - that is
-    left to the checkValidity() method which should be given the result of the top-level call to THIS method.
-    The 'template' parameter is used to lock other variables whilst the current front one is used to generate enumerations.
-    It will return all the enumerations that are possible for the variables of the first parameter, but with the template
-    values locked.
-    In short, it does not seek to eliminate any combinations.
-*/
-private List<Values> getEnumeratedCombinations(
-   ArrayList<Integer> varIdxsToEnumerate,
-   Values template
-)
-{
-	int low, high, curValForVar;
-	String vName;
-	List<Values> resultsFromRecurse, resultsToGiveBack = null;
-
-	if (template == null)
-	   template = new Values();		// Just make a new empty one.
-
-	if (varIdxsToEnumerate != null) { 
-		// Create clones, to remove the front item from and then pass the remainder to recursive call...
-		ArrayList<Integer> remainingVarIdxs = (ArrayList<Integer>)varIdxsToEnumerate.clone();
-
-		int idxOfCurVar = remainingVarIdxs.remove(0);
-
-		// get some info on the variable
-		vName = varList.getName(idxOfCurVar);
-		low = varList.getLow(idxOfCurVar);
-		high = varList.getHigh(idxOfCurVar);
-if (DEBUG_RecurseVars) System.out.println("in getEnumeratedCombinations, front variable is: " + vName);
-System.out.println(" the range of its values is from " + low + " to " + high);
-
-		// Prepare the results from this call, which will be generated by enumeration of possible values for current variable...
-		resultsToGiveBack = new ArrayList<Values>();
-
-		// Enumerate the possible values, and translate the update for them...
-		for (curValForVar = low; curValForVar <= high; curValForVar++) {
-			Values valsToSubstitute = template.clone();		// Using the variables as defined by receive parameter.
-			valsToSubstitute.addValue(vName,new Integer(curValForVar));	// we will now add this variable, with current value.
-			if (remainingVarIdxs.size() > 0) {	// If there are more variables, then need to do a recursive call	
-if (DEBUG_RecurseVars) System.out.println("Will set " + vName + " to be " + curValForVar + ", and now calculate combinations for other variables...");
-				resultsFromRecurse = getEnumeratedCombinations(remainingVarIdxs, valsToSubstitute);
-				if (resultsFromRecurse != null & resultsFromRecurse.size() > 0)
-				  resultsToGiveBack.addAll(resultsFromRecurse);
-if (DEBUG_RecurseVars) System.out.println("Back in getEnumeratedCombinations for front-variable of: " + vName + ", received " + resultsFromRecurse.size() + " values from recursive call.");
-			} else {		// BASE CASE - no other variables to recurse into
-				resultsToGiveBack.add(valsToSubstitute);
-if (DEBUG_RecurseVars) System.out.println(" Will set " + vName + " to be " + curValForVar + ", and return it alone (Base Case).");
-			//EvaluateContextValues evalContext = new EvaluateContextValues(valsToSubstitute.clone());
-			}
-		}
-if (DEBUG_RecurseVars) System.out.println("Ending getEnumeratedCombinations for front-variable of: " + vName + "\n");
+		generatedCommands.add(resolvedVersion);					// Add to list we will return.
+if (DEBUG_TransMod) System.out.println("Added variant " + resolvedVersion.getVariant() + " of command " + resolvedVersion.getSynch() + ":\n" + resolvedVersion);
 	}
-	return resultsToGiveBack;
 
+	return generatedCommands;
 }
 
-
-// ADDED BY SHANE
-/** Takes a list of Values specifying an exhaustive range of combinations to be tried for validity against the Set of
-    ExpressionIndexedSetAccess expressions. Any that fail to match to a valid variable name, will be discarded from the
-    list that is returned.
+/**
+ * Prepare the variants of a command version for translation, one for each combination of values in {@code substitutionCombins}
+ * (which all substitute the same variables): the command with those values substituted into the index-specification expressions
+ * of the guard and of the update expressions. They are instantiated from a {@link CommandTemplate}, so share all unaffected
+ * parts of the command. If there are no substitutions, the command itself is used.
  */
-private List<Values> filterCombinationsForAccessExprs(List<Values> subsCombins, Set<ExpressionIndexedSetAccess> EISAs_toCheck)
+private List<Command> prepareCommandVariants(Command command, List<Values> substitutionCombins) throws PrismLangException
 {
-	List<Values> keptCombinations = new ArrayList<Values>();
-	boolean keepCombination;
-	int indexToUse = 0;
-	List<Expression> restrExprs;
-
-	// If there are no EISAs to be checked, there is nothing to do, so just returned what we received.
-	if (EISAs_toCheck == null || EISAs_toCheck.size() == 0)
-	    return subsCombins;
-
-	// Don't proceed if no substitutions were provided - just give back what we received
-	if (subsCombins == null || subsCombins.size() == 0)
-	    return subsCombins;
-
-	for (Values curSubValues : subsCombins)
-	{
-		keepCombination = true;		// We assume the combination is worthy of inclusion, and seek to prove otherwise...
-if (DEBUG_ChkRstr) {
-  System.out.println("\nNow considering these proposed substitutions: " + curSubValues + "\nhave reset the keepCombination to true");
-}
-		// Consider each expression that accesses an indexed set, to see if it will be an invalid access. If so,
-		// then disregard the current curSubValues; otherwise, preserve it for returning.
-		for (ExpressionIndexedSetAccess accExpr: EISAs_toCheck)
-		{
-			// Substitute the curSubValues into the curAccessExpression, and see if it resolves to a known variable:
-if (DEBUG_ChkRstr) {
-  System.out.println("\nConsidering access expression: " + accExpr + "\n for these values: " + curSubValues);
-}
-
-			restrExprs = accExpr.getRestrictionExpressions();
-			if (restrExprs != null && restrExprs.size() > 0) {
-if (DEBUG_ChkRstr) {
-  System.out.println("\tIt has restriction expressions to apply: "); 
-}
-				for (Expression restrExpr : restrExprs)
-				{
-if (DEBUG_ChkRstr) {
-  System.out.println("\t  " + restrExpr);
-}
-				}
-
-				// Consider each of the variables in the current set of substitution variables, to see how it might be restricted
-				int i;
-				for (i = 0; i < curSubValues.getNumValues(); i++)	
-				if (keepCombination)		// Provided it has not been rejected on the basis of one of the other variables
-				{
-					String varName = curSubValues.getName(i);
-					int varVal = 0;
-					try { 
-					    varVal = curSubValues.getIntValue(i);
-					} catch (PrismLangException ple1) {
-System.out.println("Utterly unexpected exception has arisen: ");
-ple1.printStackTrace(System.out);
-System.exit(1);
-					}
-  System.out.println("<ConsidImpactOnVar var='"+varName+"'>\n\t Considering which restrictions impact on variable: " + varName);
-					List<ExpressionBinaryOp> relationsInvolvingVar = null;
-					FindRelOpInvolvingVar visitor = new FindRelOpInvolvingVar(varName);
-					Expression op2;
-					int relOp, maybeBound = 0;
-
-					for (Expression restrExpr : restrExprs)
-					{
-					    try {
-						restrExpr.accept(visitor);
-					    } catch (PrismLangException ple2) {
-System.out.println("Utterly unexpected exception has arisen: ");
-ple2.printStackTrace(System.out);
-System.exit(1);
-					    }
-					}
-					// the visitor now know all the expressions involving the variable on the left side of a relational expression.
-
-
-
-					// Extract out all the expressions within the guard, that involve the variable specified by varName
-					relationsInvolvingVar = visitor.getExpressionsThatInvolve();
-
-if (DEBUG_ChkRstr && relationsInvolvingVar != null)
-  System.out.println("There are this many restrictions that involve that variable: " + relationsInvolvingVar.size());
-
-					if (relationsInvolvingVar != null && relationsInvolvingVar.size() > 0)
-					{
-if (DEBUG_ChkRstr) System.out.println("The following expressions may have an impact on " + varName + ": ");
-for (Expression output : relationsInvolvingVar) System.out.println("  " + output + " may restrict the range of " + varName);
-System.out.println();
-						// Consider each expression that involves the variable
-						for (ExpressionBinaryOp curExpr : relationsInvolvingVar) {
-if (DEBUG_ChkRstr) System.out.println("\nConsidering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("oper1 is " + curExpr.getOperand1() + ", oper2 is " + curExpr.getOperand2() ) ;
-							op2 = curExpr.getOperand2();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Going to call evaluateInt on " + op2 );//+ " substituting this for variables: " + alreadyConsideredOnes);
-							try {
-								maybeBound = op2.evaluateInt(constantValues,(Values)null);
-//								maybeBound = op2.evaluateInt(constantValues,alreadyConsideredOnes);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[A] value returned from evaluateInt (called 'maybeBound' in code) is: " + maybeBound );
-								// Based on the relational operator in use, see if the proposed substitution conforms. If not, reject.
-								relOp = curExpr.getOperator();
-								if (relOp == ExpressionBinaryOp.EQ)
-								{
-									if (varVal != maybeBound)		// Doesn't match current substitution proposal
-{ if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Excluded due to case 1");
-									  keepCombination = false;		// So don't keep the proposed substitution.
-}
-								}
-								if (relOp == ExpressionBinaryOp.NE)
-								{
-									if (varVal == maybeBound)		// Doesn't match current substitution proposal
-{ if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Excluded due to case 2");
-									  keepCombination = false;		// So don't keep the proposed substitution.
-}
-								}
-								if (relOp == ExpressionBinaryOp.LT)
-								{
-									if (varVal >= maybeBound)		// Doesn't match current substitution proposal
-{ if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Excluded due to case 3");
-									  keepCombination = false;		// So don't keep the proposed substitution.
-								}
-}
-								if (relOp == ExpressionBinaryOp.LE)
-								{
-									if (varVal > maybeBound)		// Doesn't match current substitution proposal
-{ if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Excluded due to case 4");
-									  keepCombination = false;		// So don't keep the proposed substitution.
-}
-								}
-								if (relOp == ExpressionBinaryOp.GT)
-								{
-System.out.println("Checking whether " + varVal + " > " + maybeBound);
-
-									if (varVal <= maybeBound)		// Doesn't match current substitution proposal
-{ if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Excluded due to case 5");
-									  keepCombination = false;		// So don't keep the proposed substitution.
-}
-								}
-								if (relOp == ExpressionBinaryOp.GE)
-								{
-									if (varVal < maybeBound)		// Doesn't match current substitution proposal
-{ if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Excluded due to case 6");
-									  keepCombination = false;		// So don't keep the proposed substitution.
-}
-								}
-if (DEBUG_ChkRstr) System.out.println("value " + varVal + ( keepCombination ? " still fits criteria" : " fails criteria") );
-							} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.filterCombinations4AE in the TooHard case of evaluating int:");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-							}
-/*				 catch (PrismEvaluationException pee1) {
-								
-					String problemVarName = ((ExpressionVar)pee1.getASTElement()).getName();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("First need to determine lower bound of: " + problemVarName);
-					// Make a copy of the values already 'set' by prior calls.
-					copyOfAlready = new Values(alreadyConsideredOnes);
-					// set a value for the CURRENT variable, so we don't enter an infinite cycle of calls.
-					copyOfAlready.addValue(varName, new Integer(lowerBound) );
-
-					newLower = checkRestrictLowerBound( problemVarName,		// The name of the variable we want to tie-down.
-						varList.getLow(varList.getIndex(problemVarName)),	// Its default lower bound
-						guard,
-						copyOfAlready
-					);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Back in prior call, we are dealing with this expression: " + op2);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("The lower bound of " + problemVarName + " we received back, ends up being " + newLower);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("So we will copy the original set of 'alreadyConsideredVariables', and insert " + problemVarName + " with value " + newLower + " and re-evaluate " + op2);
-					// Now that we have a value resolved for the problem variable name, lets try again with it added to the list of alreadyOnes.
-					copyOfAlready = new Values(alreadyConsideredOnes);		// Reset, no longer have the CURRENT variable in it.
-					copyOfAlready.addValue(problemVarName,newLower);		// Insert the variable we have just tried to resolve.
-
-					try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("\nRe-Considering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("by calling evaluateInt on this expr: " + op2 + " using the following partial value assignments for variables: " + copyOfAlready);
-						maybeBound = op2.evaluateInt(constantValues,copyOfAlready);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[B] value returned from evaluateInt is: " + maybeBound);
-						  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, lowerBound is: " + lowerBound);
-
-						// If we get to here, maybe we ought to replace the "alreadyConsideredOnes" with the newer copyOfAlready???
-					} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound in the TooHard case [3]):");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-					}
-				} catch (Exception ex1) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound:");
-ex1.printStackTrace(System.out);
-System.exit(1);
-				}
-*/
-						} // End of what to do for each of the relations involving the variable, that is in restrictions
-					} // End of if for whether there were any restricitions for the variable.
-System.out.println("</ConsidImpactOnVar var='"+varName+"'>\n");
-				} // End of block attached to the considering each of the variables involved in the access expression.
-
-				if (keepCombination)			// If it hasn't been rejected by restrictions, let's now try substituting this combination
-				{				// in to see if the resultant value is a valid index position...
-if (DEBUG_ChkRstr_KC){
-   PrintDebugIndent(); System.out.println("It passed the restriction checks, doing further checks...");
-}
-				  try {
-				    // Evaluate the expression to find the definite index to retrieve
-				    indexToUse = accExpr.getIndexExpression().evaluateInt(constantValues, curSubValues);
-
-if (DEBUG_ChkRstr_KC){
-   PrintDebugIndent(); System.out.println("The accessExpression : " + accExpr + " with the current proposed substitutions of " + curSubValues + " evaluates as " + indexToUse );
-}
-				    if (indexToUse < 0)
-				    {
-// PERHAPS I should remove this simple discard, and force the model authors to explicitly deal with this case
-if (DEBUG_ChkRstr_KC){
-  PrintDebugIndent(); System.out.println("However, as the index is less than 0, this combination of values is being REMOVED from the set to return.");
-}
-					keepCombination = false;
-					//DONT throw new PrismLangException("Invalid index given in indexed-set access attempt",accExpr);
-					//RATHER: just throw this combination away.
-				    } else {
-					// construct the supposed name of the definitive variable to be accessed
-					String hopedName = accExpr.getName() + "[" + indexToUse + "]";
-if (DEBUG_ChkRstr_KC){
-	PrintDebugIndent(); System.out.println("\t The resultant exact variable (if it exists) will be: " + hopedName);
-}
-
-					// Check whether a variable by this name actually exists...
-					int v = varList.getIndex(hopedName);
-if (DEBUG_ChkRstr){
-	PrintDebugIndent(); System.out.println("The determined position of that variable in varList is " + v);
-}
-
-					if (v == -1) 
-					 	  keepCombination = false;
-				    }
-				  } catch (PrismOutOfBoundsException oobe) {
-if (DEBUG_ChkRstr){
-System.out.println("That combination would be outside the valid range of accessing the indexed set, so excluding this combination.");
-}
-					keepCombination = false;
-				  } catch (PrismLangException ple) {
-System.out.println("Unanticipated Exception occurred...");
-ple.printStackTrace(System.out);
-					keepCombination = false;		// If there was a problem, exclude that combination
-				  }
-				}
-else if (DEBUG_ChkRstr_KC){
-   PrintDebugIndent(); System.out.println("It failed on account of the restriction checks.");
-}
-			}
-else if (DEBUG_ChkRstr) System.out.println(" - no restrictions specified");
-
-if (DEBUG_ChkRstr) {
-  System.out.println("\nFinished Considering access expression: " + accExpr + "\n for these values: " + curSubValues);
-}
-		}
-		// Based on verdicts, either keep or discard this combination of values. Any include=false will cause discard.
-		if (keepCombination)
-		  keptCombinations.add(curSubValues);
-
-		if (keepCombination)
-		   System.out.println("\nCOMBIN-OUTCOME: KEEPING: " + curSubValues);
-		else System.out.println("\nCOMBIN-OUTCOME: EXCLUDING: " + curSubValues);
+	Values first = substitutionCombins.get(0);
+	if (first.getNumValues() == 0)
+		return Collections.nCopies(substitutionCombins.size(), command);
+	List<String> holeNames = new ArrayList<String>();
+	for (int i = 0; i < first.getNumValues(); i++) {
+		holeNames.add(first.getName(i));
 	}
-	return keptCombinations;	// Could be empty, but cannot be null.
+	final CommandTemplate template = new CommandTemplate(command, constantValues, holeNames);
+	return prepareInParallel(substitutionCombins, substitutions -> template.instantiate(substitutions));
 }
 
-// ADDED BY SHANE BUT MAY NOT BE NEEDED, HENCE NOT ACTUALLY WRITTEN MUCH YET.
 /**
-  Receives a list of potential substitution combinations, for further filtering-out by considering the supplied Guard Expression for any restrictions
-  the guard imposes, for example by a 'greater-than' constraint on a variable used in an access expression.
-*/
-private List<Values> filterCombinationsForGuard(List<Values> substitutionCombins, Expression guardExpr)
-{
-System.out.println("\n*** NOT ACTUALLY IMPLEMENTED THAT YET, BUT MAY NOT NEED TO ***\n");
-
-	for (Values curValues : substitutionCombins) {
-//		System.out.println("Considering whether the following values: " + curValues + "\n  might be ruled out by this guard: " + guardExpr);
-
-/*
-		int i;
-		for (i = 0; i < curValues.getNumValues(); i++)
-		try {
-			String varName = curValues.getName(i);
-			int varVal = curValues.getIntValue(i);
-
-			// First, look for any terms in guard that constrain variable to a specific value, involving the variable:
-//			int relOp, maybeBound, newLower, lowerBound;
-			List<ExpressionBinaryOp> relationsInvolvingVar = null;
-			FindRelOpInvolvingVar visitor = new FindRelOpInvolvingVar(varName);
-			Expression op2;
-			Values copyOfAlready;
-
-//	if (alreadyConsideredOnes == null) throw new NullPointerException("alreadyConsideredOnes must be an instantiated Values object, even if empty.");
-
-//if (DEBUG_ChkRstr) System.out.println("\n<CHK_RSTR>\ncheckRestrictLowerBound called for: " + varName);
-
-//if (DEBUG_ChkRstr) if (alreadyConsideredOnes.getNumValues() > 0)
-//  System.out.println("The following values are provided as alreadyConsideredOnes:" + alreadyConsideredOnes);
-//else
-//  System.out.println("No values are in alreadyConsideredOnes.");
-
-//if (DEBUG_ChkRstr) System.out.println("\nThe current lower bound of " + varName + " is: " + curLowerBound);
-
-//	lowerBound = curLowerBound;
-
-//if (DEBUG_ChkRstr) System.out.println("Going to search (using Visitor) for any place it appears in the following guard: " + guard);
-
-			try {
-				guard.deepCopy().accept(visitor);		// Start searching.
-			} catch (PrismLangException peIgnore) { };
-
-			// Extract out all the expressions within the guard, that involve the variable specified by varName
-			relationsInvolvingVar = visitor.getExpressionsThatInvolve(ExpressionBinaryOp.EQ);
-
-
-			if (relationsInvolvingVar != null && relationsInvolvingVar.size() > 0)
-			{
-if (DEBUG_ChkRstr) System.out.println("The following expressions may have an impact on " + varName + " by having an EQUALS: ");
-for (Expression output : relationsInvolvingVar) System.out.println("  " + output + " may restrict the range of " + varName);
-System.out.println();
-				// Consider each expression that involves the variable
-				for (ExpressionBinaryOp curExpr : relationsInvolvingVar) {
-if (DEBUG_ChkRstr) System.out.println("\nConsidering impact on variable " + varName + " caused by this expression: " + curExpr);
-					relOp = curExpr.getOperator();
-					if (relOp == ExpressionBinaryOp.EQ)
+ * A step in the (AST-level) preparation of command versions, which is safe to run on a worker thread.
+ */
+private interface PreparationTask<T, R>
 {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("oper1 is " + curExpr.getOperand1() + ", oper2 is " + curExpr.getOperand2() ) ;
-				op2 = curExpr.getOperand2();
-				try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Going to call evaluateInt on " + op2 );//+ " substituting this for variables: " + alreadyConsideredOnes);
-					maybeBound = op2.evaluateInt(constantValues,(Values)null);
-//					maybeBound = op2.evaluateInt(constantValues,alreadyConsideredOnes);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[A] value returned from evaluateInt (called 'maybeBound' in code) is: " + maybeBound + "\nDOES it make sense for THAT to be the binding of variable " + varName + "?");
-					  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-					if (maybeBound != varVal)		// The explicit value differs to the proposed substitution value
-					   keepCombination = false;		// So don't keep the proposed substitution.
-
-
-				} catch (PrismEvaluationException pee1) {
-					String problemVarName = ((ExpressionVar)pee1.getASTElement()).getName();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("First need to determine lower bound of: " + problemVarName);
-					// Make a copy of the values already 'set' by prior calls.
-					copyOfAlready = new Values(alreadyConsideredOnes);
-					// set a value for the CURRENT variable, so we don't enter an infinite cycle of calls.
-					copyOfAlready.addValue(varName, new Integer(lowerBound) );
-
-					newLower = checkRestrictLowerBound( problemVarName,		// The name of the variable we want to tie-down.
-						varList.getLow(varList.getIndex(problemVarName)),	// Its default lower bound
-						guard,
-						copyOfAlready
-					);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Back in prior call, we are dealing with this expression: " + op2);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("The lower bound of " + problemVarName + " we received back, ends up being " + newLower);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("So we will copy the original set of 'alreadyConsideredVariables', and insert " + problemVarName + " with value " + newLower + " and re-evaluate " + op2);
-					// Now that we have a value resolved for the problem variable name, lets try again with it added to the list of alreadyOnes.
-					copyOfAlready = new Values(alreadyConsideredOnes);		// Reset, no longer have the CURRENT variable in it.
-					copyOfAlready.addValue(problemVarName,newLower);		// Insert the variable we have just tried to resolve.
-
-					try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("\nRe-Considering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("by calling evaluateInt on this expr: " + op2 + " using the following partial value assignments for variables: " + copyOfAlready);
-						maybeBound = op2.evaluateInt(constantValues,copyOfAlready);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[B] value returned from evaluateInt is: " + maybeBound);
-						  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, lowerBound is: " + lowerBound);
-
-						// If we get to here, maybe we ought to replace the "alreadyConsideredOnes" with the newer copyOfAlready???
-					} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound in the TooHard case [3]):");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-}
-				} catch (Exception ex1) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound:");
-ex1.printStackTrace(System.out);
-System.exit(1);
-				}
-if (DEBUG_ChkRstr) System.out.println("END OF THE >=BLOCK");
-			}
-
-		} catch (PrismLangException ple) {
-			// What to do if the intVal of currentValue can't be obtained?? Probably nothing. Should probably never arise.
-		}
-*/
-	}
-
-	return substitutionCombins;
+	public R apply(T input) throws PrismLangException;
 }
 
-// ADDED BY SHANE - BUT REPLACING IT BY THE PRECEDING FEW METHODS.
-/** This method expects to be given a list containing the index to variables of varList, 
-    and will take the front one, iterate over all its possible values by recursively calling 
-    with the remainder of the list, to generate a list (returned) of Values objects which 
-    contain actual values for each variable. The 'template' parameter is used to lock other
-    variables whilst the current front one is enumerated. The initial call to start the recursion
-    should provide an empty but initialised template. The 'lowerBounds' and 'upperBounds' parameters
-    specify the ranges to be used for each variable, as determined by an analysis of other conditions
-    present in the guard which may have been there to restrict overflow cases of formulas.
-*/
-private List<Values> recurseOnVars(
-   ArrayList<Integer> varIdxsToRecurse, 
-   ArrayList<Integer> lowerBounds, 
-   ArrayList<Integer> upperBounds, 
-   Values template)
+/**
+ * Apply {@code task} to each of the {@code inputs}, using the worker pool if there is more than one thread
+ * (and more than one input). The results are returned in the same order as the inputs, so the translation
+ * that follows (which is sequential) is unaffected by the number of threads.
+ */
+private <T, R> List<R> prepareInParallel(List<T> inputs, final PreparationTask<T, R> task) throws PrismLangException
 {
-	int low, high, curValForVar;
-	String vName;
-	List<Values> resultsFromRecurse, resultsToGiveBack = null;
-
-	if (template == null)
-	   template = new Values();		// Just make a new empty one.
-if (DEBUG_RecurseVars) {
-//System.out.println("In recurseOnVars, varIdxsToRecurse != null is : " + (varIdxsToRecurse != null) );
-//System.out.println("In recurseOnVars, varIdxsToRecurse.size() is: " + varIdxsToRecurse.size() );
-//System.out.println("In recurseOnVars, lowerBounds != null is : " + (lowerBounds != null) );
-//System.out.println("In recurseOnVars, lowerBounds.size() is: " + lowerBounds.size() );
-//System.out.println("In recurseOnVars, upperBounds != null is : " + (upperBounds != null) );
-//System.out.println("In recurseOnVars, upperBounds.size() is: " + upperBounds.size() );
-}
-	if (varIdxsToRecurse != null && lowerBounds != null && upperBounds != null &&
-	  varIdxsToRecurse.size() > 0 && lowerBounds.size() > 0 && upperBounds.size() > 0) {
-		// Create clones, to remove the front item from and then pass the remainder to recursive call...
-		ArrayList<Integer> remainingVarIdxs = (ArrayList<Integer>)varIdxsToRecurse.clone();
-		ArrayList<Integer> remLowerBounds = (ArrayList<Integer>) lowerBounds.clone();
-		ArrayList<Integer> remUpperBounds = (ArrayList<Integer>) upperBounds.clone();
-
-		int idxOfCurVar = remainingVarIdxs.remove(0);
-
-		// get some info on the variable
-		vName = varList.getName(idxOfCurVar);
-if (DEBUG_RecurseVars) System.out.println("in recurseOnVars, front variable is: " + vName);
-		low = remLowerBounds.remove(0);
-		high = remUpperBounds.remove(0);
-
-		// Check there is no contradiction:
-		if (low > high || high < low)
-			throw new RuntimeException("Low exceeds High, when dealing with variable " + vName);
-if (DEBUG_RecurseVars) System.out.println("its values are to be taken over the range from: " + low + " to " + high);
-
-		// Prepare the results from this call, which will be generated by enumeration of possible values for current variable...
-		resultsToGiveBack = new ArrayList<Values>();
-
-		// Enumerate the possible values, and translate the update for them...
-		for (curValForVar = low; curValForVar <= high; curValForVar++) {
-			Values valsToSubstitute = template.clone();		// Using the variables as defined by receive parameter.
-			valsToSubstitute.addValue(vName,new Integer(curValForVar));	// we will now add this variable, with current value.
-			if (remainingVarIdxs.size() > 0) {	// If there are more variables, then need to do a recursive call	
-if (DEBUG_RecurseVars) System.out.println("Will set " + vName + " to be " + curValForVar + ", and now calculate combinations for other variables...");
-				resultsFromRecurse = recurseOnVars(remainingVarIdxs, remLowerBounds, remUpperBounds, valsToSubstitute);
-				if (resultsFromRecurse != null & resultsFromRecurse.size() > 0)
-				  resultsToGiveBack.addAll(resultsFromRecurse);
-if (DEBUG_RecurseVars) System.out.println("Back in recurseOnVars for front-variable of: " + vName + ", received " + resultsFromRecurse.size() + " values from recursive call.");
-			} else {
-				resultsToGiveBack.add(valsToSubstitute);
-if (DEBUG_RecurseVars) System.out.println("Will set " + vName + " to be " + curValForVar + ", and return it alone.");
-			//EvaluateContextValues evalContext = new EvaluateContextValues(valsToSubstitute.clone());
-			}
+	int n = inputs.size();
+	List<R> results = new ArrayList<R>(n);
+	if (numThreads <= 1 || n <= 1) {
+		for (T input : inputs) {
+			results.add(task.apply(input));
 		}
-if (DEBUG_RecurseVars) System.out.println("Ending recurseOnVars for front-variable of: " + vName + "\n");
+		return results;
 	}
-	return resultsToGiveBack;
-
-}
-
-// ADDED BY SHANE	- BUT MAYBE SHOULD BE MERGED INTO THE recurseOnVars
-/** Purpose is to return a list where the value in position X is the lower-allowable value for variable whose index (into varList) appears in the same position X of the provided varIdxsToCheck argument.
- */	
-private ArrayList<Integer> checkLowerBounds(List<Integer> varIdxsToCheck, Expression guardMayRestrict)
-{
-// Caller line says:		List<Integer> lowerBounds = checkLowerBounds(list_varsForAccessingIndSet, command.getGuard());
-	int low, curValForVar, idxOfCurVar;
-	String vName;
-	ArrayList<Integer> lowerBounds = new ArrayList<Integer>();
-
-	if (varIdxsToCheck == null)
-	   return null;
-
-	for (Integer curVarIdx : varIdxsToCheck) {
-		idxOfCurVar = curVarIdx;
-
-		// get some info on the variable
-		vName = varList.getName(idxOfCurVar);
-//System.out.println("in checkLowerBounds, current variable being considered is: " + vName);
-
-		low = varList.getLow(idxOfCurVar);
-System.out.println(" for " + vName + " the lower boundary value is usually: " + low + " but we will consider the following guard for any restriction to impose: " + guardMayRestrict);
-
-		low = checkRestrictLowerBound(vName,low,guardMayRestrict.deepCopy(), new Values());		// Starts a Visitor to find bounds modifications
-System.out.println(" will use a lower boundary of: " + low + " for " + vName);
-
-		lowerBounds.add(low);		// Store the decided lower bound of variable		
-
-	}
-	return lowerBounds;
-}
-
-// ADDED BY SHANE	- BUT MAYBE SHOULD BE MERGED INTO THE recurseOnVars
-/** Purpose is to return a list where the value in position X is the uppermost-allowable value for variable whose index (into varList) appears in the same position X of the provided varIdxsToCheck argument.
- */	
-private ArrayList<Integer> checkUpperBounds(List<Integer> varIdxsToCheck, Expression guardMayRestrict)
-
-{
-	int high, idxOfCurVar;
-	String vName;
-	ArrayList<Integer> upperBounds = new ArrayList<Integer>();
-
-	if (varIdxsToCheck == null)
-	   return null;
-
-	for (Integer curVarIdx : varIdxsToCheck) {
-		idxOfCurVar = curVarIdx;
-
-		// get some info on the variable
-		vName = varList.getName(idxOfCurVar);
-//System.out.println("in checkUpperBounds, current variable being considered is: " + vName);
-
-		high = varList.getHigh(idxOfCurVar);
-//System.out.println(" usually its Upper boundary value is: " + high + " but we will consider the following guard for any restriction to impose: " + guardMayRestrict);
-
-		high = checkRestrictUpperBound(vName,high,guardMayRestrict.deepCopy(), new Values());		// Starts a Visitor to find bounds modifications
-System.out.println(" will use a Upper boundary of: " + high + " for " + vName);
-
-		upperBounds.add(high);		// Store the decided lower bound of variable		
+	if (workerPool == null) {
+		workerPool = new ForkJoinPool(numThreads);
 	}
-	return upperBounds;
-}
-
-// ADDED BY SHANE
-
-/** Considers the expressions in the guard to check if the lowerBound for a given varName could be increased. Recursive. */
-private int checkRestrictLowerBound(String varName, int curLowerBound, Expression guard, Values alreadyConsideredOnes) 
-{
-	int relOp, maybeBound, newLower, lowerBound;
-	List<ExpressionBinaryOp> relationsInvolvingVar = null;
-	FindRelOpInvolvingVar visitor = new FindRelOpInvolvingVar(varName);
-	Expression op2;
-	Values copyOfAlready;
-
-	if (alreadyConsideredOnes == null) throw new NullPointerException("alreadyConsideredOnes must be an instantiated Values object, even if empty.");
-
-if (DEBUG_ChkRstr) System.out.println("\n<CHK_RSTR>\ncheckRestrictLowerBound called for: " + varName);
-
-if (DEBUG_ChkRstr) if (alreadyConsideredOnes.getNumValues() > 0)
-  System.out.println("The following values are provided as alreadyConsideredOnes:" + alreadyConsideredOnes);
-else
-  System.out.println("No values are in alreadyConsideredOnes.");
-
-if (DEBUG_ChkRstr) System.out.println("\nThe current lower bound of " + varName + " is: " + curLowerBound);
-
-	lowerBound = curLowerBound;
-
-if (DEBUG_ChkRstr) System.out.println("Going to search (using Visitor) for any place it appears in the following guard: " + guard);
-
-	try {
-		guard.deepCopy().accept(visitor);		// Start searching.
-	} catch (PrismLangException peIgnore) { };
-
-	// Extract out all the expressions within the guard, that involve the variable specified by varName
-	relationsInvolvingVar = visitor.getExpressionsThatInvolve();
-
-
-	if (relationsInvolvingVar != null && relationsInvolvingVar.size() > 0)
-	{
-if (DEBUG_ChkRstr) System.out.println("The following expressions may have an impact on " + varName + ": ");
-for (Expression output : relationsInvolvingVar) System.out.println("  " + output + " may restrict the range of " + varName);
-System.out.println();
-		// Consider each expression that involves the variable
-		for (ExpressionBinaryOp curExpr : relationsInvolvingVar) {
-if (DEBUG_ChkRstr) System.out.println("\nConsidering impact on variable " + varName + " caused by this expression: " + curExpr);
-			relOp = curExpr.getOperator();
-			if (relOp == ExpressionBinaryOp.GT)
-			{
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Operator is >");
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("oper1 is " + curExpr.getOperand1() + ", oper2 is " + curExpr.getOperand2() ) ;
-				op2 = curExpr.getOperand2();
-				try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Going to call evaluateInt on " + op2 + " substituting this for variables: " + alreadyConsideredOnes);
-					maybeBound = 1+ op2.evaluateInt(constantValues,alreadyConsideredOnes);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[C] value returned from evaluateInt (called 'maybeBound' in code) is: " + maybeBound + "\nDOES it make sense for THAT to become lowerBound??");
-					if (maybeBound > lowerBound)	// The current 'maybeBound' value is more restrictive.
-					  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, lowerBound for " + varName + " is: " + lowerBound);
-				} catch (PrismEvaluationException pee1) {
-					String problemVarName = ((ExpressionVar)pee1.getASTElement()).getName();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("First need to determine lower bound of: " + problemVarName);
-					// Make a copy of the values already 'set' by prior calls.
-					copyOfAlready = new Values(alreadyConsideredOnes);
-					// set a value for the CURRENT variable, so we don't enter an infinite cycle of calls.
-					copyOfAlready.addValue(varName, new Integer(lowerBound) );
-
-					newLower = checkRestrictLowerBound( problemVarName,		// The name of the variable we want to tie-down.
-						varList.getLow(varList.getIndex(problemVarName)),	// Its default lower bound
-						guard,
-						copyOfAlready
-					);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Back in prior call, we are dealing with this expression: " + op2);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("The lower bound of " + problemVarName + " we received back, ends up being " + newLower);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("So we will copy the original set of 'alreadyConsideredVariables', and insert " + problemVarName + " with value " + newLower + " and re-evaluate " + op2);
-					// Now that we have a value resolved for the problem variable name, lets try again with it added to the list of alreadyOnes.
-					copyOfAlready = new Values(alreadyConsideredOnes);		// Reset, no longer have the CURRENT variable in it.
-					copyOfAlready.addValue(problemVarName,newLower);		// Insert the variable we have just tried to resolve.
-
-					try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("\nRe-Considering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("by calling evaluateInt on this expr: " + op2 + " using the following partial value assignments for variables: " + copyOfAlready);
-						maybeBound = 1 + op2.evaluateInt(constantValues,copyOfAlready);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[D] value returned from evaluateInt is: " + maybeBound);
-						if (maybeBound > lowerBound)	// The current 'maybeBound' value is more restrictive.
-						  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, lowerBound is: " + lowerBound);
-
-						// If we get to here, maybe we ought to replace the "alreadyConsideredOnes" with the newer copyOfAlready???
-					} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound in the TooHard case):");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-}
-				} catch (Exception ex1) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound:");
-ex1.printStackTrace(System.out);
-System.exit(1);
-				}
-if (DEBUG_ChkRstr) System.out.println("END OF THE > BLOCK");
-			}
-			else if (relOp == ExpressionBinaryOp.GE)
-			{
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Operator is >=");
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("oper1 is " + curExpr.getOperand1() + ", oper2 is " + curExpr.getOperand2() ) ;
-				op2 = curExpr.getOperand2();
-				try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Going to call evaluateInt on " + op2 + " substituting this for variables: " + alreadyConsideredOnes);
-					maybeBound = op2.evaluateInt(constantValues,alreadyConsideredOnes);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[A] value returned from evaluateInt (called 'maybeBound' in code) is: " + maybeBound + "\nDOES it make sense for THAT to become lowerBound??");
-					if (maybeBound >= lowerBound)	// The current 'maybeBound' value is more restrictive.
-					  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, lowerBound for " + varName + " is: " + lowerBound);
-				} catch (PrismEvaluationException pee1) {
-					String problemVarName = ((ExpressionVar)pee1.getASTElement()).getName();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("First need to determine lower bound of: " + problemVarName);
-					// Make a copy of the values already 'set' by prior calls.
-					copyOfAlready = new Values(alreadyConsideredOnes);
-					// set a value for the CURRENT variable, so we don't enter an infinite cycle of calls.
-					copyOfAlready.addValue(varName, new Integer(lowerBound) );
-
-					newLower = checkRestrictLowerBound( problemVarName,		// The name of the variable we want to tie-down.
-						varList.getLow(varList.getIndex(problemVarName)),	// Its default lower bound
-						guard,
-						copyOfAlready
-					);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Back in prior call, we are dealing with this expression: " + op2);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("The lower bound of " + problemVarName + " we received back, ends up being " + newLower);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("So we will copy the original set of 'alreadyConsideredVariables', and insert " + problemVarName + " with value " + newLower + " and re-evaluate " + op2);
-					// Now that we have a value resolved for the problem variable name, lets try again with it added to the list of alreadyOnes.
-					copyOfAlready = new Values(alreadyConsideredOnes);		// Reset, no longer have the CURRENT variable in it.
-					copyOfAlready.addValue(problemVarName,newLower);		// Insert the variable we have just tried to resolve.
-
-					try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("\nRe-Considering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("by calling evaluateInt on this expr: " + op2 + " using the following partial value assignments for variables: " + copyOfAlready);
-						maybeBound = op2.evaluateInt(constantValues,copyOfAlready);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[B] value returned from evaluateInt is: " + maybeBound);
-						if (maybeBound > lowerBound)	// The current 'maybeBound' value is more restrictive.
-						  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, lowerBound is: " + lowerBound);
-
-						// If we get to here, maybe we ought to replace the "alreadyConsideredOnes" with the newer copyOfAlready???
-					} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound in the TooHard case):");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-}
-				} catch (Exception ex1) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound:");
-ex1.printStackTrace(System.out);
-System.exit(1);
-				}
-if (DEBUG_ChkRstr) System.out.println("END OF THE >=BLOCK");
+	// Split into contiguous chunks (a few per thread, to balance the load)
+	int numChunks = Math.min(n, 4 * numThreads);
+	List<Callable<List<R>>> chunkTasks = new ArrayList<Callable<List<R>>>(numChunks);
+	for (int c = 0; c < numChunks; c++) {
+		final List<T> chunk = inputs.subList((int) ((long) c * n / numChunks), (int) ((long) (c + 1) * n / numChunks));
+		chunkTasks.add(() -> {
+			List<R> chunkResults = new ArrayList<R>(chunk.size());
+			for (T input : chunk) {
+				chunkResults.add(task.apply(input));
 			}
-			else if (relOp == ExpressionBinaryOp.EQ)
-			{
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("*[Case 3]*  Operator is =");
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("oper1 is " + curExpr.getOperand1() + ", oper2 is " + curExpr.getOperand2() ) ;
-				op2 = curExpr.getOperand2();
-				try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Going to call evaluateInt on " + op2 + " substituting this for variables: " + alreadyConsideredOnes);
-					maybeBound = op2.evaluateInt(constantValues,alreadyConsideredOnes);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[A] value returned from evaluateInt (called 'maybeBound' in code) is: " + maybeBound + "\nDOES it make sense for THAT to become lowerBound??");
-					  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, lowerBound for " + varName + " is: " + lowerBound);
-				} catch (PrismEvaluationException pee1) {
-					String problemVarName = ((ExpressionVar)pee1.getASTElement()).getName();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("First need to determine lower bound of: " + problemVarName);
-					// Make a copy of the values already 'set' by prior calls.
-					copyOfAlready = new Values(alreadyConsideredOnes);
-					// set a value for the CURRENT variable, so we don't enter an infinite cycle of calls.
-					copyOfAlready.addValue(varName, new Integer(lowerBound) );
-
-					newLower = checkRestrictLowerBound( problemVarName,		// The name of the variable we want to tie-down.
-						varList.getLow(varList.getIndex(problemVarName)),	// Its default lower bound
-						guard,
-						copyOfAlready
-					);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Back in prior call, we are dealing with this expression: " + op2);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("The lower bound of " + problemVarName + " we received back, ends up being " + newLower);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("So we will copy the original set of 'alreadyConsideredVariables', and insert " + problemVarName + " with value " + newLower + " and re-evaluate " + op2);
-					// Now that we have a value resolved for the problem variable name, lets try again with it added to the list of alreadyOnes.
-					copyOfAlready = new Values(alreadyConsideredOnes);		// Reset, no longer have the CURRENT variable in it.
-					copyOfAlready.addValue(problemVarName,newLower);		// Insert the variable we have just tried to resolve.
-
-					try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("\nRe-Considering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("by calling evaluateInt on this expr: " + op2 + " using the following partial value assignments for variables: " + copyOfAlready);
-						maybeBound = op2.evaluateInt(constantValues,copyOfAlready);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("[B] value returned from evaluateInt is: " + maybeBound);
-						  lowerBound = maybeBound;	// So make the subsequent integer be the new lower bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, lowerBound is: " + lowerBound);
-
-						// If we get to here, maybe we ought to replace the "alreadyConsideredOnes" with the newer copyOfAlready???
-					} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound in the TooHard case [3]):");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-}
-				} catch (Exception ex1) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictLowerBound:");
-ex1.printStackTrace(System.out);
-System.exit(1);
-				}
-if (DEBUG_ChkRstr) System.out.println("END OF THE >=BLOCK");
-			}
-else if (DEBUG_ChkRstr) System.out.println("It is neither > nor >=, so it has NO impact; just returning the original lowerBound value.");
-		}
+			return chunkResults;
+		});
 	}
-if (DEBUG_ChkRstr) System.out.println("\ncheckRestrictLowerBound ending  for: " + varName + " with value: " + lowerBound + "\n</CHK_RSTR>\n");
-	return lowerBound;
-}
-
-
-/** Considers the expressions in the guard to check if the upperBound for a given varName could be decreased. Recursive. */
-private int checkRestrictUpperBound(String varName, int curUpperBound, Expression guard, Values alreadyConsideredOnes) 
-{
-	int relOp, maybeBound, newUpper, upperBound;
-	List<ExpressionBinaryOp> relationsInvolvingVar = null;
-	FindRelOpInvolvingVar visitor = new FindRelOpInvolvingVar(varName);
-	Expression op2;
-	Values copyOfAlready;
-
-	if (alreadyConsideredOnes == null) throw new NullPointerException("alreadyConsideredOnes must be an instantiated Values object, even if empty.");
-
-if (DEBUG_ChkRstr) System.out.println("\n<CHK_RSTR>\ncheckRestrictUpperBound called for: " + varName);
-
-if (DEBUG_ChkRstr) if (alreadyConsideredOnes.getNumValues() > 0)
-  System.out.println("The following values are provided as alreadyConsideredOnes:" + alreadyConsideredOnes);
-else
-  System.out.println("No values are in alreadyConsideredOnes.");
-
-if (DEBUG_ChkRstr) System.out.println("\nThe current upper bound of " + varName + " is: " + curUpperBound);
-
-	upperBound = curUpperBound;
-
-if (DEBUG_ChkRstr) System.out.println("Going to search (using Visitor) for any place it appears in the following guard: " + guard);
-
 	try {
-		guard.deepCopy().accept(visitor);		// Start searching.
-	} catch (PrismLangException peIgnore) { };
-
-	// Extract out all the expressions within the guard, that involve the variable specified by varName
-	relationsInvolvingVar = visitor.getExpressionsThatInvolve();
-
-
-	if (relationsInvolvingVar != null && relationsInvolvingVar.size() > 0)
-	{
-if (DEBUG_ChkRstr) System.out.println("The following expressions may have an impact on " + varName + ": ");
-for (Expression output : relationsInvolvingVar) System.out.println("  " + output + " may restrict the range of " + varName);
-System.out.println();
-		// Consider each expression that involves the variable
-		for (ExpressionBinaryOp curExpr : relationsInvolvingVar) {
-if (DEBUG_ChkRstr) System.out.println("\nConsidering impact on variable " + varName + " caused by this expression: " + curExpr);
-			relOp = curExpr.getOperator();
-			if (relOp == ExpressionBinaryOp.LT)
-			{
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Operator is <");
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("oper1 is " + curExpr.getOperand1() + ", oper2 is " + curExpr.getOperand2() ) ;
-				op2 = curExpr.getOperand2();
-				try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Going to call evaluateInt on " + op2 + " substituting this for variables: " + alreadyConsideredOnes);
-					maybeBound = op2.evaluateInt(constantValues,alreadyConsideredOnes) - 1;
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("value returned from evaluateInt (called 'maybeBound' in code) is: " + maybeBound + "\nDOES it make sense for THAT to become upperBound??");
-					if (maybeBound < upperBound)	// The current 'maybeBound' value is more restrictive.
-					  upperBound = maybeBound;	// So make the subsequent integer be the new upper bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, upperBound for " + varName + " is: " + upperBound);
-				} catch (PrismEvaluationException pee1) {
-					String problemVarName = ((ExpressionVar)pee1.getASTElement()).getName();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("First need to determine upper bound of: " + problemVarName);
-					// Make a copy of the values already 'set' by prior calls.
-					copyOfAlready = new Values(alreadyConsideredOnes);
-					// set a value for the CURRENT variable, so we don't enter an infinite cycle of calls.
-					copyOfAlready.addValue(varName, new Integer(upperBound) );
-
-					newUpper = checkRestrictUpperBound( problemVarName,		// The name of the variable we want to tie-down.
-						varList.getHigh(varList.getIndex(problemVarName)),	// Its default upper bound
-						guard,
-						copyOfAlready
-					);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Back in prior call, we are dealing with this expression: " + op2);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("The upper bound of " + problemVarName + " we received back, ends up being " + newUpper);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("So we will copy the original set of 'alreadyConsideredVariables', and insert " + problemVarName + " with value " + newUpper + " and re-evaluate " + op2);
-					// Now that we have a value resolved for the problem variable name, lets try again with it added to the list of alreadyOnes.
-					copyOfAlready = new Values(alreadyConsideredOnes);		// Reset, no longer have the CURRENT variable in it.
-					copyOfAlready.addValue(problemVarName,newUpper);		// Insert the variable we have just tried to resolve.
-
-					try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("\nRe-Considering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("by calling evaluateInt on this expr: " + op2 + " using the following partial value assignments for variables: " + copyOfAlready);
-						maybeBound = op2.evaluateInt(constantValues,copyOfAlready) -1;
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("value returned from evaluateInt is: " + maybeBound);
-						if (maybeBound < upperBound)	// The current 'maybeBound' value is more restrictive.
-						  upperBound = maybeBound;	// So make the subsequent integer be the new upper bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, upperBound is: " + upperBound);
-
-						// If we get to here, maybe we ought to replace the "alreadyConsideredOnes" with the newer copyOfAlready???
-					} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictUpperBound in the TooHard case):");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-}
-				} catch (Exception ex1) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictUpperBound:");
-ex1.printStackTrace(System.out);
-System.exit(1);
-				}
-			}
-			else if (relOp == ExpressionBinaryOp.LE)
-			{
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Operator is <=");
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("oper1 is " + curExpr.getOperand1() + ", oper2 is " + curExpr.getOperand2() ) ;
-				op2 = curExpr.getOperand2();
-				try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Going to call evaluateInt on " + op2 + " substituting this for variables: " + alreadyConsideredOnes);
-					maybeBound = op2.evaluateInt(constantValues,alreadyConsideredOnes);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("value returned from evaluateInt (called 'maybeBound' in code) is: " + maybeBound + "\nDOES it make sense for THAT to become upperBound??");
-					if (maybeBound < upperBound)	// The current 'maybeBound' value is more restrictive.
-					  upperBound = maybeBound;	// So make the subsequent integer be the new upper bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, upperBound for " + varName + " is: " + upperBound);
-				} catch (PrismEvaluationException pee1) {
-					String problemVarName = ((ExpressionVar)pee1.getASTElement()).getName();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("First need to determine upper bound of: " + problemVarName);
-					// Make a copy of the values already 'set' by prior calls.
-					copyOfAlready = new Values(alreadyConsideredOnes);
-					// set a value for the CURRENT variable, so we don't enter an infinite cycle of calls.
-					copyOfAlready.addValue(varName, new Integer(upperBound) );
-
-					newUpper = checkRestrictUpperBound( problemVarName,		// The name of the variable we want to tie-down.
-						varList.getLow(varList.getIndex(problemVarName)),	// Its default upper bound
-						guard,
-						copyOfAlready
-					);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Back in prior call, we are dealing with this expression: " + op2);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("The upper bound of " + problemVarName + " we received back, ends up being " + newUpper);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("So we will copy the original set of 'alreadyConsideredVariables', and insert " + problemVarName + " with value " + newUpper + " and re-evaluate " + op2);
-					// Now that we have a value resolved for the problem variable name, lets try again with it added to the list of alreadyOnes.
-					copyOfAlready = new Values(alreadyConsideredOnes);		// Reset, no longer have the CURRENT variable in it.
-					copyOfAlready.addValue(problemVarName,newUpper);		// Insert the variable we have just tried to resolve.
-
-					try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("\nRe-Considering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("by calling evaluateInt on this expr: " + op2 + " using the following partial value assignments for variables: " + copyOfAlready);
-						maybeBound = op2.evaluateInt(constantValues,copyOfAlready);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("value returned from evaluateInt is: " + maybeBound);
-						if (maybeBound < upperBound)	// The current 'maybeBound' value is more restrictive.
-						  upperBound = maybeBound;	// So make the subsequent integer be the new upper bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, upperBound is: " + upperBound);
-
-						// If we get to here, maybe we ought to replace the "alreadyConsideredOnes" with the newer copyOfAlready???
-					} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictUpperBound in the TooHard case):");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-}
-				} catch (Exception ex1) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictUpperBound:");
-ex1.printStackTrace(System.out);
-System.exit(1);
-				}
-			}
-			else if (relOp == ExpressionBinaryOp.EQ)
-			{
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Operator is =");
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("oper1 is " + curExpr.getOperand1() + ", oper2 is " + curExpr.getOperand2() ) ;
-				op2 = curExpr.getOperand2();
-				try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Going to call evaluateInt on " + op2 + " substituting this for variables: " + alreadyConsideredOnes);
-					maybeBound = op2.evaluateInt(constantValues,alreadyConsideredOnes);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("value returned from evaluateInt (called 'maybeBound' in code) is: " + maybeBound + "\nDOES it make sense for THAT to become upperBound??");
-					  upperBound = maybeBound;	// So make the subsequent integer be the new upper bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, upperBound for " + varName + " is: " + upperBound);
-				} catch (PrismEvaluationException pee1) {
-					String problemVarName = ((ExpressionVar)pee1.getASTElement()).getName();
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("First need to determine upper bound of: " + problemVarName);
-					// Make a copy of the values already 'set' by prior calls.
-					copyOfAlready = new Values(alreadyConsideredOnes);
-					// set a value for the CURRENT variable, so we don't enter an infinite cycle of calls.
-					copyOfAlready.addValue(varName, new Integer(upperBound) );
-
-					newUpper = checkRestrictUpperBound( problemVarName,		// The name of the variable we want to tie-down.
-						varList.getLow(varList.getIndex(problemVarName)),	// Its default upper bound
-						guard,
-						copyOfAlready
-					);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("Back in prior call, we are dealing with this expression: " + op2);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("The upper bound of " + problemVarName + " we received back, ends up being " + newUpper);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("So we will copy the original set of 'alreadyConsideredVariables', and insert " + problemVarName + " with value " + newUpper + " and re-evaluate " + op2);
-					// Now that we have a value resolved for the problem variable name, lets try again with it added to the list of alreadyOnes.
-					copyOfAlready = new Values(alreadyConsideredOnes);		// Reset, no longer have the CURRENT variable in it.
-					copyOfAlready.addValue(problemVarName,newUpper);		// Insert the variable we have just tried to resolve.
-
-					try {
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("\nRe-Considering impact on variable " + varName + " caused by this expression: " + curExpr);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("by calling evaluateInt on this expr: " + op2 + " using the following partial value assignments for variables: " + copyOfAlready);
-						maybeBound = op2.evaluateInt(constantValues,copyOfAlready);  // ,(Values)null);
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("value returned from evaluateInt is: " + maybeBound);
-						  upperBound = maybeBound;	// So make the subsequent integer be the new upper bound.
-if (DEBUG_ChkRstr_ExtraDetail) System.out.println("after all that, upperBound is: " + upperBound);
-
-						// If we get to here, maybe we ought to replace the "alreadyConsideredOnes" with the newer copyOfAlready???
-					} catch (Exception tooHard) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictUpperBound in the TooHard case [3]):");
-tooHard.printStackTrace(System.out);
-System.exit(1);
-}
-				} catch (Exception ex1) {
-if (DEBUG_ChkRstr) System.out.println("SHANE - PROBLEM TO DEAL WITH, in Mod2MTBDD.checkRestrictUpperBound:");
-ex1.printStackTrace(System.out);
-System.exit(1);
-				}
-			}
-else if (DEBUG_ChkRstr) System.out.println("It is neither < nor <=, so it has NO impact; just returning the original upperBound value.");
+		for (Future<List<R>> future : workerPool.invokeAll(chunkTasks)) {
+			results.addAll(future.get());
 		}
+	} catch (InterruptedException e) {
+		throw new PrismLangException("Interrupted while preparing command versions");
+	} catch (ExecutionException e) {
+		if (e.getCause() instanceof PrismLangException)
+			throw (PrismLangException) e.getCause();
+		throw new PrismLangException("Error preparing command versions: " + e.getCause());
 	}
-if (DEBUG_ChkRstr) System.out.println("\ncheckRestrictUpperBound ending  for: " + varName + " with value: " + upperBound + "\n</CHK_RSTR>\n");
-	return upperBound;
+	return results;
 }
 
-/*
-OLD CODE:
-{
-	int relOp, maybeBound;
-	List<ExpressionBinaryOp> relationsInvolvingVar;
-	FindRelOpInvolvingVar visitor = new FindRelOpInvolvingVar(varName);
-
-	int upperBound = curUpperBound;
-	try {
-		guard.deepCopy().accept(visitor);		// Start searching.
-	} catch (PrismException peIgnore) { }
-	relationsInvolvingVar = visitor.getExpressionsThatInvolve();
-
-	if (relationsInvolvingVar != null && relationsInvolvingVar.size() > 0)
-	{
-//for (Expression output : relationsInvolvingVar) System.out.println(output + " may restrict the range of " + varName);
-		for (ExpressionBinaryOp curExpr : relationsInvolvingVar) {
-			relOp = curExpr.getOperator();
-			if (relOp == ExpressionBinaryOp.LT)
-			{
-				try {
-					maybeBound = (curExpr.getOperand2()).evaluateInt(constantValues,(Values)null);
-					if (maybeBound < upperBound)	// The current 'maybeBound' value is more restrictive.
-					  upperBound = maybeBound - 1;	// So make the preceding integer be the new lower bound.
-				} catch (Exception ex1) {
-System.out.println("<ExceptionBeingIgnored>");
-ex1.printStackTrace(System.out);
-System.out.println("</ExceptionBeingIgnored>");
-//System.exit(1);
-				}
-			}
-			else if (relOp == ExpressionBinaryOp.LE)
-			{
-				try {
-					maybeBound = (curExpr.getOperand2()).evaluateInt(constantValues,(Values)null);
-					if (maybeBound < upperBound)	// The current 'maybeBound' value is more restrictive.
-					  upperBound = maybeBound;	// So make it the new lower bound.
-				} catch (Exception ex2) {
-ex2.printStackTrace(System.out);
-System.exit(1);
-				}
-			}
-		}
-	}
-//System.out.println("Final upperBound of " + varName + " will be " + upperBound);
-	return upperBound;
-}
-
-*/
-
-
 	// translate a single module to a dd
 	// for a given synchronizing action ("" = none)
 
@@ -3176,7 +2206,7 @@ if (DEBUG_TransMod) System.out.println("  Need to consider impact of this: " + r
 // Doesn't work:							else if (varList.getType(vIndex) != parser.ast.type.TypeInt) 
 //								throw new PrismException("Variable \"" + varName + "\" not an integer type, cannot be used in a scope restriction expression");
 
-if (DEBUG_TransMod) System.out.println("\nAdding variable \'" + varName + "\' to the list of vars used for accessing indexed set (to be given to checkLowerBounds(), etc.)\n");
+if (DEBUG_TransMod) System.out.println("\nAdding variable \'" + varName + "\' to the list of vars used for accessing indexed set (to be enumerated)\n");
 
 							list_varsForRestrictingScope.add(vIndex);
 
@@ -3185,11 +2215,8 @@ if (DEBUG_TransMod) System.out.println("\nAdding variable \'" + varName + "\' to
 						// We need to see whether there are dependencies amongst variables that may occur in those index-expressions,
 						// as these may determine an order in which to 'set' a value to determine the other substitutions.
 
-System.out.println("Having worked out all the variables that arise in scope-restriction expressions, now to generate all possible combinations of their values ...\n<ENUMERATE_COMBINS>");
-						substitutionCombinsRS = getEnumeratedCombinations(list_varsForRestrictingScope, new Values());
-System.out.println("</ENUMERATE_COMBINS>");
-
-System.out.println("There are a maximum of " + substitutionCombinsRS.size() + " combinations that might be applicable, depending on the actual restriction expressions.");
+						substitutionCombinsRS = new IndexCombinationEnumerator(varList, constantValues, list_varsForRestrictingScope).collectValues();
+if (DEBUG_TransMod) System.out.println("There are a maximum of " + substitutionCombinsRS.size() + " combinations that might be applicable, depending on the actual restriction expressions.");
 
 //Not for here; instead we apply the 'defaults'... System.out.println("About to perform elimination of combinations that lead to out-of-bounds index access attempts...\n<ELIMINATE_COMBINS>");
 
@@ -3263,7 +2290,14 @@ if (DEBUG_TransMod || Expression.DEBUG_VPEISA) {
 				List<Values> substitutionCombins;	// Will contain the permutations that we need to generate DDs for.
 				substitutionCombins = new ArrayList<Values>();
 				boolean invalidVariant = false;		// We assume the variant is valid, unless we find no combinations.
-				if (indexSpecifications.size() > 0) {
+
+				// If enabled (and the command permits it), accesses with a variable index are left in place and encoded
+				// symbolically during translation, so there is no need to enumerate the values of the index variables.
+				boolean encodeSymbolically = symbolicIndexedAccess && indexSpecifications.size() > 0 && canEncodeIndexedAccessSymbolically(command);
+if (DEBUG_TransMod && encodeSymbolically) {
+  PrintDebugIndent(); System.out.println("The indexed-set accesses of this command version will be encoded symbolically (no enumeration of combinations).");
+}
+				if (indexSpecifications.size() > 0 && !encodeSymbolically) {
 if (DEBUG_TransMod || Expression.DEBUG_VPEISA) {
   System.out.println();
   PrintDebugIndent(); System.out.println("in m2MTBDD.transMod: The following are the unique set of index-specification expressions (i.e. duplicates removed):");
@@ -3296,7 +2330,7 @@ if (DEBUG_TransMod || Expression.DEBUG_VPEISA) {
 							}
 //							else if (varList.getType(vIndex) != parser.ast.type.TypeInt) 
 //								throw new PrismException("Variable \"" + varName + "\" not an integer type, cannot be used in index-specification expression");
-	System.out.println("\nAdding variable " + varName + " to the list of vars used for accessing indexed set (given to checkLowerBounds, etc.)\n");
+if (DEBUG_TransMod) System.out.println("\nAdding variable \'" + varName + "\' to the list of vars used for accessing indexed set (to be enumerated)\n");
 
 							list_varsForAccessingIndSet.add(vIndex);
 
@@ -3304,49 +2338,35 @@ if (DEBUG_TransMod || Expression.DEBUG_VPEISA) {
 						// We need to see whether there are dependencies amongst variables that may occur in those index-expressions,
 						// as these may determine an order in which to 'set' a value to determine the other substitutions.
 
-System.out.println("Having worked out all the variables that arise in the index specification, now to enumerate all possible combinations of their values ...\n<ENUMERATE_COMBINS>\n");
-						substitutionCombins = getEnumeratedCombinations(list_varsForAccessingIndSet, new Values());
-System.out.println("</ENUMERATE_COMBINS>\n");
-
-System.out.println("There are a maximum of " + substitutionCombins.size() + " combinations (variants) that might be applicable, depending on the actual guard of the command, and actual access expressions.");
-
-System.out.println("About to perform elimination of combinations that lead to out-of-bounds index access attempts...\n<ELIMINATE_COMBINS>");
+						// Narrow the domains of those variables by propagating the constraints of the guard and access restrictions.
+						IndexDomainPropagator domProp = new IndexDomainPropagator(varList, constantValues, list_varsForAccessingIndSet);
+						domProp.addGuard(command.getGuard());
+						domProp.addAccessRestrictions(EISAs);
+						domProp.propagate();
+if (DEBUG_TransMod) {
+  PrintDebugIndent(); System.out.println("Domains of index variables after constraint propagation: " + domProp);
+}
 
-System.out.println(" <CheckAccessExpressions>");
-						substitutionCombins = filterCombinationsForAccessExprs(substitutionCombins,EISAs);
-System.out.println(" </CheckAccessExpressions>");
-System.out.println("After filtering combinations on the basis of AccessExpressions, there are now a maximum of " + substitutionCombins.size() + " combinations that might be applicable.");
+						// Enumerate the combinations of values of those variables, discarding (as early as possible) those that
+						// would lead to an invalid indexed-set access, or for which the guard of the command cannot hold.
+						IndexCombinationEnumerator combEnum = new IndexCombinationEnumerator(varList, constantValues, list_varsForAccessingIndSet);
+						if (!domProp.isInfeasible()) {
+							for (int i = 0; i < list_varsForAccessingIndSet.size(); i++) {
+								combEnum.restrictDomain(i, domProp.getLow(i), domProp.getHigh(i));
+							}
+							combEnum.addAccessFilters(EISAs);
+							combEnum.addGuardFilter(command.getGuard());
+							substitutionCombins = combEnum.collectValues();
+						}
+if (DEBUG_TransMod) {
+  PrintDebugIndent(); System.out.println("Of a maximum of " + combEnum.getNumCombinations() + " combinations, " + substitutionCombins.size() + " remain after filtering (" + combEnum.getNumRejected() + " partial combinations rejected):\n" + substitutionCombins);
+}
 
 						if (substitutionCombins.size() == 0) {		// No combination, but accessing by some variable based expression.
-System.out.println("This means that this variant IS NOT VALID and so we must NOT TRANSLATE it.");
+if (DEBUG_TransMod) System.out.println("This means that this variant IS NOT VALID and so we must NOT TRANSLATE it.");
 							invalidVariant = true;		// Set this flag, to eliminate the variant
 						}
-						else {
-		// ********************** UP  TO   HERE *******************
-		// Need to make some way of checking whether any guards are unable to be met by the already filtered combinations. And then, if no combinations remain, then the Command itself is never a possibility, which might be an error to the programmer.
 
-System.out.println(" <CheckGuardLimitations>");
-							substitutionCombins = filterCombinationsForGuard(substitutionCombins,command.getGuard());
-System.out.println(" </CheckGuardLimitations>");
-						}
-System.out.println("After further filtering combinations, now on the basis of Guards, there are now a maximum of " + substitutionCombins.size() + " combinations that might be applicable.\n<COMBINS_REMAIN>The combinations remaining are: " + substitutionCombins + "\n</COMBINS_REMAIN>\n");
-
-System.out.println("</ELIMINATE_COMBINS>");
-
-	// **************** THE FOLLOWING 'checkLowerBounds' AND THE 'checkUpperBounds' TECHNIQUE WAS NOT FOOLPROOF ENOUGH ****
-	// **************** It is replaced by the above deeper analysis of restrictions by the rest of a guard.  ************
-/*
-						// For each variable that appears, we need to work out its domain, which could be restricted by its use in other expressions of the same Command/Update.
-System.out.println("<REFINE_BOUNDS_Broken>");
-						ArrayList<Integer> lowerBounds = checkLowerBounds(list_varsForAccessingIndSet, command.getGuard());
-						ArrayList<Integer> upperBounds = checkUpperBounds(list_varsForAccessingIndSet, command.getGuard());
-System.out.println("</REFINE_BOUNDS_Broken>");
-						// Knowing the domain for each variable used in the index-expression, now determine the individual substitutions.
-						substitutionCombins = recurseOnVars(list_varsForAccessingIndSet, lowerBounds, upperBounds, new Values());
-System.out.println("</RECURSE_ON_VARS>\n\nBack in translateModules(), received " + substitutionCombins.size() + " combinations for substitution to determine actual indexes of accessing the Indexed Sets"); 
-						// The following set will be populated with the indexes to be used
-						//Set<Integer> indexVals = enumeratIndexValues(
-*/
 					}
 
 /*Not all cases actually should fail: altern1.prism should fail, but not altern3.prism
@@ -3369,9 +2389,13 @@ if (DEBUG_TransMod)
 
 int curVariantNum = 0;// Variants of the current Version of the command
 
+				// Substitute the values of each combination into the command, on the worker pool if available
+				List<Command> commandVariants = invalidVariant ? null : prepareCommandVariants(command, substitutionCombins);
+
 				if (!invalidVariant)				// If the variant of the current command version of the current command is invalid, there is no translation of it. Otherwise, translate the variant for all the substitutions.
 				for (Values substitutions : substitutionCombins) {
 curVariantNum++;
+					Command commandVariant = commandVariants.get(curVariantNum - 1);
 
 if (DEBUG_TransMod) {
 	PrintDebugIndent();
@@ -3383,7 +2407,7 @@ if (DEBUG_TransMod) {
 DebugIndent++;
 }
 					// Generate 1 or more DD which is for a command where the current value substitutions are made
-					translatedCmd = translateCommandForValues(m, module, l, command, substitutions);
+					translatedCmd = translateCommandForValues(m, module, l, commandVariant, substitutions, true);
 if (DEBUG_TransMod)
 {
 	PrintDebugIndent();
@@ -3607,6 +2631,16 @@ if (DEBUG_TransMod)
 	 */
 	public TranslatedCommandDDs translateCommandForValues(int m, parser.ast.Module module, int l, Command command, Values substitutions)
 	throws PrismException
+	{
+		return translateCommandForValues(m, module, l, command, substitutions, false);
+	}
+
+	/**
+	 * As {@link #translateCommandForValues(int, parser.ast.Module, int, Command, Values)}, but if {@code prepared} is true,
+	 * the substitutions have already been made in the index specifiers of {@code command} (see prepareCommandVariants).
+	 */
+	private TranslatedCommandDDs translateCommandForValues(int m, parser.ast.Module module, int l, Command command, Values substitutions, boolean prepared)
+	throws PrismException
 	{
 		TranslatedCommandDDs translatedCommandDD;		// For the return value
 		ComponentDDs compDDs;
@@ -3658,8 +2692,10 @@ if (DEBUG_TCFV) { PrintDebugIndent(); System.out.println("<DealWithGuard>"); }
 		if (extraGuard != null) {
 if (DEBUG_SUBSTITUTIONS || DEBUG_TCFV) System.out.println("\nThe command with synch "+ DEBUG_CurSynch + "'s original guard was: " + curGuard + "\n");
 			// Exchange the known values of the current substitution into the original guard BUT ONLY where appearing inside Index-Specification expressions. 
-			curGuard = (Expression) curGuard.deepCopy();	// Use a copy, so the original can be used for next iteration.
-			curGuard.replaceIndexSpecifiers(substitutions);
+			if (!prepared) {
+				curGuard = (Expression) curGuard.deepCopy();	// Use a copy, so the original can be used for next iteration.
+				curGuard.replaceIndexSpecifiers(substitutions);
+			}
 if (DEBUG_SUBSTITUTIONS || DEBUG_TCFV) System.out.println("\nThe command's interim guard (after substitutions into original guard, before the additional guards) is:\n" + curGuard + "\n");
 			// Include the constraints on this rule's applicability by appending as guards the substitutions
 			curGuard = new ExpressionBinaryOp(ExpressionBinaryOp.AND,
@@ -3680,6 +2716,11 @@ if (DEBUG_TCFV) {
 		// translate guard
 		guardDD = translateExpression(curGuard); 
 
+		// if indexed-set accesses are encoded symbolically, restrict to states where their indices are in bounds
+		if (symbolicIndexedAccess) {
+			guardDD = JDD.Apply(JDD.TIMES, guardDD, translateIndexBounds(command, substitutions));
+		}
+
 if (DEBUG_TCFV) {
 	DebugIndent -= 1;
 	PrintDebugIndent(); System.out.println("</TranslateGuardExpr guard=\"" + curGuard + "\">\n");
@@ -3726,7 +2767,7 @@ if (DEBUG_TCFV) {
 	PrintDebugIndent(); System.out.println(" <DealWithUpdates>");
 }
 			// translate updates and do some checks on probs/rates
-			upDD = translateUpdates(m, l, command.getUpdates(), (command.getSynch()=="")?false:true, guardDD, substitutions);
+			upDD = translateUpdates(m, l, command.getUpdates(), (command.getSynch()=="")?false:true, guardDD, substitutions, prepared);
 
 if (DEBUG_TCFV) {
 	PrintDebugIndent(); System.out.println(" </DealWithUpdates>");
@@ -4314,7 +3355,7 @@ if (DEBUG_CCN) {
 
 	// translate the updates part of a command
 // MODIFIED by SHANE - to accept a Values containing substitutions to be made (for indexed-set index-specification processing)
-	private JDDNode translateUpdates(int m, int l, Updates u, boolean synch, JDDNode guard, Values substitutions) throws PrismException
+	private JDDNode translateUpdates(int m, int l, Updates u, boolean synch, JDDNode guard, Values substitutions, boolean prepared) throws PrismException
 	{
 		int i, n;
 		Expression p;
@@ -4333,7 +3374,7 @@ if (DEBUG_TransUpd) System.out.println("In Mod2MTBDD.transUpdates (First one - w
 		for (i = 0; i < n; i++) {
 if (DEBUG_TransUpd) System.out.println("In Mod2MTBDD.transUpdates (First version), Place A iteration i=" + (i+1) + " of " + n + " - about to call translateUpdate" );
 			// translate a single update
-			udd = translateUpdate(m, u.getUpdate(i), synch, guard, substitutions);
+			udd = translateUpdate(m, u.getUpdate(i), synch, guard, substitutions, prepared);
 if (DEBUG_SHANE_ShowStepsInTM) ShaneReportDD(udd,"~About the JDDNode which is the translation of this update: " + u.getUpdate(i) + " with substitutions: " + substitutions,true );
 
 if (DEBUG_TransUpd) System.out.println("In Mod2MTBDD.transUpdates (First version), Place B for iteration i=" + (i+1) + " of " + n + " - returned from call of translateUpdate" );
@@ -4386,7 +3427,7 @@ if (DEBUG_TransUpd) System.out.println("</Mod2MTBDD_transUp_Pt1>");
 	// translate an update
 	
 // MODIFIED BY SHANE - to receive a Values specifying substitutions to be made for indexed-set access expressions
-	private JDDNode translateUpdate(int m, Update c, boolean synch, JDDNode guard, Values substitutions) throws PrismException
+	private JDDNode translateUpdate(int m, Update c, boolean synch, JDDNode guard, Values substitutions, boolean prepared) throws PrismException
 	{
 		int i, j, n, v, l, h;
 		String s;
@@ -4417,6 +3458,13 @@ if (DEBUG_TransUpdIndivGroup) {
 	System.out.println("    transUpGrp - PLACE 2 (iter "+i+"): Considering which variable is being updated.");
 }
 			
+			// Target is an indexed-set element whose position depends on the state, to be encoded symbolically
+			if (symbolicIndexedAccess && c.getVarIdent(i).isIndexedVariable()
+					&& !isIndexResolvable(((ExpressionIndexedSetAccess) c.getVarIdent(i)).getIndexExpression(), substitutions)) {
+				dd = JDD.Apply(JDD.TIMES, dd, translateUpdateElementSymbolic(m, c, i, synch, guard, substitutions));
+				continue;
+			}
+
 // SHANE INSERTED CONDITIONAL BRANCH:  to deal with case that the TARGET variable being updated involves indexed-set variable accesses.
 			if (c.getVarIdent(i).isIndexedVariable() )
 			{
@@ -4515,7 +3563,8 @@ if (DEBUG_SUBSTITUTIONS || DEBUG_UpdateCalcs) {
 
 			// Now we will commence translating the calculation expression (the value to assign)
 
-			Expression calcExpr = c.getExpression(i).deepCopy();		//make a copy, so we can preserve orig, but do substitutions for current.
+			// (for a prepared command variant, the substitutions have already been made in a copy, so there is nothing more to do)
+			Expression calcExpr = prepared ? c.getExpression(i) : c.getExpression(i).deepCopy();		//make a copy, so we can preserve orig, but do substitutions for current.
 			
 
 if (DEBUG_SUBSTITUTIONS || DEBUG_UpdateCalcs) {
@@ -4527,12 +3576,13 @@ if (DEBUG_SUBSTITUTIONS || DEBUG_UpdateCalcs) {
 if (DEBUG_SUBSTITUTIONS || DEBUG_UpdateCalcs) System.out.println("\nThe current variant of command with synch '"+ DEBUG_CurSynch + "' has this calcExpr:" + calcExpr + "\nIt might need to replace variables used in indexed-set expressions (if any).");
 if (DEBUG_SUBSTITUTIONS || DEBUG_UpdateCalcs) System.out.println("The calcExpr has this type: " + calcExpr.getClass().getName());
 			// Exchange the known values of the current substitution into the original guard BUT ONLY where appearing inside Index-Specification expressions. 
-			curCalcExpr = (Expression) calcExpr.deepCopy();	// For safety, just use a copy (in case original is required)
+			curCalcExpr = prepared ? calcExpr : (Expression) calcExpr.deepCopy();	// For safety, just use a copy (in case original is required)
 // actually, it already was a copy; see about 15 lines above.
 
 if (DEBUG_SUBSTITUTIONS || DEBUG_UpdateCalcs) System.out.println("The copied calcExpr has this type: " + curCalcExpr.getClass().getName());
 
-			curCalcExpr = (Expression) curCalcExpr.replaceIndexSpecifiers(substitutions);     // The same step done for the guard to resolve access expressions
+			if (!prepared)
+				curCalcExpr = (Expression) curCalcExpr.replaceIndexSpecifiers(substitutions);     // The same step done for the guard to resolve access expressions
 if (DEBUG_SUBSTITUTIONS || DEBUG_UpdateCalcs) System.out.println("\nThe finalised version of the calcExpr is: " + curCalcExpr);
 
 // WRONG WAY	calcExpr = (Expression) calcExpr.evaluatePartially(constantValues,substitutions);
@@ -4690,9 +3740,236 @@ if (DEBUG_TransUpd) {
 		return dd;
 	}
 
+	/**
+	 * Check whether a command's variable-position indexed-set accesses can all be encoded symbolically.
+	 * This is not the case if an update assigns to an indexed set through a variable index and
+	 * also assigns to the same set elsewhere in that update, since the identities of the other
+	 * elements (see {@link #translateUpdateElementSymbolic}) would then conflict.
+	 */
+	private boolean canEncodeIndexedAccessSymbolically(Command command)
+	{
+		Updates ups = command.getUpdates();
+		for (int j = 0; j < ups.getNumUpdates(); j++) {
+			Update up = ups.getUpdate(j);
+			Map<String, Integer> numTargets = new HashMap<String, Integer>();
+			Set<String> variableTargets = new HashSet<String>();
+			for (int i = 0; i < up.getNumElements(); i++) {
+				if (up.getVarIdent(i).isIndexedVariable()) {
+					String name = up.getVar(i);
+					Integer count = numTargets.get(name);
+					numTargets.put(name, count == null ? 1 : count + 1);
+					if (!((ExpressionIndexedSetAccess) up.getVarIdent(i)).getIndexExpression().isConstant())
+						variableTargets.add(name);
+				}
+			}
+			for (String name : variableTargets) {
+				if (numTargets.get(name) > 1)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether an index expression evaluates to a constant, once constants and the
+	 * current substitutions (if any) have been applied to it.
+	 */
+	private boolean isIndexResolvable(Expression indexExpr, Values substitutions) throws PrismLangException
+	{
+		Expression e = (Expression) indexExpr.deepCopy().evaluatePartially(constantValues, substitutions);
+		return e.isConstant();
+	}
+
+	/**
+	 * Get the distinct variable-position indexed-set accesses in the guard and updates of a command,
+	 * as for {@link Command#getVariablePosEISAs()}, but without its diagnostic output
+	 * (this is called for every variant of the command that is translated).
+	 */
+	private Set<ExpressionIndexedSetAccess> getVariablePosEISAs(Command command)
+	{
+		Set<ExpressionIndexedSetAccess> varPosEISAs = new TreeSet<ExpressionIndexedSetAccess>();
+		List<ExpressionIndexedSetAccess> eisas = command.getGuard().getVariablePosEISAs();
+		if (eisas != null)
+			varPosEISAs.addAll(eisas);
+		eisas = command.getUpdates().getVariablePosEISAs();
+		if (eisas != null)
+			varPosEISAs.addAll(eisas);
+		return varPosEISAs;
+	}
+
+	/**
+	 * Build a 0-1 MTBDD for the states in which the index of every variable-position indexed-set access
+	 * in the command (in the guard, or in the updates) that is not resolved by the substitutions, lies
+	 * within the bounds of the indexed set. Used when such accesses are encoded symbolically.
+	 * <br>[ REFS: <i>result</i> ]
+	 */
+	private JDDNode translateIndexBounds(Command command, Values substitutions) throws PrismException
+	{
+		JDDNode dd = JDD.Constant(1);
+		for (ExpressionIndexedSetAccess eisa : getVariablePosEISAs(command)) {
+			Expression indexExpr = eisa.getIndexExpression();
+			if (isIndexResolvable(indexExpr, substitutions))
+				continue;
+			int size = varList.getIndexedSetSize(eisa.getName());
+			if (size == 0) {
+				JDD.Deref(dd);
+				throw new PrismLangException("Unknown indexed set \"" + eisa.getName() + "\"", eisa);
+			}
+			indexExpr = (Expression) indexExpr.deepCopy().replaceIndexSpecifiers(substitutions);
+			indexExpr = (Expression) indexExpr.evaluatePartially(null, substitutions);
+			dd = JDD.Apply(JDD.TIMES, dd, JDD.Interval(translateExpression(indexExpr), 0, size - 1));
+		}
+		return dd;
+	}
+
+	/**
+	 * Translate the ith element of an update whose target is an element of an indexed set, at a position
+	 * depending on the current state, e.g. {@code arr[idx]'=e}. Rather than requiring one version of the
+	 * command per value of {@code idx}, this builds a selector over the DD variables of the index:
+	 * the sum, over positions k, of {@code (idx=k) * (arr[k]'=e) * identity(arr[j])} for all j!=k.
+	 * All elements of the set are marked in varsUsed, since their identities are included here.
+	 * <br>[ REFS: <i>result</i> ]
+	 */
+	private JDDNode translateUpdateElementSymbolic(int m, Update c, int i, boolean synch, JDDNode guard, Values substitutions) throws PrismException
+	{
+		ExpressionIndexedSetAccess target = (ExpressionIndexedSetAccess) c.getVarIdent(i);
+		String name = c.getVar(i);
+		JDDNode ddIndex, ddCalc, ddVals, cl, sum, prefix[], suffix[];
+		int size, v, j, k, l, h;
+		int elems[];
+
+		// find the variables for the elements of the set, and check they can be modified here
+		size = varList.getIndexedSetSize(name);
+		if (size == 0) {
+			throw new PrismLangException("Unknown indexed set \"" + name + "\" in update", target);
+		}
+		elems = new int[size];
+		for (k = 0; k < size; k++) {
+			v = varList.getIndex(name + "[" + k + "]");
+			if (varList.getModule(v) != -1 && varList.getModule(v) != m) {
+				throw new PrismLangException("Cannot modify variable \""+name+"\" from module \""+moduleNames[m]+"\"", target);
+			}
+			if (varList.getModule(v) == -1 && synch) {
+				throw new PrismLangException("Synchronous command cannot modify global variable", target);
+			}
+			varsUsed[v] = true;
+			elems[k] = v;
+		}
+
+		// translate the index and the value to be assigned
+		Expression indexExpr = (Expression) target.getIndexExpression().deepCopy().replaceIndexSpecifiers(substitutions);
+		indexExpr = (Expression) indexExpr.evaluatePartially(null, substitutions);
+		ddIndex = translateExpression(indexExpr);
+		Expression calcExpr = (Expression) c.getExpression(i).deepCopy().replaceIndexSpecifiers(substitutions);
+		ddCalc = translateExpression(calcExpr);
+		JDD.Ref(guard);
+		ddCalc = JDD.Apply(JDD.TIMES, ddCalc, guard);
+
+		// products of identities of the elements before/after each position
+		prefix = new JDDNode[size];
+		suffix = new JDDNode[size];
+		prefix[0] = JDD.Constant(1);
+		for (k = 1; k < size; k++) {
+			prefix[k] = JDD.Apply(JDD.TIMES, prefix[k - 1].copy(), varIdentities[elems[k - 1]].copy());
+		}
+		suffix[size - 1] = JDD.Constant(1);
+		for (k = size - 2; k >= 0; k--) {
+			suffix[k] = JDD.Apply(JDD.TIMES, suffix[k + 1].copy(), varIdentities[elems[k + 1]].copy());
+		}
+
+		// sum over the positions that the index can select
+		sum = JDD.Constant(0);
+		for (k = 0; k < size; k++) {
+			v = elems[k];
+			l = varList.getLow(v);
+			h = varList.getHigh(v);
+			ddVals = JDD.Constant(0);
+			for (j = l; j <= h; j++) {
+				ddVals = JDD.SetVectorElement(ddVals, varDDColVars[v], j - l, j);
+			}
+			cl = JDD.Apply(JDD.EQUALS, ddVals, ddCalc.copy());
+			JDD.Ref(guard);
+			cl = JDD.Apply(JDD.TIMES, cl, guard);
+			cl = JDD.Apply(JDD.TIMES, cl, varColRangeDDs[v].copy());
+			cl = JDD.Apply(JDD.TIMES, cl, range.copy());
+			cl = JDD.Apply(JDD.TIMES, cl, JDD.Equals(ddIndex.copy(), k));
+			cl = JDD.Apply(JDD.TIMES, cl, prefix[k]);
+			cl = JDD.Apply(JDD.TIMES, cl, suffix[k]);
+			sum = JDD.Apply(JDD.PLUS, sum, cl);
+		}
+		JDD.Deref(ddIndex);
+		JDD.Deref(ddCalc);
+
+		return sum;
+	}
+
 	// translate an arbitrary expression
+	// (results are memoised for the duration of translate(), keyed on the structure of the expression, since
+	// the same expressions, e.g. guard conjuncts or update probabilities, recur across commands and their variants)
 	
 	private JDDNode translateExpression(Expression e) throws PrismException
+	{
+		JDDNode dd;
+
+		if (exprMemo == null)
+			return translateExpressionDirect(e);
+		// translate conjunctions by conjunct, so that those shared with other guards are found in the memo
+		if (e instanceof ExpressionBinaryOp && ((ExpressionBinaryOp) e).getOperator() == ExpressionBinaryOp.AND) {
+			JDDNode dd1 = translateExpression(((ExpressionBinaryOp) e).getOperand1());
+			JDDNode dd2 = translateExpression(((ExpressionBinaryOp) e).getOperand2());
+			return JDD.And(dd1, dd2);
+		}
+		if (!isMemoisable(e))
+			return translateExpressionDirect(e);
+		dd = exprMemo.get(e);
+		if (dd != null)
+			return dd.copy();
+		dd = translateExpressionDirect(e);
+		// store a copy of the expression, in case the original is modified later
+		exprMemo.put(e.deepCopy(), dd.copy());
+		return dd;
+	}
+
+	/**
+	 * Can the translation of an expression be memoised? I.e., does it consist only of
+	 * types of expression for which equals/hashCode are structural?
+	 */
+	private boolean isMemoisable(Expression e)
+	{
+		final boolean[] memoisable = { true };
+		try {
+			e.accept(new ASTTraverse()
+			{
+				public void defaultVisitPre(ASTElement node) throws PrismLangException
+				{
+					if (!(node instanceof ExpressionBinaryOp || node instanceof ExpressionUnaryOp || node instanceof ExpressionITE
+							|| node instanceof ExpressionFunc || node instanceof ExpressionLiteral || node instanceof ExpressionConstant
+							|| node instanceof ExpressionVar || node instanceof ExpressionIndexedSetAccess))
+						memoisable[0] = false;
+				}
+			});
+		} catch (PrismLangException ex) {
+			return false;
+		}
+		return memoisable[0];
+	}
+
+	/**
+	 * Dereference and discard the memo of translated expressions.
+	 */
+	private void clearExpressionMemo()
+	{
+		if (exprMemo != null) {
+			for (JDDNode dd : exprMemo.values()) {
+				JDD.Deref(dd);
+			}
+			exprMemo = null;
+		}
+	}
+
+	// translate an arbitrary expression (without memoisation)
+
+	private JDDNode translateExpressionDirect(Expression e) throws PrismException
 	{
 if (DEBUG_TransUpd) {
 	DebugIndent++;
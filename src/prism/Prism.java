@@ -30,10 +30,22 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Vector;
 
 import dv.DoubleVector;
+import explicit.BinaryModelFile;
 import explicit.CTMC;
 import explicit.CTMCModelChecker;
 import explicit.ConstructModel;
@@ -42,6 +54,9 @@ import explicit.DTMCModelChecker;
 import explicit.ExplicitFiles2Model;
 import explicit.FastAdaptiveUniformisation;
 import explicit.FastAdaptiveUniformisationModelChecker;
+import explicit.MixedPrecisionModel;
+import explicit.ModelExplicit;
+import explicit.ModelStructure;
 import hybrid.PrismHybrid;
 import jdd.JDD;
 import jdd.JDDNode;
@@ -57,12 +72,15 @@ import parser.ExplicitFiles2ModulesFile;
 import parser.PrismParser;
 import parser.State;
 import parser.Values;
+import parser.ast.ConstantList;
 import parser.ast.Expression;
+import parser.ast.ExpressionLabel;
 import parser.ast.ForLoop;
 import parser.ast.LabelList;
 import parser.ast.ModulesFile;
 import parser.ast.PropertiesFile;
 import parser.ast.Property;
+import parser.visitor.GetAllConstantsOutsideProbabilities;
 import pta.DigitalClocks;
 import pta.PTAModelChecker;
 import simulator.GenerateSimulationPath;
@@ -274,6 +292,11 @@ private static boolean DEBUG_PMC = true;		// show output for modelCheck() method
 	// Built model storage - symbolic or explicit - at most one is non-null
 	private Model currentModel = null;
 	private explicit.Model currentModelExpl = null;
+	// Structure of the built explicit model (if recorded)
+	private ModelStructure currentModelStructure = null;
+	// Structure of a previous explicit model that can be re-used
+	// for the next build (only the probabilities/rates have changed)
+	private ModelStructure reusableModelStructure = null;
 	// Are we doing digital clocks translation for PTAs?
 	boolean digital = false;
 
@@ -283,6 +306,17 @@ private static boolean DEBUG_PMC = true;		// show output for modelCheck() method
 	private File explicitFilesLabelsFile = null;
 	private File explicitFilesStateRewardsFile = null;
 	private int explicitFilesNumStates = -1;
+	// Binary model file (if the explicit files are in binary format)
+	private BinaryModelFile explicitFilesBinaryFile = null;
+
+	// Persistent result cache (null if not used yet)
+	private ResultCache resultCache = null;
+	// Settings that do not affect model checking results (so are not part of result cache keys);
+	// the number of threads is kept in the keys, so that results are only re-used by runs taking the same (parallel) code paths
+	private static final Set<String> RESULT_CACHE_IGNORED_SETTINGS = new HashSet<String>(Arrays.asList(PrismSettings.PRISM_VERBOSE,
+			PrismSettings.PRISM_EXTRA_DD_INFO, PrismSettings.PRISM_EXTRA_REACH_INFO,
+			PrismSettings.PRISM_PARALLEL_EXPERIMENTS, PrismSettings.PRISM_RESULT_CACHE_DIR, PrismSettings.PRISM_RESULT_CACHE_MAX_SIZE,
+			PrismSettings.PRISM_MODEL_CACHE_DIR));
 
 	// Has the CUDD library been initialised yet?
 	private boolean cuddStarted = false;
@@ -405,6 +439,11 @@ private static boolean DEBUG_PMC = true;		// show output for modelCheck() method
 		settings.set(PrismSettings.PRISM_FIX_DEADLOCKS, b);
 	}
 
+	public void setReuseStructure(boolean b) throws PrismException
+	{
+		settings.set(PrismSettings.PRISM_REUSE_STRUCTURE, b);
+	}
+
 	public void setDoProbChecks(boolean b) throws PrismException
 	{
 		settings.set(PrismSettings.PRISM_DO_PROB_CHECKS, b);
@@ -750,6 +789,11 @@ public int getShaneFreqOfOutput()
 		return settings.getBoolean(PrismSettings.PRISM_FIX_DEADLOCKS);
 	}
 
+	public boolean getReuseStructure()
+	{
+		return settings.getBoolean(PrismSettings.PRISM_REUSE_STRUCTURE);
+	}
+
 	public boolean getDoProbChecks()
 	{
 		return settings.getBoolean(PrismSettings.PRISM_DO_PROB_CHECKS);
@@ -795,6 +839,15 @@ public int getShaneFreqOfOutput()
 		return settings.getInteger(PrismSettings.PRISM_MAX_ITERS);
 	}
 
+	/**
+	 * Get the number of worker threads to use for tasks that can be run in parallel
+	 * (the "threads" setting, with 0 resolved to the number of available processors).
+	 */
+	public int getNumThreads()
+	{
+		return settings.getNumThreads();
+	}
+
 	public boolean getVerbose()
 	{
 		return settings.getBoolean(PrismSettings.PRISM_VERBOSE);
@@ -1824,6 +1877,55 @@ System.out.println("</Method name='loadPRISMModel' inClass='Prism' note='Conclud
 		setPRISMModelConstants(definedMFConstants, false);
 	}
 
+	/**
+	 * Check whether changing the values of undefined constants of the currently loaded PRISM model
+	 * from {@code oldValues} to {@code newValues} can only affect the transition probabilities/rates
+	 * of the model, and not its states and transitions, i.e. whether none of the changed constants
+	 * (or of the constants defined in terms of them) appears outside the probabilities/rates of updates.
+	 */
+	private boolean onlyProbabilityConstantsChanged(Values oldValues, Values newValues) throws PrismLangException
+	{
+		if (oldValues == null)
+			oldValues = new Values();
+		if (newValues == null)
+			newValues = new Values();
+		// Find changed constants
+		Set<String> changed = new HashSet<String>();
+		for (int i = 0; i < newValues.getNumValues(); i++) {
+			String name = newValues.getName(i);
+			if (!oldValues.contains(name) || !Objects.equals(oldValues.getValueOf(name), newValues.getValue(i)))
+				changed.add(name);
+		}
+		for (int i = 0; i < oldValues.getNumValues(); i++) {
+			if (!newValues.contains(oldValues.getName(i)))
+				changed.add(oldValues.getName(i));
+		}
+		// Add constants defined in terms of these
+		ConstantList constantList = currentModulesFile.getConstantList();
+		boolean more = true;
+		while (more) {
+			more = false;
+			for (int i = 0; i < constantList.size(); i++) {
+				String name = constantList.getConstantName(i);
+				Expression defn = constantList.getConstant(i);
+				if (defn != null && !changed.contains(name) && !Collections.disjoint(defn.getAllConstants(), changed)) {
+					changed.add(name);
+					more = true;
+				}
+			}
+		}
+		// Find constants that can affect the states/transitions
+		Vector<String> structural = new Vector<String>();
+		GetAllConstantsOutsideProbabilities visitor = new GetAllConstantsOutsideProbabilities(structural);
+		for (int i = 0; i < currentModulesFile.getNumGlobals(); i++)
+			currentModulesFile.getGlobal(i).accept(visitor);
+		for (int i = 0; i < currentModulesFile.getNumModules(); i++)
+			currentModulesFile.getModule(i).accept(visitor);
+		if (currentModulesFile.getInitialStates() != null)
+			currentModulesFile.getInitialStates().accept(visitor);
+		return Collections.disjoint(structural, changed);
+	}
+
 	/**
 	 * Set (some or all) undefined constants for the currently loaded PRISM model
 	 * (assuming they have changed since the last time this was called).
@@ -1844,8 +1946,15 @@ if (currentModulesFile != null) PrismCL.showModulesNames(currentModulesFile);
 		}
 if (DEBUG_SetModelConstants) System.out.println("in setPRISMModelConstants, PLACE 1B - calling clearBuiltModel...");
 if (currentModulesFile != null) PrismCL.showModulesNames(currentModulesFile);
+		// If only constants in probabilities/rates change, the structure of the built model can be re-used
+		ModelStructure modelStructure = currentModelStructure;
+		if (modelStructure != null && (currentModulesFile == null || currentDefinedMFConstantsAreExact != exact
+				|| !onlyProbabilityConstantsChanged(currentDefinedMFConstants, definedMFConstants))) {
+			modelStructure = null;
+		}
 		// Clear any existing built model(s)
 		clearBuiltModel();
+		reusableModelStructure = modelStructure;
 		// Store constants here and in ModulesFile
 		currentDefinedMFConstants = definedMFConstants;
 		currentDefinedMFConstantsAreExact = exact;
@@ -1940,6 +2049,7 @@ if (currentModulesFile != null) PrismCL.showModulesNames(currentModulesFile);
 		explicitFilesLabelsFile = labelsFile;
 		explicitFilesStateRewardsFile = stateRewardsFile;
 		explicitFilesNumStates = ef2mf.getNumStates();
+		explicitFilesBinaryFile = null;
 		// Reset dependent info
 		currentModelType = currentModulesFile == null ? null : currentModulesFile.getModelType();
 		currentModelInfo = currentModulesFile;
@@ -1948,6 +2058,34 @@ if (currentModulesFile != null) PrismCL.showModulesNames(currentModulesFile);
 		return currentModulesFile;
 	}
 
+	/**
+	 * Load a binary model file (see {@link explicit.BinaryModelFile}) for subsequent model building.
+	 * The model can only be built with the explicit engine.
+	 * A corresponding ModulesFile object is created and returned.
+	 * @param file The binary model file
+	 */
+	public ModulesFile loadModelFromBinaryFile(File file) throws PrismException
+	{
+		currentModelSource = ModelSource.EXPLICIT_FILES;
+		// Clear any existing built model(s)
+		clearBuiltModel();
+		// Read header and construct ModulesFile
+		explicitFilesBinaryFile = new BinaryModelFile(this, file);
+		currentModulesFile = explicitFilesBinaryFile.createModulesFile();
+		// Store explicit files info for later
+		explicitFilesStatesFile = null;
+		explicitFilesTransFile = file;
+		explicitFilesLabelsFile = null;
+		explicitFilesStateRewardsFile = null;
+		explicitFilesNumStates = explicitFilesBinaryFile.getNumStates();
+		// Reset dependent info
+		currentModelType = currentModulesFile.getModelType();
+		currentModelInfo = currentModulesFile;
+		currentDefinedMFConstants = null;
+
+		return currentModulesFile;
+	}
+
 	/**
 	 * Get the type of the currently stored model.
 	 * @return
@@ -2034,6 +2172,8 @@ if (currentModulesFile != null) PrismCL.showModulesNames(currentModulesFile);
 	private void doBuildModel() throws PrismException
 	{
 		long l; // timer
+		// Structure of a previous model that can be re-used, if any
+		ModelStructure modelStructure = reusableModelStructure;
 
 if (DEBUG_DOBUILD) System.out.print("<doBuildModel locatedIn='prism.Prism.java'>");
 
@@ -2079,8 +2219,22 @@ if (DEBUG_DOBUILD) System.out.println("in Prism.doBuildModel, instatiating a Con
 					ConstructModel constructModel = new ConstructModel(this);
 if (DEBUG_DOBUILD) System.out.println("</Make_ConstructModel>\n<SetFixDeadlocks>");
 					constructModel.setFixDeadlocks(getFixDeadlocks());
+					constructModel.setRecordStructure(getReuseStructure());
 if (DEBUG_DOBUILD) System.out.println("</SetFixDeadlocks>\n<ConstructModel>");
-					currentModelExpl = constructModel.constructModel(currentModelGenerator);
+					if (modelStructure != null && getReuseStructure()) {
+						// (null if the structure turns out to have changed)
+						currentModelExpl = constructModel.reinstantiateModel(currentModelGenerator, modelStructure);
+					}
+					File modelCacheFile = getModelCacheFile();
+					if (currentModelExpl == null && modelCacheFile != null && modelCacheFile.exists()) {
+						currentModelExpl = loadFromModelCache(modelCacheFile);
+					}
+					if (currentModelExpl == null) {
+						currentModelExpl = constructModel.constructModel(currentModelGenerator);
+						if (modelCacheFile != null)
+							storeInModelCache(modelCacheFile);
+					}
+					currentModelStructure = constructModel.getModelStructure();
 if (DEBUG_DOBUILD) System.out.println("</ConstructModel>");
 					currentModel = null;
 				}
@@ -2104,7 +2258,12 @@ if (DEBUG_DOBUILD) System.out.println("in doBuildModel, Case is MODEL_GENERATOR"
 				break;
 			case EXPLICIT_FILES:
 if (DEBUG_DOBUILD) System.out.println("in doBuildModel, Case is EXPLICIT_FILES");
-				if (!getExplicit()) {
+				if (explicitFilesBinaryFile != null) {
+					if (!getExplicit())
+						throw new PrismNotSupportedException("Binary model files can only be imported with the explicit engine");
+					explicitFilesBinaryFile.setFixDeadlocks(getFixDeadlocks());
+					currentModelExpl = explicitFilesBinaryFile.build();
+				} else if (!getExplicit()) {
 					expf2mtbdd = new ExplicitFiles2MTBDD(this);
 					currentModel = expf2mtbdd.build(explicitFilesStatesFile, explicitFilesTransFile, explicitFilesLabelsFile, explicitFilesStateRewardsFile,
 							currentModulesFile, explicitFilesNumStates);
@@ -2895,6 +3054,37 @@ if (DEBUG_DOBUILD) System.out.println("</doBuildModel>");
 		}
 	}
 
+	/**
+	 * Export the currently loaded model (transitions, states and labels) to a binary model file
+	 * (see {@link explicit.BinaryModelFile}), which can be re-imported quickly with {@link #loadModelFromBinaryFile(File)}.
+	 * This is only supported by the explicit engine.
+	 * @param file File to export to
+	 */
+	public void exportToBinaryFile(File file) throws PrismException
+	{
+		if (!getExplicit())
+			throw new PrismNotSupportedException("Export to binary model files is only supported by the explicit engine");
+
+		// Build model, if necessary
+		buildModelIfRequired();
+
+		// Print message
+		mainLog.println("\nExporting model in binary format " + getDestinationStringForFile(file));
+
+		// Compute the states satisfying each label ("init" and "deadlock" are stored separately)
+		List<String> labelNames = new ArrayList<String>();
+		List<BitSet> labelStates = new ArrayList<BitSet>();
+		explicit.StateModelChecker mcExpl = createModelCheckerExplicit(null);
+		for (String labelName : currentModelInfo.getLabelNames()) {
+			if (labelName.equals("init") || labelName.equals("deadlock"))
+				continue;
+			labelNames.add(labelName);
+			labelStates.add(mcExpl.checkExpression(currentModelExpl, new ExpressionLabel(labelName), null).getBitSet());
+		}
+
+		BinaryModelFile.export(currentModelExpl, currentModelInfo.createVarList(), labelNames, labelStates, file);
+	}
+
 	/**
 	 * Export the currently loaded model's states to a file
 	 * @param exportType Type of export; one of: <ul>
@@ -2995,23 +3185,31 @@ if (DEBUG_PMC) System.out.println(" @ prism.Prism.modelCheck() - PMC Place 2");
 		// Check that property is valid for the current model type
 		prop.getExpression().checkValid(currentModelType);
 
+		// Look up result in persistent cache, if enabled
+		String cacheKey = getResultCacheKey(propertiesFile, prop);
+		if (cacheKey != null) {
+			res = lookUpResultCache(cacheKey, prop.getExpression(), mainLog);
+			if (res != null)
+				return res;
+		}
+
 		// For PTAs...
 		if (currentModelType == ModelType.PTA) {
 if (DEBUG_PMC) System.out.println(" @ prism.Prism.modelCheck() - PMC Place 2-B - calling modelCheckPTA");
-			return modelCheckPTA(propertiesFile, prop.getExpression(), definedPFConstants);
+			return storeInResultCache(cacheKey, modelCheckPTA(propertiesFile, prop.getExpression(), definedPFConstants));
 		}
 
 		// For exact model checking
 		if (settings.getBoolean(PrismSettings.PRISM_EXACT_ENABLED)) {
 if (DEBUG_PMC) System.out.println(" @ prism.Prism.modelCheck() - PMC Place 2-C - calling modelCheckExact");
-			return modelCheckExact(propertiesFile, prop);
+			return storeInResultCache(cacheKey, modelCheckExact(propertiesFile, prop));
 		}
 		// For fast adaptive uniformisation
 		if (currentModelType == ModelType.CTMC && settings.getString(PrismSettings.PRISM_TRANSIENT_METHOD).equals("Fast adaptive uniformisation")) {
 			FastAdaptiveUniformisationModelChecker fauMC;
 if (DEBUG_PMC) System.out.println(" @ prism.Prism.modelCheck() - PMC Place 3-A - creating FastAdaptiveUniformisationModelChecker");
 			fauMC = new FastAdaptiveUniformisationModelChecker(this, currentModulesFile, propertiesFile);
-			return fauMC.check(prop.getExpression());
+			return storeInResultCache(cacheKey, fauMC.check(prop.getExpression()));
 		}
 		// Auto-switch engine if required
 		if (currentModelType == ModelType.MDP && !Expression.containsMultiObjective(prop.getExpression())) {
@@ -3074,6 +3272,226 @@ if (DEBUG_PMC) System.out.println("</ModelCheck>\n");
 		}
 
 		// Return result
+		return storeInResultCache(cacheKey, res);
+	}
+
+	/**
+	 * Can properties be checked on the current model with {@link #modelCheckConcurrently(PropertiesFile, Property, PrismLog, int)}?
+	 * This requires the explicit engine, and that model checking does not export anything or change the model;
+	 * if the model has not been built yet, this is re-checked by {@link #modelCheckConcurrently(PropertiesFile, Property, PrismLog, int)}.
+	 */
+	public boolean canModelCheckConcurrently()
+	{
+		if (!getExplicit() || currentModelType == null || currentModelType == ModelType.PTA || digital)
+			return false;
+		if (settings.getBoolean(PrismSettings.PRISM_EXACT_ENABLED))
+			return false;
+		if (currentModelType == ModelType.CTMC && settings.getString(PrismSettings.PRISM_TRANSIENT_METHOD).equals("Fast adaptive uniformisation"))
+			return false;
+		if (exportTarget || exportProductTrans || exportProductStates || exportProductVector)
+			return false;
+		// (the two-phase single-precision solution switches the precision of the shared model)
+		if (currentModelExpl instanceof MixedPrecisionModel && ((MixedPrecisionModel) currentModelExpl).isSinglePrecision())
+			return false;
+		return true;
+	}
+
+	/**
+	 * Perform model checking of a property on the currently built (explicit) model and return result,
+	 * in a way that allows several calls to be made concurrently (from different threads),
+	 * provided that {@link #canModelCheckConcurrently()} holds and nothing else is done with this object in the meantime.
+	 * The model is shared; apart from its predecessor relation, which is stored thread-safely
+	 * (see {@link explicit.ModelExplicit#getPredecessorRelation}), it is not modified.
+	 * All output goes to {@code log} rather than the main log.
+	 * The model must already have been built (see {@link #buildModelIfRequired()}).
+	 * @param propertiesFile Parent property file of property (for labels/constants/...),
+	 *                       not shared with any other concurrent call
+	 * @param prop The property to check
+	 * @param log Log for output
+	 * @param numThreads Number of threads that model checking of this property may use itself
+	 *                   (e.g. for parallel iterations), in place of the {@link PrismSettings#PRISM_NUM_THREADS} setting
+	 */
+	public Result modelCheckConcurrently(PropertiesFile propertiesFile, Property prop, PrismLog log, int numThreads) throws PrismException
+	{
+		if (!canModelCheckConcurrently() || currentModelExpl == null)
+			throw new PrismException("Concurrent model checking is not possible for the current model");
+		Values definedPFConstants = propertiesFile.getConstantValues();
+		log.printSeparator();
+		log.println("\nModel checking: " + prop);
+		if (currentDefinedMFConstants != null && currentDefinedMFConstants.getNumValues() > 0)
+			log.println("Model constants: " + currentDefinedMFConstants);
+		if (definedPFConstants != null && definedPFConstants.getNumValues() > 0)
+			log.println("Property constants: " + definedPFConstants);
+		prop.getExpression().checkValid(currentModelType);
+		String cacheKey = getResultCacheKey(propertiesFile, prop);
+		if (cacheKey != null) {
+			Result res = lookUpResultCache(cacheKey, prop.getExpression(), log);
+			if (res != null)
+				return res;
+		}
+		// Model checker with its own log, settings (for the number of threads)
+		// and (if needed, for rewards) model generator
+		PrismComponent parent = new PrismComponent(this);
+		parent.setLog(log);
+		PrismSettings jobSettings = new PrismSettings(settings);
+		jobSettings.set(PrismSettings.PRISM_NUM_THREADS, numThreads);
+		parent.setSettings(jobSettings);
+		ModelGenerator modelGen = currentModelGenerator;
+		if (modelGen instanceof ModulesFileModelGenerator)
+			modelGen = ((ModulesFileModelGenerator) modelGen).createCopy();
+		explicit.StateModelChecker mc = createModelCheckerExplicit(parent, propertiesFile, modelGen);
+		return storeInResultCache(cacheKey, mc.check(currentModelExpl, prop.getExpression()));
+	}
+
+	/**
+	 * Get the file for the currently loaded PRISM model in the persistent model cache,
+	 * or null if the cache is not enabled (or cannot be used).
+	 * The file name is a hash of the (parsed and tidied) PRISM model, the values of its constants
+	 * and the options that affect model construction.
+	 */
+	private File getModelCacheFile() throws PrismException
+	{
+		String dir = settings.getString(PrismSettings.PRISM_MODEL_CACHE_DIR);
+		if (dir == null || "".equals(dir))
+			return null;
+		// Models in single precision would lose accuracy when stored
+		if (settings.getBoolean(PrismSettings.PRISM_SINGLE_PRECISION))
+			return null;
+		StringBuilder sb = new StringBuilder();
+		sb.append("version=").append(getVersion()).append("\n");
+		sb.append("model=").append(currentModulesFile).append("\n");
+		sb.append("modelConstants=").append(currentDefinedMFConstants).append("\n");
+		sb.append("exactConstants=").append(currentDefinedMFConstantsAreExact).append("\n");
+		sb.append("fixDeadlocks=").append(getFixDeadlocks()).append("\n");
+		return new File(dir, ResultCache.computeKey(sb.toString()) + ".pbm");
+	}
+
+	/**
+	 * Load the current model from file {@code file} of the persistent model cache.
+	 * Returns null (after a warning) if this fails, in which case the model should just be built.
+	 */
+	private explicit.Model loadFromModelCache(File file) throws PrismException
+	{
+		mainLog.println("\nLoading model from model cache (" + file + ")...");
+		try {
+			BinaryModelFile binaryModelFile = new BinaryModelFile(this, file);
+			// Deadlocks were already dealt with when the model was first built
+			binaryModelFile.setFixDeadlocks(false);
+			ModelExplicit model = (ModelExplicit) binaryModelFile.build();
+			model.setVarList(currentModelGenerator.createVarList());
+			model.setConstantValues(new Values(currentModelGenerator.getConstantValues()));
+			return model;
+		} catch (PrismException e) {
+			mainLog.printWarning("Could not load model from model cache (" + e.getMessage() + "); building it instead");
+			return null;
+		}
+	}
+
+	/**
+	 * Store the current (explicit) model in file {@code file} of the persistent model cache.
+	 * The file is written under a temporary name first, so that concurrent runs never see a partial file.
+	 * Failure to store the model is not an error (just a warning).
+	 */
+	private void storeInModelCache(File file)
+	{
+		List<String> labelNames = new ArrayList<String>(currentModelExpl.getLabels());
+		List<BitSet> labelStates = new ArrayList<BitSet>();
+		for (String labelName : labelNames) {
+			labelStates.add(currentModelExpl.getLabelStates(labelName));
+		}
+		Path tmp = null;
+		try {
+			Files.createDirectories(file.toPath().getParent());
+			tmp = Files.createTempFile(file.toPath().getParent(), file.getName(), ".tmp");
+			BinaryModelFile.export(currentModelExpl, currentModelExpl.getVarList(), labelNames, labelStates, tmp.toFile());
+			Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			tmp = null;
+		} catch (IOException | PrismException e) {
+			mainLog.printWarning("Could not store model in model cache (" + e.getMessage() + ")");
+		} finally {
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the persistent result cache, as specified by the current settings, or null if it is not enabled.
+	 */
+	private synchronized ResultCache getResultCache() throws PrismException
+	{
+		String dir = settings.getString(PrismSettings.PRISM_RESULT_CACHE_DIR);
+		if (dir == null || "".equals(dir))
+			return null;
+		long maxSize = PrismUtils.convertMemoryStringtoKB(settings.getString(PrismSettings.PRISM_RESULT_CACHE_MAX_SIZE)) * 1024;
+		if (resultCache == null || !resultCache.getDirectory().equals(new File(dir)) || resultCache.getMaxSize() != maxSize)
+			resultCache = new ResultCache(new File(dir), maxSize);
+		return resultCache;
+	}
+
+	/**
+	 * Get the key for the result of checking {@code prop} on the current model in the persistent result cache,
+	 * or null if the cache is not enabled or cannot be used for this model checking run.
+	 * The key is a hash of the (parsed and tidied) PRISM model, the properties file, the values of all constants,
+	 * the property itself and all settings that can affect the result (including the engine).
+	 */
+	private String getResultCacheKey(PropertiesFile propertiesFile, Property prop) throws PrismException
+	{
+		if (getResultCache() == null)
+			return null;
+		// Only for PRISM models (which are identified by their text)
+		if (currentModelSource != ModelSource.PRISM_MODEL || currentModulesFile == null)
+			return null;
+		// Not if anything other than the result itself is needed
+		if (genStrat || storeVector || exportTarget || exportProductTrans || exportProductStates || exportProductVector || digital)
+			return null;
+		// Not for print filters, whose per-state output is not part of the result
+		// (also when used via references to other properties)
+		Expression expr = (Expression) prop.getExpression().deepCopy().expandPropRefsAndLabels(propertiesFile, null);
+		if (Expression.containsPrintFilter(expr))
+			return null;
+		StringBuilder sb = new StringBuilder();
+		sb.append("version=").append(getVersion()).append("\n");
+		sb.append("model=").append(currentModulesFile).append("\n");
+		sb.append("modelConstants=").append(currentDefinedMFConstants).append("\n");
+		sb.append("exactConstants=").append(currentDefinedMFConstantsAreExact).append("\n");
+		sb.append("properties=").append(propertiesFile).append("\n");
+		sb.append("propertyConstants=").append(propertiesFile.getConstantValues()).append("\n");
+		sb.append("property=").append(prop).append("\n");
+		sb.append(settings.toKeyValueString(RESULT_CACHE_IGNORED_SETTINGS));
+		return ResultCache.computeKey(sb.toString());
+	}
+
+	/**
+	 * Look up the result with key {@code cacheKey} in the persistent result cache
+	 * and, if found, display it to {@code log}, as model checking would. Returns null if not found.
+	 */
+	private Result lookUpResultCache(String cacheKey, Expression expr, PrismLog log) throws PrismException
+	{
+		Result res = getResultCache().lookup(cacheKey);
+		if (res != null) {
+			log.println("\nResult found in result cache (" + getResultCache().getDirectory() + ").");
+			String resultString = "Result";
+			if (!("Result".equals(expr.getResultName())))
+				resultString += " (" + expr.getResultName().toLowerCase() + ")";
+			resultString += ": " + res.getResultString();
+			log.print("\n" + resultString + "\n");
+		}
+		return res;
+	}
+
+	/**
+	 * Store result {@code res} in the persistent result cache with key {@code cacheKey}
+	 * (unless the key is null), and return it.
+	 */
+	private Result storeInResultCache(String cacheKey, Result res) throws PrismException
+	{
+		if (cacheKey != null && res != null)
+			getResultCache().store(cacheKey, res);
 		return res;
 	}
 
@@ -3845,6 +4263,8 @@ if (DEBUG_PMC) System.out.println("</ModelCheck>\n");
 			currentModel = null;
 		}
 		currentModelExpl = null;
+		currentModelStructure = null;
+		reusableModelStructure = null;
 	}
 
 	/**
@@ -3902,10 +4322,21 @@ mc.ShowCheckCalls();  // enables debug outputs
 	 * @param propertiesFile Optional properties file for extra info needed during model checking (can be null)
 	 */
 	private explicit.StateModelChecker createModelCheckerExplicit(PropertiesFile propertiesFile) throws PrismException
+	{
+		return createModelCheckerExplicit(this, propertiesFile, currentModelGenerator);
+	}
+
+	/**
+	 * Utility method to create and initialise an (explicit) model checker based on the current model.
+	 * @param parent PrismComponent for the model checker (for settings and log)
+	 * @param propertiesFile Optional properties file for extra info needed during model checking (can be null)
+	 * @param modelGen Model generator for the current model (can be null)
+	 */
+	private explicit.StateModelChecker createModelCheckerExplicit(PrismComponent parent, PropertiesFile propertiesFile, ModelGenerator modelGen) throws PrismException
 	{
 		// Create model checker
-		explicit.StateModelChecker mc = explicit.StateModelChecker.createModelChecker(currentModelType, this);
-		mc.setModulesFileAndPropertiesFile(currentModelInfo, propertiesFile, currentModelGenerator);
+		explicit.StateModelChecker mc = explicit.StateModelChecker.createModelChecker(currentModelType, parent);
+		mc.setModulesFileAndPropertiesFile(currentModelInfo, propertiesFile, modelGen);
 		// Pass any additional local settings
 		mc.setExportTarget(exportTarget);
 		mc.setExportTargetFilename(exportTargetFilename);
@@ -69,6 +69,7 @@ public static boolean DEBUG_showModNames = false;
 	private boolean importpepa = false;
 	private boolean importprismpp = false;
 	private boolean importtrans = false;
+	private boolean importbinary = false;
 	private boolean importstates = false;
 	private boolean importlabels = false;
 	private boolean importstaterewards = false;
@@ -80,6 +81,7 @@ public static boolean DEBUG_showModNames = false;
 	private boolean exporttransrewards = false;
 	private boolean exportstates = false;
 	private boolean exportlabels = false;
+	private boolean exportbinary = false;
 	private boolean exportspy = false;
 	private boolean exportdot = false;
 	private boolean exporttransdot = false;
@@ -137,6 +139,7 @@ public static boolean DEBUG_showModNames = false;
 	private String exportTransRewardsFilename = null;
 	private String exportStatesFilename = null;
 	private String exportLabelsFilename = null;
+	private String exportBinaryFilename = null;
 	private String exportSpyFilename = null;
 	private String exportDotFilename = null;
 	private String exportTransDotFilename = null;
@@ -440,7 +443,9 @@ if (DEBUG) {
 }
 
 			// Work through list of properties to be checked
-			for (j = 0; j < numPropertiesToCheck; j++) {
+			// (unless they can all be checked in parallel)
+			boolean checkedInParallel = checkPropertiesInParallel();
+			for (j = 0; !checkedInParallel && j < numPropertiesToCheck; j++) {
 if (DEBUG) {
 	System.out.println("\n <CheckProperty which='" + (j+1) + "/" + numPropertiesToCheck + "' at='PrismCL.java, Line ~445'>\n");
 	System.out.println("\n  Reminder: we are STILL inside the massive for loop, which is doing iteration " + (i+1) + " of " + undefinedMFConstants.getNumModelIterations() + "\n   [That last number is how many ModelIterations there needs to be]");
@@ -554,43 +559,8 @@ if (DEBUG) {
 if (DEBUG) {
 	System.out.println("PrismCL - Place CP-B-5 - about to call setResult...");
 }
-						// store result of model checking
-						results[j].setResult(definedMFConstants, definedPFConstants, res.getResult());
-
-						// if a counterexample was generated, display it
-						Object cex = res.getCounterexample();
-						if (cex != null) {
-							mainLog.println("\nCounterexample/witness:");
-							mainLog.println(cex);
-							/*SimulatorEngine engine = prism.getSimulator();
-							try {
-								engine.loadPath(modulesFile, (CexPathStates) cex);
-								engine.exportPath(null, true, ",", null);
-							} catch (PrismException e) {
-								error(e.getMessage());
-							}*/
-							if (cex instanceof cex.CexPathAsBDDs) {
-								((cex.CexPathAsBDDs) cex).clear();
-							}
-						}
-
-						// if a strategy was generated, and we need to export it, do so
-						if (exportstrat && res.getStrategy() != null) {
-							try {
-								prism.exportStrategy(res.getStrategy(), exportStratType, exportStratFilename.equals("stdout") ? null : new File(exportStratFilename));
-							}
-							// in case of error, report it and proceed
-							catch (FileNotFoundException e) {
-								error("Couldn't open file \"" + exportStratFilename + "\" for output");
-							} catch (PrismException e) {
-								error(e.getMessage());
-							}
-						}
-
-						// if required, check result against expected value
-						if (test) {
-							doResultTest(propertiesToCheck.get(j), res);
-						}
+						// store/display/test result of model checking
+						processResult(j, res);
 
 						// iterate to next property
 						undefinedConstants[j].iterateProperty();
@@ -760,6 +730,9 @@ if (DEBUG_doParsing)  System.out.println("<ImportPrismPreprocFile calledWithin='
 				String prismppParamsList[] = ("? " + prismppParams).split(" ");
 				modulesFile = prism.importPrismPreprocFile(new File(modelFilename), prismppParamsList);
 if (DEBUG_doParsing)  System.out.println("</ImportPrismPreprocFile calledWithin='PrismCL.doParsing()'>");
+			} else if (importbinary) {
+				mainLog.print("\nImporting model from binary file \"" + modelFilename + "\"...\n");
+				modulesFile = prism.loadModelFromBinaryFile(new File(modelFilename));
 			} else if (importtrans) {
 				mainLog.print("\nImporting model (");
 				mainLog.print(typeOverride == null ? "MDP" : typeOverride);
@@ -895,6 +868,7 @@ if (DEBUG_doParsing)  System.out.println("\n</doParsing methodLocatedIn='prism/P
 			    exporttransdotstates ||
 			    exportmodeldotview ||
 			    exportlabels ||
+			    exportbinary ||
 			    exportsccs ||
 			    exportbsccs ||
 			    exportmecs) {
@@ -1051,6 +1025,17 @@ if (DEBUG_doParsing)  System.out.println("\n</doParsing methodLocatedIn='prism/P
 			}
 		}
 
+		// export model to a binary model file
+		if (exportbinary) {
+			try {
+				prism.exportToBinaryFile(new File(exportBinaryFilename));
+			}
+			// in case of error, report it and proceed
+			catch (PrismException e) {
+				error(e.getMessage());
+			}
+		}
+
 		// export SCCs to a file
 		if (exportsccs) {
 			try {
@@ -1168,6 +1153,124 @@ if (DEBUG_doParsing)  System.out.println("\n</doParsing methodLocatedIn='prism/P
 		}
 	}
 
+	/**
+	 * Process the result {@code res} of checking the {@code j}th property (for the current
+	 * model/property constants): store it, display any counterexample, export any strategy
+	 * and, if required, check it against the expected value.
+	 */
+	private void processResult(int j, Result res)
+	{
+		// store result of model checking
+		results[j].setResult(definedMFConstants, definedPFConstants, res.getResult());
+
+		// if a counterexample was generated, display it
+		Object cex = res.getCounterexample();
+		if (cex != null) {
+			mainLog.println("\nCounterexample/witness:");
+			mainLog.println(cex);
+			/*SimulatorEngine engine = prism.getSimulator();
+			try {
+				engine.loadPath(modulesFile, (CexPathStates) cex);
+				engine.exportPath(null, true, ",", null);
+			} catch (PrismException e) {
+				error(e.getMessage());
+			}*/
+			if (cex instanceof cex.CexPathAsBDDs) {
+				((cex.CexPathAsBDDs) cex).clear();
+			}
+		}
+
+		// if a strategy was generated, and we need to export it, do so
+		if (exportstrat && res.getStrategy() != null) {
+			try {
+				prism.exportStrategy(res.getStrategy(), exportStratType, exportStratFilename.equals("stdout") ? null : new File(exportStratFilename));
+			}
+			// in case of error, report it and proceed
+			catch (FileNotFoundException e) {
+				error("Couldn't open file \"" + exportStratFilename + "\" for output");
+			} catch (PrismException e) {
+				error(e.getMessage());
+			}
+		}
+
+		// if required, check result against expected value
+		if (test) {
+			doResultTest(propertiesToCheck.get(j), res);
+		}
+	}
+
+	/**
+	 * If parallel experiments are enabled and possible for the current model, check all properties,
+	 * for all values of their undefined constants, in parallel (see {@link ExperimentExecutor}),
+	 * sharing the built model, and then process the results in the usual order.
+	 * Returns false if this was not done, in which case the properties should be checked one by one.
+	 */
+	private boolean checkPropertiesInParallel()
+	{
+		if (!prism.getSettings().getBoolean(PrismSettings.PRISM_PARALLEL_EXPERIMENTS) || simulate || param || numPropertiesToCheck == 0)
+			return false;
+		if (!prism.canModelCheckConcurrently())
+			return false;
+		// Build the model first, so that it can be shared
+		try {
+			prism.buildModelIfRequired();
+		} catch (PrismException e) {
+			// in case of build failure, store as result for all properties
+			error(e.getMessage(), true);
+			for (int j = 0; j < numPropertiesToCheck; j++) {
+				results[j].setMultipleErrors(definedMFConstants, null, e);
+				if (test) {
+					doResultTest(propertiesToCheck.get(j), new Result(e));
+				}
+			}
+			return true;
+		}
+		// (e.g. a model stored in single precision)
+		if (!prism.canModelCheckConcurrently())
+			return false;
+
+		// Create jobs for each property and each value of its constants, in the usual order
+		List<ExperimentExecutor.Job> jobs = new ArrayList<ExperimentExecutor.Job>();
+		int jobProps[] = new int[numPropertiesToCheck];
+		for (int j = 0; j < numPropertiesToCheck; j++) {
+			for (int k = 0; k < undefinedConstants[j].getNumPropertyIterations(); k++) {
+				jobs.add(new ExperimentExecutor.Job(propertiesToCheck.get(j), undefinedConstants[j].getPFConstantValues()));
+				undefinedConstants[j].iterateProperty();
+			}
+			jobProps[j] = jobs.size();
+		}
+		ExperimentExecutor executor = new ExperimentExecutor(prism, prism.getNumThreads());
+		try {
+			executor.run(propertiesFile, jobs, exactConstants);
+		} catch (PrismException e) {
+			error(e.getMessage(), true);
+			for (int j = 0; j < numPropertiesToCheck; j++) {
+				results[j].setMultipleErrors(definedMFConstants, null, e);
+			}
+			return true;
+		}
+
+		// Display and process results, in order
+		int j = 0;
+		for (int i = 0; i < jobs.size(); i++) {
+			while (i == jobProps[j])
+				j++;
+			ExperimentExecutor.Job job = jobs.get(i);
+			mainLog.print(job.getOutput());
+			if (job.getException() != null)
+				error(job.getException().getMessage(), true);
+			definedPFConstants = job.getPFConstants();
+			try {
+				// (for testing results against expected values)
+				propertiesFile.setSomeUndefinedConstants(definedPFConstants, exactConstants);
+			} catch (PrismException e) {
+				// (already reported as the result of the job)
+			}
+			processResult(j, job.getResult());
+		}
+		return true;
+	}
+
 	/**
 	 * Test a model checking result against the RESULT specifications attached
 	 * to the property (test mode).
@@ -2089,6 +2192,10 @@ if (DEBUG_doParsing)  System.out.println("\n</doParsing methodLocatedIn='prism/P
 			} else if (ext.equals("srew")) {
 				importstaterewards = true;
 				importStateRewardsFilename = basename + ".srew";
+			} else if (ext.equals("pbm")) {
+				importtrans = true;
+				importbinary = true;
+				modelFilename = basename + ".pbm";
 			}
 			// Unknown extension
 			else {
@@ -2177,6 +2284,9 @@ if (DEBUG_doParsing)  System.out.println("\n</doParsing methodLocatedIn='prism/P
 			} else if (ext.equals("dot")) {
 				exporttransdotstates = true;
 				exportTransDotStatesFilename = basename.equals("stdout") ? "stdout" : basename + ".dot";
+			} else if (ext.equals("pbm")) {
+				exportbinary = true;
+				exportBinaryFilename = basename + ".pbm";
 			}
 			// Unknown extension
 			else {
@@ -2430,6 +2540,8 @@ mainLog.println("TOP reports will have prefix: " + PrismNative.makeRandomTopRepo
 				exportLabelsFilename = exportLabelsFilename.replaceFirst("modelFileBasename", modelFileBasename);
 			if (exporttransdotstates)
 				exportTransDotStatesFilename = exportTransDotStatesFilename.replaceFirst("modelFileBasename", modelFileBasename);
+			if (exportbinary)
+				exportBinaryFilename = exportBinaryFilename.replaceFirst("modelFileBasename", modelFileBasename);
 		}
 	}
 
@@ -2675,7 +2787,8 @@ mainLog.println("TOP reports will have prefix: " + PrismNative.makeRandomTopRepo
 			mainLog.println("Import the model directly from text file(s).");
 			mainLog.println("Use a list of file extensions to indicate which files should be read, e.g.:");
 			mainLog.println("\n -importmodel in.tra,sta\n");
-			mainLog.println("Possible extensions are: .tra, .sta, .lab, .srew");
+			mainLog.println("Possible extensions are: .tra, .sta, .lab, .srew, .pbm");
+			mainLog.println("The .pbm extension denotes a single binary model file, as written by -exportmodel (explicit engine only).");
 			mainLog.println("Use extension .all to import all, e.g.:");
 			mainLog.println("\n -importmodel in.all\n");
 		}
@@ -2695,8 +2808,9 @@ mainLog.println("TOP reports will have prefix: " + PrismNative.makeRandomTopRepo
 			mainLog.println("Export the built model to file(s) (or to the screen if <file>=\"stdout\").");
 			mainLog.println("Use a list of file extensions to indicate which files should be generated, e.g.:");
 			mainLog.println("\n -exportmodel out.tra,sta\n");
-			mainLog.println("Possible extensions are: .tra, .srew, .trew, .sta, .lab, .dot");
-			mainLog.println("Use extension .all to export all (except .dot) and .rew to export both .srew/.trew, e.g.:");
+			mainLog.println("Possible extensions are: .tra, .srew, .trew, .sta, .lab, .dot, .pbm");
+			mainLog.println("The .pbm extension denotes a single binary model file (transitions, states and labels; explicit engine only).");
+			mainLog.println("Use extension .all to export all (except .dot/.pbm) and .rew to export both .srew/.trew, e.g.:");
 			mainLog.println("\n -exportmodel out.all\n");
 			mainLog.println("Omit the file basename to use the basename of the model file, e.g.:");
 			mainLog.println("\n -exportmodel .all\n");
@@ -79,12 +79,19 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_PROB1							= "prism.prob1";
 	public static final	String PRISM_PRE_REL					= "prism.preRel";
 	public static final	String PRISM_FIX_DEADLOCKS					= "prism.fixDeadlocks";
+	public static final	String PRISM_REUSE_STRUCTURE				= "prism.reuseStructure";
+	public static final	String PRISM_RESULT_CACHE_DIR				= "prism.resultCacheDir";
+	public static final	String PRISM_RESULT_CACHE_MAX_SIZE			= "prism.resultCacheMaxSize";
+	public static final	String PRISM_MODEL_CACHE_DIR				= "prism.modelCacheDir";
 	public static final	String PRISM_DO_PROB_CHECKS					= "prism.doProbChecks";
 	public static final	String PRISM_SUM_ROUND_OFF					= "prism.sumRoundOff";
 	public static final	String PRISM_COMPACT						= "prism.compact";
 	public static final	String PRISM_LIN_EQ_METHOD					= "prism.linEqMethod";//"prism.iterativeMethod";
 	public static final	String PRISM_LIN_EQ_METHOD_PARAM			= "prism.linEqMethodParam";//"prism.overRelaxation";
 	public static final String PRISM_TOPOLOGICAL_VI					= "prism.topologicalVI";
+	public static final String PRISM_SINGLE_PRECISION				= "prism.singlePrecision";
+	public static final String PRISM_BLOCK_GAUSS_SEIDEL				= "prism.blockGaussSeidel";
+	public static final String PRISM_UNROLLED_KERNELS				= "prism.unrolledKernels";
 	public static final	String PRISM_PMAX_QUOTIENT					= "prism.pmaxQuotient";
 	public static final	String PRISM_INTERVAL_ITER					= "prism.intervalIter";
 	public static final	String PRISM_INTERVAL_ITER_OPTIONS			= "prism.intervalIterOptions";
@@ -99,6 +106,7 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_CUDD_EPSILON					= "prism.cuddEpsilon";
 	public static final	String PRISM_DD_EXTRA_STATE_VARS				= "prism.ddExtraStateVars";
 	public static final	String PRISM_DD_EXTRA_ACTION_VARS				= "prism.ddExtraActionVars";
+	public static final	String PRISM_SYMBOLIC_INDEXED_ACCESS			= "prism.symbolicIndexedAccess";
 	public static final	String PRISM_NUM_SB_LEVELS					= "prism.numSBLevels";//"prism.hybridNumLevels";
 	public static final	String PRISM_SB_MAX_MEM						= "prism.SBMaxMem";//"prism.hybridMaxMemory";
 	public static final	String PRISM_NUM_SOR_LEVELS					= "prism.numSORLevels";//"prism.hybridSORLevels";
@@ -107,8 +115,11 @@ public class PrismSettings implements Observer
 	public static final	String PRISM_EXTRA_DD_INFO					= "prism.extraDDInfo";
 	public static final	String PRISM_EXTRA_REACH_INFO				= "prism.extraReachInfo";
 	public static final String PRISM_SCC_METHOD						= "prism.sccMethod";
+	public static final String PRISM_EXPLICIT_SCC_METHOD				= "prism.explicitSccMethod";
 	public static final String PRISM_SYMM_RED_PARAMS					= "prism.symmRedParams";
 	public static final	String PRISM_EXACT_ENABLED					= "prism.exact.enabled";
+	public static final	String PRISM_NUM_THREADS					= "prism.numThreads";
+	public static final	String PRISM_PARALLEL_EXPERIMENTS			= "prism.parallelExperiments";
 	public static final String PRISM_PTA_METHOD					= "prism.ptaMethod";
 	public static final String PRISM_TRANSIENT_METHOD				= "prism.transientMethod";
 	public static final String PRISM_AR_OPTIONS					= "prism.arOptions";
@@ -235,6 +246,10 @@ public class PrismSettings implements Observer
 																			"Which engine (hybrid, sparse, MTBDD, explicit) should be used for model checking." },
 			{ BOOLEAN_TYPE,		PRISM_EXACT_ENABLED,					"Do exact model checking",			"4.2.1",			new Boolean(false),															"",
 																			"Perform exact model checking." },
+			{ INTEGER_TYPE,		PRISM_NUM_THREADS,						"Number of threads",					"4.4",			new Integer(1),																"0,",
+																			"Maximum number of worker threads used for tasks that can be run in parallel (default 1, i.e. sequential; 0 means use all available processors)." },
+			{ BOOLEAN_TYPE,		PRISM_PARALLEL_EXPERIMENTS,				"Parallel experiments",					"4.4",			new Boolean(false),															"",
+																			"Check the properties of an experiment, for all values of their constants, in parallel on the (shared) built model, where possible (explicit engine only)." },
 																			
 			{ CHOICE_TYPE,		PRISM_PTA_METHOD,						"PTA model checking method",			"3.3",			"Stochastic games",																	"Digital clocks,Stochastic games,Backwards reachability",																
 																			"Which method to use for model checking of PTAs." },
@@ -247,6 +262,12 @@ public class PrismSettings implements Observer
 																			"Over-relaxation parameter for iterative numerical methods such as JOR/SOR." },
 			{ BOOLEAN_TYPE,		PRISM_TOPOLOGICAL_VI,				"Use topological value iteration",				"4.3.1",		false,																		"",
 																			"Use topological value iteration in iterative numerical methods."},
+			{ BOOLEAN_TYPE,		PRISM_SINGLE_PRECISION,				"Use single-precision probabilities",				"4.4",		false,																		"",
+																			"Store transition probabilities of sparse explicit-engine models in single precision, iterating with these first and refining the result in double precision."},
+			{ BOOLEAN_TYPE,		PRISM_BLOCK_GAUSS_SEIDEL,				"Use block Gauss-Seidel",				"4.4",		false,																		"",
+																			"For Gauss-Seidel on large sparse explicit-engine models, update fixed-size blocks of states concurrently (Gauss-Seidel within each block, Jacobi between blocks). Iteration counts and results differ slightly from those of plain Gauss-Seidel."},
+			{ BOOLEAN_TYPE,		PRISM_UNROLLED_KERNELS,				"Use unrolled sparse kernels",				"4.4",		false,																		"",
+																			"Use unrolled loops for the matrix-vector products of sparse explicit-engine models. These are faster, but sum in a different order, so results can differ in the last digits."},
 			{ BOOLEAN_TYPE,		PRISM_PMAX_QUOTIENT,				"For Pmax computations, compute in the MEC quotient",				"4.3.1",		false,																		"",
 																				"For Pmax computations, compute in the MEC quotient."},
 			{ BOOLEAN_TYPE,		PRISM_INTERVAL_ITER,				"Use interval iteration",				"4.3.1",		false,																		"",
@@ -278,6 +299,14 @@ public class PrismSettings implements Observer
 																			"Constrain to fair adversaries when model checking MDPs." },
 			{ BOOLEAN_TYPE,		PRISM_FIX_DEADLOCKS,					"Automatically fix deadlocks",			"4.0.3",		new Boolean(true),															"",																							
 																			"Automatically fix deadlocks, where necessary, when constructing probabilistic models." },
+			{ BOOLEAN_TYPE,		PRISM_REUSE_STRUCTURE,					"Re-use model structure",				"4.4",			new Boolean(false),															"",																							
+																			"When only constants that appear in probabilities/rates change (e.g. in an experiment), re-use the states and transitions of the previously built explicit-engine model, just re-evaluating its probabilities." },
+			{ STRING_TYPE,		PRISM_RESULT_CACHE_DIR,					"Result cache directory",				"4.4",			"",																			"",
+																			"Directory of a persistent cache of model checking results, which can be shared between runs (and concurrent processes); empty means no cache." },
+			{ STRING_TYPE,		PRISM_RESULT_CACHE_MAX_SIZE,			"Result cache max. size",				"4.4",			new String("64m"),															"",
+																			"Maximum size of the persistent result cache, e.g. 500k, 64m, 1g; least recently used results are removed first." },
+			{ STRING_TYPE,		PRISM_MODEL_CACHE_DIR,					"Model cache directory",				"4.4",			"",																			"",
+																			"Directory of a persistent cache of models built by the explicit engine, which are re-loaded (instead of re-built) for the same model and constants; empty means no cache." },
 			{ BOOLEAN_TYPE,		PRISM_DO_PROB_CHECKS,					"Do probability/rate checks",			"2.1",			new Boolean(true),															"",																							
 																			"Perform sanity checks on model probabilities/rates when constructing probabilistic models." },
 			{ DOUBLE_TYPE,		PRISM_SUM_ROUND_OFF,					"Probability sum threshold",					"2.1",			new Double(1.0E-5),													"0.0,",
@@ -286,6 +315,8 @@ public class PrismSettings implements Observer
 																			"Use steady-state detection during CTMC transient probability computation." },
 			{ CHOICE_TYPE,		PRISM_SCC_METHOD,						"SCC decomposition method",				"3.2",			"Lockstep",																	"Xie-Beerel,Lockstep,SCC-Find",																
 																			"Which algorithm to use for (symbolic) decomposition of a graph into strongly connected components (SCCs)." },
+			{ CHOICE_TYPE,		PRISM_EXPLICIT_SCC_METHOD,				"Explicit SCC decomposition method",	"4.4",			"Tarjan",																	"Tarjan,Parallel",																
+																			"Which algorithm to use for explicit-state decomposition of a graph into strongly connected components (SCCs). Parallel uses forward-backward search with multiple threads for large SCCs." },
 			{ STRING_TYPE,		PRISM_SYMM_RED_PARAMS,					"Symmetry reduction parameters",		"3.2",			"",																	"",																
 																			"Parameters for symmetry reduction (format: \"i j\" where i and j are the number of modules before and after the symmetric ones; empty string means symmetry reduction disabled)." },
 			{ STRING_TYPE,		PRISM_AR_OPTIONS,						"Abstraction refinement options",		"3.3",			"",																	"",																
@@ -328,6 +359,8 @@ public class PrismSettings implements Observer
 																			"Number of extra DD state variables preallocated for use in model transformation." },
 			{ INTEGER_TYPE,		PRISM_DD_EXTRA_ACTION_VARS,				"Extra DD action var allocation",		"4.3.1",			new Integer(20),														"",
 																			"Number of extra DD action variables preallocated for use in model transformation." },
+			{ BOOLEAN_TYPE,		PRISM_SYMBOLIC_INDEXED_ACCESS,			"Symbolic indexed-set access",		"4.4",			new Boolean(false),														"",
+																			"When building models symbolically, encode indexed-set accesses with a variable index as a selector over the index's DD variables, instead of generating one version of the command per index value." },
 
 
 			// ADVERSARIES/COUNTEREXAMPLES:
@@ -1001,6 +1034,25 @@ public class PrismSettings implements Observer
 		else if (sw.equals("exact")) {
 			set(PRISM_EXACT_ENABLED, true);
 		}
+		// Number of threads
+		else if (sw.equals("threads")) {
+			if (i < args.length - 1) {
+				try {
+					j = Integer.parseInt(args[++i]);
+					if (j < 0)
+						throw new NumberFormatException("");
+					set(PRISM_NUM_THREADS, j);
+				} catch (NumberFormatException e) {
+					throw new PrismException("Invalid value for -" + sw + " switch");
+				}
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
+		// Parallel experiments
+		else if (sw.equals("parallelexperiments")) {
+			set(PRISM_PARALLEL_EXPERIMENTS, true);
+		}
 		// PTA model checking methods
 		else if (sw.equals("ptamethod")) {
 			if (i < args.length - 1) {
@@ -1104,6 +1156,19 @@ public class PrismSettings implements Observer
 			set(PRISM_TOPOLOGICAL_VI, true);
 		}
 
+		// Single-precision probabilities (explicit engine)
+		else if (sw.equals("singleprecision")) {
+			set(PRISM_SINGLE_PRECISION, true);
+		}
+
+		// Block Gauss-Seidel (explicit engine)
+		else if (sw.equals("blockgs")) {
+			set(PRISM_BLOCK_GAUSS_SEIDEL, true);
+		}
+		else if (sw.equals("unrolledkernels")) {
+			set(PRISM_UNROLLED_KERNELS, true);
+		}
+
 		// Linear equation solver over-relaxation parameter
 		else if (sw.equals("omega")) {
 			if (i < args.length - 1) {
@@ -1182,6 +1247,32 @@ public class PrismSettings implements Observer
 		else if (sw.equals("nofixdl")) {
 			set(PRISM_FIX_DEADLOCKS, false);
 		}
+		// Re-use model structure across constant values
+		else if (sw.equals("reusestructure")) {
+			set(PRISM_REUSE_STRUCTURE, true);
+		}
+		// Persistent result cache
+		else if (sw.equals("resultcache")) {
+			if (i < args.length - 1) {
+				set(PRISM_RESULT_CACHE_DIR, args[++i]);
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
+		else if (sw.equals("resultcachesize")) {
+			if (i < args.length - 1) {
+				set(PRISM_RESULT_CACHE_MAX_SIZE, args[++i]);
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
+		else if (sw.equals("modelcache")) {
+			if (i < args.length - 1) {
+				set(PRISM_MODEL_CACHE_DIR, args[++i]);
+			} else {
+				throw new PrismException("No value specified for -" + sw + " switch");
+			}
+		}
 		// Fairness on/off
 		else if (sw.equals("fair")) {
 			set(PRISM_FAIRNESS, true);
@@ -1228,6 +1319,20 @@ public class PrismSettings implements Observer
 				throw new PrismException("No parameter specified for -" + sw + " switch");
 			}
 		}
+		// Explicit SCC computation algorithm
+		else if (sw.equals("explicitsccmethod")) {
+			if (i < args.length - 1) {
+				s = args[++i];
+				if (s.equals("tarjan"))
+					set(PRISM_EXPLICIT_SCC_METHOD, "Tarjan");
+				else if (s.equals("parallel"))
+					set(PRISM_EXPLICIT_SCC_METHOD, "Parallel");
+				else
+					throw new PrismException("Unrecognised option for -" + sw + " switch (options are: tarjan, parallel)");
+			} else {
+				throw new PrismException("No parameter specified for -" + sw + " switch");
+			}
+		}
 		// Enable symmetry reduction
 		else if (sw.equals("symm")) {
 			if (i < args.length - 2) {
@@ -1487,6 +1592,9 @@ public class PrismSettings implements Observer
 		else if (sw.equals("nodefervars")) {
 Modules2MTBDD.DISABLE_VAR_DEFERRAL = true;			// ADDED BY SHANE to switch on or off the allowance of deferring of variable creation
 		}
+		else if (sw.equals("symbolicindexedaccess")) {
+			set(PRISM_SYMBOLIC_INDEXED_ACCESS, true);
+		}
 		else if (sw.equals("ddsanity")) {
 			set(PRISM_JDD_SANITY_CHECKS, true);
 		}
@@ -1767,6 +1875,8 @@ Modules2MTBDD.DISABLE_VAR_DEFERRAL = true;			// ADDED BY SHANE to switch on or o
 		mainLog.println("-hybrid (or -h) ................ Use the Hybrid engine [default]");
 		mainLog.println("-explicit (or -ex) ............. Use the explicit engine");
 		mainLog.println("-exact ......................... Perform exact (arbitrary precision) model checking");
+		mainLog.println("-threads <n> ................... Maximum number of worker threads (0 = all processors) [default: 1]");
+		mainLog.println("-parallelexperiments ........... Check properties/constant values of experiments in parallel (explicit engine)");
 		mainLog.println("-ptamethod <name> .............. Specify PTA engine (games, digital, backwards) [default: games]");
 		mainLog.println("-transientmethod <name> ........ CTMC transient analysis methof (unif, fau) [default: unif]");
 		mainLog.println();
@@ -1791,6 +1901,9 @@ Modules2MTBDD.DISABLE_VAR_DEFERRAL = true;			// ADDED BY SHANE to switch on or o
 		mainLog.println("-modpoliter .................... Use modified policy iteration for solving MDPs");
 		mainLog.println("-intervaliter (or -ii) ......... Use interval iteration to solve MDPs/MCs (see -help -ii)");
 		mainLog.println("-topological ................... Use topological value iteration");
+		mainLog.println("-singleprecision ............... Use single-precision probabilities (with double-precision refinement) in the explicit engine");
+		mainLog.println("-blockgs ....................... Use block Gauss-Seidel (fixed-size blocks, in parallel) in the explicit engine");
+		mainLog.println("-unrolledkernels ............... Use unrolled loops for sparse matrix-vector products in the explicit engine");
 		mainLog.println();
 		mainLog.println("SOLUTION METHOD SETTINGS");
 		mainLog.println("-relative (or -rel) ............ Use relative error for detecting convergence [default]");
@@ -1808,11 +1921,16 @@ Modules2MTBDD.DISABLE_VAR_DEFERRAL = true;			// ADDED BY SHANE to switch on or o
 		mainLog.println("-nofair ........................ Don't use fairness (for model checking of MDPs) [default]");
 		mainLog.println("-fixdl ......................... Automatically put self-loops in deadlock states [default]");
 		mainLog.println("-nofixdl ....................... Do not automatically put self-loops in deadlock states");
+		mainLog.println("-reusestructure ................ Re-use the (explicit) model structure if only probability constants change");
+		mainLog.println("-resultcache <dir> ............. Store/re-use model checking results in a persistent cache in <dir>");
+		mainLog.println("-resultcachesize <n> ........... Set max size of the result cache, e.g. 500k, 64m, 1g [default: 64m]");
+		mainLog.println("-modelcache <dir> .............. Store/re-use models built by the explicit engine in a persistent cache in <dir>");
 		mainLog.println("-noprobchecks .................. Disable checks on model probabilities/rates");
 		mainLog.println("-sumroundoff <x> ............... Set probability sum threshold [default: 1-e5]");
 		mainLog.println("-zerorewardcheck ............... Check for absence of zero-reward loops");
 		mainLog.println("-nossdetect .................... Disable steady-state detection for CTMC transient computations");
 		mainLog.println("-sccmethod <name> .............. Specify (symbolic) SCC computation method (xiebeerel, lockstep, sccfind)");
+		mainLog.println("-explicitsccmethod <name> ...... Specify explicit SCC computation method (tarjan, parallel)");
 		mainLog.println("-symm <string> ................. Symmetry reduction options string");
 		mainLog.println("-aroptions <string> ............ Abstraction-refinement engine options string");
 		mainLog.println("-pathviaautomata ............... Handle all path formulas via automata constructions");
@@ -1847,6 +1965,7 @@ Modules2MTBDD.DISABLE_VAR_DEFERRAL = true;			// ADDED BY SHANE to switch on or o
 		mainLog.println("-ddsanity ...................... Enable internal sanity checks (causes slow-down)");
 		mainLog.println("-ddextrastatevars <n> .......... Set the number of preallocated state vars [default: 20]");
 		mainLog.println("-ddextraactionvars <n> ......... Set the number of preallocated action vars [default: 20]");
+		mainLog.println("-symbolicindexedaccess ......... Encode variable-index indexed-set accesses symbolically (no command versions)");
 		mainLog.println();
 		mainLog.println("PARAMETRIC MODEL CHECKING OPTIONS:");
 		mainLog.println("-param <vals> .................. Do parametric model checking with parameters (and ranges) <vals>");
@@ -1942,6 +2061,31 @@ Modules2MTBDD.DISABLE_VAR_DEFERRAL = true;			// ADDED BY SHANE to switch on or o
 		}
 	}
 	
+	/**
+	 * Get a string of "key=value" lines for all (non-GUI) PRISM settings, except those
+	 * whose keys are in {@code exclude} (e.g. for identifying the settings used for a computation).
+	 */
+	public synchronized String toKeyValueString(Set<String> exclude)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int j = 0; j < optionOwners[0].getNumSettings(); j++) {
+			Setting set = optionOwners[0].getSetting(j);
+			if (!exclude.contains(set.getKey()))
+				sb.append(set.getKey()).append('=').append(set.toString()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Get the number of worker threads to use for tasks that can be run in parallel
+	 * (the {@link #PRISM_NUM_THREADS} setting, with 0 resolved to the number of available processors).
+	 */
+	public synchronized int getNumThreads()
+	{
+		int n = getInteger(PRISM_NUM_THREADS);
+		return n > 0 ? n : Runtime.getRuntime().availableProcessors();
+	}
+
 	public synchronized String getString(String key)
 	{
 		Setting set = settingFromHash(key);
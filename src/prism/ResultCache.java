@@ -0,0 +1,259 @@
+//==============================================================================
+//	
+//	Copyright (c) 2002-
+//	Authors:
+//	* THIS FILE - Shane Moore
+//	
+//------------------------------------------------------------------------------
+//	
+//	This file is part of PRISM.
+//	
+//	PRISM is free software; you can redistribute it and/or modify
+//	it under the terms of the GNU General Public License as published by
+//	the Free Software Foundation; either version 2 of the License, or
+//	(at your option) any later version.
+//	
+//	PRISM is distributed in the hope that it will be useful,
+//	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//	GNU General Public License for more details.
+//	
+//	You should have received a copy of the GNU General Public License
+//	along with PRISM; if not, write to the Free Software Foundation,
+//	Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//	
+//==============================================================================
+
+
+package prism;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import param.BigRational;
+
+/**
+ * Persistent (on-disk), content-addressed cache of model checking results.
+ * <br>
+ * Each result is stored in its own file, named after the key: a hash of everything that determines
+ * the result (see {@link #computeKey(String)}). Files are written to a temporary file and then
+ * atomically renamed, so the cache can be shared between concurrent processes on one machine:
+ * readers either see a complete entry or none. The total size is capped; when exceeded, the least
+ * recently used entries (by modification time, which is updated on each hit) are removed,
+ * with an exclusive file lock ensuring that only one process evicts at a time.
+ * <br>
+ * Only plain results (Boolean, Integer, Double, BigRational, String) and their explanations are stored,
+ * not counterexamples, strategies or solution vectors.
+ */
+public class ResultCache
+{
+	/** Suffix of cache entry files */
+	private static final String ENTRY_SUFFIX = ".result";
+	/** Name of lock file (for eviction) */
+	private static final String LOCK_FILE = "cache.lock";
+
+	/** Cache directory */
+	private Path dir;
+	/** Maximum total size of the entries (bytes) */
+	private long maxSize;
+
+	/**
+	 * Create a result cache in directory {@code dir} (created if needed),
+	 * with entries taking up at most {@code maxSize} bytes in total.
+	 */
+	public ResultCache(File dir, long maxSize) throws PrismException
+	{
+		this.dir = dir.toPath();
+		this.maxSize = maxSize;
+		try {
+			Files.createDirectories(this.dir);
+		} catch (IOException e) {
+			throw new PrismException("Could not create result cache directory \"" + dir + "\": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Get the cache directory.
+	 */
+	public File getDirectory()
+	{
+		return dir.toFile();
+	}
+
+	/**
+	 * Get the maximum total size of the entries (bytes).
+	 */
+	public long getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * Compute the key for a result from a string {@code description} that fully determines it
+	 * (the model, constant values, property, settings, ...): a SHA-256 hash, in hexadecimal.
+	 */
+	public static String computeKey(String description)
+	{
+		try {
+			byte hash[] = MessageDigest.getInstance("SHA-256").digest(description.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(2 * hash.length);
+			for (byte b : hash)
+				sb.append(String.format("%02x", b & 0xff));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is always available
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Can {@code result} be stored in the cache?
+	 */
+	public static boolean isCacheable(Result result)
+	{
+		Object res = result.getResult();
+		if (!(res instanceof Boolean || res instanceof Integer || res instanceof Double || res instanceof BigRational || res instanceof String))
+			return false;
+		return result.getCounterexample() == null && result.getStrategy() == null && result.getVector() == null;
+	}
+
+	/**
+	 * Look up the result with key {@code key}; returns null if it is not in the cache (or cannot be read).
+	 */
+	public Result lookup(String key)
+	{
+		Path file = dir.resolve(key + ENTRY_SUFFIX);
+		Properties entry = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			entry.load(in);
+		} catch (IOException e) {
+			return null;
+		}
+		Result result = new Result();
+		String type = entry.getProperty("type");
+		String value = entry.getProperty("value");
+		if (type == null || value == null)
+			return null;
+		try {
+			switch (type) {
+			case "Boolean":
+				result.setResult(Boolean.valueOf(value));
+				break;
+			case "Integer":
+				result.setResult(Integer.valueOf(value));
+				break;
+			case "Double":
+				result.setResult(Double.valueOf(value));
+				break;
+			case "BigRational":
+				result.setResult(new BigRational(value));
+				break;
+			case "String":
+				result.setResult(value);
+				break;
+			default:
+				return null;
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		result.setExplanation(entry.getProperty("explanation"));
+		// Mark as recently used
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// (e.g. removed concurrently: not a problem)
+		}
+		return result;
+	}
+
+	/**
+	 * Store {@code result} (if cacheable, see {@link #isCacheable(Result)}) with key {@code key}, then
+	 * remove least recently used entries if the cache is too large.
+	 * Failures to write to the cache are not treated as errors; the result is just not cached.
+	 */
+	public void store(String key, Result result)
+	{
+		if (!isCacheable(result))
+			return;
+		Properties entry = new Properties();
+		entry.setProperty("type", result.getResult().getClass().getSimpleName());
+		entry.setProperty("value", result.getResult().toString());
+		if (result.getExplanation() != null)
+			entry.setProperty("explanation", result.getExplanation());
+		Path tmp = null;
+		try {
+			tmp = Files.createTempFile(dir, key, ".tmp");
+			try (OutputStream out = Files.newOutputStream(tmp)) {
+				entry.store(out, null);
+			}
+			Files.move(tmp, dir.resolve(key + ENTRY_SUFFIX), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			tmp = null;
+			evict();
+		} catch (IOException e) {
+			// just don't cache
+		} finally {
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove least recently used entries until the total size is at most {@code maxSize}.
+	 */
+	private void evict() throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			// (the lock is released when the channel is closed)
+			channel.lock();
+			// Collect entries, with their size and last use
+			List<Path> files = new ArrayList<Path>();
+			List<long[]> info = new ArrayList<long[]>();
+			long total = 0;
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + ENTRY_SUFFIX)) {
+				for (Path file : stream) {
+					try {
+						long size = Files.size(file);
+						long time = Files.getLastModifiedTime(file).toMillis();
+						files.add(file);
+						info.add(new long[] { time, size, files.size() - 1 });
+						total += size;
+					} catch (NoSuchFileException e) {
+						// (removed concurrently)
+					}
+				}
+			}
+			if (total <= maxSize)
+				return;
+			// Remove oldest first
+			info.sort((a, b) -> Long.compare(a[0], b[0]));
+			for (long[] entry : info) {
+				if (total <= maxSize)
+					break;
+				Files.deleteIfExists(files.get((int) entry[2]));
+				total -= entry[1];
+			}
+		}
+	}
+}
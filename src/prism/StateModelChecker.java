@@ -1407,191 +1407,52 @@ if (DEBUG_CheckIndSetAcc_Highlight)
 }
 			return new StateValuesMTBDD(dd, model);
 		}
-// THE REMAINDER IS INCOMPLETE - but may not be required since an earlier phase generates versions of command which have specific indexes before coming to this method.
-		else if (accessExpr instanceof ExpressionVar) 		// THIS ONE CANNOT BE USED DURING MODEL-CONSTRUCTION; ONLY DURING ACTUAL MODEL-CHECKING
-		{
-if (DEBUG_CheckIndSetAcc_Highlight) System.out.println("ChkEISA - Considering as CASE 2: AccessExpression is a Var expression");
-		    if (accessExpr.getType() instanceof TypeInt)
-		    {
-if (DEBUG_CheckIndSetAcc) System.out.println("SUBCASE A: the AccessExpression '"+accessExpr+"' is of type Int");
-//			JDD.Deref(statesOfInterest);	// It is constant, so we don't need to worry about any state!!
-
-//UP TO HERE
-			// I think we need to check the access expression?   OR are we meant to just "evaluate" it to an int?
-			try {
-				res2 = checkExpression(accessExpr, statesOfInterest.copy());
-			} catch (PrismException e) {
-				if (res2 != null)
-					res2.clear();
-				JDD.Deref(statesOfInterest);
-				throw e;
-			}
-if (DEBUG_CheckIndSetAcc) System.out.println("Is res2 NOT instanceof StateValuesMTBDD? " + (!(res2 instanceof StateValuesMTBDD)) );
-			// If the outcome is explicit, extract the value.
-			if (!(res2 instanceof StateValuesMTBDD)) {
-				
-System.out.println("Case A - res2 is of type: " + res2.getClass().getName());
-				System.out.println("IMPLEMENTATION INCOMPLETE to deal with CASE 2A indexAccessExpression: " + accessExpr);
-//res2.print(System.out);
-//res2.convertToStateValuesDV().print(System.out);
-/*
-				evaluatedIndexPos = res2
-accessExpr.evaluateInt(constantValues);	// Find the value
-				dv1 = res1.convertToStateValuesDV().getDoubleVector();
-				dv2 = res2.convertToStateValuesDV().getDoubleVector();
-				n2 = dv1.getSize();
-				switch (op) {
-				case ExpressionFunc.MIN:
-					for (i2 = 0; i2 < n2; i2++)
-						dv1.setElement(i2, Math.min(dv1.getElement(i), dv2.getElement(i)));
-					break;
-				case ExpressionFunc.MAX:
-					for (i2 = 0; i2 < n2; i2++)
-						dv1.setElement(i2, Math.max(dv1.getElement(i), dv2.getElement(i)));
-					break;
-				}
-				dv2.clear();
-				res1 = new StateValuesDV(dv1, model);
-*/			}
-			// Symbolic
-			else {
-System.out.println("Case B - res2 is of type: " + res2.getClass().getName());
-
-// START OF IDEA 17: I am just going to call setVectorElement on every possible 
-/*			s = eisa.getName() + "[" + evaluatedIndexPos + "]";
-if (DEBUG_CheckIndSetAcc)
-{
-	PrintDebugIndent();
-	System.out.println("In SMC.checkExpressionIndSetAcc - place 3, determined name of variable as " + s);
-	System.out.println("will look for the variable having that name.");
-	PrintDebugIndent();
-}
-			// NOW that we know WHICH variable corresponds to the desired index, we do exactly as is done for a normal non-indexed variable (see checkExprVar)
-			// get the indexed-variable's varList index
-			v = varList.getIndex(s);
-			if (v == -1) {
-				throw new PrismException("Unknown variable \"" + s + "\"");
-			}
-			// get some info on the variable
-			l = varList.getLow(v);
-			h = varList.getHigh(v);
-			// create dd
-			dd = JDD.Constant(0);
-			for (i = l; i <= h; i++) {
-				dd = JDD.SetVectorElement(dd, varDDRowVars[v], i - l, i);
-			}
-*/
-// END OF IDEA 17
-
-//System.out.println("TRY THIS: " + (accessExpr.evaluateInt(constantValues,whereAreTheVAR_Values)));
-//System.out.flush();
-				StateValuesMTBDD d = (StateValuesMTBDD) res2;
-	d.shaneShow();
-//			evaluatedIndexPos = (int) d.getJDDNode().getValue();
-//System.out.println(d);
-	d.print(mainLog);
-				System.out.println("IMPLEMENTATION INCOMPLETE to deal with CASE 2B indexAccessExpression: " + accessExpr);
-
-/* some other stuff		dd1 = ((StateValuesMTBDD) res1).getJDDNode();
-				dd2 = ((StateValuesMTBDD) res2).getJDDNode();
-				switch (op) {
-				case ExpressionFunc.MIN:
-					dd1 = JDD.Apply(JDD.MIN, dd1, dd2);
-					break;
-				case ExpressionFunc.MAX:
-					dd1 = JDD.Apply(JDD.MAX, dd1, dd2);
-					break;
-				}
-				res1 = new StateValuesMTBDD(dd1, model);
-*/			}
-
-
-
-//			evaluatedIndexPos = accessExpr.evaluateInt(constantValues);	// Find the value
-if (DEBUG_CheckIndSetAcc) System.out.println("I believe you want to access index " + evaluatedIndexPos);
-
-			// Check the index is within the valid range?
+		// Otherwise, the index depends on the state: build a multiplexer over the elements of the set.
+		else if (accessExpr.getType() instanceof TypeInt) {
+if (DEBUG_CheckIndSetAcc_Highlight) System.out.println("ChkEISA - Considering as CASE 2: AccessExpression is not constant, will select over elements");
+DebugIndent--;
+			return checkExpressionIndSetAccMux(eisa, statesOfInterest);
+		}
+		else {
+DebugIndent--;
+			JDD.Deref(statesOfInterest);
+			throw new PrismException("Unable to model-check that type of index access expression: " + accessExpr);
+		}
+	}
 
-			// Assemble the name of the variable in the model to retrieve.
-			s = eisa.getName() + "[" + evaluatedIndexPos + "]";
-if (DEBUG_CheckIndSetAcc)
-{
-	PrintDebugIndent();
-	System.out.println("In SMC.checkExpressionIndSetAcc - place 3, determined name of variable as " + s);
-	System.out.println("will look for the variable having that name.");
-	PrintDebugIndent();
-}
-			// NOW that we know WHICH variable corresponds to the desired index, we do exactly as for a normal variable (see checkExprVar)
+	/**
+	 * Check an access of an indexed set whose index expression is not constant.
+	 * This builds a multiplexer (nested ITE) over the DD of the index expression and the
+	 * row variables of the elements {@code name[0..n-1]}: in each state, the result is the value of the
+	 * element selected by the index in that state. Where the index is out of bounds, the result is 0,
+	 * so callers needing to exclude such states must do so separately (see Modules2MTBDD).
+	 * <br>[ REFS: <i>result</i>, DEREFS: statesOfInterest ]
+	 */
+	protected StateValues checkExpressionIndSetAccMux(ExpressionIndexedSetAccess eisa, JDDNode statesOfInterest) throws PrismException
+	{
+		JDDNode ddIndex, dd, ddElem;
+		int size, v, k, i, l, h;
 
-			// get the variable's index
-if (DEBUG_CheckIndSetAcc) System.out.println("<BOINK2>");
-			v = varList.getIndex(s);
-if (DEBUG_CheckIndSetAcc) System.out.println("Result of getIndex was: " + v + "\n</BOINK2>");
-			if (v == -1) {
-				throw new PrismException("Unknown variable \"" + s + "\"");
-			}
-			// get some info on the variable
+		size = varList.getIndexedSetSize(eisa.getName());
+		if (size == 0) {
+			JDD.Deref(statesOfInterest);
+			throw new PrismException("Unknown indexed set \"" + eisa.getName() + "\"");
+		}
+		ddIndex = checkExpressionDD(eisa.getIndexExpression(), statesOfInterest);
+		dd = JDD.Constant(0);
+		for (k = 0; k < size; k++) {
+			v = varList.getIndex(eisa.getName() + "[" + k + "]");
 			l = varList.getLow(v);
 			h = varList.getHigh(v);
-			// create dd
-			dd = JDD.Constant(0);
+			ddElem = JDD.Constant(0);
 			for (i = l; i <= h; i++) {
-				dd = JDD.SetVectorElement(dd, varDDRowVars[v], i - l, i);
+				ddElem = JDD.SetVectorElement(ddElem, varDDRowVars[v], i - l, i);
 			}
-
-DebugIndent--;
-//			return new StateValuesMTBDD(dd, model);
-if (DEBUG_CheckIndSetAcc_Highlight)
-{
-	PrintDebugIndent();
-	System.out.println("</ChkEISA considered='" + eisa + "'>\n");
-}
-			throw new PrismException("IMPLEMENTATION INCOMPLETE to deal with: " + accessExpr);
-
-		    } else {	// The access expression has some type other than Int
-if (DEBUG_CheckIndSetAcc) System.out.println("SUBCASE B: the AccessExpression is NOT of type Int - it is of type: " + accessExpr.getType().getClass().getName());
-if (DEBUG_CheckIndSetAcc_Highlight)
-{
-	PrintDebugIndent();
-	System.out.println("</ChkEISA considered='" + eisa + "'>\n");
-}
-			throw new PrismException("Unable to model-check that type of index access expression: " + accessExpr);
-		    }
-		} else if (accessExpr instanceof ExpressionBinaryOp || accessExpr instanceof ExpressionUnaryOp) { // Some kind of arithmetic, presumbly.
-if (DEBUG_CheckIndSetAcc_Highlight) System.out.println("ChkEISA - Considering as CASE 3: AccessExpression is something which needs calculation, namely:" + accessExpr.getClass().getName() );
-System.out.println("access expression: " + accessExpr);
-System.out.println("object type of accessExpr: " + accessExpr.getClass().getName());
-System.out.println("getType on the expression: " + accessExpr.getType());
-if (DEBUG_CheckIndSetAcc_Highlight)
-{
-	PrintDebugIndent();
-	System.out.println("</ChkEISA considered='" + eisa + "'>\n");
-}
-			throw new PrismException("IMPLEMENTATION INCOMPLETE - Unable to model-check that type of index access expression: " + accessExpr + "\nthe object type is: "+accessExpr.getClass().getName());
-		}else { 	// For example, a
-if (DEBUG_CheckIndSetAcc_Highlight) System.out.println("ChkEISA - Considering as CASE 4: AccessExpression is of an unhandled type, namely:" + accessExpr.getClass().getName() );
-if (DEBUG_CheckIndSetAcc_Highlight)
-{
-	PrintDebugIndent();
-	System.out.println("</ChkEISA considered='" + eisa + "'>\n");
-}
-			throw new PrismException(" *** IMPLEMENTATION INCOMPLETE *** - Unable to model-check that type of index access expression: " + accessExpr);
+			dd = JDD.ITE(JDD.Equals(ddIndex.copy(), k), ddElem, dd);
 		}
+		JDD.Deref(ddIndex);
 
-
-
-/* Not Useful...
-		// The following IF and ELSE blocks are based on the code found in the checkExpressionBinaryOp()  
-		// If the result of the access expression was symbolic, result will be symbolic
-		if (intermediate instanceof StateValuesMTBDD) {
-if (DEBUG_CheckIndSetAcc) System.out.println("Intermediate is symbolic - Shane hasn't worked out what to do here yet.");
-			JDDNode ddIndex = ((StateValuesMTBDD) intermediate).getJDDNode();
-//				throw new PrismException("Unable to model check this index set access");
-			//return new StateValuesMTBDD(dd, model);
-		}
-		// Otherwise result will be explicit
-*/
-
+		return new StateValuesMTBDD(dd, model);
 	}
 	
 	/**
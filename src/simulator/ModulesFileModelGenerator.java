@@ -87,6 +87,36 @@ System.out.println("The modules file at line 86 of MFMG is: "+ modulesFile);
 		}
 	}
 	
+	/**
+	 * Construct a copy of an (initialised) ModulesFileModelGenerator, with its own copy of the model
+	 * and its own exploration state, so that it can be used independently (e.g. in another thread).
+	 */
+	private ModulesFileModelGenerator(ModulesFileModelGenerator other)
+	{
+		parent = other.parent;
+		originalModulesFile = other.originalModulesFile;
+		modulesFile = (ModulesFile) other.modulesFile.deepCopy();
+		modelType = other.modelType;
+		mfConstants = other.mfConstants;
+		varList = other.varList;
+		labelList = modulesFile.getLabelList();
+		labelNames = other.labelNames;
+		updater = new Updater(modulesFile, varList, parent);
+		transitionList = new TransitionList();
+		transitionListBuilt = false;
+	}
+
+	/**
+	 * Create a copy of this model generator, for exploring states independently of this one
+	 * (e.g. in another thread). Constants must already have been defined.
+	 */
+	public ModulesFileModelGenerator createCopy() throws PrismException
+	{
+		if (updater == null)
+			throw new PrismException("Cannot copy a model generator before all constants are defined");
+		return new ModulesFileModelGenerator(this);
+	}
+
 	/**
 	 * (Re-)Initialise the class ready for model exploration
 	 * (can only be done once any constants needed have been provided)